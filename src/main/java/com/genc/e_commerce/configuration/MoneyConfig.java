@@ -0,0 +1,25 @@
+package com.genc.e_commerce.configuration;
+
+import com.genc.e_commerce.util.Money;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Currency;
+
+@Configuration
+public class MoneyConfig {
+
+    private static final Logger logger = LogManager.getLogger(MoneyConfig.class);
+
+    @Value("${app.money.currency:USD}")
+    private String currency = "USD";
+
+    @PostConstruct
+    public void init() {
+        Money.setCurrency(Currency.getInstance(currency));
+        logger.info("Amounts are kept in minor units of {} ({} per unit)", currency, Money.factor());
+    }
+}
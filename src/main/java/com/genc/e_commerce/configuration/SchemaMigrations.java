@@ -0,0 +1,168 @@
+package com.genc.e_commerce.configuration;
+
+import com.genc.e_commerce.util.Money;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.Objects;
+
+/*
+    Schema changes that spring.jpa.hibernate.ddl-auto=update does not make on an existing database: it creates
+    missing tables and columns but never adds a constraint to a table that already exists, and never moves data
+    or drops a column. Runs once the JPA schema update is done and before the application takes traffic; every
+    step checks first and does nothing when the change is already there. Steps that move data are recorded in
+    schema_migration so they run once; nothing is dropped unless a setting asks for it.
+*/
+@Component
+@DependsOn({"entityManagerFactory", "moneyConfig"})
+public class SchemaMigrations {
+
+    private static final Logger logger = LogManager.getLogger(SchemaMigrations.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.schema.drop-legacy-amounts:false}")
+    private boolean dropLegacyAmounts = false;
+
+    @PostConstruct
+    public void migrate() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migration (name VARCHAR(100) NOT NULL PRIMARY KEY, " +
+                "applied_at DATETIME NOT NULL)");
+        uniquePaymentPerOrder();
+        amountsInMinorUnits();
+        if (dropLegacyAmounts) {
+            dropLegacyAmounts();
+        }
+    }
+
+    // databases created before Payment.order was declared unique may hold several payments for one order
+    private void uniquePaymentPerOrder() {
+        if (hasUniqueIndex("payment", "order_id")) {
+            return;
+        }
+        Integer duplicated = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM (SELECT order_id FROM payment WHERE order_id IS NOT NULL " +
+                        "GROUP BY order_id HAVING COUNT(*) > 1) d", Integer.class);
+        if (duplicated != null && duplicated > 0) {
+            logger.error("Cannot add uk_payment_order: {} orders have more than one payment. Resolve the " +
+                    "DUPLICATE_PAYMENT lines of a reconciliation report (POST /api/admin/reconciliation) and restart", duplicated);
+            return;
+        }
+        jdbcTemplate.execute("CREATE UNIQUE INDEX uk_payment_order ON payment (order_id)");
+        logger.info("Created unique index uk_payment_order on payment (order_id)");
+    }
+
+    /*
+        amounts used to be DOUBLE columns in major units. ddl-auto has already added the BIGINT *_minor columns
+        (filled with 0); this copies the old values over through DECIMAL, so 19.99 becomes exactly 1999, and
+        makes the old column nullable, since new inserts no longer fill it. The old column stays, with the values
+        as they were, until dropLegacyAmounts is asked for. A run cut short before the step is recorded simply
+        copies again on the next start; no traffic was taken in between.
+    */
+    private void amountsInMinorUnits() {
+        migrateAmount("product", "price", "price_minor");
+        migrateAmount("cart_item", "item_price_total", "item_price_total_minor");
+        migrateAmount("order_t", "total_amount", "total_amount_minor");
+        migrateAmount("payment", "amount", "amount_minor");
+    }
+
+    private void migrateAmount(String table, String legacyColumn, String minorColumn) {
+        String step = "minor-units:" + table + "." + legacyColumn;
+        if (!hasColumn(table, legacyColumn) || isApplied(step)) {
+            return;
+        }
+        int rows = jdbcTemplate.update("UPDATE " + table + " SET " + minorColumn + " = ROUND(CAST(" + legacyColumn
+                + " AS DECIMAL(19,4)) * " + Money.factor() + ") WHERE " + legacyColumn + " IS NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY " + legacyColumn + " DOUBLE NULL");
+        markApplied(step);
+        logger.info("Copied {} rows of {}.{} to {} in {} minor units; {} is kept until app.schema.drop-legacy-amounts",
+                rows, table, legacyColumn, minorColumn, Money.currency(), legacyColumn);
+    }
+
+    // app.schema.drop-legacy-amounts: only columns whose copy is recorded are dropped
+    private void dropLegacyAmounts() {
+        dropLegacyAmount("product", "price", "idx_product_category_price", "idx_product_price");
+        dropLegacyAmount("cart_item", "item_price_total");
+        dropLegacyAmount("order_t", "total_amount");
+        dropLegacyAmount("payment", "amount");
+    }
+
+    private void dropLegacyAmount(String table, String legacyColumn, String... legacyIndexes) {
+        if (!hasColumn(table, legacyColumn)) {
+            return;
+        }
+        if (!isApplied("minor-units:" + table + "." + legacyColumn)) {
+            logger.warn("Not dropping {}.{}: its values were never copied to minor units", table, legacyColumn);
+            return;
+        }
+        for (String index : legacyIndexes) {
+            if (hasIndex(table, index)) {
+                jdbcTemplate.execute("DROP INDEX " + index + " ON " + table);
+            }
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN " + legacyColumn);
+        logger.info("Dropped legacy amount column {}.{}", table, legacyColumn);
+    }
+
+    private boolean isApplied(String step) {
+        Integer found = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schema_migration WHERE name = ?", Integer.class, step);
+        return found != null && found > 0;
+    }
+
+    private void markApplied(String step) {
+        jdbcTemplate.update("INSERT INTO schema_migration (name, applied_at) VALUES (?, CURRENT_TIMESTAMP)", step);
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet columns = connection.getMetaData().getColumns(connection.getCatalog(), null, table, null)) {
+                while (columns.next()) {
+                    if (column.equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    private boolean hasIndex(String table, String index) {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            try (ResultSet indexes = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+                while (indexes.next()) {
+                    if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+
+    private boolean hasUniqueIndex(String table, String column) {
+        Boolean found = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, table, true, false)) {
+                while (indexes.next()) {
+                    if (column.equalsIgnoreCase(Objects.toString(indexes.getString("COLUMN_NAME"), ""))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        return Boolean.TRUE.equals(found);
+    }
+}
@@ -0,0 +1,114 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.entity.SalesRollup;
+import com.genc.e_commerce.repository.SalesRollupJdbcRepo;
+import com.genc.e_commerce.service.CatalogColumnService;
+import com.genc.e_commerce.service.SalesAnalyticsService;
+import com.genc.e_commerce.util.ColumnarCatalog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/*
+    Admin reports served from sales_rollup. Every answer reads at most (days in the period x values of the
+    dimension) rows, independent of how many orders and payments exist. Figures trail live traffic by up to
+    app.analytics.flush-interval-ms; revenueMinor is in cents. The stock report scans the off-heap catalog
+    columns instead, which follow every product write.
+*/
+@RestController
+@RequestMapping("/api/admin/analytics")
+@CrossOrigin(origins = "*")
+public class AnalyticsController {
+    private static final Logger logger = LogManager.getLogger(AnalyticsController.class);
+
+    @Autowired
+    private SalesAnalyticsService salesAnalyticsService;
+
+    @Autowired
+    private CatalogColumnService catalogColumnService;
+
+    @Value("${app.analytics.max-range-days:366}")
+    private int maxRangeDays = 366;
+
+    // e.g. /rollups?dimension=PAYMENT_METHOD&from=2026-03-01&to=2026-03-31 for revenue by day by payment method
+    @GetMapping("/rollups")
+    public ResponseEntity<?> getRollups(@RequestParam SalesRollup.Dimension dimension,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        logger.info("Request received for {} rollups from {} to {}", dimension, from, to);
+        if (dimension == SalesRollup.Dimension.ORDER_STATUS_CURRENT) {
+            return badRequest("use /orders-by-status for the current order status counts");
+        }
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            return badRequest("the period must run forwards and cover at most " + maxRangeDays + " days");
+        }
+        List<SalesRollupJdbcRepo.RollupRow> rows = salesAnalyticsService.getRollups(dimension, from, to);
+        logger.debug("Returning {} {} rollup rows", rows.size(), dimension);
+        return ResponseEntity.ok(rows);
+    }
+
+    @GetMapping("/orders-by-status")
+    public ResponseEntity<Map<String, Long>> getOrdersByStatus() {
+        logger.info("Request received for current orders by status");
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (SalesRollupJdbcRepo.RollupRow row : salesAnalyticsService.getRollups(
+                SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, SalesRollup.ALL_TIME)) {
+            counts.put(row.value(), row.orderCount());
+        }
+        return ResponseEntity.ok(counts);
+    }
+
+    // stock totals, per category, and the products with the least stock at or below lowStockThreshold
+    @GetMapping("/stock")
+    public ResponseEntity<?> getStockReport(@RequestParam(defaultValue = "5") int lowStockThreshold,
+                                            @RequestParam(defaultValue = "20") int limit) {
+        logger.info("Request received for the stock report, low stock at {} or less", lowStockThreshold);
+        if (limit < 1 || limit > 500) {
+            return badRequest("limit must be between 1 and 500");
+        }
+        Optional<ColumnarCatalog.StockReport> report = catalogColumnService.getStockReport(lowStockThreshold, limit);
+        if (report.isEmpty()) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "the catalog columns are not loaded yet");
+            return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        logger.debug("Stock report covers {} products", report.get().products());
+        return ResponseEntity.ok(report.get());
+    }
+
+    // recomputes the payment and order status rollups from the base tables; a full scan, use sparingly
+    @PostMapping("/rebuild")
+    public ResponseEntity<?> rebuild() {
+        logger.info("Request received to rebuild the sales rollups");
+        try {
+            salesAnalyticsService.rebuild();
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Sales rollups rebuilt");
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            logger.error("Sales rollup rebuild failed", e);
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "Rebuild failed: " + e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static ResponseEntity<?> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", message);
+        return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -0,0 +1,29 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.service.AutocompleteService;
+import com.genc.e_commerce.util.SuggestionTrie;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+public class AutocompleteController {
+    private static final Logger logger = LogManager.getLogger(AutocompleteController.class);
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<SuggestionTrie.Suggestion>> suggest(@RequestParam("q") String query,
+                                                                   @RequestParam(defaultValue = "10") int limit) {
+        List<SuggestionTrie.Suggestion> suggestions = autocompleteService.suggest(query, Math.max(limit, 1));
+        logger.debug("Autocomplete for '{}' returned {} suggestions", query, suggestions.size());
+        return ResponseEntity.ok(suggestions);
+    }
+}
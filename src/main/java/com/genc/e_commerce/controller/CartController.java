@@ -1,10 +1,14 @@
 package com.genc.e_commerce.controller;
 
+import com.genc.e_commerce.dto.CartBatchRequest;
 import com.genc.e_commerce.dto.CartRequest;
 import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.CartSummary;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
 import com.genc.e_commerce.service.CartService;
+import com.genc.e_commerce.util.Money;
+import com.genc.e_commerce.util.MoneyCalculator;
 import jakarta.validation.Valid;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -76,6 +80,16 @@ public class CartController {
         return ResponseEntity.ok(cartItems);
     }
 
+    // totals with promotions applied; coupon is optional
+    @GetMapping("/cart-summary/{userId}")
+    public ResponseEntity<CartSummary> getCartSummary(@PathVariable Long userId,
+                                                      @RequestParam(required = false) String coupon) {
+        logger.info("Pricing cart for user ID: {} with coupon: {}", userId, coupon);
+        CartSummary summary = cartService.priceCart(userId, coupon);
+        logger.debug("Cart of user ID {} totals {} with {} off", userId, summary.getTotalAmountMinor(), summary.getDiscountMinor());
+        return ResponseEntity.ok(summary);
+    }
+
     @PutMapping("/update-cart-quantity/{cartId}")
     public ResponseEntity<?> updateCartQuantity(@PathVariable Long cartId, @RequestBody Map<String, Integer> request) {
         logger.info("Request received to update quantity for cart ID: {} with data: {}", cartId, request);
@@ -105,4 +119,32 @@ public class CartController {
             return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
-}
\ No newline at end of file
+
+    // applies several add / set-quantity / remove edits to one cart in a single call and returns the whole cart
+    @PostMapping("/update-cart-batch")
+    public ResponseEntity<?> updateCartBatch(@RequestBody CartBatchRequest batchRequest) {
+        logger.info("Request received to apply {} cart operations for user ID: {}",
+                batchRequest.getOperations() != null ? batchRequest.getOperations().size() : 0, batchRequest.getUserId());
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<CartResponse> cartItems = cartService.applyBatch(batchRequest);
+            response.put("message", "cart updated successfully");
+            response.put("data", cartItems);
+            response.put("cartTotal", Money.toMajor(MoneyCalculator.total(cartItems, CartResponse::getItemPriceTotalMinor)));
+            logger.info("Cart batch applied for user ID {}, cart now has {} items.", batchRequest.getUserId(), cartItems.size());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid cart batch for user ID {}: {}", batchRequest.getUserId(), e.getMessage());
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        } catch (ResourceNotFoundException e) {
+            logger.warn("ResourceNotFoundException while applying cart batch for user ID {}: {}", batchRequest.getUserId(), e.getMessage());
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            logger.error("Unexpected error while applying cart batch for user ID {}.", batchRequest.getUserId(), e);
+            response.put("error", "Failed to update cart: " + e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.dto.CartRequest;
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.service.GuestCartService;
+import com.genc.e_commerce.util.Money;
+import com.genc.e_commerce.util.MoneyCalculator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Cart endpoints for shoppers without an account. The cart is identified by the guest_cart cookie, which
+    is issued on the first add; it is merged into the user's cart on /login-user.
+*/
+@RestController
+@RequestMapping("/api/guest-cart")
+@CrossOrigin(origins = "*")
+public class GuestCartController {
+    private static final Logger logger = LogManager.getLogger(GuestCartController.class);
+
+    @Autowired
+    private GuestCartService guestCartService;
+
+    @PostMapping("/add-product")
+    public ResponseEntity<?> addToCart(@CookieValue(value = GuestCartService.COOKIE_NAME, required = false) String token,
+                                       @RequestBody CartRequest cartRequest) {
+        String cartToken = token != null ? token : GuestCartService.newToken();
+        logger.debug("Request received to add product {} to a guest cart", cartRequest.getProductId());
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<CartResponse> cartItems = guestCartService.addToCart(cartToken, cartRequest.getProductId(), cartRequest.getQuantity());
+            response.put("message", "product added in the cart");
+            response.put("data", cartItems);
+            response.put("cartTotal", total(cartItems));
+            // the cookie is re-sent on every add so its lifetime follows the cart's idle timeout
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(HttpHeaders.SET_COOKIE, cookie(cartToken, guestCartService.getIdleTtlSeconds()).toString())
+                    .body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        } catch (ResourceNotFoundException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getCart(@CookieValue(value = GuestCartService.COOKIE_NAME, required = false) String token) {
+        List<CartResponse> cartItems = token != null ? guestCartService.getCart(token) : List.of();
+        Map<String, Object> response = new HashMap<>();
+        response.put("data", cartItems);
+        response.put("cartTotal", total(cartItems));
+        return ResponseEntity.ok(response);
+    }
+
+    @PutMapping("/{productId}")
+    public ResponseEntity<?> updateQuantity(@CookieValue(value = GuestCartService.COOKIE_NAME, required = false) String token,
+                                            @PathVariable Long productId, @RequestBody Map<String, Integer> request) {
+        Map<String, Object> response = new HashMap<>();
+        Integer quantity = request.get("quantity");
+        if (quantity == null || quantity < 1) {
+            response.put("error", "Quantity must be 1 or more.");
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        if (token == null) {
+            response.put("error", "No cart item found for product ID " + productId);
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        try {
+            List<CartResponse> cartItems = guestCartService.updateQuantity(token, productId, quantity);
+            response.put("message", "Quantity and Total Price updated successfully");
+            response.put("data", cartItems);
+            response.put("cartTotal", total(cartItems));
+            return ResponseEntity.ok(response);
+        } catch (ResourceNotFoundException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @DeleteMapping("/{productId}")
+    public ResponseEntity<?> removeFromCart(@CookieValue(value = GuestCartService.COOKIE_NAME, required = false) String token,
+                                            @PathVariable Long productId) {
+        Map<String, Object> response = new HashMap<>();
+        if (token == null) {
+            response.put("error", "No cart item found for product ID " + productId);
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        try {
+            List<CartResponse> cartItems = guestCartService.removeFromCart(token, productId);
+            response.put("message", "cart item deleted successfully");
+            response.put("data", cartItems);
+            response.put("cartTotal", total(cartItems));
+            return ResponseEntity.ok(response);
+        } catch (ResourceNotFoundException e) {
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    static ResponseCookie cookie(String token, long maxAgeSeconds) {
+        return ResponseCookie.from(GuestCartService.COOKIE_NAME, token)
+                .path("/")
+                .httpOnly(true)
+                .sameSite("Lax")
+                .maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .build();
+    }
+
+    private static BigDecimal total(List<CartResponse> cartItems) {
+        return Money.toMajor(MoneyCalculator.total(cartItems, CartResponse::getItemPriceTotalMinor));
+    }
+}
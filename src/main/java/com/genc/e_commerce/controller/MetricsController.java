@@ -0,0 +1,160 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.service.CartExpiryService;
+import com.genc.e_commerce.service.CartRepricingService;
+import com.genc.e_commerce.service.CatalogColumnService;
+import com.genc.e_commerce.service.CategoryService;
+import com.genc.e_commerce.service.OutboxDispatcher;
+import com.genc.e_commerce.service.PaymentOrchestrator;
+import com.genc.e_commerce.service.PaymentStatusCache;
+import com.genc.e_commerce.service.PaymentWebhookService;
+import com.genc.e_commerce.service.PopularityService;
+import com.genc.e_commerce.service.ProductService;
+import com.genc.e_commerce.service.PromotionService;
+import com.genc.e_commerce.service.RecommendationService;
+import com.genc.e_commerce.service.SalesAnalyticsService;
+import com.genc.e_commerce.service.SimilarProductService;
+import com.genc.e_commerce.util.SingleFlight;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/metrics")
+@CrossOrigin(origins = "*")
+public class MetricsController {
+    private static final Logger logger = LogManager.getLogger(MetricsController.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CartRepricingService cartRepricingService;
+
+    @Autowired
+    private CartExpiryService cartExpiryService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private SalesAnalyticsService salesAnalyticsService;
+
+    @Autowired
+    private PaymentOrchestrator paymentOrchestrator;
+
+    @Autowired
+    private PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    private PaymentStatusCache paymentStatusCache;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private PopularityService popularityService;
+
+    @Autowired
+    private SimilarProductService similarProductService;
+
+    @Autowired
+    private CatalogColumnService catalogColumnService;
+
+    @GetMapping("/coalescing")
+    public ResponseEntity<List<SingleFlight.Stats>> getCoalescingStats() {
+        logger.debug("Request received for read coalescing metrics");
+        return ResponseEntity.ok(List.of(
+                productService.getProductLookupStats(),
+                categoryService.getCategoryLookupStats()));
+    }
+
+    // lagMs is how long the oldest queued price change has been waiting to reach the carts
+    @GetMapping("/cart-repricing")
+    public ResponseEntity<CartRepricingService.Stats> getCartRepricingStats() {
+        logger.debug("Request received for cart repricing metrics");
+        return ResponseEntity.ok(cartRepricingService.getStats());
+    }
+
+    @GetMapping("/cart-expiry")
+    public ResponseEntity<CartExpiryService.Stats> getCartExpiryStats() {
+        logger.debug("Request received for cart expiry metrics");
+        return ResponseEntity.ok(cartExpiryService.getStats());
+    }
+
+    // lagMs is the age of the oldest event not yet delivered
+    @GetMapping("/outbox")
+    public ResponseEntity<OutboxDispatcher.Stats> getOutboxStats() {
+        logger.debug("Request received for outbox metrics");
+        return ResponseEntity.ok(outboxDispatcher.getStats());
+    }
+
+    // pendingCells are the in-memory accumulators not yet flushed to sales_rollup
+    @GetMapping("/sales-analytics")
+    public ResponseEntity<SalesAnalyticsService.Stats> getSalesAnalyticsStats() {
+        logger.debug("Request received for sales analytics metrics");
+        return ResponseEntity.ok(salesAnalyticsService.getStats());
+    }
+
+    // callsInFlight are gateway calls holding a bulkhead permit
+    @GetMapping("/payment-gateway")
+    public ResponseEntity<PaymentOrchestrator.Stats> getPaymentGatewayStats() {
+        logger.debug("Request received for payment gateway metrics");
+        return ResponseEntity.ok(paymentOrchestrator.getStats());
+    }
+
+    // backlogBytes is journaled webhook data not yet applied to the database
+    @GetMapping("/payment-webhooks")
+    public ResponseEntity<PaymentWebhookService.Stats> getPaymentWebhookStats() {
+        logger.debug("Request received for payment webhook metrics");
+        return ResponseEntity.ok(paymentWebhookService.getStats());
+    }
+
+    @GetMapping("/payment-status-cache")
+    public ResponseEntity<PaymentStatusCache.Stats> getPaymentStatusCacheStats() {
+        logger.debug("Request received for payment status cache metrics");
+        return ResponseEntity.ok(paymentStatusCache.getStats());
+    }
+
+    @GetMapping("/promotions")
+    public ResponseEntity<PromotionService.Stats> getPromotionStats() {
+        logger.debug("Request received for promotion engine metrics");
+        return ResponseEntity.ok(promotionService.getStats());
+    }
+
+    @GetMapping("/recommendations")
+    public ResponseEntity<RecommendationService.Stats> getRecommendationStats() {
+        logger.debug("Request received for recommendation metrics");
+        return ResponseEntity.ok(recommendationService.getStats());
+    }
+
+    // dropped counts events lost to full buffers; sketchBytes is the fixed memory of both windows
+    @GetMapping("/popularity")
+    public ResponseEntity<PopularityService.Stats> getPopularityStats() {
+        logger.debug("Request received for popularity metrics");
+        return ResponseEntity.ok(popularityService.getStats());
+    }
+
+    @GetMapping("/similar-products")
+    public ResponseEntity<SimilarProductService.Stats> getSimilarProductStats() {
+        logger.debug("Request received for similar-products metrics");
+        return ResponseEntity.ok(similarProductService.getStats());
+    }
+
+    // offHeapBytes is the direct memory held by the columns; deadNameBytes is reclaimed by the nightly reload
+    @GetMapping("/catalog-columns")
+    public ResponseEntity<CatalogColumnService.Stats> getCatalogColumnStats() {
+        logger.debug("Request received for catalog column metrics");
+        return ResponseEntity.ok(catalogColumnService.getStats());
+    }
+}
@@ -1,7 +1,10 @@
 package com.genc.e_commerce.controller;
 
+import com.genc.e_commerce.dto.OrderHistoryPage;
 import com.genc.e_commerce.dto.OrderRequest;
 import com.genc.e_commerce.dto.OrderResponse;
+import com.genc.e_commerce.dto.OrderTransitionRequest;
+import com.genc.e_commerce.dto.OrderTransitionResult;
 import com.genc.e_commerce.entity.Order;
 import com.genc.e_commerce.service.OrderService;
 import org.apache.logging.log4j.LogManager;
@@ -11,7 +14,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -64,6 +69,49 @@ public class OrderController {
         }
     }
 
+    // newest first; pass the returned nextCursor back as ?cursor= to get the following page
+    @GetMapping("/order-history/{userId}")
+    public ResponseEntity<?> getOrderHistory(@PathVariable Long userId,
+                                             @RequestParam(required = false) Order.Status status,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "20") int size) {
+        logger.info("Request received to fetch order history for user ID: {} (status: {})", userId, status);
+        Map<String, Object> responseMap = new HashMap<>();
+        if (size < 1 || size > 100) {
+            responseMap.put("error", "size must be between 1 and 100");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseMap);
+        }
+        try {
+            OrderHistoryPage page = orderService.getOrderHistory(userId, status, cursor, size);
+            logger.debug("Returning {} orders for user ID: {}", page.getOrders().size(), userId);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bad order history request for user ID {}: {}", userId, e.getMessage());
+            responseMap.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseMap);
+        }
+    }
+
+    // moves many orders to one status, e.g. SHIPPED -> DELIVERED for a fulfilment batch; reports every id
+    @PostMapping("/orders/status-transitions")
+    public ResponseEntity<?> transitionOrderStatuses(@RequestBody OrderTransitionRequest request) {
+        logger.info("Request received to move {} orders to status: {}",
+                request.getOrderIds() != null ? request.getOrderIds().size() : 0, request.getToStatus());
+        Map<String, Object> responseMap = new HashMap<>();
+        try {
+            List<OrderTransitionResult> results = orderService.transitionStatuses(request);
+            Map<OrderTransitionResult.Outcome, Long> summary = new EnumMap<>(OrderTransitionResult.Outcome.class);
+            results.forEach(result -> summary.merge(result.getOutcome(), 1L, Long::sum));
+            responseMap.put("summary", summary);
+            responseMap.put("data", results);
+            return ResponseEntity.ok(responseMap);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bad status transition request: {}", e.getMessage());
+            responseMap.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(responseMap);
+        }
+    }
+
     /*
     @PutMapping("/update-status/{orderId}")
     public ResponseEntity<?> updateOrderStatus(
@@ -1,12 +1,32 @@
 package com.genc.e_commerce.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.genc.e_commerce.dto.PaymentWebhookRequest;
+import com.genc.e_commerce.dto.SettlementRecord;
+import com.genc.e_commerce.dto.SettlementResult;
 import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.service.PaymentOrchestrator;
 import com.genc.e_commerce.service.PaymentService;
+import com.genc.e_commerce.service.PaymentSettlementService;
+import com.genc.e_commerce.service.PaymentWebhookService;
 import com.genc.e_commerce.util.Response;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping(value = "/payment")
 @CrossOrigin(origins = "*")
@@ -14,10 +34,22 @@ public class PaymentController {
 
     private static final Logger logger = LogManager.getLogger(PaymentController.class);
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final PaymentService paymentService;
+    private final PaymentSettlementService paymentSettlementService;
+    private final PaymentOrchestrator paymentOrchestrator;
+    private final PaymentWebhookService paymentWebhookService;
+    private final ObjectMapper objectMapper;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentSettlementService paymentSettlementService,
+                             PaymentOrchestrator paymentOrchestrator, PaymentWebhookService paymentWebhookService,
+                             ObjectMapper objectMapper) {
         this.paymentService = paymentService;
+        this.paymentSettlementService = paymentSettlementService;
+        this.paymentOrchestrator = paymentOrchestrator;
+        this.paymentWebhookService = paymentWebhookService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping(value = "/process")
@@ -26,8 +58,11 @@ public class PaymentController {
         logger.debug("Payment details: isPaymentSuccess={}, paymentMethod={}", isPaymentSuccess, paymentMethod);
 
         try {
-            String result = paymentService.processPayment(orderId, isPaymentSuccess, paymentMethod);
-            logger.info("Successfully processed payment for orderId: {}", orderId);
+            long paymentId = paymentService.processPayment(orderId, isPaymentSuccess, paymentMethod);
+            logger.info("Successfully processed payment {} for orderId: {}", paymentId, orderId);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("message", "Payment Processed Successfully");
+            result.put("paymentId", paymentId);
             return new Response(result);
         } catch (Exception e) {
             logger.error("Error processing payment for orderId: {}", orderId, e);
@@ -35,6 +70,33 @@ public class PaymentController {
         }
     }
 
+    // charges the order through the payment gateway; the request is completed asynchronously
+    @PostMapping(value = "/checkout")
+    public CompletableFuture<Response> checkout(@RequestParam Long orderId, @RequestParam Payment.PaymentMethod paymentMethod) {
+        logger.info("Received gateway checkout request for orderId: {}", orderId);
+        return paymentOrchestrator.checkout(orderId, paymentMethod).thenApply(result -> {
+            logger.info("Gateway checkout for orderId {} ended as {}", orderId, result.getOutcome());
+            return new Response(result);
+        });
+    }
+
+    // gateway callback; 202 once it is journaled, the status change itself is applied shortly after
+    @PostMapping(value = "/webhooks")
+    public ResponseEntity<Response> receiveWebhook(@RequestBody PaymentWebhookRequest request) {
+        logger.debug("Received payment webhook {} for paymentId: {}", request.getEventId(), request.getPaymentId());
+        try {
+            paymentWebhookService.receive(request);
+            return new ResponseEntity<>(new Response("Accepted"), HttpStatus.ACCEPTED);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected payment webhook {}: {}", request.getEventId(), e.getMessage());
+            return new ResponseEntity<>(new Response("Error: " + e.getMessage()), HttpStatus.BAD_REQUEST);
+        } catch (UncheckedIOException e) {
+            // the gateway retries on 5xx, so nothing is lost
+            logger.error("Could not journal payment webhook {}", request.getEventId(), e);
+            return new ResponseEntity<>(new Response("Error: webhook could not be stored"), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
     @GetMapping(value = "/get-payment-status")
     public Response getPaymentStatus(@RequestParam Long paymentId)
     {
@@ -49,4 +111,46 @@ public class PaymentController {
             return new Response("Error: " + e.getMessage());
         }
     }
+
+    // status polling for clients that only know the order; answered from a short-lived cache or a unique index
+    @GetMapping(value = "/status-by-order")
+    public Response getPaymentStatusByOrder(@RequestParam Long orderId) {
+        logger.debug("Received request to get payment status for orderId: {}", orderId);
+        try {
+            return new Response(paymentService.getPaymentStatusByOrder(orderId));
+        } catch (Exception e) {
+            logger.error("Error retrieving payment status for orderId: {}", orderId, e);
+            return new Response("Error: " + e.getMessage());
+        }
+    }
+
+/*
+    bulk settlement of offline payments. The body is a stream of {"orderId", "outcome", "paymentMethod"}
+    records, either newline-delimited or as one JSON array; the response is one SettlementResult per record as
+    newline-delimited JSON, written and flushed chunk by chunk while the body is still being read. This runs on
+    the request thread rather than as an async StreamingResponseBody so a long file is not cut off by the
+    async request timeout.
+*/
+    @PostMapping(value = "/settlements", consumes = {NDJSON, MediaType.APPLICATION_JSON_VALUE})
+    public void settlePayments(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Received batch settlement request");
+        response.setContentType(NDJSON);
+        try (MappingIterator<SettlementRecord> records = objectMapper.readerFor(SettlementRecord.class)
+                .readValues(request.getInputStream());
+             SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n")
+                     .writeValues(response.getOutputStream())) {
+            PaymentSettlementService.Summary summary = paymentSettlementService.settle(records, results -> {
+                try {
+                    for (SettlementResult result : results) {
+                        writer.write(result);
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not write settlement results", e);
+                }
+            });
+            logger.info("Batch settlement done: {} records, {} settled, {} rejected, {} failed in {} ms",
+                    summary.records(), summary.settled(), summary.rejected(), summary.failed(), summary.durationMs());
+        }
+    }
 }
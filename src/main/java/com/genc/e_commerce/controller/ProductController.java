@@ -1,18 +1,30 @@
 package com.genc.e_commerce.controller;
 
+import com.genc.e_commerce.dto.ProductBatchItem;
+import com.genc.e_commerce.dto.ProductBatchRequest;
+import com.genc.e_commerce.dto.ProductBrowseResponse;
 import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.service.CatalogFacetService;
+import com.genc.e_commerce.service.PopularityService;
 import com.genc.e_commerce.service.ProductService;
+import com.genc.e_commerce.service.RecommendationService;
+import com.genc.e_commerce.service.SimilarProductService;
+import com.genc.e_commerce.util.CooccurrenceMatrix;
+import com.genc.e_commerce.util.MinHashIndex;
 import jakarta.validation.Valid;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.IntFunction;
 
 
 @RestController
@@ -23,6 +35,18 @@ public class ProductController {
     @Autowired
     ProductService productService;
 
+    @Autowired
+    CatalogFacetService catalogFacetService;
+
+    @Autowired
+    RecommendationService recommendationService;
+
+    @Autowired
+    PopularityService popularityService;
+
+    @Autowired
+    SimilarProductService similarProductService;
+
     @PostMapping("/add-data")
     public ResponseEntity<?> addProduct(@Valid @RequestBody Product product) {
         Map<String,Object> response=new HashMap<>();
@@ -64,6 +88,7 @@ public class ProductController {
         Map<String, Object> response=new HashMap<>();
         try {
             Product product=productService.getProductDetails(productId);
+            popularityService.recordView(productId);
             response.put("message","product details fetched successfully");
             response.put("product",product);
             logger.debug("Successfully fetched details for product ID: {}", productId);
@@ -75,6 +100,110 @@ public class ProductController {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
         }
     }
+
+    @PostMapping("/product-details/batch")
+    public ResponseEntity<?> getProductDetailsBatch(@RequestBody ProductBatchRequest request) {
+        logger.info("Request received to get product details in batch for {} IDs",
+                request.getIds() == null ? 0 : request.getIds().size());
+        Map<String, Object> response = new HashMap<>();
+        try {
+            List<ProductBatchItem> items = productService.getProductsByIds(request.getIds());
+            List<Long> missingIds = items.stream()
+                    .filter(item -> !item.isFound())
+                    .map(ProductBatchItem::getProductId)
+                    .toList();
+            response.put("message", "product details fetched successfully");
+            response.put("products", items);
+            response.put("missingIds", missingIds);
+            logger.debug("Batch lookup returned {} products, {} missing", items.size() - missingIds.size(), missingIds.size());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid batch product lookup request: {}", e.getMessage());
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    @GetMapping("/products/browse")
+    public ResponseEntity<?> browseProducts(@RequestParam(required = false) Integer categoryId,
+                                            @RequestParam(required = false) BigDecimal minPrice,
+                                            @RequestParam(required = false) BigDecimal maxPrice,
+                                            @RequestParam(defaultValue = "false") boolean inStock,
+                                            @RequestParam(defaultValue = "price_asc") String sort,
+                                            @RequestParam(defaultValue = "0") int page,
+                                            @RequestParam(defaultValue = "20") int size) {
+        logger.info("Request received to browse products: category={}, price={}..{}, inStock={}, sort={}, page={}",
+                categoryId, minPrice, maxPrice, inStock, sort, page);
+        Map<String, Object> response = new HashMap<>();
+        if (page < 0 || size < 1 || size > 100) {
+            response.put("error", "page must be 0 or more and size between 1 and 100");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        if (!sort.equals("price_asc") && !sort.equals("price_desc") && !sort.equals("popularity")) {
+            response.put("error", "sort must be one of price_asc, price_desc, popularity");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        try {
+            Page<Product> products = sort.equals("popularity")
+                    ? productService.browseProductsByPopularity(categoryId, minPrice, maxPrice, inStock, page, size)
+                    : productService.browseProducts(categoryId, minPrice, maxPrice, inStock,
+                    sort.equals("price_desc"), page, size);
+            ProductBrowseResponse browseResponse = new ProductBrowseResponse(products.getContent(), page, size,
+                    products.getTotalElements(), products.getTotalPages(), catalogFacetService.getFacets());
+            logger.debug("Browse returned {} of {} matching products", products.getNumberOfElements(), products.getTotalElements());
+            return ResponseEntity.ok(browseResponse);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid browse request: {}", e.getMessage());
+            response.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+    }
+
+    // most viewed products over the last few minutes, served from the in-memory popularity snapshot
+    @GetMapping("/products/trending")
+    public ResponseEntity<?> getTrending(@RequestParam(defaultValue = "10") int limit) {
+        logger.info("Request received for trending products");
+        return popularityResponse("trending", limit, popularityService::getTrending);
+    }
+
+    // most added to carts over the last hour
+    @GetMapping("/products/best-sellers")
+    public ResponseEntity<?> getBestSellers(@RequestParam(defaultValue = "10") int limit) {
+        logger.info("Request received for best sellers");
+        return popularityResponse("bestSellers", limit, popularityService::getBestSellers);
+    }
+
+    // served from memory; an unknown product or one nobody bought with anything yet has an empty list
+    @GetMapping("/products/{productId}/also-bought")
+    public ResponseEntity<?> getAlsoBought(@PathVariable Long productId, @RequestParam(defaultValue = "10") int limit) {
+        logger.info("Request received for products bought together with ID: {}", productId);
+        Map<String, Object> response = new HashMap<>();
+        if (limit < 1 || limit > 50) {
+            response.put("error", "limit must be between 1 and 50");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        List<CooccurrenceMatrix.Neighbor> neighbors = recommendationService.alsoBought(productId, limit);
+        response.put("productId", productId);
+        response.put("alsoBought", neighbors);
+        logger.debug("Found {} products bought together with ID: {}", neighbors.size(), productId);
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/products/{productId}/similar")
+    public ResponseEntity<?> getSimilarProducts(@PathVariable Long productId, @RequestParam(defaultValue = "10") int limit) {
+        logger.info("Request received for products similar to ID: {}", productId);
+        Map<String, Object> response = new HashMap<>();
+        if (limit < 1 || limit > 50) {
+            response.put("error", "limit must be between 1 and 50");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        List<MinHashIndex.Match> matches = similarProductService.similarTo(productId, limit);
+        response.put("productId", productId);
+        response.put("similar", matches);
+        logger.debug("Found {} products similar to ID: {}", matches.size(), productId);
+        return ResponseEntity.ok(response);
+    }
+
 //@DeleteMapping("/delete-data/{productId}")
 //public ResponseEntity<?> deleteProduct(@PathVariable Long productId){
 //        Map<String,Object> response=new HashMap<>();
@@ -115,5 +244,14 @@ public class ProductController {
         }
 
     }
-}
 
+    private ResponseEntity<?> popularityResponse(String key, int limit, IntFunction<List<PopularityService.Ranked>> ranking) {
+        Map<String, Object> response = new HashMap<>();
+        if (limit < 1 || limit > 100) {
+            response.put("error", "limit must be between 1 and 100");
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+        }
+        response.put(key, ranking.apply(limit));
+        return ResponseEntity.ok(response);
+    }
+}
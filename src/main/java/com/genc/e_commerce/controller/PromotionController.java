@@ -0,0 +1,71 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.entity.Promotion;
+import com.genc.e_commerce.exception.DuplicateResourceException;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.service.PromotionService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@RestController
+@RequestMapping("/api/admin/promotions")
+@CrossOrigin(origins = "*")
+public class PromotionController {
+    private static final Logger logger = LogManager.getLogger(PromotionController.class);
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @GetMapping
+    public ResponseEntity<List<Promotion>> getPromotions() {
+        logger.debug("Request received to list promotions");
+        return ResponseEntity.ok(promotionService.getPromotions());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createPromotion(@RequestBody Promotion promotion) {
+        logger.info("Request received to create a {} promotion '{}'", promotion.getType(), promotion.getName());
+        return handle(() -> promotionService.createPromotion(promotion), HttpStatus.CREATED);
+    }
+
+    @PutMapping("/{promotionId}")
+    public ResponseEntity<?> updatePromotion(@PathVariable Long promotionId, @RequestBody Promotion promotion) {
+        logger.info("Request received to update promotion ID: {}", promotionId);
+        return handle(() -> promotionService.updatePromotion(promotionId, promotion), HttpStatus.OK);
+    }
+
+    // promotions are deactivated rather than deleted, so orders can still be traced to them
+    @DeleteMapping("/{promotionId}")
+    public ResponseEntity<?> deactivatePromotion(@PathVariable Long promotionId) {
+        logger.info("Request received to deactivate promotion ID: {}", promotionId);
+        return handle(() -> promotionService.deactivatePromotion(promotionId), HttpStatus.OK);
+    }
+
+    private ResponseEntity<?> handle(Supplier<Promotion> action, HttpStatus success) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            return new ResponseEntity<>(action.get(), success);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid promotion: {}", e.getMessage());
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        } catch (ResourceNotFoundException e) {
+            logger.warn("Promotion not found: {}", e.getMessage());
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        } catch (DuplicateResourceException e) {
+            logger.warn("Duplicate coupon code: {}", e.getMessage());
+            response.put("error", e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        }
+    }
+}
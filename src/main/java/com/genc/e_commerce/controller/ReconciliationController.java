@@ -0,0 +1,47 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.service.PaymentReconciliationService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/reconciliation")
+@CrossOrigin(origins = "*")
+public class ReconciliationController {
+    private static final Logger logger = LogManager.getLogger(ReconciliationController.class);
+
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
+
+    // starts a run in the background; poll GET for its report
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> start() {
+        logger.info("Request received to start a payment reconciliation");
+        Map<String, Object> response = new HashMap<>();
+        if (!paymentReconciliationService.start()) {
+            response.put("error", "A reconciliation is already running");
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        }
+        response.put("message", "Reconciliation started");
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getLastReport() {
+        logger.debug("Request received for the last payment reconciliation report");
+        PaymentReconciliationService.Report report = paymentReconciliationService.getLastReport();
+        if (report == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "No reconciliation has run since startup");
+            return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok(report);
+    }
+}
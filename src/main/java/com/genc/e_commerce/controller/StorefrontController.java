@@ -0,0 +1,38 @@
+package com.genc.e_commerce.controller;
+
+import com.genc.e_commerce.dto.StorefrontResponse;
+import com.genc.e_commerce.service.StorefrontService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+public class StorefrontController {
+    private static final Logger logger = LogManager.getLogger(StorefrontController.class);
+
+    @Autowired
+    private StorefrontService storefrontService;
+
+    @GetMapping("/storefront")
+    public ResponseEntity<?> getStorefront(@RequestParam(required = false) Long userId,
+                                           @RequestParam(defaultValue = "20") int pageSize) {
+        logger.info("Request received for storefront data, user ID: {}", userId);
+        if (pageSize < 1 || pageSize > 100) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("error", "pageSize must be between 1 and 100");
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        StorefrontResponse storefront = storefrontService.getStorefront(userId, pageSize);
+        logger.debug("Storefront for user ID {} returned {} categories and {} products (partial: {})",
+                userId, storefront.getCategories().size(), storefront.getProducts().size(), storefront.isPartial());
+        return ResponseEntity.ok(storefront);
+    }
+}
@@ -5,11 +5,13 @@ import com.genc.e_commerce.dto.LoginResponse;
 import com.genc.e_commerce.dto.UserUpdateDTO;
 import com.genc.e_commerce.entity.User;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.service.GuestCartService;
 import com.genc.e_commerce.service.UserService;
 import jakarta.validation.Valid;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -26,10 +28,12 @@ public class UserController {
     private static final Logger logger = LogManager.getLogger(UserController.class);
 
     private final UserService userService;
+    private final GuestCartService guestCartService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, GuestCartService guestCartService) {
         this.userService = userService;
+        this.guestCartService = guestCartService;
     }
 
     @PostMapping("/register-user")
@@ -44,7 +48,8 @@ public class UserController {
     }
 
     @PostMapping("/login-user")
-    public ResponseEntity<LoginResponse> loginUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<LoginResponse> loginUser(@Valid @RequestBody LoginRequest loginRequest,
+                                                   @CookieValue(value = GuestCartService.COOKIE_NAME, required = false) String guestCartToken) {
         logger.info("Login attempt for user: {}", loginRequest.getUsername());
         User userData = userService.loginUser(loginRequest);
         LoginResponse loginResponse = new LoginResponse(
@@ -52,7 +57,20 @@ public class UserController {
                 userData.getUsername(),
                 userData.getRole());
         logger.info("User '{}' logged in successfully.", userData.getUsername());
-        return ResponseEntity.ok(loginResponse);
+        if (guestCartToken == null) {
+            return ResponseEntity.ok(loginResponse);
+        }
+
+        // a failed merge must not fail the login; the guest cart is kept and the cookie left in place
+        try {
+            guestCartService.mergeIntoUser(guestCartToken, userData.getUserId());
+        } catch (RuntimeException e) {
+            logger.warn("Could not merge guest cart into the cart of user ID {}: {}", userData.getUserId(), e.getMessage());
+            return ResponseEntity.ok(loginResponse);
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.SET_COOKIE, GuestCartController.cookie("", 0).toString())
+                .body(loginResponse);
     }
 
     @GetMapping("/get-user-details/{userId}")
@@ -0,0 +1,28 @@
+package com.genc.e_commerce.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    A list of cart edits for one user, applied together. An operation names its line by productId or by
+    cartId; ADD may only use productId since the line might not exist yet.
+*/
+@Data
+public class CartBatchRequest {
+    private Long userId;
+    private List<Operation> operations = new ArrayList<>();
+
+    public enum Type {
+        ADD, SET_QUANTITY, REMOVE
+    }
+
+    @Data
+    public static class Operation {
+        private Type type;
+        private Long productId;
+        private Long cartId;
+        private Integer quantity;
+    }
+}
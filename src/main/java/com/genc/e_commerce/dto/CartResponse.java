@@ -1,6 +1,8 @@
 package com.genc.e_commerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.genc.e_commerce.entity.Cart;
+import com.genc.e_commerce.util.MinorUnits;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -15,8 +17,14 @@ public class CartResponse {
     private Long productId;
     private String productName;
     private int quantity;
-    private double unitprice;
-    private double itemPriceTotal;
+    @JsonProperty("unitprice")
+    @MinorUnits
+    private long unitPriceMinor;
+    @JsonProperty("itemPriceTotal")
+    @MinorUnits
+    private long itemPriceTotalMinor;
+    // for category promotions; null when the product has no category
+    private Integer categoryId;
 
 
     public CartResponse(Cart cart){
@@ -25,8 +33,9 @@ public class CartResponse {
         this.productId=cart.getProduct().getProductId();
         this.productName=cart.getProduct().getName();
         this.quantity=cart.getQuantity();
-        this.unitprice=cart.getProduct().getPrice();
-        this.itemPriceTotal=cart.getItemPriceTotal();
+        this.unitPriceMinor=cart.getProduct().getPriceMinor();
+        this.itemPriceTotalMinor=cart.getItemPriceTotalMinor();
+        this.categoryId=cart.getProduct().getCategory()!=null ? cart.getProduct().getCategory().getCategoryId() : null;
     }
 
 
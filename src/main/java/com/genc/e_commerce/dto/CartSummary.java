@@ -0,0 +1,40 @@
+package com.genc.e_commerce.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
+import com.genc.e_commerce.util.MoneyCalculator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummary {
+    private Long userId;
+    private int itemCount;
+    private int totalQuantity;
+    @JsonProperty("totalAmount")
+    @MinorUnits
+    private long totalAmountMinor;
+    // promotions, filled in by CartService.priceCart; without them payable is the total
+    @JsonProperty("discountAmount")
+    @MinorUnits
+    private long discountMinor;
+    @JsonProperty("payableAmount")
+    @MinorUnits
+    private long payableMinor;
+    private String couponCode;
+
+    public CartSummary(Long userId, List<CartResponse> items) {
+        this.userId = userId;
+        this.itemCount = items.size();
+        for (int i = 0; i < items.size(); i++) {
+            this.totalQuantity += items.get(i).getQuantity();
+        }
+        this.totalAmountMinor = MoneyCalculator.total(items, CartResponse::getItemPriceTotalMinor);
+        this.payableMinor = totalAmountMinor;
+    }
+}
@@ -0,0 +1,35 @@
+package com.genc.e_commerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class CatalogFacets {
+    private long totalProducts;
+    private long inStockProducts;
+    private List<CategoryCount> categories = new ArrayList<>();
+    private List<PriceBucketCount> priceBuckets = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    public static class CategoryCount {
+        // null for products without a category
+        private Integer categoryId;
+        private String categoryName;
+        private long count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class PriceBucketCount {
+        private double from;
+        // null for the open-ended top bucket
+        private Double to;
+        private long count;
+    }
+}
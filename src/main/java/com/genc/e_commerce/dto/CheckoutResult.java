@@ -0,0 +1,34 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    Result of a gateway checkout. paymentId is null only when the checkout was REJECTED before a payment row
+    was written.
+*/
+@Data
+@AllArgsConstructor
+public class CheckoutResult {
+    private Long paymentId;
+    private Long orderId;
+    private Outcome outcome;
+    private Payment.PaymentStatus paymentStatus;
+    private Order.Status orderStatus;
+    private String message;
+
+    public enum Outcome {
+        // charged; the order ships
+        APPROVED,
+        // the gateway refused the charge; the order is cancelled
+        DECLINED,
+        // the gateway did not answer in time or failed mid-call; the payment stays PENDING until confirmed
+        PENDING,
+        // the charge was never sent (circuit open or too many calls in flight); the order can be paid again
+        UNAVAILABLE,
+        // the order cannot be paid (not found, not PENDING, or a payment already in progress)
+        REJECTED
+    }
+}
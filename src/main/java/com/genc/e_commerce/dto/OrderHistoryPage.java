@@ -0,0 +1,17 @@
+package com.genc.e_commerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/*
+    One page of a user's orders, newest first. nextCursor is passed back as ?cursor= for the following page
+    and is null on the last one.
+*/
+@Data
+@AllArgsConstructor
+public class OrderHistoryPage {
+    private List<OrderResponse> orders;
+    private String nextCursor;
+}
@@ -1,13 +1,18 @@
 package com.genc.e_commerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.util.MinorUnits;
 import lombok.Data;
 
 import java.util.Date;
 @Data
 public class OrderRequest {
     private Long userId;
-    private double totalAmount;
+    @JsonProperty("totalAmount")
+    @MinorUnits
+    private long totalAmountMinor;
     private Date orderDate;
     private Order.Status status;
+    private String couponCode;
 }
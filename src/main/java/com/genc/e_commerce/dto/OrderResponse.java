@@ -1,6 +1,8 @@
 package com.genc.e_commerce.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.util.MinorUnits;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,14 +13,16 @@ import java.util.Date;
 @Data
 public class OrderResponse {
     private Long orderId;
-    private double totalAmount;
+    @JsonProperty("totalAmount")
+    @MinorUnits
+    private long totalAmountMinor;
     private Date orderDate;
     private Order.Status status;
 
 
     public OrderResponse(Order order){
         this.orderId = order.getOrderId();
-        this.totalAmount= order.getTotalAmount();
+        this.totalAmountMinor= order.getTotalAmountMinor();
         this.orderDate=order.getOrderDate();
         this.status=order.getStatus();
     }
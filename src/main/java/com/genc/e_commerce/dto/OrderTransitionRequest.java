@@ -0,0 +1,13 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Order;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class OrderTransitionRequest {
+    private List<Long> orderIds = new ArrayList<>();
+    private Order.Status toStatus;
+}
@@ -0,0 +1,29 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    Outcome of one order in a bulk status transition. status is the order's status after the call, or null
+    when the order does not exist.
+*/
+@Data
+@AllArgsConstructor
+public class OrderTransitionResult {
+    private Long orderId;
+    private Outcome outcome;
+    private Order.Status status;
+
+    public enum Outcome {
+        // moved to the requested status
+        UPDATED,
+        // already had the requested status, nothing to do
+        UNCHANGED,
+        // the life cycle does not allow the move from the current status
+        ILLEGAL_TRANSITION,
+        // the status changed concurrently between the read and the conditional update
+        CONFLICT,
+        NOT_FOUND
+    }
+}
@@ -0,0 +1,18 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Payment;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+    A payment status callback from the gateway. eventId is the gateway's unique id for the callback;
+    paymentId is the merchant reference sent with the charge. status is COMPLETED, FAILED or REFUNDED.
+*/
+@Data
+public class PaymentWebhookRequest {
+    private String eventId;
+    private Long paymentId;
+    private Payment.PaymentStatus status;
+    private Date occurredAt;
+}
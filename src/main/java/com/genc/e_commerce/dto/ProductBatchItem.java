@@ -0,0 +1,13 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductBatchItem {
+    private Long productId;
+    private boolean found;
+    private Product product;
+}
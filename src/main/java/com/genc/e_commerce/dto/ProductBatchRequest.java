@@ -0,0 +1,10 @@
+package com.genc.e_commerce.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ProductBatchRequest {
+    private List<Long> ids;
+}
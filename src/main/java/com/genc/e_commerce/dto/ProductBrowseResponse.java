@@ -0,0 +1,18 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ProductBrowseResponse {
+    private List<Product> products;
+    private int page;
+    private int size;
+    private long totalElements;
+    private int totalPages;
+    private CatalogFacets facets;
+}
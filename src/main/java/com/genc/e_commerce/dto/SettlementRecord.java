@@ -0,0 +1,15 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Payment;
+import lombok.Data;
+
+/*
+    One line of a settlement file: the final outcome of an offline payment (cash on delivery, bank transfer)
+    for an order. outcome is COMPLETED or FAILED.
+*/
+@Data
+public class SettlementRecord {
+    private Long orderId;
+    private Payment.PaymentStatus outcome;
+    private Payment.PaymentMethod paymentMethod;
+}
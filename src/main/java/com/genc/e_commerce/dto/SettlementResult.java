@@ -0,0 +1,36 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Order;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/*
+    What happened to one settlement record. line is the record's 1-based position in the request stream;
+    paymentId and orderStatus are set for SETTLED and NOT_PENDING records.
+*/
+@Data
+@AllArgsConstructor
+public class SettlementResult {
+    private long line;
+    private Long orderId;
+    private Outcome outcome;
+    private Long paymentId;
+    private Order.Status orderStatus;
+    private String message;
+
+    public enum Outcome {
+        // payment recorded and order moved to SHIPPED or CANCELLED
+        SETTLED,
+        // missing orderId or paymentMethod, or an outcome other than COMPLETED / FAILED
+        INVALID,
+        // the same order appeared earlier in the same chunk
+        DUPLICATE,
+        NOT_FOUND,
+        // the order was already settled or is otherwise not waiting for payment
+        NOT_PENDING,
+        // a gateway payment for the order is still in flight; the record can be sent again once it is decided
+        PAYMENT_IN_FLIGHT,
+        // the chunk's transaction failed and was rolled back; the record can be sent again
+        ERROR
+    }
+}
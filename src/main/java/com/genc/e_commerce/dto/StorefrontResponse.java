@@ -0,0 +1,23 @@
+package com.genc.e_commerce.dto;
+
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Product;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class StorefrontResponse {
+    private List<Category> categories = new ArrayList<>();
+    private List<Product> products = new ArrayList<>();
+    private long totalProducts;
+    private CartSummary cart;
+    // sections that timed out or failed and were replaced by their empty fallback
+    private List<String> unavailableSections = new ArrayList<>();
+    private long elapsedMillis;
+
+    public boolean isPartial() {
+        return !unavailableSections.isEmpty();
+    }
+}
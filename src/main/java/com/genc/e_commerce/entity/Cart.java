@@ -1,5 +1,7 @@
 package com.genc.e_commerce.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 //import jakarta.validation.constraints.NotBlank;
@@ -7,10 +9,15 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
+import java.util.Date;
+
 
 @Data
 @Entity
-@Table(name = "cart_item")
+@Table(name = "cart_item", indexes = {
+        // drives the abandoned-cart sweep: oldest rows first, in small ranges
+        @Index(name = "idx_cart_item_last_modified", columnList = "last_modified, cart_id")
+})
 public class Cart {
     @Id
     @GeneratedValue (strategy = GenerationType.IDENTITY)
@@ -23,10 +30,22 @@ public class Cart {
     @ManyToOne (fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
+    // minor units, unit price x quantity
     @Column(nullable = false)
-    private double itemPriceTotal;
+    @JsonProperty("itemPriceTotal")
+    @MinorUnits
+    private long itemPriceTotalMinor;
     @Min(value = 1, message = "Quantity must not be less than 1")
     @Column(nullable = false)
     @PositiveOrZero
     private int quantity;
+    // set on every insert and update, including the JDBC paths in CartJdbcRepo; repricing leaves it alone
+    @Column(name = "last_modified")
+    private Date lastModified;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.lastModified = new Date();
+    }
 }
@@ -1,14 +1,21 @@
 package com.genc.e_commerce.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
 
 import java.util.Date;
+import java.util.EnumSet;
 
 @Entity
 @Data
-@Table(name = "Order_T")
+@Table(name = "Order_T", indexes = {
+        // order history, newest first, with and without a status filter; InnoDB appends order_id to both
+        @Index(name = "idx_order_user_status_date", columnList = "user_id, status, order_date"),
+        @Index(name = "idx_order_user_date", columnList = "user_id, order_date")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -16,13 +23,41 @@ public class Order {
     @ManyToOne
     @JoinColumn(name = "user_id")
     private User user;
+    // minor units
     @PositiveOrZero
-    private double totalAmount;
+    @JsonProperty("totalAmount")
+    @MinorUnits
+    private long totalAmountMinor;
+    // promotions taken off the cart total when the order was created, and the coupon that was applied
+    @JsonProperty("discountAmount")
+    @MinorUnits
+    private long discountMinor;
+    @Column(length = 64)
+    private String couponCode;
     private Date orderDate;
     @Enumerated(EnumType.STRING)
     private Status status;
 
     public enum Status {
-        PENDING, SHIPPED, DELIVERED, CANCELLED
+        PENDING, SHIPPED, DELIVERED, CANCELLED;
+
+        // legal moves of the order life cycle; DELIVERED and CANCELLED are final
+        public boolean canTransitionTo(Status next) {
+            return switch (this) {
+                case PENDING -> next == SHIPPED || next == CANCELLED;
+                case SHIPPED -> next == DELIVERED;
+                case DELIVERED, CANCELLED -> false;
+            };
+        }
+
+        public EnumSet<Status> legalSources() {
+            EnumSet<Status> sources = EnumSet.noneOf(Status.class);
+            for (Status status : values()) {
+                if (status.canTransitionTo(this)) {
+                    sources.add(status);
+                }
+            }
+            return sources;
+        }
     }
 }
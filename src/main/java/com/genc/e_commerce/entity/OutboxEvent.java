@@ -0,0 +1,45 @@
+package com.genc.e_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+    A side effect to run after a transaction commits. Rows are inserted in the same transaction as the
+    business change, so the event exists if and only if the change committed; OutboxDispatcher delivers
+    them to the in-process subscribers afterwards.
+*/
+@Data
+@Entity
+@Table(name = "outbox_event", indexes = {
+        // the dispatcher reads PENDING rows that are due, oldest due first
+        @Index(name = "idx_outbox_status_due", columnList = "status, next_attempt_at, id")
+})
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(nullable = false, length = 64)
+    private String eventType;
+    private Long aggregateId;
+    // JSON
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+    private int attempts;
+    @Column(nullable = false)
+    private Date nextAttemptAt;
+    @Column(nullable = false)
+    private Date createdAt;
+    private Date deliveredAt;
+    @Column(length = 1000)
+    private String lastError;
+
+    public enum Status {
+        PENDING, DELIVERED, DEAD
+    }
+}
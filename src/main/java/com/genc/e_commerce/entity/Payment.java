@@ -1,5 +1,7 @@
 package com.genc.e_commerce.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.PositiveOrZero;
 import lombok.Data;
@@ -13,11 +15,15 @@ public class Payment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long paymentId;
+    // unique: one payment row per order, a retry reuses it (see SchemaMigrations for existing databases)
     @OneToOne
-    @JoinColumn(name = "order_id")
+    @JoinColumn(name = "order_id", unique = true)
     private Order order;
+    // minor units
     @PositiveOrZero
-    private double amount;
+    @JsonProperty("amount")
+    @MinorUnits
+    private long amountMinor;
     private Date paymentDate;
     @Enumerated(EnumType.STRING)
     private PaymentStatus paymentStatus;
@@ -30,7 +36,16 @@ public class Payment {
         PENDING,
         COMPLETED,
         FAILED,
-        REFUNDED
+        REFUNDED;
+
+        // moves a gateway may report; FAILED and REFUNDED are final
+        public boolean canTransitionTo(PaymentStatus next) {
+            return switch (this) {
+                case PENDING -> next == COMPLETED || next == FAILED;
+                case COMPLETED -> next == REFUNDED;
+                case FAILED, REFUNDED -> false;
+            };
+        }
     }
 
     public enum PaymentMethod {
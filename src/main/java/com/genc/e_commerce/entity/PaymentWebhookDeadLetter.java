@@ -0,0 +1,29 @@
+package com.genc.e_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+    A gateway callback that could not be applied, even on its own, after app.payment.webhook.max-attempts
+    tries of its batch. It is parked here with the error so the journal can move on; the payload is the
+    callback as received, for an operator to inspect and send again.
+*/
+@Data
+@Entity
+@Table(name = "payment_webhook_dead_letter")
+public class PaymentWebhookDeadLetter {
+    @Id
+    @Column(length = 100)
+    private String eventId;
+    private Long paymentId;
+    // JSON
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+    @Column(length = 1000)
+    private String lastError;
+    @Column(nullable = false)
+    private Date failedAt;
+}
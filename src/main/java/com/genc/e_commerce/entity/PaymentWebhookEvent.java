@@ -0,0 +1,28 @@
+package com.genc.e_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+    A gateway callback that has been applied. The gateway's event id is the key, so a callback delivered
+    again (the gateway retried, or the journal was replayed after a restart) is recognized and skipped.
+*/
+@Data
+@Entity
+@Table(name = "payment_webhook_event", indexes = {
+        // retention purge
+        @Index(name = "idx_payment_webhook_applied_at", columnList = "applied_at")
+})
+public class PaymentWebhookEvent {
+    @Id
+    @Column(length = 100)
+    private String eventId;
+    private Long paymentId;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Payment.PaymentStatus paymentStatus;
+    @Column(nullable = false)
+    private Date appliedAt;
+}
@@ -1,5 +1,7 @@
 package com.genc.e_commerce.entity;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.PositiveOrZero;
@@ -11,6 +13,10 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = {
+        @Index(name = "idx_product_category_price_minor", columnList = "categorty_id, price_minor, stock_quantity"),
+        @Index(name = "idx_product_price_minor", columnList = "price_minor, stock_quantity")
+})
 public class Product {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,8 +30,11 @@ public class Product {
     @Lob
     private String description;
 
+    // minor units of the shop currency, see Money; still "price" in JSON
     @PositiveOrZero
-    private double price;
+    @JsonProperty("price")
+    @MinorUnits
+    private long priceMinor;
 
     @PositiveOrZero
     private int stockQuantity;
@@ -0,0 +1,60 @@
+package com.genc.e_commerce.entity;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.genc.e_commerce.util.MinorUnits;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/*
+    A discount rule. PERCENT_OFF and BUY_X_GET_Y apply to cart lines of one product or of one category;
+    THRESHOLD takes a fixed amount or a percentage off a cart whose discounted subtotal reaches thresholdMinor.
+    A THRESHOLD with a couponCode only applies when the customer enters that code, one without applies to
+    every cart. Only active rules inside their optional [startsAt, endsAt) window are compiled into
+    PromotionRules.
+*/
+@Data
+@Entity
+@Table(name = "promotion", indexes = {
+        @Index(name = "uk_promotion_coupon_code", columnList = "coupon_code", unique = true)
+})
+public class Promotion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long promotionId;
+    @Column(nullable = false, length = 200)
+    private String name;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+    // the line rules target a product or a category
+    private Long productId;
+    private Integer categoryId;
+    private int percentOff;
+    private int buyQuantity;
+    private int freeQuantity;
+    // minor units
+    @JsonProperty("threshold")
+    @MinorUnits
+    private long thresholdMinor;
+    @JsonProperty("discount")
+    @MinorUnits
+    private long discountMinor;
+    @Column(name = "coupon_code", length = 64)
+    private String couponCode;
+    private boolean active;
+    private Date startsAt;
+    private Date endsAt;
+    private Date updatedAt;
+
+    public enum Type {
+        PERCENT_OFF, BUY_X_GET_Y, THRESHOLD
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        this.updatedAt = new Date();
+    }
+}
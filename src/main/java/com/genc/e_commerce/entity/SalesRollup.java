@@ -0,0 +1,51 @@
+package com.genc.e_commerce.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.Date;
+
+/*
+    Pre-aggregated sales figures, one row per (dimension, day, value), e.g. (PAYMENT_METHOD, 2026-03-01, CARD).
+    SalesAnalyticsService adds deltas to these rows; reports read them instead of scanning order_t and payment.
+    revenueMinor is in minor currency units (cents) so the running sums stay exact.
+*/
+@Data
+@Entity
+@Table(name = "sales_rollup", uniqueConstraints = {
+        // the upsert key, and the range scan of one dimension over a period
+        @UniqueConstraint(name = "uk_sales_rollup_key", columnNames = {"dimension", "rollup_date", "dimension_value"})
+})
+public class SalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private Dimension dimension;
+    @Column(nullable = false)
+    private LocalDate rollupDate;
+    @Column(nullable = false, length = 64)
+    private String dimensionValue;
+    private long orderCount;
+    private long units;
+    private long revenueMinor;
+    private Date updatedAt;
+
+    public enum Dimension {
+        // completed payments and their revenue per payment method and day
+        PAYMENT_METHOD,
+        // payment attempts per outcome and day
+        PAYMENT_STATUS,
+        // orders that entered a status on that day
+        ORDER_STATUS,
+        // orders currently in each status; a single row per status under ALL_TIME
+        ORDER_STATUS_CURRENT,
+        // paid orders, units and revenue per category id ("none" for uncategorized products) and day
+        CATEGORY
+    }
+
+    // rollup_date of the rows that are not per day
+    public static final LocalDate ALL_TIME = LocalDate.of(1970, 1, 1);
+}
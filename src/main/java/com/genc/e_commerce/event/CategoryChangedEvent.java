@@ -0,0 +1,12 @@
+package com.genc.e_commerce.event;
+
+/*
+    Published by CategoryService after a category is added, renamed or deleted.
+    previousName is null for an add, currentName is null for a delete.
+*/
+public record CategoryChangedEvent(int categoryId, String previousName, String currentName) {
+
+    public boolean isDelete() {
+        return currentName == null;
+    }
+}
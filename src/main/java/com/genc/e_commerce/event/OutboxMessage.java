@@ -0,0 +1,10 @@
+package com.genc.e_commerce.event;
+
+import java.util.Date;
+
+/*
+    An outbox row as handed to subscribers. Delivery is at least once, so a subscriber can see the same id
+    again after a crash or a retry and has to tolerate that.
+*/
+public record OutboxMessage(long id, String eventType, Long aggregateId, String payload, int attempts, Date createdAt) {
+}
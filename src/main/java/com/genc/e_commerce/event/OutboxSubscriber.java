@@ -0,0 +1,13 @@
+package com.genc.e_commerce.event;
+
+/*
+    In-process consumer of outbox events. Every subscriber bean that supports an event type gets each event
+    of that type; an exception from any of them schedules the event for another attempt, which is delivered
+    to all supporting subscribers again.
+*/
+public interface OutboxSubscriber {
+
+    boolean supports(String eventType);
+
+    void handle(OutboxMessage message) throws Exception;
+}
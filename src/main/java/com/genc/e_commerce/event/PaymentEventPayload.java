@@ -0,0 +1,19 @@
+package com.genc.e_commerce.event;
+
+import java.util.Date;
+import java.util.List;
+
+/*
+    Payload of the PAYMENT_COMPLETED and PAYMENT_FAILED outbox events. items are the cart lines the order
+    was paid for (empty for a failed payment). Amounts are minor units, see Money.
+*/
+public record PaymentEventPayload(long orderId, long userId, long paymentId, long amountMinor, String paymentMethod,
+                                  String paymentStatus, String previousOrderStatus, String orderStatus, Date paymentDate,
+                                  List<Item> items) {
+
+    public static final String PAYMENT_COMPLETED = "PAYMENT_COMPLETED";
+    public static final String PAYMENT_FAILED = "PAYMENT_FAILED";
+
+    public record Item(Long productId, Integer categoryId, int quantity, long itemPriceTotalMinor) {
+    }
+}
@@ -0,0 +1,16 @@
+package com.genc.e_commerce.event;
+
+/*
+    Published by ProductService after a product is added, updated or deleted.
+    previous is null for an add, current is null for a delete.
+*/
+public record ProductChangedEvent(ProductSnapshot previous, ProductSnapshot current) {
+
+    public Long productId() {
+        return current != null ? current.productId() : previous.productId();
+    }
+
+    public boolean isDelete() {
+        return current == null;
+    }
+}
@@ -0,0 +1,24 @@
+package com.genc.e_commerce.event;
+
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Product;
+
+/*
+    Immutable copy of the product fields that read-side indexes care about. Taken before and after each
+    write so listeners can remove the old values and add the new ones.
+*/
+public record ProductSnapshot(Long productId, String name, String description, long priceMinor, int stockQuantity,
+                              Integer categoryId, String categoryName) {
+
+    public static ProductSnapshot of(Product product) {
+        Category category = product.getCategory();
+        return new ProductSnapshot(
+                product.getProductId(),
+                product.getName(),
+                product.getDescription(),
+                product.getPriceMinor(),
+                product.getStockQuantity(),
+                category != null ? category.getCategoryId() : null,
+                category != null ? category.getCategoryName() : null);
+    }
+}
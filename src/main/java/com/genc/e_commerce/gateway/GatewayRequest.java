@@ -0,0 +1,10 @@
+package com.genc.e_commerce.gateway;
+
+import com.genc.e_commerce.entity.Payment;
+
+/*
+    paymentId doubles as the idempotency key and merchant reference sent to the provider, so a retried or
+    late-confirmed charge can always be matched back to its payment row.
+*/
+public record GatewayRequest(long paymentId, long orderId, long amountMinor, Payment.PaymentMethod paymentMethod) {
+}
@@ -0,0 +1,8 @@
+package com.genc.e_commerce.gateway;
+
+public record GatewayResponse(Decision decision, String reference, String message) {
+
+    public enum Decision {
+        APPROVED, DECLINED
+    }
+}
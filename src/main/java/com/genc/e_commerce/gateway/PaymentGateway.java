@@ -0,0 +1,12 @@
+package com.genc.e_commerce.gateway;
+
+/*
+    A remote payment provider. charge() is a blocking network call; callers must not hold a database
+    transaction or connection while it runs. PaymentOrchestrator runs it on its own virtual thread with a
+    timeout, a bulkhead and a circuit breaker around it.
+*/
+public interface PaymentGateway {
+
+    // returns the provider's decision; an exception means the outcome is unknown (the charge may have happened)
+    GatewayResponse charge(GatewayRequest request) throws Exception;
+}
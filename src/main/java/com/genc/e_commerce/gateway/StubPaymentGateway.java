@@ -0,0 +1,44 @@
+package com.genc.e_commerce.gateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+    Local stand-in for a real provider. Every call sleeps for latency-ms plus up to latency-jitter-ms, then
+    throws with probability error-rate (an outage: outcome unknown) or declines with probability decline-rate.
+    Raising the latency is the easiest way to watch the timeout, bulkhead and circuit breaker at work.
+*/
+@Component
+@ConditionalOnProperty(name = "app.payment.gateway.type", havingValue = "stub", matchIfMissing = true)
+public class StubPaymentGateway implements PaymentGateway {
+
+    @Value("${app.payment.gateway.stub.latency-ms:150}")
+    private long latencyMs = 150;
+
+    @Value("${app.payment.gateway.stub.latency-jitter-ms:100}")
+    private long latencyJitterMs = 100;
+
+    @Value("${app.payment.gateway.stub.error-rate:0.0}")
+    private double errorRate = 0.0;
+
+    @Value("${app.payment.gateway.stub.decline-rate:0.05}")
+    private double declineRate = 0.05;
+
+    @Override
+    public GatewayResponse charge(GatewayRequest request) throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Thread.sleep(latencyMs + (latencyJitterMs > 0 ? random.nextLong(latencyJitterMs + 1) : 0));
+        if (random.nextDouble() < errorRate) {
+            throw new IllegalStateException("stub gateway error for payment " + request.paymentId());
+        }
+        String reference = "stub-" + UUID.randomUUID();
+        if (random.nextDouble() < declineRate) {
+            return new GatewayResponse(GatewayResponse.Decision.DECLINED, reference, "declined by stub gateway");
+        }
+        return new GatewayResponse(GatewayResponse.Decision.APPROVED, reference, null);
+    }
+}
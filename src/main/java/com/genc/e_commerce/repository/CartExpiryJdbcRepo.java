@@ -0,0 +1,53 @@
+package com.genc.e_commerce.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/*
+    Statements for the abandoned-cart sweep. Every call is a single short statement outside any surrounding
+    transaction; the selects walk idx_cart_item_last_modified from the oldest row.
+*/
+@Repository
+public class CartExpiryJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record ExpiredLine(long cartId, long userId) {
+    }
+
+    // users with a pending order keep their cart, payment still needs it
+    public List<ExpiredLine> findExpired(Date cutoff, int limit) {
+        return jdbcTemplate.query(
+                "SELECT c.cart_id, c.user_id FROM cart_item c " +
+                        "WHERE c.last_modified < ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM order_t o WHERE o.user_id = c.user_id AND o.status = 'PENDING') " +
+                        "ORDER BY c.last_modified, c.cart_id LIMIT ?",
+                (rs, rowNum) -> new ExpiredLine(rs.getLong("cart_id"), rs.getLong("user_id")),
+                cutoff, limit);
+    }
+
+    // the cutoff is checked again so a line touched since the select survives
+    public int deleteExpired(List<Long> cartIds, Date cutoff) {
+        if (cartIds.isEmpty()) {
+            return 0;
+        }
+        List<Object> args = new ArrayList<>(cartIds);
+        args.add(cutoff);
+        return jdbcTemplate.update(
+                "DELETE FROM cart_item WHERE cart_id IN (" + String.join(",", Collections.nCopies(cartIds.size(), "?")) + ") " +
+                        "AND last_modified < ?",
+                args.toArray());
+    }
+
+    // rows written before last_modified existed count as modified now, so they get the full grace period
+    public int backfillLastModified(Date now, int limit) {
+        return jdbcTemplate.update("UPDATE cart_item SET last_modified = ? WHERE last_modified IS NULL LIMIT ?", now, limit);
+    }
+}
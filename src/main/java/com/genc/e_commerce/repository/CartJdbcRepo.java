@@ -0,0 +1,119 @@
+package com.genc.e_commerce.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    Set-based and batched cart_item statements that would cost one round trip per row through CartRepo.
+*/
+@Repository
+public class CartJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record CartRow(long cartId, long userId, long productId, int quantity, long itemPriceTotalMinor) {
+    }
+
+    public record CategorizedLine(long userId, long productId, Integer categoryId, int quantity, long itemPriceTotalMinor) {
+    }
+
+    // inserts rows with their pre-assigned ids, or overwrites quantity and total when the id already exists
+    public void upsertAll(Collection<CartRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (CartRow row : rows) {
+            args.add(new Object[]{row.cartId(), row.userId(), row.productId(), row.quantity(), row.itemPriceTotalMinor()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO cart_item (cart_id, user_id, product_id, quantity, item_price_total_minor, last_modified) " +
+                        "VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+                        "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity), item_price_total_minor = VALUES(item_price_total_minor), " +
+                        "last_modified = CURRENT_TIMESTAMP",
+                args);
+    }
+
+    public List<CartRow> findByUserId(long userId) {
+        return jdbcTemplate.query(
+                "SELECT cart_id, user_id, product_id, quantity, item_price_total_minor FROM cart_item WHERE user_id = ?",
+                (rs, rowNum) -> new CartRow(rs.getLong("cart_id"), rs.getLong("user_id"), rs.getLong("product_id"),
+                        rs.getInt("quantity"), rs.getLong("item_price_total_minor")),
+                userId);
+    }
+
+    // new rows, ids come from the table's auto increment
+    public void insertAll(Collection<CartRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (CartRow row : rows) {
+            args.add(new Object[]{row.userId(), row.productId(), row.quantity(), row.itemPriceTotalMinor()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO cart_item (user_id, product_id, quantity, item_price_total_minor, last_modified) " +
+                        "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)", args);
+    }
+
+    public void updateQuantities(Collection<CartRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (CartRow row : rows) {
+            args.add(new Object[]{row.quantity(), row.itemPriceTotalMinor(), row.cartId(), row.userId()});
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE cart_item SET quantity = ?, item_price_total_minor = ?, last_modified = CURRENT_TIMESTAMP " +
+                        "WHERE cart_id = ? AND user_id = ?", args);
+    }
+
+    public void deleteAllById(Collection<Long> cartIds) {
+        if (cartIds.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(cartIds.size());
+        for (Long cartId : cartIds) {
+            args.add(new Object[]{cartId});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM cart_item WHERE cart_id = ?", args);
+    }
+
+    public long maxCartId() {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(cart_id), 0) FROM cart_item", Long.class);
+        return max != null ? max : 0;
+    }
+
+    // the lines of several carts with each product's category, for the payment events of a settlement
+    public List<CategorizedLine> findLinesByUserIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "SELECT c.user_id, c.product_id, p.categorty_id, c.quantity, c.item_price_total_minor FROM cart_item c " +
+                        "LEFT JOIN product p ON p.product_id = c.product_id WHERE c.user_id IN (" + placeholders(userIds.size()) + ")",
+                (rs, rowNum) -> new CategorizedLine(rs.getLong("user_id"), rs.getLong("product_id"),
+                        rs.getObject("categorty_id", Integer.class), rs.getInt("quantity"), rs.getLong("item_price_total_minor")),
+                userIds.toArray());
+    }
+
+    public int deleteByUserIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM cart_item WHERE user_id IN (" + placeholders(userIds.size()) + ")",
+                userIds.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
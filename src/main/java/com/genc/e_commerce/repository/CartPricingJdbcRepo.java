@@ -0,0 +1,44 @@
+package com.genc.e_commerce.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/*
+    Statements used to bring cart_item.item_price_total_minor back in line with product.price_minor. Each call is a
+    single statement outside any surrounding transaction, so the row locks of one chunk are released as soon
+    as it commits.
+*/
+@Repository
+public class CartPricingJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // upper cart_id of the next chunk of lines holding the product, or null when there are none after afterCartId
+    public Long nextChunkEnd(long productId, long afterCartId, int chunkSize) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT cart_id FROM cart_item WHERE product_id = ? AND cart_id > ? ORDER BY cart_id LIMIT ?",
+                Long.class, productId, afterCartId, chunkSize);
+        return ids.isEmpty() ? null : ids.get(ids.size() - 1);
+    }
+
+    // multi-table UPDATE cannot take a LIMIT in MySQL, so the chunk is bounded by a cart_id range instead
+    public int repriceRange(long productId, long afterCartId, long lastCartId) {
+        return jdbcTemplate.update(
+                "UPDATE cart_item c JOIN product p ON p.product_id = c.product_id " +
+                        "SET c.item_price_total_minor = p.price_minor * c.quantity " +
+                        "WHERE c.product_id = ? AND c.cart_id > ? AND c.cart_id <= ?",
+                productId, afterCartId, lastCartId);
+    }
+
+    // products that have at least one cart line priced differently from the current product price
+    public List<Long> findDriftedProductIds() {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT c.product_id FROM cart_item c JOIN product p ON p.product_id = c.product_id " +
+                        "WHERE c.item_price_total_minor <> p.price_minor * c.quantity",
+                Long.class);
+    }
+}
@@ -3,6 +3,7 @@ package com.genc.e_commerce.repository;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Product;
 import com.genc.e_commerce.entity.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,5 +15,7 @@ public interface CartRepo extends JpaRepository<Cart,Long> {
 
     Optional<Cart> findByUserAndProduct(User user, Product product);
 
+    // product and user are fetched with the cart rows so callers outside the request thread can map them
+    @EntityGraph(attributePaths = {"product", "user"})
     List<Cart> findByUserUserId(Long userId);
 }
@@ -0,0 +1,87 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Set-based Order_T statements for bulk operations, one statement per chunk of ids instead of one entity
+    load and save per order.
+*/
+@Repository
+public class OrderJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // paymentStatus is that of the order's current payment row, null if it has none
+    public record SettlementOrder(long orderId, Long userId, long totalAmountMinor, Order.Status status,
+                                  Payment.PaymentStatus paymentStatus) {
+    }
+
+    // current status per id; ids that do not exist are absent from the map
+    public Map<Long, Order.Status> findStatuses(Collection<Long> orderIds) {
+        Map<Long, Order.Status> statuses = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return statuses;
+        }
+        jdbcTemplate.query("SELECT order_id, status FROM order_t WHERE order_id IN (" + placeholders(orderIds.size()) + ")",
+                rs -> {
+                    String status = rs.getString("status");
+                    statuses.put(rs.getLong("order_id"), status != null ? Order.Status.valueOf(status) : null);
+                },
+                orderIds.toArray());
+        return statuses;
+    }
+
+    // moves only the orders that are still in one of the allowed source states; returns the rows changed
+    public int updateStatus(Collection<Long> orderIds, Collection<Order.Status> fromStatuses, Order.Status toStatus) {
+        if (orderIds.isEmpty() || fromStatuses.isEmpty()) {
+            return 0;
+        }
+        List<Object> args = new ArrayList<>(orderIds.size() + fromStatuses.size() + 1);
+        args.add(toStatus.name());
+        args.addAll(orderIds);
+        fromStatuses.forEach(status -> args.add(status.name()));
+        return jdbcTemplate.update(
+                "UPDATE order_t SET status = ? WHERE order_id IN (" + placeholders(orderIds.size()) + ") " +
+                        "AND status IN (" + placeholders(fromStatuses.size()) + ")",
+                args.toArray());
+    }
+
+    // reads and row-locks the orders until the end of the transaction; locks are taken in id order
+    public Map<Long, SettlementOrder> lockForSettlement(Collection<Long> orderIds) {
+        Map<Long, SettlementOrder> orders = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return orders;
+        }
+        // the payment rows are locked too. PaymentService locks the order before its payment as well, so a
+        // checkout racing this waits for the settlement and then finds the order no longer PENDING
+        jdbcTemplate.query("SELECT o.order_id, o.user_id, o.total_amount_minor, o.status, p.payment_status FROM order_t o " +
+                        "LEFT JOIN payment p ON p.order_id = o.order_id WHERE o.order_id IN ("
+                        + placeholders(orderIds.size()) + ") ORDER BY o.order_id FOR UPDATE",
+                rs -> {
+                    String status = rs.getString("status");
+                    String paymentStatus = rs.getString("payment_status");
+                    long orderId = rs.getLong("order_id");
+                    orders.put(orderId, new SettlementOrder(orderId, rs.getObject("user_id", Long.class),
+                            rs.getLong("total_amount_minor"), status != null ? Order.Status.valueOf(status) : null,
+                            paymentStatus != null ? Payment.PaymentStatus.valueOf(paymentStatus) : null));
+                },
+                orderIds.toArray());
+        return orders;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -1,13 +1,56 @@
 package com.genc.e_commerce.repository;
 
+import com.genc.e_commerce.dto.OrderResponse;
 import com.genc.e_commerce.entity.Order;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepo extends JpaRepository<Order,Long> {
 
-    Optional<Order> findByUserUserIdAndStatus(Long userId, Order.Status status);
+    // SELECT ... FOR UPDATE: payment paths lock the order before its payment, like settlement does
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.orderId = :orderId")
+    Optional<Order> findByIdForUpdate(@Param("orderId") Long orderId);
+
+    // newest matching order, so a user with more than one order in the status no longer breaks the lookup
+    @Query("SELECT o FROM Order o WHERE o.user.userId = :userId AND o.status = :status " +
+            "ORDER BY o.orderDate DESC, o.orderId DESC LIMIT 1")
+    Optional<Order> findByUserUserIdAndStatus(@Param("userId") Long userId, @Param("status") Order.Status status);
+
+    /*
+        order history pages, newest first. Each page seeks to the position after the last row of the previous
+        page (orderDate, orderId) on idx_order_user_date / idx_order_user_status_date instead of skipping
+        rows with an OFFSET, so a page costs the same however far back it is. The rows are read straight
+        into OrderResponse; the User is never loaded.
+    */
+    @Query("SELECT new com.genc.e_commerce.dto.OrderResponse(o.orderId, o.totalAmountMinor, o.orderDate, o.status) " +
+            "FROM Order o WHERE o.user.userId = :userId ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<OrderResponse> findHistory(@Param("userId") Long userId, Limit limit);
+
+    @Query("SELECT new com.genc.e_commerce.dto.OrderResponse(o.orderId, o.totalAmountMinor, o.orderDate, o.status) " +
+            "FROM Order o WHERE o.user.userId = :userId AND o.orderDate <= :orderDate " +
+            "AND (o.orderDate < :orderDate OR o.orderId < :orderId) ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<OrderResponse> findHistoryAfter(@Param("userId") Long userId, @Param("orderDate") Date orderDate,
+                                         @Param("orderId") Long orderId, Limit limit);
+
+    @Query("SELECT new com.genc.e_commerce.dto.OrderResponse(o.orderId, o.totalAmountMinor, o.orderDate, o.status) " +
+            "FROM Order o WHERE o.user.userId = :userId AND o.status = :status ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<OrderResponse> findHistoryByStatus(@Param("userId") Long userId, @Param("status") Order.Status status, Limit limit);
+
+    @Query("SELECT new com.genc.e_commerce.dto.OrderResponse(o.orderId, o.totalAmountMinor, o.orderDate, o.status) " +
+            "FROM Order o WHERE o.user.userId = :userId AND o.status = :status AND o.orderDate <= :orderDate " +
+            "AND (o.orderDate < :orderDate OR o.orderId < :orderId) ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<OrderResponse> findHistoryByStatusAfter(@Param("userId") Long userId, @Param("status") Order.Status status,
+                                                 @Param("orderDate") Date orderDate, @Param("orderId") Long orderId,
+                                                 Limit limit);
 }
@@ -0,0 +1,93 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.event.OutboxMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/*
+    Dispatcher-side outbox statements. The rows are written through OutboxRepo inside the business
+    transaction; everything after that is plain JDBC so the dispatcher never touches a persistence context.
+*/
+@Repository
+public class OutboxJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record Failure(long id, int attempts, Date nextAttemptAt, boolean dead, String error) {
+    }
+
+    public record Backlog(long pending, long dead, Date oldestPendingAt) {
+    }
+
+    public record NewEvent(String eventType, Long aggregateId, String payload) {
+    }
+
+    // the bulk counterpart of OutboxRepo.save, for writers that publish many events in one transaction
+    public void insertAll(Collection<NewEvent> events, Date now) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (NewEvent event : events) {
+            args.add(new Object[]{event.eventType(), event.aggregateId(), event.payload(), now, now});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO outbox_event (event_type, aggregate_id, payload, status, attempts, next_attempt_at, created_at) " +
+                        "VALUES (?, ?, ?, 'PENDING', 0, ?, ?)", args);
+    }
+
+    public List<OutboxMessage> findDue(Date now, int limit) {
+        return jdbcTemplate.query(
+                "SELECT id, event_type, aggregate_id, payload, attempts, created_at FROM outbox_event " +
+                        "WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at, id LIMIT ?",
+                (rs, rowNum) -> new OutboxMessage(rs.getLong("id"), rs.getString("event_type"),
+                        rs.getObject("aggregate_id", Long.class), rs.getString("payload"),
+                        rs.getInt("attempts"), rs.getTimestamp("created_at")),
+                now, limit);
+    }
+
+    public void markDelivered(Collection<Long> ids, Date deliveredAt) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(deliveredAt);
+        args.addAll(ids);
+        jdbcTemplate.update("UPDATE outbox_event SET status = 'DELIVERED', delivered_at = ? WHERE id IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")", args.toArray());
+    }
+
+    public void markFailed(Collection<Failure> failures) {
+        if (failures.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(failures.size());
+        for (Failure failure : failures) {
+            args.add(new Object[]{failure.attempts(), failure.nextAttemptAt(), failure.dead() ? "DEAD" : "PENDING",
+                    failure.error(), failure.id()});
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE outbox_event SET attempts = ?, next_attempt_at = ?, status = ?, last_error = ? WHERE id = ?", args);
+    }
+
+    public int purgeDelivered(Date deliveredBefore, int limit) {
+        return jdbcTemplate.update(
+                "DELETE FROM outbox_event WHERE status = 'DELIVERED' AND delivered_at < ? LIMIT ?", deliveredBefore, limit);
+    }
+
+    public Backlog backlog() {
+        return jdbcTemplate.queryForObject(
+                "SELECT (SELECT COUNT(*) FROM outbox_event WHERE status = 'PENDING') AS pending, " +
+                        "(SELECT COUNT(*) FROM outbox_event WHERE status = 'DEAD') AS dead, " +
+                        "(SELECT MIN(created_at) FROM outbox_event WHERE status = 'PENDING') AS oldest",
+                (rs, rowNum) -> new Backlog(rs.getLong("pending"), rs.getLong("dead"), rs.getTimestamp("oldest")));
+    }
+}
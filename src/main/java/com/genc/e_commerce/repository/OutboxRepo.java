@@ -0,0 +1,9 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxRepo extends JpaRepository<OutboxEvent, Long> {
+}
@@ -0,0 +1,66 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Batched payment statements for bulk settlement.
+*/
+@Repository
+public class PaymentJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record PaymentRow(long orderId, long amountMinor, Payment.PaymentStatus status, Payment.PaymentMethod method,
+                             Date paidAt) {
+    }
+
+    public void insertAll(Collection<PaymentRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (PaymentRow row : rows) {
+            args.add(new Object[]{row.orderId(), row.amountMinor(), row.paidAt(), row.status().name(), row.method().name(),
+                    row.paidAt(), row.paidAt()});
+        }
+        // an order still awaiting payment can hold the FAILED row of an earlier gateway attempt, which is replaced;
+        // a PENDING row is a gateway call in flight and is left alone. payment_status is assigned last because
+        // MySQL evaluates the assignments in order and the others must still see the old status
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO payment (order_id, amount_minor, payment_date, payment_status, payment_method, " +
+                        "created_time_stamp, updated_time_stamp) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE " +
+                        "amount_minor = IF(payment_status = 'PENDING', amount_minor, VALUES(amount_minor)), " +
+                        "payment_date = IF(payment_status = 'PENDING', payment_date, VALUES(payment_date)), " +
+                        "payment_method = IF(payment_status = 'PENDING', payment_method, VALUES(payment_method)), " +
+                        "updated_time_stamp = IF(payment_status = 'PENDING', updated_time_stamp, VALUES(updated_time_stamp)), " +
+                        "payment_status = IF(payment_status = 'PENDING', payment_status, VALUES(payment_status))", args);
+    }
+
+    // payment id per order id; order_id is unique in payment, so this reads back the ids of insertAll
+    public Map<Long, Long> findIdsByOrderIds(Collection<Long> orderIds) {
+        Map<Long, Long> ids = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return ids;
+        }
+        jdbcTemplate.query("SELECT payment_id, order_id FROM payment WHERE order_id IN ("
+                        + String.join(",", Collections.nCopies(orderIds.size(), "?")) + ")",
+                rs -> {
+                    ids.put(rs.getLong("order_id"), rs.getLong("payment_id"));
+                },
+                orderIds.toArray());
+        return ids;
+    }
+}
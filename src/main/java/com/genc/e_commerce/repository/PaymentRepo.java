@@ -1,7 +1,34 @@
 package com.genc.e_commerce.repository;
 
 import com.genc.e_commerce.entity.Payment;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface PaymentRepo extends JpaRepository<Payment,Long> {
+
+    // latest payment of the order (older databases can hold more than one per order), locked until the
+    // transaction ends; take the order's lock first
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.order.orderId = :orderId ORDER BY p.paymentId DESC LIMIT 1")
+    Optional<Payment> findByOrderIdForUpdate(@Param("orderId") Long orderId);
+
+    // status polling reads only these columns; by order it is a lookup on uk_payment_order
+    @Query("SELECT p.paymentId AS paymentId, p.order.orderId AS orderId, p.paymentStatus AS paymentStatus " +
+            "FROM Payment p WHERE p.order.orderId = :orderId ORDER BY p.paymentId DESC LIMIT 1")
+    Optional<PaymentStatusRow> findStatusByOrderId(@Param("orderId") Long orderId);
+
+    @Query("SELECT p.paymentId AS paymentId, p.order.orderId AS orderId, p.paymentStatus AS paymentStatus " +
+            "FROM Payment p WHERE p.paymentId = :paymentId")
+    Optional<PaymentStatusRow> findStatusByPaymentId(@Param("paymentId") Long paymentId);
+
+    interface PaymentStatusRow {
+        Long getPaymentId();
+        Long getOrderId();
+        Payment.PaymentStatus getPaymentStatus();
+    }
 }
@@ -0,0 +1,107 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    Statements for applying gateway callbacks in batches: the dedup table, the dead letters, and payments read
+    together with their order so one locked read gives everything a status change needs.
+*/
+@Repository
+public class PaymentWebhookJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record AppliedEvent(String eventId, Long paymentId, Payment.PaymentStatus status) {
+    }
+
+    public record PaymentState(long paymentId, long orderId, Long userId, long amountMinor, Payment.PaymentMethod method,
+                               Payment.PaymentStatus status, String orderStatus) {
+    }
+
+    public record StatusChange(long paymentId, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+    }
+
+    public Set<String> findApplied(Collection<String> eventIds) {
+        Set<String> applied = new HashSet<>();
+        if (eventIds.isEmpty()) {
+            return applied;
+        }
+        jdbcTemplate.query("SELECT event_id FROM payment_webhook_event WHERE event_id IN (" + placeholders(eventIds.size()) + ")",
+                rs -> {
+                    applied.add(rs.getString("event_id"));
+                },
+                eventIds.toArray());
+        return applied;
+    }
+
+    public void insertApplied(Collection<AppliedEvent> events, Date appliedAt) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(events.size());
+        for (AppliedEvent event : events) {
+            args.add(new Object[]{event.eventId(), event.paymentId(), event.status() != null ? event.status().name() : null, appliedAt});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO payment_webhook_event (event_id, payment_id, payment_status, applied_at) VALUES (?, ?, ?, ?)", args);
+    }
+
+    // row-locks the payments (in id order) and reads them with their orders
+    public List<PaymentState> lockPayments(Collection<Long> paymentIds) {
+        if (paymentIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                "SELECT p.payment_id, p.order_id, o.user_id, p.amount_minor, p.payment_method, p.payment_status, o.status " +
+                        "FROM payment p LEFT JOIN order_t o ON o.order_id = p.order_id " +
+                        "WHERE p.payment_id IN (" + placeholders(paymentIds.size()) + ") ORDER BY p.payment_id FOR UPDATE",
+                (rs, rowNum) -> {
+                    String method = rs.getString("payment_method");
+                    String status = rs.getString("payment_status");
+                    return new PaymentState(rs.getLong("payment_id"), rs.getLong("order_id"), rs.getObject("user_id", Long.class),
+                            rs.getLong("amount_minor"), method != null ? Payment.PaymentMethod.valueOf(method) : null,
+                            status != null ? Payment.PaymentStatus.valueOf(status) : null, rs.getString("status"));
+                },
+                paymentIds.toArray());
+    }
+
+    public void updateStatuses(Collection<StatusChange> changes, Date updatedAt) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(changes.size());
+        for (StatusChange change : changes) {
+            args.add(new Object[]{change.to().name(), updatedAt, change.paymentId(), change.from().name()});
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE payment SET payment_status = ?, updated_time_stamp = ? WHERE payment_id = ? AND payment_status = ?", args);
+    }
+
+    // a replayed journal can park the same callback again; the latest error wins
+    public void insertDeadLetter(String eventId, Long paymentId, String payload, String lastError, Date failedAt) {
+        jdbcTemplate.update(
+                "INSERT INTO payment_webhook_dead_letter (event_id, payment_id, payload, last_error, failed_at) VALUES (?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE last_error = VALUES(last_error), failed_at = VALUES(failed_at)",
+                eventId, paymentId, payload, lastError, failedAt);
+    }
+
+    public int purgeApplied(Date appliedBefore, int limit) {
+        return jdbcTemplate.update("DELETE FROM payment_webhook_event WHERE applied_at < ? LIMIT ?", appliedBefore, limit);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
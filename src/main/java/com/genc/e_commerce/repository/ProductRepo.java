@@ -1,11 +1,115 @@
 package com.genc.e_commerce.repository;
 
 import com.genc.e_commerce.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProductRepo extends JpaRepository<Product,Long> {
+
+    /*
+        the two id queries below only touch columns of idx_product_category_price_minor / idx_product_price_minor
+        (InnoDB secondary indexes carry the primary key), so the filtered page is resolved from the index
+        and only the ids on the page are loaded as entities afterwards
+    */
+    @Query("SELECT p.productId FROM Product p WHERE p.category.categoryId = :categoryId " +
+            "AND p.priceMinor BETWEEN :minPrice AND :maxPrice AND p.stockQuantity >= :minStock")
+    Page<Long> findIdsByCategoryAndPrice(@Param("categoryId") int categoryId,
+                                         @Param("minPrice") long minPrice,
+                                         @Param("maxPrice") long maxPrice,
+                                         @Param("minStock") int minStock,
+                                         Pageable pageable);
+
+    @Query("SELECT p.productId FROM Product p WHERE p.priceMinor BETWEEN :minPrice AND :maxPrice " +
+            "AND p.stockQuantity >= :minStock")
+    Page<Long> findIdsByPrice(@Param("minPrice") long minPrice,
+                              @Param("maxPrice") long maxPrice,
+                              @Param("minStock") int minStock,
+                              Pageable pageable);
+
+    // the same filters minus the given ids, for the part of a popularity-sorted listing after the hot products
+    @Query("SELECT p.productId FROM Product p WHERE p.category.categoryId = :categoryId " +
+            "AND p.priceMinor BETWEEN :minPrice AND :maxPrice AND p.stockQuantity >= :minStock " +
+            "AND p.productId NOT IN :excludedIds")
+    Page<Long> findIdsByCategoryAndPriceExcluding(@Param("categoryId") int categoryId,
+                                                  @Param("minPrice") long minPrice,
+                                                  @Param("maxPrice") long maxPrice,
+                                                  @Param("minStock") int minStock,
+                                                  @Param("excludedIds") Collection<Long> excludedIds,
+                                                  Pageable pageable);
+
+    @Query("SELECT p.productId FROM Product p WHERE p.priceMinor BETWEEN :minPrice AND :maxPrice " +
+            "AND p.stockQuantity >= :minStock AND p.productId NOT IN :excludedIds")
+    Page<Long> findIdsByPriceExcluding(@Param("minPrice") long minPrice,
+                                       @Param("maxPrice") long maxPrice,
+                                       @Param("minStock") int minStock,
+                                       @Param("excludedIds") Collection<Long> excludedIds,
+                                       Pageable pageable);
+
+    // which of the given ids pass the browse filters; a null categoryId matches every category
+    @Query("SELECT p.productId FROM Product p WHERE p.productId IN :ids " +
+            "AND (:categoryId IS NULL OR p.category.categoryId = :categoryId) " +
+            "AND p.priceMinor BETWEEN :minPrice AND :maxPrice AND p.stockQuantity >= :minStock")
+    List<Long> findIdsAmong(@Param("ids") Collection<Long> ids,
+                            @Param("categoryId") Integer categoryId,
+                            @Param("minPrice") long minPrice,
+                            @Param("maxPrice") long maxPrice,
+                            @Param("minStock") int minStock);
+
+    // narrow projection used to (re)build the facet counters without loading the @Lob columns
+    @Query("SELECT p.productId AS productId, c.categoryId AS categoryId, c.categoryName AS categoryName, " +
+            "p.priceMinor AS priceMinor, p.stockQuantity AS stockQuantity FROM Product p LEFT JOIN p.category c")
+    List<ProductFacetRow> findFacetRows();
+
+    // names for the in-memory autocomplete index, loaded once at startup
+    @Query("SELECT p.productId AS productId, p.name AS name, c.categoryId AS categoryId " +
+            "FROM Product p LEFT JOIN p.category c")
+    List<ProductNameRow> findNameRows();
+
+    // names and descriptions for the similar-products index, read in id order one chunk at a time
+    @Query("SELECT p.productId AS productId, p.name AS name, p.description AS description " +
+            "FROM Product p WHERE p.productId > :afterId ORDER BY p.productId")
+    List<ProductTextRow> findTextRowsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    // the hot fields for the off-heap column store, read in id order one chunk at a time
+    @Query("SELECT p.productId AS productId, p.name AS name, p.priceMinor AS priceMinor, " +
+            "p.stockQuantity AS stockQuantity, c.categoryId AS categoryId " +
+            "FROM Product p LEFT JOIN p.category c WHERE p.productId > :afterId ORDER BY p.productId")
+    List<ProductColumnRow> findColumnRowsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    interface ProductTextRow {
+        Long getProductId();
+        String getName();
+        String getDescription();
+    }
+
+    interface ProductColumnRow {
+        Long getProductId();
+        String getName();
+        long getPriceMinor();
+        int getStockQuantity();
+        Integer getCategoryId();
+    }
+
+    interface ProductNameRow {
+        Long getProductId();
+        String getName();
+        Integer getCategoryId();
+    }
+
+    interface ProductFacetRow {
+        Long getProductId();
+        Integer getCategoryId();
+        String getCategoryName();
+        long getPriceMinor();
+        int getStockQuantity();
+    }
 }
@@ -0,0 +1,15 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.Promotion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PromotionRepo extends JpaRepository<Promotion, Long> {
+    List<Promotion> findByActiveTrue();
+
+    Optional<Promotion> findByCouponCodeIgnoreCase(String couponCode);
+}
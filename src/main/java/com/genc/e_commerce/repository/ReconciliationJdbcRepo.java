@@ -0,0 +1,133 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.Payment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/*
+    Reads for the payment/order reconciliation. The two full scans come back as lazily fetched streams in
+    order_id order, read in keyset pages of fetch-size rows (WHERE key > last key ORDER BY key LIMIT n), so
+    memory stays at one page whatever the table size and whatever the driver does with fetch sizes. No
+    connection is held between pages and nothing is locked; rows that change between pages are caught by the
+    re-check of every candidate.
+*/
+@Repository
+public class ReconciliationJdbcRepo {
+
+    private static final RowMapper<PaymentRow> PAYMENT_ROW = (rs, rowNum) -> {
+        String status = rs.getString("payment_status");
+        return new PaymentRow(rs.getLong("payment_id"), rs.getObject("order_id", Long.class),
+                status != null ? Payment.PaymentStatus.valueOf(status) : null);
+    };
+
+    private static final RowMapper<OrderRow> ORDER_ROW = (rs, rowNum) ->
+            new OrderRow(rs.getLong("order_id"), rs.getString("status"));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.reconciliation.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    public record OrderRow(long orderId, String status) {
+    }
+
+    public record PaymentRow(long paymentId, Long orderId, Payment.PaymentStatus status) {
+    }
+
+    public Stream<OrderRow> streamOrders() {
+        return pages(last -> jdbcTemplate.query(
+                "SELECT order_id, status FROM order_t WHERE order_id > ? ORDER BY order_id LIMIT ?",
+                ORDER_ROW, last != null ? last.orderId() : Long.MIN_VALUE, fetchSize));
+    }
+
+    // payments without an order come first, then by (order_id, payment_id)
+    public Stream<PaymentRow> streamPayments() {
+        Stream<PaymentRow> orphans = pages(last -> jdbcTemplate.query(
+                "SELECT payment_id, order_id, payment_status FROM payment WHERE order_id IS NULL AND payment_id > ? " +
+                        "ORDER BY payment_id LIMIT ?",
+                PAYMENT_ROW, last != null ? last.paymentId() : Long.MIN_VALUE, fetchSize));
+        Stream<PaymentRow> linked = pages(last -> last == null
+                ? jdbcTemplate.query("SELECT payment_id, order_id, payment_status FROM payment WHERE order_id IS NOT NULL " +
+                "ORDER BY order_id, payment_id LIMIT ?", PAYMENT_ROW, fetchSize)
+                : jdbcTemplate.query("SELECT payment_id, order_id, payment_status FROM payment WHERE order_id >= ? " +
+                        "AND (order_id > ? OR payment_id > ?) ORDER BY order_id, payment_id LIMIT ?",
+                PAYMENT_ROW, last.orderId(), last.orderId(), last.paymentId(), fetchSize));
+        return Stream.concat(orphans, linked);
+    }
+
+    public Map<Long, OrderRow> findOrders(Collection<Long> orderIds) {
+        Map<Long, OrderRow> orders = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return orders;
+        }
+        jdbcTemplate.query("SELECT order_id, status FROM order_t WHERE order_id IN (" + placeholders(orderIds.size()) + ")",
+                rs -> {
+                    orders.put(rs.getLong("order_id"), ORDER_ROW.mapRow(rs, 0));
+                },
+                orderIds.toArray());
+        return orders;
+    }
+
+    // payments of the given orders, in the order streamPayments returns them
+    public List<PaymentRow> findPaymentsByOrderIds(Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query("SELECT payment_id, order_id, payment_status FROM payment WHERE order_id IN ("
+                + placeholders(orderIds.size()) + ") ORDER BY order_id, payment_id", PAYMENT_ROW, orderIds.toArray());
+    }
+
+    // the next page is read, given the last row of the previous one (null at the start), once the current is used up
+    private <T> Stream<T> pages(Function<T, List<T>> nextPage) {
+        Iterator<T> rows = new Iterator<>() {
+            private List<T> page = List.of();
+            private int next;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (next < page.size()) {
+                    return true;
+                }
+                if (exhausted) {
+                    return false;
+                }
+                page = nextPage.apply(page.isEmpty() ? null : page.get(page.size() - 1));
+                next = 0;
+                exhausted = page.size() < fetchSize;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,114 @@
+package com.genc.e_commerce.repository;
+
+import com.genc.e_commerce.entity.SalesRollup;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    Statements behind the sales rollups. Deltas are applied with INSERT ... ON DUPLICATE KEY UPDATE against
+    uk_sales_rollup_key, so a flush is one batch no matter whether the rows exist yet.
+*/
+@Repository
+public class SalesRollupJdbcRepo {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public record Delta(SalesRollup.Dimension dimension, LocalDate date, String value, long orderCount, long units,
+                        long revenueMinor) {
+    }
+
+    public record RollupRow(LocalDate date, String value, long orderCount, long units, long revenueMinor) {
+    }
+
+    // what a rebuild read: when its snapshot was taken, and the payment outbox events still undelivered in it
+    public record Snapshot(long takenAtNanos, Set<Long> undeliveredPaymentEvents) {
+    }
+
+    public void applyDeltas(Collection<Delta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        for (Delta delta : deltas) {
+            args.add(new Object[]{delta.dimension().name(), Date.valueOf(delta.date()), delta.value(),
+                    delta.orderCount(), delta.units(), delta.revenueMinor()});
+        }
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO sales_rollup (dimension, rollup_date, dimension_value, order_count, units, revenue_minor, updated_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) ON DUPLICATE KEY UPDATE " +
+                        "order_count = order_count + VALUES(order_count), units = units + VALUES(units), " +
+                        "revenue_minor = revenue_minor + VALUES(revenue_minor), updated_at = CURRENT_TIMESTAMP", args);
+    }
+
+    // reads a contiguous slice of uk_sales_rollup_key; its size depends on the period, not on the history
+    public List<RollupRow> findRange(SalesRollup.Dimension dimension, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(
+                "SELECT rollup_date, dimension_value, order_count, units, revenue_minor FROM sales_rollup " +
+                        "WHERE dimension = ? AND rollup_date BETWEEN ? AND ? ORDER BY rollup_date, dimension_value",
+                (rs, rowNum) -> new RollupRow(rs.getDate("rollup_date").toLocalDate(), rs.getString("dimension_value"),
+                        rs.getLong("order_count"), rs.getLong("units"), rs.getLong("revenue_minor")),
+                dimension.name(), Date.valueOf(from), Date.valueOf(to));
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT 1 FROM sales_rollup LIMIT 1", Integer.class).isEmpty();
+    }
+
+/*
+    recomputes the dimensions that can be derived from order_t and payment with one GROUP BY each. This is the
+    full scan the rollups exist to avoid, so it only runs on an empty table at startup or on request.
+    ORDER_STATUS and CATEGORY have no source to rebuild from (status history and paid lines are not kept)
+    and are left alone.
+
+    The aggregates are plain SELECTs rather than INSERT ... SELECT, so under REPEATABLE READ (the MySQL
+    default) they and the undelivered outbox ids come from one snapshot: a payment is in the rebuilt rows
+    exactly when its outbox event is in the returned set or was delivered before.
+*/
+    @Transactional
+    public Snapshot rebuildDerivable() {
+        long takenAtNanos = System.nanoTime();
+        Set<Long> undelivered = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM outbox_event WHERE status = 'PENDING' " +
+                        "AND event_type IN ('PAYMENT_COMPLETED', 'PAYMENT_FAILED')", Long.class));
+        List<Object[]> args = new ArrayList<>();
+        jdbcTemplate.query(
+                "SELECT DATE(payment_date) AS day, payment_method AS value, COUNT(*) AS orders, SUM(amount_minor) AS revenue " +
+                        "FROM payment WHERE payment_status = 'COMPLETED' AND payment_date IS NOT NULL AND payment_method IS NOT NULL " +
+                        "GROUP BY DATE(payment_date), payment_method",
+                rs -> {
+                    args.add(new Object[]{SalesRollup.Dimension.PAYMENT_METHOD.name(), rs.getDate("day"), rs.getString("value"),
+                            rs.getLong("orders"), rs.getLong("revenue")});
+                });
+        jdbcTemplate.query(
+                "SELECT DATE(payment_date) AS day, payment_status AS value, COUNT(*) AS orders, SUM(amount_minor) AS revenue " +
+                        "FROM payment WHERE payment_date IS NOT NULL AND payment_status IS NOT NULL " +
+                        "GROUP BY DATE(payment_date), payment_status",
+                rs -> {
+                    args.add(new Object[]{SalesRollup.Dimension.PAYMENT_STATUS.name(), rs.getDate("day"), rs.getString("value"),
+                            rs.getLong("orders"), rs.getLong("revenue")});
+                });
+        jdbcTemplate.query(
+                "SELECT status, COUNT(*) AS orders FROM order_t WHERE status IS NOT NULL GROUP BY status",
+                rs -> {
+                    args.add(new Object[]{SalesRollup.Dimension.ORDER_STATUS_CURRENT.name(), Date.valueOf(SalesRollup.ALL_TIME),
+                            rs.getString("status"), rs.getLong("orders"), 0L});
+                });
+
+        jdbcTemplate.update("DELETE FROM sales_rollup WHERE dimension IN ('PAYMENT_METHOD', 'PAYMENT_STATUS', 'ORDER_STATUS_CURRENT')");
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO sales_rollup (dimension, rollup_date, dimension_value, order_count, units, revenue_minor, updated_at) " +
+                        "VALUES (?, ?, ?, ?, 0, ?, CURRENT_TIMESTAMP)", args);
+        return new Snapshot(takenAtNanos, undelivered);
+    }
+}
@@ -0,0 +1,188 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.event.CategoryChangedEvent;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.CategoryRepo;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.SuggestionTrie;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Type-ahead over product and category names, served from an in-memory SuggestionTrie. The trie is loaded
+    once at startup and then kept current from ProductChangedEvent and CategoryChangedEvent, so suggestions
+    never reach the database (the @Lob product name column cannot be prefix-indexed by MySQL anyway).
+    Products start with weight 1, categories weigh as many products as they contain; addProductWeight lets
+    popularity signals push products up.
+
+    A rebuild fills a fresh trie while the current one keeps answering, and swaps it in. Writes that arrive
+    meanwhile are held and replayed onto the fresh trie first, under the lock the writes take. Names are
+    replayed as the latest version of each product and category; a category's product count is a delta, so
+    for a product with held events the category of the row the load read is taken off again first.
+*/
+@Service
+public class AutocompleteService {
+
+    private static final Logger logger = LogManager.getLogger(AutocompleteService.class);
+
+    public static final String PRODUCT = "PRODUCT";
+    public static final String CATEGORY = "CATEGORY";
+
+    private static final int TOP_K = 10;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private CategoryRepo categoryRepo;
+
+    private volatile SuggestionTrie trie = new SuggestionTrie(TOP_K);
+    // guards the swap and the held writes; heldProducts is non-null while a rebuild is loading
+    private final Object rebuildLock = new Object();
+    private List<ProductChangedEvent> heldProducts;
+    private List<CategoryChangedEvent> heldCategories;
+    private Map<Long, Long> heldWeights;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (rebuildLock) {
+            if (heldProducts != null) {
+                logger.info("Autocomplete rebuild already running, skipping");
+                return;
+            }
+            heldProducts = new ArrayList<>();
+            heldCategories = new ArrayList<>();
+            heldWeights = new HashMap<>();
+        }
+        SuggestionTrie fresh = new SuggestionTrie(TOP_K);
+        try {
+            List<ProductRepo.ProductNameRow> rows = productRepo.findNameRows();
+            Map<Integer, Long> productsPerCategory = new HashMap<>();
+            for (ProductRepo.ProductNameRow row : rows) {
+                fresh.upsert(PRODUCT, row.getProductId(), row.getName(), 1);
+                if (row.getCategoryId() != null) {
+                    productsPerCategory.merge(row.getCategoryId(), 1L, Long::sum);
+                }
+            }
+            for (Category category : categoryRepo.findAll()) {
+                fresh.upsert(CATEGORY, category.getCategoryId(), category.getCategoryName(),
+                        productsPerCategory.getOrDefault(category.getCategoryId(), 0L));
+            }
+            synchronized (rebuildLock) {
+                replayHeldWrites(fresh, rows);
+                trie = fresh;
+            }
+        } finally {
+            synchronized (rebuildLock) {
+                heldProducts = null;
+                heldCategories = null;
+                heldWeights = null;
+            }
+        }
+        logger.info("Autocomplete index built with {} entries in {} ms", fresh.size(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (rebuildLock) {
+            if (heldProducts != null) {
+                heldProducts.add(event);
+            }
+            ProductSnapshot previous = event.previous();
+            if (event.isDelete()) {
+                trie.remove(PRODUCT, previous.productId());
+            }
+            if (previous != null && previous.categoryId() != null) {
+                trie.addWeight(CATEGORY, previous.categoryId(), -1);
+            }
+            add(trie, event.current());
+        }
+    }
+
+    @EventListener
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        synchronized (rebuildLock) {
+            if (heldCategories != null) {
+                heldCategories.add(event);
+            }
+            apply(trie, event.categoryId(), event.currentName());
+        }
+    }
+
+    public void addProductWeight(long productId, long delta) {
+        synchronized (rebuildLock) {
+            if (heldWeights != null) {
+                heldWeights.merge(productId, delta, Long::sum);
+            }
+            trie.addWeight(PRODUCT, productId, delta);
+        }
+    }
+
+    public List<SuggestionTrie.Suggestion> suggest(String prefix, int limit) {
+        return trie.suggest(prefix, Math.min(limit, TOP_K));
+    }
+
+    // caller holds rebuildLock
+    private void replayHeldWrites(SuggestionTrie fresh, List<ProductRepo.ProductNameRow> rows) {
+        // null for a category or product whose last held event deleted it
+        Map<Integer, String> latestCategories = new HashMap<>();
+        heldCategories.forEach(event -> latestCategories.put(event.categoryId(), event.currentName()));
+        latestCategories.forEach((categoryId, name) -> apply(fresh, categoryId, name));
+
+        Map<Long, ProductSnapshot> latestProducts = new HashMap<>();
+        heldProducts.forEach(event -> latestProducts.put(event.productId(), event.current()));
+        for (ProductRepo.ProductNameRow row : rows) {
+            if (latestProducts.containsKey(row.getProductId()) && row.getCategoryId() != null) {
+                fresh.addWeight(CATEGORY, row.getCategoryId(), -1);
+            }
+        }
+        latestProducts.forEach((productId, snapshot) -> {
+            if (snapshot == null) {
+                fresh.remove(PRODUCT, productId);
+            } else {
+                add(fresh, snapshot);
+            }
+        });
+
+        heldWeights.forEach((productId, delta) -> fresh.addWeight(PRODUCT, productId, delta));
+    }
+
+    private void add(SuggestionTrie target, ProductSnapshot current) {
+        if (current == null) {
+            return;
+        }
+        // a renamed product keeps the popularity it built up under its old name
+        Long weight = target.weightOf(PRODUCT, current.productId());
+        target.upsert(PRODUCT, current.productId(), current.name(), weight != null ? weight : 1);
+        if (current.categoryId() != null) {
+            Long categoryWeight = target.weightOf(CATEGORY, current.categoryId());
+            if (categoryWeight != null) {
+                target.addWeight(CATEGORY, current.categoryId(), 1);
+            } else if (current.categoryName() != null) {
+                target.upsert(CATEGORY, current.categoryId(), current.categoryName(), 1);
+            }
+        }
+    }
+
+    // a renamed category keeps its product count; a new one starts without products
+    private void apply(SuggestionTrie target, int categoryId, String name) {
+        if (name == null) {
+            target.remove(CATEGORY, categoryId);
+            return;
+        }
+        Long weight = target.weightOf(CATEGORY, categoryId);
+        target.upsert(CATEGORY, categoryId, name, weight != null ? weight : 0);
+    }
+}
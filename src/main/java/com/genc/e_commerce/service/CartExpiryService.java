@@ -0,0 +1,133 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.repository.CartExpiryJdbcRepo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Deletes cart lines nobody has modified for app.cart.expiry.ttl-hours. The sweep takes the oldest expired
+    lines a small chunk at a time through the (last_modified, cart_id) index, deletes each chunk as its own
+    statement and sleeps between chunks, so it only ever holds a few hundred row locks and leaves room for
+    live cart traffic. A run also stops after app.cart.expiry.max-run-ms; whatever is left goes next time.
+*/
+@Service
+public class CartExpiryService {
+
+    private static final Logger logger = LogManager.getLogger(CartExpiryService.class);
+
+    @Autowired
+    private CartExpiryJdbcRepo cartExpiryJdbcRepo;
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Value("${app.cart.expiry.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.cart.expiry.ttl-hours:720}")
+    private long ttlHours = 720;
+
+    @Value("${app.cart.expiry.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${app.cart.expiry.throttle-ms:50}")
+    private long throttleMs = 50;
+
+    @Value("${app.cart.expiry.max-run-ms:10000}")
+    private long maxRunMs = 10000;
+
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder linesDeleted = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private volatile long backfilled;
+    private volatile long lastRunDeleted;
+    private volatile long lastRunMs;
+    private volatile Date lastRunAt;
+
+    public record Stats(boolean enabled, long ttlHours, long runs, long linesDeleted, long chunks, long backfilled,
+                        long lastRunDeleted, long lastRunMs, Date lastRunAt) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Date now = new Date();
+        long total = 0;
+        int updated;
+        do {
+            updated = cartExpiryJdbcRepo.backfillLastModified(now, chunkSize);
+            total += updated;
+        } while (updated == chunkSize);
+        backfilled = total;
+        if (total > 0) {
+            logger.info("Backfilled last_modified on {} cart lines", total);
+        }
+    }
+
+    @Scheduled(cron = "${app.cart.expiry.cron:0 */15 * * * *}")
+    public void sweep() {
+        if (!enabled || !sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            Date cutoff = new Date(start - ttlHours * 3_600_000L);
+            long deleted = 0;
+            while (System.currentTimeMillis() - start < maxRunMs) {
+                List<CartExpiryJdbcRepo.ExpiredLine> expired = cartExpiryJdbcRepo.findExpired(cutoff, chunkSize);
+                if (expired.isEmpty()) {
+                    break;
+                }
+                deleted += cartExpiryJdbcRepo.deleteExpired(
+                        expired.stream().map(CartExpiryJdbcRepo.ExpiredLine::cartId).toList(), cutoff);
+                chunks.increment();
+                if (cartStore.isEnabled()) {
+                    expired.forEach(line -> cartStore.forgetLine(line.userId(), line.cartId()));
+                }
+                if (expired.size() < chunkSize) {
+                    break;
+                }
+                if (!pause()) {
+                    break;
+                }
+            }
+            runs.increment();
+            linesDeleted.add(deleted);
+            lastRunDeleted = deleted;
+            lastRunMs = System.currentTimeMillis() - start;
+            lastRunAt = new Date(start);
+            logger.info("Cart expiry sweep deleted {} lines older than {} in {} ms", deleted, cutoff, lastRunMs);
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(enabled, ttlHours, runs.sum(), linesDeleted.sum(), chunks.sum(), backfilled,
+                lastRunDeleted, lastRunMs, lastRunAt);
+    }
+
+    private boolean pause() {
+        if (throttleMs <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(throttleMs);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.repository.CartPricingJdbcRepo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Keeps cart_item.item_price_total in line with product prices. A price change only queues the product;
+    a scheduled worker then reprices the cart lines holding it in small cart_id ranges, each its own short
+    statement, and stops when the run's row or time budget is used up. A product that is only partly done
+    keeps its position and continues on the next run, so a SKU sitting in many carts never holds a long lock.
+
+    The queue lives in memory. To cover changes lost by a restart, products whose cart lines disagree with
+    the current price are queued once at startup.
+*/
+@Service
+public class CartRepricingService {
+
+    private static final Logger logger = LogManager.getLogger(CartRepricingService.class);
+
+    @Autowired
+    private CartPricingJdbcRepo cartPricingJdbcRepo;
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Value("${app.cart.repricing.chunk-size:500}")
+    private int chunkSize = 500;
+
+    @Value("${app.cart.repricing.max-rows-per-run:20000}")
+    private int maxRowsPerRun = 20000;
+
+    @Value("${app.cart.repricing.max-run-ms:200}")
+    private long maxRunMs = 200;
+
+    // product id -> repricing work still owed for it
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder priceChanges = new LongAdder();
+    private final LongAdder rowsRepriced = new LongAdder();
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private volatile long lastRunMs;
+    private volatile long lastRunRows;
+
+    public record Stats(int pendingProducts, long lagMs, long priceChanges, long rowsRepriced, long chunks,
+                        long runs, long lastRunMs, long lastRunRows) {
+    }
+
+    // identity matters here: the worker only advances or removes the exact entry it worked on
+    private static final class Pending {
+        private final long changedAt;
+        private final long afterCartId;
+
+        private Pending(long changedAt, long afterCartId) {
+            this.changedAt = changedAt;
+            this.afterCartId = afterCartId;
+        }
+    }
+
+    // after commit, so the worker's UPDATE already sees the new price
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.previous() == null || event.current() == null
+                || event.previous().priceMinor() == event.current().priceMinor()) {
+            return;
+        }
+        priceChanges.increment();
+        enqueue(event.productId());
+        if (cartStore.isEnabled()) {
+            int lines = cartStore.repriceProduct(event.productId(), event.current().priceMinor());
+            logger.debug("Repriced {} in-memory cart lines for product ID {}", lines, event.productId());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void queueDriftedProducts() {
+        List<Long> drifted = cartPricingJdbcRepo.findDriftedProductIds();
+        drifted.forEach(this::enqueue);
+        if (!drifted.isEmpty()) {
+            logger.info("Queued {} products whose cart prices are out of date", drifted.size());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.repricing.interval-ms:1000}")
+    public void reprice() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long deadline = start + maxRunMs;
+        long rows = 0;
+        // oldest change first, so the lag metric goes down as fast as it can
+        List<Map.Entry<Long, Pending>> queue = new ArrayList<>(pending.entrySet());
+        queue.sort((a, b) -> Long.compare(a.getValue().changedAt, b.getValue().changedAt));
+
+        for (Map.Entry<Long, Pending> entry : queue) {
+            long productId = entry.getKey();
+            Pending work = entry.getValue();
+            long afterCartId = work.afterCartId;
+            boolean finished = false;
+            while (rows < maxRowsPerRun && System.currentTimeMillis() < deadline) {
+                Long lastCartId = cartPricingJdbcRepo.nextChunkEnd(productId, afterCartId, chunkSize);
+                if (lastCartId == null) {
+                    finished = true;
+                    break;
+                }
+                rows += cartPricingJdbcRepo.repriceRange(productId, afterCartId, lastCartId);
+                chunks.increment();
+                afterCartId = lastCartId;
+            }
+            if (finished) {
+                // a newer price change replaced the entry and has to start over, so leave that one alone
+                pending.remove(productId, work);
+            } else {
+                pending.replace(productId, work, new Pending(work.changedAt, afterCartId));
+                break;
+            }
+        }
+
+        runs.increment();
+        rowsRepriced.add(rows);
+        lastRunRows = rows;
+        lastRunMs = System.currentTimeMillis() - start;
+        logger.debug("Cart repricing run updated {} rows in {} ms, {} products still queued", rows, lastRunMs, pending.size());
+    }
+
+    public Stats getStats() {
+        long now = System.currentTimeMillis();
+        long oldest = pending.values().stream().mapToLong(work -> work.changedAt).min().orElse(now);
+        return new Stats(pending.size(), now - oldest, priceChanges.sum(), rowsRepriced.sum(), chunks.sum(),
+                runs.sum(), lastRunMs, lastRunRows);
+    }
+
+    // a repeated change restarts the sweep from the first cart line but keeps the original time for the lag
+    private void enqueue(long productId) {
+        long now = System.currentTimeMillis();
+        pending.merge(productId, new Pending(now, 0), (existing, fresh) -> new Pending(existing.changedAt, 0));
+    }
+}
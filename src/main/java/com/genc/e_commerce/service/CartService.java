@@ -1,21 +1,30 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.CartBatchRequest;
 import com.genc.e_commerce.dto.CartRequest;
 
 import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.CartSummary;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Product;
 import com.genc.e_commerce.entity.User;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.repository.CartJdbcRepo;
 import com.genc.e_commerce.repository.CartRepo;
 import com.genc.e_commerce.repository.ProductRepo;
 import com.genc.e_commerce.repository.UserRepository;
+import com.genc.e_commerce.util.Money;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -28,6 +37,17 @@ public class CartService {
     private UserRepository userRepository;
     @Autowired
     private ProductRepo productRepo;
+    @Autowired
+    private WriteBehindCartStore cartStore;
+    @Autowired
+    private CartJdbcRepo cartJdbcRepo;
+    @Autowired
+    private PromotionService promotionService;
+    @Autowired
+    private PopularityService popularityService;
+
+    @Value("${app.cart.batch-max-operations:100}")
+    private int batchMaxOperations = 100;
 
 
     //user will do add to cart product in the cart
@@ -45,18 +65,26 @@ public class CartService {
         Product product = productRepo.findById(cartRequest.getProductId()).
                 orElseThrow(() -> new ResourceNotFoundException("Prodcut not found"));
         log.debug("Product found: {}", product.getName());
+        popularityService.recordAddToCart(product.getProductId());
+
+        // write-behind mode keeps the cart in memory and persists it on the next flush
+        if (cartStore.isEnabled()) {
+            WriteBehindCartStore.CartLine line = cartStore.add(user.getUserId(), product, cartRequest.getQuantity());
+            log.info("Cart item {} held in memory with Quantity: {}", line.cartId(), line.quantity());
+            return line.toCart();
+        }
 
          /*if existing cart is there of particular user then it will add product in the existing cart and also increses
         the quantity and price .. one more things it will work for when i add product from \
         the list of product or product feature section*/
 
         Optional<Cart> existingCartItem = cartRepo.findByUserAndProduct(user, product);
-        double unitprice=product.getPrice();
+        long unitPriceMinor=product.getPriceMinor();
         if (existingCartItem.isPresent()) {
             Cart cart = existingCartItem.get();
             int updateQuantity = cart.getQuantity() + cartRequest.getQuantity();
             cart.setQuantity(updateQuantity);
-            cart.setItemPriceTotal(unitprice*updateQuantity);
+            cart.setItemPriceTotalMinor(Money.times(unitPriceMinor, updateQuantity));
             log.info("Existing cart item updated. New Quantity: {}", updateQuantity);
             return cartRepo.save(cart);
         }
@@ -68,7 +96,7 @@ public class CartService {
             cart.setUser(user);
             cart.setProduct(product);
             cart.setQuantity(cartRequest.getQuantity());
-            cart.setItemPriceTotal(unitprice*cartRequest.getQuantity());
+            cart.setItemPriceTotalMinor(Money.times(unitPriceMinor, cartRequest.getQuantity()));
             log.info("New cart item created with Quantity: {}", cartRequest.getQuantity());
             return cartRepo.save(cart);
         }
@@ -81,6 +109,9 @@ public class CartService {
     @Transactional
     public Optional<Cart> removeFromCart(Long cartId) {
         log.info("Attempting to find and remove cart item using cart ID:{}", cartId);
+        if (cartStore.isEnabled()) {
+            return cartStore.remove(cartId).map(WriteBehindCartStore.CartLine::toCart);
+        }
 /*
         check is there product exist in the cart for particular user cart id and then delete the cart
 */
@@ -100,6 +131,12 @@ public class CartService {
     public List<CartResponse> getCartDetails(Long userId) {
         userRepository.findById(userId).orElseThrow(() -> new RuntimeException("No user found"));
 
+        if (cartStore.isEnabled()) {
+            return cartStore.getCart(userId).stream()
+                    .map(line -> new CartResponse(line.toCart()))
+                    .collect(Collectors.toList());
+        }
+
         List<Cart> cartItem = cartRepo.findByUserUserId(userId);
 
 
@@ -108,6 +145,21 @@ public class CartService {
                 .collect(Collectors.toList());
     }
 
+/*
+    the cart priced with the current promotions: the best line rule per product or category, then the better
+    of the automatic threshold discount and the given coupon. A coupon that does not exist or does not apply
+    comes back as couponCode null.
+*/
+    public CartSummary priceCart(Long userId, String couponCode) {
+        List<CartResponse> items = getCartDetails(userId);
+        PromotionRules.Pricing pricing = promotionService.price(items, PromotionService.CART_RESPONSES, couponCode);
+        CartSummary summary = new CartSummary(userId, items);
+        summary.setDiscountMinor(pricing.discountMinor());
+        summary.setPayableMinor(pricing.totalMinor());
+        summary.setCouponCode(pricing.appliedCoupon());
+        return summary;
+    }
+
 /*
     this will update inside cart data when we are increasing the quantity then the price will also effect inside the cart data
 */
@@ -117,19 +169,157 @@ public class CartService {
        if (newQuantity<1){
            throw new IllegalArgumentException("quantity must not be less than 1");
        }
+       if (cartStore.isEnabled()) {
+           return cartStore.updateQuantity(cartId, newQuantity).toCart();
+       }
        Cart cart=cartRepo.findById(cartId)
                .orElseThrow(()-> new RuntimeException("No cart item found with the cart ID "+cartId));
 
-       double unitprice=cart.getProduct().getPrice();
+       long unitPriceMinor=cart.getProduct().getPriceMinor();
        cart.setQuantity(newQuantity);
 
-       double newItemPriceTotal=unitprice*newQuantity;
-       cart.setItemPriceTotal(newItemPriceTotal);
+       long newItemPriceTotalMinor=Money.times(unitPriceMinor, newQuantity);
+       cart.setItemPriceTotalMinor(newItemPriceTotalMinor);
 
-        log.info("Cart item ID {} quantity updated to {}. New Total: ${}", cartId, newQuantity, newItemPriceTotal);
+        log.info("Cart item ID {} quantity updated to {}. New Total: {}", cartId, newQuantity, Money.format(newItemPriceTotalMinor));
 
         return cartRepo.save(cart);
     }
-}
 
+/*
+    applies a whole cart edit in one go. The operations are first folded into the final quantity per product,
+    so however many of them touch the same line the database only sees one batched delete, one batched update
+    and one batched insert, all in this transaction. The current lines are read with plain JDBC so the
+    persistence context holds no cart entities and the final read returns the rows as written.
+*/
+    @Transactional
+    public List<CartResponse> applyBatch(CartBatchRequest batchRequest) {
+        Long userId = batchRequest.getUserId();
+        List<CartBatchRequest.Operation> operations = batchRequest.getOperations();
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("operations must not be empty");
+        }
+        if (operations.size() > batchMaxOperations) {
+            throw new IllegalArgumentException("a batch may contain at most " + batchMaxOperations + " operations");
+        }
+        userRepository.findById(userId).orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
+        Map<Long, CartJdbcRepo.CartRow> currentByProduct = new LinkedHashMap<>();
+        if (cartStore.isEnabled()) {
+            for (WriteBehindCartStore.CartLine line : cartStore.getCart(userId)) {
+                currentByProduct.putIfAbsent(line.productId(), line.toRow());
+            }
+        } else {
+            for (CartJdbcRepo.CartRow row : cartJdbcRepo.findByUserId(userId)) {
+                currentByProduct.putIfAbsent(row.productId(), row);
+            }
+        }
+        Map<Long, Long> productByCartId = new HashMap<>();
+        currentByProduct.values().forEach(row -> productByCartId.put(row.cartId(), row.productId()));
+
+        // final quantity per product, 0 meaning the line is removed
+        Map<Long, Integer> target = new LinkedHashMap<>();
+        currentByProduct.forEach((productId, row) -> target.put(productId, row.quantity()));
+        for (CartBatchRequest.Operation operation : operations) {
+            if (operation.getType() == null) {
+                throw new IllegalArgumentException("operation type is required");
+            }
+            Long productId = resolveProductId(operation, productByCartId);
+            switch (operation.getType()) {
+                case ADD -> target.merge(productId, requireQuantity(operation), Integer::sum);
+                case SET_QUANTITY -> {
+                    requireLine(target, productId);
+                    target.put(productId, requireQuantity(operation));
+                }
+                case REMOVE -> {
+                    requireLine(target, productId);
+                    target.put(productId, 0);
+                }
+            }
+        }
+
+        List<Long> pricedIds = new ArrayList<>();
+        target.forEach((productId, quantity) -> {
+            CartJdbcRepo.CartRow row = currentByProduct.get(productId);
+            if (quantity > 0 && (row == null || row.quantity() != quantity)) {
+                pricedIds.add(productId);
+            }
+        });
+        Map<Long, Product> products = new HashMap<>();
+        productRepo.findAllById(pricedIds).forEach(product -> products.put(product.getProductId(), product));
+
+        List<Long> deletes = new ArrayList<>();
+        List<CartJdbcRepo.CartRow> updates = new ArrayList<>();
+        List<CartJdbcRepo.CartRow> inserts = new ArrayList<>();
+        target.forEach((productId, quantity) -> {
+            CartJdbcRepo.CartRow row = currentByProduct.get(productId);
+            if (quantity == 0) {
+                if (row != null) {
+                    deletes.add(row.cartId());
+                }
+                return;
+            }
+            if (row != null && row.quantity() == quantity) {
+                return;
+            }
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new ResourceNotFoundException("Product not found with ID " + productId);
+            }
+            long itemPriceTotalMinor = Money.times(product.getPriceMinor(), quantity);
+            if (row == null) {
+                inserts.add(new CartJdbcRepo.CartRow(0, userId, productId, quantity, itemPriceTotalMinor));
+            } else {
+                updates.add(new CartJdbcRepo.CartRow(row.cartId(), userId, productId, quantity, itemPriceTotalMinor));
+            }
+        });
+        log.info("Cart batch for user ID {}: {} operations folded into {} deletes, {} updates, {} inserts",
+                userId, operations.size(), deletes.size(), updates.size(), inserts.size());
+
+        if (cartStore.isEnabled()) {
+            deletes.forEach(cartStore::remove);
+            updates.forEach(row -> cartStore.updateQuantity(row.cartId(), row.quantity()));
+            inserts.forEach(row -> cartStore.add(userId, products.get(row.productId()), row.quantity()));
+            return cartStore.getCart(userId).stream()
+                    .map(line -> new CartResponse(line.toCart()))
+                    .collect(Collectors.toList());
+        }
+        cartJdbcRepo.deleteAllById(deletes);
+        cartJdbcRepo.updateQuantities(updates);
+        cartJdbcRepo.insertAll(inserts);
+        return cartRepo.findByUserUserId(userId).stream()
+                .map(CartResponse::new)
+                .collect(Collectors.toList());
+    }
+
+    private static Long resolveProductId(CartBatchRequest.Operation operation, Map<Long, Long> productByCartId) {
+        if (operation.getProductId() != null) {
+            return operation.getProductId();
+        }
+        if (operation.getCartId() == null) {
+            throw new IllegalArgumentException("each operation needs a productId or a cartId");
+        }
+        Long productId = productByCartId.get(operation.getCartId());
+        if (productId == null) {
+            throw new ResourceNotFoundException("No cart item found with the cart ID " + operation.getCartId());
+        }
+        return productId;
+    }
+
+    private static int requireQuantity(CartBatchRequest.Operation operation) {
+        if (operation.getQuantity() == null || operation.getQuantity() < 1) {
+            throw new IllegalArgumentException("quantity must not be less than 1");
+        }
+        return operation.getQuantity();
+    }
+
+    private static void requireLine(Map<Long, Integer> target, Long productId) {
+        Integer quantity = target.get(productId);
+        if (quantity == null || quantity == 0) {
+            throw new ResourceNotFoundException("No cart item found for product ID " + productId);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.ColumnarCatalog;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Serves catalog-wide scans (the price-sorted browse, the stock dashboard) from a ColumnarCatalog instead
+    of the database or Product entities. The columns are loaded in id-ordered chunks at startup and reloaded
+    nightly, and every ProductService write reaches them through ProductChangedEvent. Until the first load
+    has finished, or for pages deeper than max-sort-window, browse goes to the database as before.
+
+    A reload fills a fresh catalog while the current one keeps serving and taking writes. Writes that arrive
+    meanwhile are also held, and replayed onto the fresh catalog once its load is done, after any chunk row
+    that may have been read before them; the replay and the swap happen under the lock writes take, so no
+    write can land between them.
+*/
+@Service
+public class CatalogColumnService {
+
+    private static final Logger logger = LogManager.getLogger(CatalogColumnService.class);
+
+    private static final int LOAD_CHUNK = 1000;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Value("${app.catalog.columns.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.catalog.columns.initial-capacity:1024}")
+    private int initialCapacity = 1024;
+
+    // a browse page keeps offset + size rows in its top-N heap
+    @Value("${app.catalog.columns.max-sort-window:10000}")
+    private int maxSortWindow = 10_000;
+
+    private volatile ColumnarCatalog catalog;
+    // guards the swap and heldEvents; heldEvents is non-null while a reload is loading
+    private final Object rebuildLock = new Object();
+    private List<ProductChangedEvent> heldEvents;
+    private final LongAdder scans = new LongAdder();
+    private volatile long lastRebuildMs;
+
+    public record Stats(boolean ready, ColumnarCatalog.Stats columns, long scans, long lastRebuildMs) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.catalog.columns.rebuild-cron:0 30 3 * * *}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                logger.info("Catalog columns reload already running, skipping");
+                return;
+            }
+            heldEvents = new ArrayList<>();
+        }
+        ColumnarCatalog fresh = new ColumnarCatalog(initialCapacity);
+        try {
+            long afterId = 0;
+            while (true) {
+                List<ProductRepo.ProductColumnRow> chunk = productRepo.findColumnRowsAfter(afterId, PageRequest.of(0, LOAD_CHUNK));
+                for (ProductRepo.ProductColumnRow row : chunk) {
+                    fresh.upsert(row.getProductId(), row.getName(), row.getPriceMinor(), row.getStockQuantity(), row.getCategoryId());
+                    afterId = row.getProductId();
+                }
+                if (chunk.size() < LOAD_CHUNK) {
+                    break;
+                }
+            }
+            synchronized (rebuildLock) {
+                heldEvents.forEach(event -> apply(fresh, event));
+                catalog = fresh;
+            }
+        } finally {
+            synchronized (rebuildLock) {
+                heldEvents = null;
+            }
+        }
+        lastRebuildMs = System.currentTimeMillis() - start;
+        logger.info("Catalog columns loaded with {} products in {} ms", fresh.getStats().rows(), lastRebuildMs);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                heldEvents.add(event);
+            }
+            apply(catalog, event);
+        }
+    }
+
+    public boolean isReady() {
+        return catalog != null;
+    }
+
+    // the ids of one price-sorted browse page, or empty when the columns cannot serve it
+    public Optional<Page<Long>> browseIds(Integer categoryId, long minPriceMinor, long maxPriceMinor, int minStock,
+                                          boolean priceDescending, int page, int size) {
+        ColumnarCatalog current = catalog;
+        long window = (long) page * size + size;
+        if (current == null || window > maxSortWindow) {
+            return Optional.empty();
+        }
+        scans.increment();
+        ColumnarCatalog.Slice slice = current.byPrice(
+                new ColumnarCatalog.Filter(categoryId, minPriceMinor, maxPriceMinor, minStock),
+                priceDescending, page * size, size);
+        Sort.Direction direction = priceDescending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(direction, "priceMinor", "productId"));
+        return Optional.of(new PageImpl<>(slice.productIds(), pageRequest, slice.total()));
+    }
+
+    public Optional<ColumnarCatalog.StockReport> getStockReport(int lowStockThreshold, int lowStockLimit) {
+        ColumnarCatalog current = catalog;
+        if (current == null) {
+            return Optional.empty();
+        }
+        scans.increment();
+        return Optional.of(current.stockReport(lowStockThreshold, lowStockLimit));
+    }
+
+    public Stats getStats() {
+        ColumnarCatalog current = catalog;
+        return new Stats(current != null, current != null ? current.getStats() : null, scans.sum(), lastRebuildMs);
+    }
+
+    private static void apply(ColumnarCatalog target, ProductChangedEvent event) {
+        if (target == null) {
+            return;
+        }
+        if (event.isDelete()) {
+            target.remove(event.productId());
+            return;
+        }
+        ProductSnapshot current = event.current();
+        target.upsert(current.productId(), current.name(), current.priceMinor(), current.stockQuantity(), current.categoryId());
+    }
+}
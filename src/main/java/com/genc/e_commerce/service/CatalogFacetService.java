@@ -0,0 +1,195 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CatalogFacets;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Keeps catalog facet counts (products per category, per price bucket, in stock) in memory. The counters
+    are built once from a narrow projection at startup and then adjusted by every ProductChangedEvent, so
+    browse requests never run a GROUP BY. A scheduled rebuild corrects any drift.
+
+    A rebuild counts into fresh counters while the current ones keep serving. Product events that arrive
+    meanwhile are held; the counters are deltas, so replaying an event the facet query already saw would
+    count it twice. Instead, for every product with held events the row the query read is taken out again
+    and the product's latest held version is put in, and the result is swapped in under the lock the events
+    take.
+*/
+@Service
+public class CatalogFacetService {
+
+    private static final Logger logger = LogManager.getLogger(CatalogFacetService.class);
+
+    // key used for products that have no category
+    private static final int UNCATEGORIZED = 0;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Value("${app.catalog.price-buckets:0,25,50,100,250,500,1000}")
+    private double[] priceBucketBounds = {0, 25, 50, 100, 250, 500, 1000};
+
+    private final Map<Integer, String> categoryNames = new ConcurrentHashMap<>();
+    private volatile Counters counters;
+    // guards the swap and heldEvents; heldEvents is non-null while a rebuild is loading
+    private final Object rebuildLock = new Object();
+    private List<ProductChangedEvent> heldEvents;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.catalog.facets.rebuild-cron:0 0 * * * *}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                logger.info("Catalog facets rebuild already running, skipping");
+                return;
+            }
+            heldEvents = new ArrayList<>();
+        }
+        // configured in major units, counted in minor units like the prices themselves
+        long[] boundsMinor = new long[priceBucketBounds.length];
+        for (int i = 0; i < boundsMinor.length; i++) {
+            boundsMinor[i] = Money.ofMajor(priceBucketBounds[i]);
+        }
+        Counters fresh = new Counters(boundsMinor);
+        try {
+            List<ProductRepo.ProductFacetRow> rows = productRepo.findFacetRows();
+            for (ProductRepo.ProductFacetRow row : rows) {
+                if (row.getCategoryId() != null && row.getCategoryName() != null) {
+                    categoryNames.put(row.getCategoryId(), row.getCategoryName());
+                }
+                fresh.apply(row.getCategoryId(), row.getPriceMinor(), row.getStockQuantity(), 1);
+            }
+            synchronized (rebuildLock) {
+                replayHeldEvents(fresh, rows);
+                counters = fresh;
+            }
+        } finally {
+            synchronized (rebuildLock) {
+                heldEvents = null;
+            }
+        }
+        logger.info("Catalog facets rebuilt for {} products in {} ms", fresh.total.sum(), System.currentTimeMillis() - start);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                heldEvents.add(event);
+            }
+            Counters current = counters;
+            if (current == null) {
+                // not built yet; the initial rebuild replays it
+                return;
+            }
+            ProductSnapshot previous = event.previous();
+            if (previous != null) {
+                current.apply(previous.categoryId(), previous.priceMinor(), previous.stockQuantity(), -1);
+            }
+            add(current, event.current());
+        }
+    }
+
+    public CatalogFacets getFacets() {
+        CatalogFacets facets = new CatalogFacets();
+        Counters current = counters;
+        if (current == null) {
+            return facets;
+        }
+        facets.setTotalProducts(current.total.sum());
+        facets.setInStockProducts(current.inStock.sum());
+        current.byCategory.forEach((categoryId, count) -> {
+            long value = count.sum();
+            if (value > 0) {
+                Integer id = categoryId == UNCATEGORIZED ? null : categoryId;
+                facets.getCategories().add(new CatalogFacets.CategoryCount(id, categoryNames.get(categoryId), value));
+            }
+        });
+        for (int i = 0; i < priceBucketBounds.length; i++) {
+            Double upper = i + 1 < priceBucketBounds.length ? priceBucketBounds[i + 1] : null;
+            facets.getPriceBuckets().add(new CatalogFacets.PriceBucketCount(
+                    priceBucketBounds[i], upper, current.byPriceBucket[i].sum()));
+        }
+        return facets;
+    }
+
+    // caller holds rebuildLock
+    private void replayHeldEvents(Counters fresh, List<ProductRepo.ProductFacetRow> rows) {
+        if (heldEvents.isEmpty()) {
+            return;
+        }
+        // null for a product whose last held event deleted it
+        Map<Long, ProductSnapshot> latest = new HashMap<>();
+        heldEvents.forEach(event -> latest.put(event.productId(), event.current()));
+        for (ProductRepo.ProductFacetRow row : rows) {
+            if (latest.containsKey(row.getProductId())) {
+                fresh.apply(row.getCategoryId(), row.getPriceMinor(), row.getStockQuantity(), -1);
+            }
+        }
+        latest.values().forEach(snapshot -> add(fresh, snapshot));
+    }
+
+    private void add(Counters target, ProductSnapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        if (snapshot.categoryId() != null && snapshot.categoryName() != null) {
+            categoryNames.put(snapshot.categoryId(), snapshot.categoryName());
+        }
+        target.apply(snapshot.categoryId(), snapshot.priceMinor(), snapshot.stockQuantity(), 1);
+    }
+
+    static int bucketOf(long priceMinor, long[] boundsMinor) {
+        int index = Arrays.binarySearch(boundsMinor, priceMinor);
+        if (index >= 0) {
+            return index;
+        }
+        // insertion point - 1 is the last bound below the price; prices under the first bound go to bucket 0
+        return Math.max(-index - 2, 0);
+    }
+
+    private static final class Counters {
+        private final ConcurrentHashMap<Integer, LongAdder> byCategory = new ConcurrentHashMap<>();
+        private final long[] boundsMinor;
+        private final LongAdder[] byPriceBucket;
+        private final LongAdder inStock = new LongAdder();
+        private final LongAdder total = new LongAdder();
+
+        private Counters(long[] boundsMinor) {
+            this.boundsMinor = boundsMinor;
+            byPriceBucket = new LongAdder[boundsMinor.length];
+            for (int i = 0; i < boundsMinor.length; i++) {
+                byPriceBucket[i] = new LongAdder();
+            }
+        }
+
+        private void apply(Integer categoryId, long priceMinor, int stockQuantity, int delta) {
+            int key = categoryId != null ? categoryId : UNCATEGORIZED;
+            byCategory.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+            byPriceBucket[bucketOf(priceMinor, boundsMinor)].add(delta);
+            if (stockQuantity > 0) {
+                inStock.add(delta);
+            }
+            total.add(delta);
+        }
+    }
+}
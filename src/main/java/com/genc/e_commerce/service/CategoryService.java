@@ -1,11 +1,15 @@
 package com.genc.e_commerce.service;
 
 import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.event.CategoryChangedEvent;
 import com.genc.e_commerce.repository.CategoryRepo;
 
+import com.genc.e_commerce.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +18,12 @@ public class CategoryService {
     @Autowired
     private CategoryRepo categoryRepo;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SingleFlight<Integer, Category> categoryLookups =
+            new SingleFlight<>("category-by-id", Duration.ofSeconds(3));
+
     public Category addCategory(Category category) {
         final Integer incomingId = category.getCategoryId();
         long duplicateCount = categoryRepo.countByCategoryNameIgnoreCase(category.getCategoryName());
@@ -28,15 +38,19 @@ public class CategoryService {
                 throw new RuntimeException("Database has multiple categories with the same name. Please fix data.");
             }
         }
-        return categoryRepo.save(category);
+        // an id means a rename, which the event carries with the old name
+        String previousName = incomingId != null
+                ? categoryRepo.findById(incomingId).map(Category::getCategoryName).orElse(null) : null;
+        Category savedCategory = categoryRepo.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(savedCategory.getCategoryId(), previousName,
+                savedCategory.getCategoryName()));
+        return savedCategory;
 
     }
 
     public Category getCategoryById(int categoryId) {
-        Category findCategoryById = categoryRepo.findById(categoryId)
-                .orElseThrow(() -> new RuntimeException("No product found " + categoryId));
-        return categoryRepo.findById(categoryId).get();
-
+        return categoryLookups.execute(categoryId, () -> categoryRepo.findById(categoryId)
+                .orElseThrow(() -> new RuntimeException("No product found " + categoryId)));
     }
 
 
@@ -48,8 +62,14 @@ public class CategoryService {
         Optional<Category> existingCategory = categoryRepo.findById(categoryId);
         if (existingCategory.isPresent()) {
             categoryRepo.deleteById(categoryId);
+            eventPublisher.publishEvent(new CategoryChangedEvent(categoryId,
+                    existingCategory.get().getCategoryName(), null));
             return existingCategory;
         }
         return Optional.empty();
     }
+
+    public SingleFlight.Stats getCategoryLookupStats() {
+        return categoryLookups.stats();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartBatchRequest;
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.ProductBatchItem;
+import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Carts for shoppers who have not logged in. They are keyed by a random token kept in a cookie and live only
+    in memory: nothing is written to cart_item until the shopper logs in and the cart is merged into theirs.
+
+    The store is bounded. Carts idle for app.cart.guest.idle-ttl-minutes expire, and when the store is full
+    the least recently used cart makes room for the new one. Prices are not stored; they are read from the
+    product cache whenever the cart is shown, so a guest cart never holds a stale total.
+*/
+@Service
+public class GuestCartService {
+
+    private static final Logger logger = LogManager.getLogger(GuestCartService.class);
+
+    public static final String COOKIE_NAME = "guest_cart";
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Value("${app.cart.guest.max-carts:100000}")
+    private int maxCarts = 100000;
+
+    @Value("${app.cart.guest.max-lines:50}")
+    private int maxLines = 50;
+
+    @Value("${app.cart.guest.idle-ttl-minutes:10080}")
+    private long idleTtlMinutes = 10080;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // access order, so the eldest entry is the least recently used cart
+    private final LinkedHashMap<String, GuestCart> carts = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GuestCart> eldest) {
+            return size() > maxCarts;
+        }
+    };
+
+    // products merged into the user's cart, and products left behind because they were deleted meanwhile
+    public record MergeResult(int merged, List<Long> droppedProductIds) {
+    }
+
+    private static final class GuestCart {
+        // product id -> quantity, in the order the products were first added
+        private final LinkedHashMap<Long, Integer> lines = new LinkedHashMap<>();
+        private long lastAccess = System.currentTimeMillis();
+    }
+
+    public static String newToken() {
+        byte[] bytes = new byte[24];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    public long getIdleTtlSeconds() {
+        return idleTtlMinutes * 60;
+    }
+
+    public List<CartResponse> addToCart(String token, Long productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("quantity must not be less than 1");
+        }
+        // fails for unknown products before anything is stored
+        requireProduct(productId);
+        lock.lock();
+        try {
+            GuestCart cart = cartFor(token, true);
+            if (!cart.lines.containsKey(productId) && cart.lines.size() >= maxLines) {
+                throw new IllegalArgumentException("a guest cart can hold at most " + maxLines + " products");
+            }
+            cart.lines.merge(productId, quantity, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        return getCart(token);
+    }
+
+    public List<CartResponse> updateQuantity(String token, Long productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("quantity must not be less than 1");
+        }
+        lock.lock();
+        try {
+            GuestCart cart = cartFor(token, false);
+            if (cart == null || !cart.lines.containsKey(productId)) {
+                throw new ResourceNotFoundException("No cart item found for product ID " + productId);
+            }
+            cart.lines.put(productId, quantity);
+        } finally {
+            lock.unlock();
+        }
+        return getCart(token);
+    }
+
+    public List<CartResponse> removeFromCart(String token, Long productId) {
+        lock.lock();
+        try {
+            GuestCart cart = cartFor(token, false);
+            if (cart == null || cart.lines.remove(productId) == null) {
+                throw new ResourceNotFoundException("No cart item found for product ID " + productId);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return getCart(token);
+    }
+
+    public List<CartResponse> getCart(String token) {
+        Map<Long, Integer> lines;
+        lock.lock();
+        try {
+            GuestCart cart = cartFor(token, false);
+            if (cart == null || cart.lines.isEmpty()) {
+                return List.of();
+            }
+            lines = new LinkedHashMap<>(cart.lines);
+        } finally {
+            lock.unlock();
+        }
+
+        List<CartResponse> responses = new ArrayList<>(lines.size());
+        for (ProductBatchItem item : productService.getProductsByIds(new ArrayList<>(lines.keySet()))) {
+            // products deleted since they were added simply drop out of the cart
+            if (!item.isFound()) {
+                continue;
+            }
+            Product product = item.getProduct();
+            int quantity = lines.get(item.getProductId());
+            responses.add(new CartResponse(null, null, product.getProductId(), product.getName(), quantity,
+                    product.getPriceMinor(), Money.times(product.getPriceMinor(), quantity),
+                    product.getCategory() != null ? product.getCategory().getCategoryId() : null));
+        }
+        return responses;
+    }
+
+    /*
+        moves the guest cart into the user's cart_item rows through CartService.applyBatch, so the whole cart
+        goes in as one batched update plus one batched insert in a single transaction. Quantities for products
+        the user already has are added together. Products deleted since they were added are dropped, as getCart
+        does, and reported in the result. If the merge fails the guest cart is kept.
+    */
+    public MergeResult mergeIntoUser(String token, Long userId) {
+        GuestCart cart;
+        lock.lock();
+        try {
+            cart = carts.remove(token);
+        } finally {
+            lock.unlock();
+        }
+        if (cart == null || cart.lines.isEmpty()) {
+            return new MergeResult(0, List.of());
+        }
+
+        CartBatchRequest batchRequest = new CartBatchRequest();
+        batchRequest.setUserId(userId);
+        List<Long> dropped = new ArrayList<>();
+        try {
+            for (ProductBatchItem item : productService.getProductsByIds(new ArrayList<>(cart.lines.keySet()))) {
+                if (!item.isFound()) {
+                    dropped.add(item.getProductId());
+                    continue;
+                }
+                CartBatchRequest.Operation operation = new CartBatchRequest.Operation();
+                operation.setType(CartBatchRequest.Type.ADD);
+                operation.setProductId(item.getProductId());
+                operation.setQuantity(cart.lines.get(item.getProductId()));
+                batchRequest.getOperations().add(operation);
+            }
+            if (!batchRequest.getOperations().isEmpty()) {
+                cartService.applyBatch(batchRequest);
+            }
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                carts.putIfAbsent(token, cart);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+        if (!dropped.isEmpty()) {
+            logger.info("Dropped deleted products {} from the guest cart of user ID {}", dropped, userId);
+        }
+        int merged = batchRequest.getOperations().size();
+        logger.info("Merged guest cart with {} products into the cart of user ID {}", merged, userId);
+        return new MergeResult(merged, dropped);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return carts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.guest.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - idleTtlMinutes * 60_000;
+        int purged = 0;
+        lock.lock();
+        try {
+            // iteration order is least recently used first, so the scan stops at the first live cart
+            Iterator<GuestCart> iterator = carts.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().lastAccess >= cutoff) {
+                    break;
+                }
+                iterator.remove();
+                purged++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (purged > 0) {
+            logger.debug("Purged {} idle guest carts, {} left", purged, size());
+        }
+    }
+
+    // caller holds the lock
+    private GuestCart cartFor(String token, boolean create) {
+        GuestCart cart = carts.get(token);
+        if (cart != null && cart.lastAccess < System.currentTimeMillis() - idleTtlMinutes * 60_000) {
+            carts.remove(token);
+            cart = null;
+        }
+        if (cart == null && create) {
+            cart = new GuestCart();
+            carts.put(token, cart);
+        }
+        if (cart != null) {
+            cart.lastAccess = System.currentTimeMillis();
+        }
+        return cart;
+    }
+
+    private void requireProduct(Long productId) {
+        if (productId == null) {
+            throw new IllegalArgumentException("productId is required");
+        }
+        if (!productService.getProductsByIds(List.of(productId)).get(0).isFound()) {
+            throw new ResourceNotFoundException("Product not found with ID " + productId);
+        }
+    }
+}
@@ -1,25 +1,44 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.OrderHistoryPage;
 import com.genc.e_commerce.dto.OrderRequest;
+import com.genc.e_commerce.dto.OrderResponse;
+import com.genc.e_commerce.dto.OrderTransitionRequest;
+import com.genc.e_commerce.dto.OrderTransitionResult;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Order;
 import com.genc.e_commerce.entity.User;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
 import com.genc.e_commerce.repository.CartRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
 import com.genc.e_commerce.repository.OrderRepo;
 import com.genc.e_commerce.repository.ProductRepo;
 import com.genc.e_commerce.repository.UserRepository;
-import jakarta.transaction.Transactional;
+import com.genc.e_commerce.util.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class OrderService {
 
+    private static final Logger logger = LogManager.getLogger(OrderService.class);
+
     @Autowired
     private OrderRepo orderRepo;
 
@@ -32,8 +51,40 @@ public class OrderService {
     @Autowired
     private ProductRepo productRepo;
 
-    @Transactional
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Autowired
+    private OrderJdbcRepo orderJdbcRepo;
+
+    @Autowired
+    private SalesAnalyticsService salesAnalytics;
+
+    @Autowired
+    private PromotionService promotionService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.order.transition.max-ids:50000}")
+    private int transitionMaxIds = 50000;
+
+    @Value("${app.order.transition.chunk-size:1000}")
+    private int transitionChunkSize = 1000;
+
+    /*
+        checkout works on cart_item, so in write-behind mode the in-memory carts are flushed first. The flush
+        commits on its own before the order transaction starts: that transaction then reads the flushed rows,
+        and rolling it back cannot undo cart writes whose journal is already gone.
+    */
     public Order createOrder(OrderRequest orderRequest) {
+        if (cartStore.isEnabled()) {
+            cartStore.flush();
+        }
+        return transactionTemplate.execute(status -> placeOrder(orderRequest));
+    }
+
+    private Order placeOrder(OrderRequest orderRequest) {
         Long userId = orderRequest.getUserId();
         User user = userRepository.findById(userId).orElseThrow(() ->
                 new RuntimeException("Cannot create order: User not found with ID " + userId));
@@ -48,15 +99,27 @@ public class OrderService {
             throw new ResourceNotFoundException("Cannot create order: Your cart is currently empty.");
         }
 
+        // the total is what the cart lines add up to after promotions; the client's figure is only checked against it
+        PromotionRules.Pricing pricing = promotionService.price(cartItems, PromotionService.CART_ITEMS, orderRequest.getCouponCode());
+        long totalAmountMinor = pricing.totalMinor();
+        if (orderRequest.getTotalAmountMinor() != totalAmountMinor) {
+            logger.warn("Order total {} sent for user ID {} differs from the cart total {}, using the cart total",
+                    Money.format(orderRequest.getTotalAmountMinor()), userId, Money.format(totalAmountMinor));
+        }
+        if (orderRequest.getCouponCode() != null && pricing.appliedCoupon() == null) {
+            logger.info("Coupon {} did not apply to the order of user ID {}", orderRequest.getCouponCode(), userId);
+        }
         Order newOrder = new Order();
-        newOrder.setTotalAmount(orderRequest.getTotalAmount());
+        newOrder.setTotalAmountMinor(totalAmountMinor);
+        newOrder.setDiscountMinor(pricing.discountMinor());
+        newOrder.setCouponCode(pricing.appliedCoupon());
         newOrder.setOrderDate(new Date());
         newOrder.setUser(user);
 
         newOrder.setStatus(Order.Status.PENDING);
 
         Order savedOrder=orderRepo.save(newOrder);
-
+        salesAnalytics.recordOrderCreated(savedOrder);
 
 
         return savedOrder;
@@ -67,6 +130,125 @@ public class OrderService {
                 .orElseThrow(() -> new RuntimeException("Order not found with ID: " + orderId));
     }
 
+/*
+    keyset-paginated order history. The cursor encodes the (orderDate, orderId) of the last order on the
+    previous page; one extra row is fetched to know whether another page follows.
+*/
+    public OrderHistoryPage getOrderHistory(Long userId, Order.Status status, String cursor, int size) {
+        Limit limit = Limit.of(size + 1);
+        List<OrderResponse> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = status == null
+                    ? orderRepo.findHistory(userId, limit)
+                    : orderRepo.findHistoryByStatus(userId, status, limit);
+        } else {
+            long[] position = decodeCursor(cursor);
+            Date orderDate = new Date(position[0]);
+            rows = status == null
+                    ? orderRepo.findHistoryAfter(userId, orderDate, position[1], limit)
+                    : orderRepo.findHistoryByStatusAfter(userId, status, orderDate, position[1], limit);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            OrderResponse last = rows.get(size - 1);
+            nextCursor = encodeCursor(last.getOrderDate(), last.getOrderId());
+        }
+        return new OrderHistoryPage(rows, nextCursor);
+    }
+
+    static String encodeCursor(Date orderDate, Long orderId) {
+        String position = orderDate.getTime() + ":" + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf(':');
+            return new long[]{Long.parseLong(position.substring(0, separator)), Long.parseLong(position.substring(separator + 1))};
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+/*
+    moves many orders to one status. Each chunk of ids costs one status read and one conditional UPDATE that
+    only touches orders still in a state allowed to move to the target (Order.Status.canTransitionTo). If the
+    UPDATE changed fewer rows than expected, another writer got in between; those ids are read again. Ids that
+    are gone by then are NOT_FOUND, ids in another status are CONFLICT, and of the ids now in the target status
+    only as many as the UPDATE changed are reported UPDATED (the rest were moved by the other writer and are
+    UNCHANGED here), so results and analytics never count more moves than the database made.
+*/
+    public List<OrderTransitionResult> transitionStatuses(OrderTransitionRequest request) {
+        Order.Status toStatus = request.getToStatus();
+        if (toStatus == null) {
+            throw new IllegalArgumentException("toStatus is required");
+        }
+        if (request.getOrderIds() == null || request.getOrderIds().isEmpty()) {
+            throw new IllegalArgumentException("orderIds must not be empty");
+        }
+        Set<Long> orderIds = new LinkedHashSet<>(request.getOrderIds());
+        orderIds.remove(null);
+        if (orderIds.size() > transitionMaxIds) {
+            throw new IllegalArgumentException("at most " + transitionMaxIds + " orders can be moved at once");
+        }
+
+        Set<Order.Status> sources = toStatus.legalSources();
+        List<Long> ids = new ArrayList<>(orderIds);
+        List<OrderTransitionResult> results = new ArrayList<>(ids.size());
+        long start = System.currentTimeMillis();
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += transitionChunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + transitionChunkSize, ids.size()));
+            updated += transitionChunk(chunk, sources, toStatus, results);
+        }
+        logger.info("Moved {} of {} orders to {} in {} ms", updated, ids.size(), toStatus, System.currentTimeMillis() - start);
+        return results;
+    }
+
+    private int transitionChunk(List<Long> chunk, Set<Order.Status> sources, Order.Status toStatus,
+                                List<OrderTransitionResult> results) {
+        Map<Long, Order.Status> current = orderJdbcRepo.findStatuses(chunk);
+        List<Long> candidates = new ArrayList<>(chunk.size());
+        for (Long orderId : chunk) {
+            Order.Status status = current.get(orderId);
+            if (status != null && status.canTransitionTo(toStatus)) {
+                candidates.add(orderId);
+            }
+        }
+        int updated = orderJdbcRepo.updateStatus(candidates, sources, toStatus);
+        boolean reread = updated != candidates.size();
+        Map<Long, Order.Status> after = reread ? orderJdbcRepo.findStatuses(candidates) : Map.of();
+        Map<Order.Status, Long> movedFrom = new EnumMap<>(Order.Status.class);
+        int reported = 0;
+
+        for (Long orderId : chunk) {
+            Order.Status status = current.get(orderId);
+            if (!current.containsKey(orderId)) {
+                results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.NOT_FOUND, null));
+            } else if (status == toStatus) {
+                results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.UNCHANGED, status));
+            } else if (status == null || !status.canTransitionTo(toStatus)) {
+                results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.ILLEGAL_TRANSITION, status));
+            } else if (reread && !after.containsKey(orderId)) {
+                results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.NOT_FOUND, null));
+            } else if (!reread || after.get(orderId) == toStatus) {
+                if (reported < updated) {
+                    results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.UPDATED, toStatus));
+                    movedFrom.merge(status, 1L, Long::sum);
+                    reported++;
+                } else {
+                    results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.UNCHANGED, toStatus));
+                }
+            } else {
+                results.add(new OrderTransitionResult(orderId, OrderTransitionResult.Outcome.CONFLICT, after.get(orderId)));
+            }
+        }
+        movedFrom.forEach((from, orders) -> salesAnalytics.recordStatusChange(from, toStatus, orders));
+        return updated;
+    }
 
 //
 //    public Order updateOrderStatus(Long orderId, Long userId) {
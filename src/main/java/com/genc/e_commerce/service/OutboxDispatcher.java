@@ -0,0 +1,219 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.OutboxMessage;
+import com.genc.e_commerce.event.OutboxSubscriber;
+import com.genc.e_commerce.repository.OutboxJdbcRepo;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Drains outbox_event to the OutboxSubscriber beans. A single poller thread reads a batch of due events,
+    hands every event to its own virtual thread, waits for the batch and then records the outcome with one
+    UPDATE for the delivered events and one batch for the failed ones. Failed events come back after an
+    exponential backoff with jitter and are parked as DEAD after app.outbox.max-attempts.
+
+    Delivery is at least once and unordered: a crash between handling and marking redelivers the batch, and
+    events of one batch run concurrently. The poller reads without row locks, so this assumes one application
+    instance dispatches at a time.
+*/
+@Service
+public class OutboxDispatcher {
+
+    private static final Logger logger = LogManager.getLogger(OutboxDispatcher.class);
+
+    @Autowired
+    private OutboxJdbcRepo outboxJdbcRepo;
+
+    @Autowired(required = false)
+    private List<OutboxSubscriber> subscribers = List.of();
+
+    @Value("${app.outbox.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs = 1000;
+
+    @Value("${app.outbox.handler-timeout-ms:10000}")
+    private long handlerTimeoutMs = 10000;
+
+    @Value("${app.outbox.max-attempts:10}")
+    private int maxAttempts = 10;
+
+    @Value("${app.outbox.backoff-initial-ms:1000}")
+    private long backoffInitialMs = 1000;
+
+    @Value("${app.outbox.backoff-max-ms:300000}")
+    private long backoffMaxMs = 300000;
+
+    @Value("${app.outbox.retention-hours:72}")
+    private long retentionHours = 72;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+    private Thread poller;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failedAttempts = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public record Stats(long pending, long dead, long lagMs, long delivered, long failedAttempts, long deadLettered) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        poller = Thread.ofVirtual().name("outbox-dispatcher").start(this::pollLoop);
+        logger.info("Outbox dispatcher started with {} subscribers", subscribers.size());
+    }
+
+    // called after a transaction that wrote outbox rows commits
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                int handled = dispatchBatch();
+                if (handled < batchSize) {
+                    wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // database hiccups must not kill the loop
+                logger.error("Outbox dispatch failed, retrying after the poll interval", e);
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // one round: read due events, deliver them concurrently, record outcomes; returns the number of events read
+    int dispatchBatch() throws InterruptedException {
+        List<OutboxMessage> due = outboxJdbcRepo.findDue(new Date(), batchSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        List<Future<?>> futures = new ArrayList<>(due.size());
+        for (OutboxMessage message : due) {
+            futures.add(executor.submit(() -> {
+                deliver(message);
+                return null;
+            }));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(handlerTimeoutMs);
+        List<Long> deliveredIds = new ArrayList<>(due.size());
+        List<OutboxJdbcRepo.Failure> failures = new ArrayList<>();
+        for (int i = 0; i < due.size(); i++) {
+            OutboxMessage message = due.get(i);
+            Future<?> future = futures.get(i);
+            try {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                deliveredIds.add(message.id());
+            } catch (ExecutionException e) {
+                failures.add(failure(message, e.getCause()));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                failures.add(failure(message, e));
+            }
+        }
+
+        outboxJdbcRepo.markDelivered(deliveredIds, new Date());
+        outboxJdbcRepo.markFailed(failures);
+        delivered.add(deliveredIds.size());
+        failedAttempts.add(failures.size());
+        failures.stream().filter(OutboxJdbcRepo.Failure::dead).forEach(failure -> deadLettered.increment());
+        logger.debug("Outbox batch: {} delivered, {} failed", deliveredIds.size(), failures.size());
+        return due.size();
+    }
+
+    @Scheduled(cron = "${app.outbox.purge-cron:0 30 * * * *}")
+    public void purgeDelivered() {
+        Date cutoff = new Date(System.currentTimeMillis() - retentionHours * 3_600_000L);
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = outboxJdbcRepo.purgeDelivered(cutoff, 1000);
+            purged += deleted;
+        } while (deleted == 1000);
+        if (purged > 0) {
+            logger.info("Purged {} delivered outbox events older than {}", purged, cutoff);
+        }
+    }
+
+    public Stats getStats() {
+        OutboxJdbcRepo.Backlog backlog = outboxJdbcRepo.backlog();
+        long lagMs = backlog.oldestPendingAt() != null ? System.currentTimeMillis() - backlog.oldestPendingAt().getTime() : 0;
+        return new Stats(backlog.pending(), backlog.dead(), lagMs, delivered.sum(), failedAttempts.sum(), deadLettered.sum());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+        executor.shutdownNow();
+    }
+
+    private void deliver(OutboxMessage message) throws Exception {
+        for (OutboxSubscriber subscriber : subscribers) {
+            if (subscriber.supports(message.eventType())) {
+                subscriber.handle(message);
+            }
+        }
+    }
+
+    private OutboxJdbcRepo.Failure failure(OutboxMessage message, Throwable cause) {
+        int attempts = message.attempts() + 1;
+        boolean dead = attempts >= maxAttempts;
+        String error = String.valueOf(cause);
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        if (dead) {
+            logger.error("Outbox event {} ({}) failed {} times and is parked as DEAD: {}", message.id(), message.eventType(), attempts, error);
+        } else {
+            logger.warn("Outbox event {} ({}) failed attempt {}: {}", message.id(), message.eventType(), attempts, error);
+        }
+        return new OutboxJdbcRepo.Failure(message.id(), attempts, new Date(System.currentTimeMillis() + backoffMs(attempts)), dead, error);
+    }
+
+    // initial * 2^(attempts-1), capped, with up to 20% jitter so failed events do not retry in lockstep
+    long backoffMs(int attempts) {
+        long delay = backoffInitialMs << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > backoffMaxMs) {
+            delay = backoffMaxMs;
+        }
+        return delay + ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.entity.OutboxEvent;
+import com.genc.e_commerce.repository.OutboxJdbcRepo;
+import com.genc.e_commerce.repository.OutboxRepo;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/*
+    Write side of the transactional outbox. publish() must run inside the caller's transaction: the event row
+    commits or rolls back together with the business change. After the commit the dispatcher is woken up so
+    delivery does not wait for its next poll.
+*/
+@Service
+public class OutboxService {
+
+    @Autowired
+    private OutboxRepo outboxRepo;
+
+    @Autowired
+    private OutboxJdbcRepo outboxJdbcRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    public record Event(String eventType, Long aggregateId, Object payload) {
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void publish(String eventType, Long aggregateId, Object payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(eventType);
+        event.setAggregateId(aggregateId);
+        event.setPayload(serialize(eventType, payload));
+        Date now = new Date();
+        event.setStatus(OutboxEvent.Status.PENDING);
+        event.setCreatedAt(now);
+        event.setNextAttemptAt(now);
+        outboxRepo.save(event);
+        wakeUpAfterCommit();
+    }
+
+    // same contract as publish(), written as one JDBC batch
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void publishAll(Collection<Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<OutboxJdbcRepo.NewEvent> rows = new ArrayList<>(events.size());
+        for (Event event : events) {
+            rows.add(new OutboxJdbcRepo.NewEvent(event.eventType(), event.aggregateId(),
+                    serialize(event.eventType(), event.payload())));
+        }
+        outboxJdbcRepo.insertAll(rows, new Date());
+        wakeUpAfterCommit();
+    }
+
+    private String serialize(String eventType, Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + eventType + " payload", e);
+        }
+    }
+
+    private void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    outboxDispatcher.wakeUp();
+                }
+            });
+        }
+    }
+}
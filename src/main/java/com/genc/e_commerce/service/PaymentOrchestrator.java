@@ -0,0 +1,183 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CheckoutResult;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.gateway.GatewayRequest;
+import com.genc.e_commerce.gateway.GatewayResponse;
+import com.genc.e_commerce.gateway.PaymentGateway;
+import com.genc.e_commerce.util.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Gateway checkout in three steps: a short transaction that records a PENDING payment
+    (PaymentService.initiatePayment), the gateway call with no transaction or connection held, and a second
+    short transaction that applies the decision (finalizePayment). A slow gateway therefore ties up virtual
+    threads, not pooled JDBC connections.
+
+    The call itself is guarded by a bulkhead (at most app.payment.gateway.max-concurrent calls in flight,
+    further checkouts fail fast), a timeout and a consecutive-failure circuit breaker. When the gateway times
+    out or fails mid-call the charge may still have happened, so the payment is left PENDING for a later
+    confirmation instead of being failed. If none arrives, a checkout after app.payment.pending-retry-after-ms
+    resumes it under the same payment id (see PaymentService.initiatePayment).
+*/
+@Service
+public class PaymentOrchestrator {
+
+    private static final Logger logger = LogManager.getLogger(PaymentOrchestrator.class);
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentGateway paymentGateway;
+
+    @Value("${app.payment.gateway.timeout-ms:3000}")
+    private long timeoutMs = 3000;
+
+    @Value("${app.payment.gateway.max-concurrent:50}")
+    private int maxConcurrent = 50;
+
+    @Value("${app.payment.gateway.breaker.failure-threshold:5}")
+    private int failureThreshold = 5;
+
+    @Value("${app.payment.gateway.breaker.open-ms:30000}")
+    private long openMs = 30000;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private Semaphore bulkhead;
+    private CircuitBreaker circuitBreaker;
+
+    private final LongAdder approved = new LongAdder();
+    private final LongAdder declined = new LongAdder();
+    private final LongAdder pending = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+
+    public record Stats(CircuitBreaker.Stats circuitBreaker, int callsInFlight, long approved, long declined,
+                        long pending, long unavailable) {
+    }
+
+    @PostConstruct
+    public void init() {
+        bulkhead = new Semaphore(maxConcurrent);
+        circuitBreaker = new CircuitBreaker("payment-gateway", failureThreshold, openMs);
+    }
+
+    // completes on a virtual thread, so the servlet thread is released while the gateway is called
+    public CompletableFuture<CheckoutResult> checkout(Long orderId, Payment.PaymentMethod paymentMethod) {
+        return CompletableFuture.supplyAsync(() -> runCheckout(orderId, paymentMethod), executor);
+    }
+
+    CheckoutResult runCheckout(Long orderId, Payment.PaymentMethod paymentMethod) {
+        PaymentService.PaymentAttempt attempt;
+        try {
+            attempt = paymentService.initiatePayment(orderId, paymentMethod);
+        } catch (RuntimeException e) {
+            logger.warn("Checkout for orderId {} rejected: {}", orderId, e.getMessage());
+            return new CheckoutResult(null, orderId, CheckoutResult.Outcome.REJECTED, null, null, e.getMessage());
+        }
+
+        // the bulkhead is taken first: a half-open breaker must not hand its single trial to a call that never runs
+        if (!bulkhead.tryAcquire()) {
+            return notSent(attempt, "payment gateway is busy, try again shortly");
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            return notSent(attempt, "payment gateway is unavailable, try again later");
+        }
+
+        GatewayRequest request = new GatewayRequest(attempt.paymentId(), attempt.orderId(), attempt.amountMinor(),
+                attempt.paymentMethod());
+        Future<GatewayResponse> call;
+        try {
+            call = executor.submit(() -> {
+                try {
+                    return paymentGateway.charge(request);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            circuitBreaker.release();
+            return notSent(attempt, "payment service is shutting down, try again shortly");
+        }
+        GatewayResponse response = null;
+        try {
+            response = call.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            return unconfirmed(attempt, "payment gateway did not answer within " + timeoutMs + " ms");
+        } catch (ExecutionException e) {
+            return unconfirmed(attempt, "payment gateway error: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.cancel(true);
+            return unconfirmed(attempt, "checkout interrupted");
+        } finally {
+            // every path reports, so a half-open breaker never keeps waiting for its trial call
+            if (response != null) {
+                circuitBreaker.onSuccess();
+            } else {
+                circuitBreaker.onFailure();
+            }
+        }
+
+        boolean isApproved = response.decision() == GatewayResponse.Decision.APPROVED;
+        try {
+            Payment payment = paymentService.finalizePayment(attempt.paymentId(), isApproved);
+            (isApproved ? approved : declined).increment();
+            return new CheckoutResult(attempt.paymentId(), orderId,
+                    isApproved ? CheckoutResult.Outcome.APPROVED : CheckoutResult.Outcome.DECLINED,
+                    payment.getPaymentStatus(), payment.getOrder().getStatus(), response.message());
+        } catch (RuntimeException e) {
+            logger.error("Could not record gateway decision {} for payment {}", response.decision(), attempt.paymentId(), e);
+            return unconfirmed(attempt, "payment decided but not yet recorded");
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(circuitBreaker.getStats(), maxConcurrent - bulkhead.availablePermits(), approved.sum(),
+                declined.sum(), pending.sum(), unavailable.sum());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // a resumed attempt stays PENDING: its first charge may have gone through
+    private CheckoutResult notSent(PaymentService.PaymentAttempt attempt, String message) {
+        unavailable.increment();
+        if (!attempt.resumed()) {
+            paymentService.releasePayment(attempt.paymentId());
+        }
+        logger.warn("Checkout for orderId {} not sent: {}", attempt.orderId(), message);
+        return new CheckoutResult(attempt.paymentId(), attempt.orderId(), CheckoutResult.Outcome.UNAVAILABLE,
+                attempt.resumed() ? Payment.PaymentStatus.PENDING : Payment.PaymentStatus.FAILED, Order.Status.PENDING, message);
+    }
+
+    private CheckoutResult unconfirmed(PaymentService.PaymentAttempt attempt, String message) {
+        pending.increment();
+        logger.warn("Payment {} for orderId {} left PENDING: {}", attempt.paymentId(), attempt.orderId(), message);
+        return new CheckoutResult(attempt.paymentId(), attempt.orderId(), CheckoutResult.Outcome.PENDING,
+                Payment.PaymentStatus.PENDING, Order.Status.PENDING, message);
+    }
+}
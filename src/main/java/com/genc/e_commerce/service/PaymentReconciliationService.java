@@ -0,0 +1,235 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.repository.ReconciliationJdbcRepo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+    Checks that every COMPLETED payment belongs to an order that was shipped or delivered, that no order has
+    more than one payment, and that no payment points at a missing order. Both tables are streamed in order_id
+    order and merged, so the job holds one order row and the payments of one order at a time however large
+    the tables are, and it takes no locks, so it can run under live traffic.
+
+    The two scans start at slightly different moments and the tables keep changing while they run, so a
+    mismatch seen by the merge is only a candidate. Candidates are re-read by primary key in small batches and
+    only those still wrong are written to the report, one CSV line each.
+*/
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger logger = LogManager.getLogger(PaymentReconciliationService.class);
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String HEADER = "type,order_id,order_status,payment_ids";
+
+    @Autowired
+    private ReconciliationJdbcRepo reconciliationJdbcRepo;
+
+    @Value("${app.reconciliation.report-dir:data/reconciliation}")
+    private String reportDir = "data/reconciliation";
+
+    @Value("${app.reconciliation.recheck-batch:500}")
+    private int recheckBatch = 500;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Report lastReport;
+
+    public enum MismatchType {
+        PAID_ORDER_NOT_FULFILLED,
+        DUPLICATE_PAYMENT,
+        ORPHAN_PAYMENT
+    }
+
+    public record Mismatch(MismatchType type, Long orderId, String orderStatus, List<Long> paymentIds) {
+    }
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    // ordersRead stops at the last order that has a payment; candidates - mismatches cleared up on the re-read
+    public record Report(State state, Date startedAt, long durationMs, String file, long ordersRead, long paymentsRead,
+                         long candidates, long mismatches, Map<MismatchType, Long> byType, String error) {
+    }
+
+    // false when a run is already in progress
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("payment-reconciliation").start(() -> {
+            try {
+                reconcile();
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @Scheduled(cron = "${app.reconciliation.cron:-}")
+    public void scheduledRun() {
+        if (!start()) {
+            logger.warn("Skipping scheduled payment reconciliation, the previous run is still going");
+        }
+    }
+
+    public Report getLastReport() {
+        return lastReport;
+    }
+
+    Report reconcile() {
+        Date startedAt = new Date();
+        long start = System.currentTimeMillis();
+        lastReport = new Report(State.RUNNING, startedAt, 0, null, 0, 0, 0, 0, Map.of(), null);
+        Path file = Path.of(reportDir).resolve("reconciliation-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".csv");
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Run run = new Run();
+        try {
+            Files.createDirectories(file.getParent());
+            try (Stream<ReconciliationJdbcRepo.OrderRow> orderStream = reconciliationJdbcRepo.streamOrders();
+                 Stream<ReconciliationJdbcRepo.PaymentRow> paymentStream = reconciliationJdbcRepo.streamPayments();
+                 BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                run.out = out;
+                out.write(HEADER);
+                out.newLine();
+                merge(orderStream.iterator(), paymentStream.iterator(), run);
+                recheck(run);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Report report = new Report(State.COMPLETED, startedAt, System.currentTimeMillis() - start, file.toString(),
+                    run.ordersRead, run.paymentsRead, run.candidates, run.mismatches, new EnumMap<>(run.byType), null);
+            logger.info("Payment reconciliation read {} orders and {} payments in {} ms: {} mismatches ({}) of {} candidates, written to {}",
+                    run.ordersRead, run.paymentsRead, report.durationMs(), run.mismatches, run.byType, run.candidates, file);
+            lastReport = report;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Payment reconciliation failed after {} payments", run.paymentsRead, e);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the next run writes a new file
+            }
+            lastReport = new Report(State.FAILED, startedAt, System.currentTimeMillis() - start, null,
+                    run.ordersRead, run.paymentsRead, run.candidates, run.mismatches, new EnumMap<>(run.byType), e.getMessage());
+        }
+        return lastReport;
+    }
+
+    // walks the payments one order at a time, advancing the order cursor to the same order_id
+    private void merge(Iterator<ReconciliationJdbcRepo.OrderRow> orders, Iterator<ReconciliationJdbcRepo.PaymentRow> payments,
+                       Run run) throws IOException {
+        ReconciliationJdbcRepo.OrderRow order = null;
+        List<ReconciliationJdbcRepo.PaymentRow> group = new ArrayList<>();
+        ReconciliationJdbcRepo.PaymentRow next = payments.hasNext() ? payments.next() : null;
+        while (next != null) {
+            Long orderId = next.orderId();
+            group.clear();
+            while (next != null && Objects.equals(next.orderId(), orderId)) {
+                group.add(next);
+                run.paymentsRead++;
+                next = payments.hasNext() ? payments.next() : null;
+            }
+            if (orderId == null) {
+                // nothing to re-read: an order is never attached to an existing payment
+                for (ReconciliationJdbcRepo.PaymentRow payment : group) {
+                    run.candidates++;
+                    write(new Mismatch(MismatchType.ORPHAN_PAYMENT, null, null, List.of(payment.paymentId())), run);
+                }
+                continue;
+            }
+            while ((order == null || order.orderId() < orderId) && orders.hasNext()) {
+                order = orders.next();
+                run.ordersRead++;
+            }
+            ReconciliationJdbcRepo.OrderRow match = order != null && order.orderId() == orderId ? order : null;
+            if (!check(orderId, match, group).isEmpty()) {
+                run.candidates++;
+                run.pending.add(orderId);
+                if (run.pending.size() >= recheckBatch) {
+                    recheck(run);
+                }
+            }
+        }
+    }
+
+    private void recheck(Run run) throws IOException {
+        if (run.pending.isEmpty()) {
+            return;
+        }
+        Map<Long, ReconciliationJdbcRepo.OrderRow> orders = reconciliationJdbcRepo.findOrders(run.pending);
+        Map<Long, List<ReconciliationJdbcRepo.PaymentRow>> payments = reconciliationJdbcRepo.findPaymentsByOrderIds(run.pending)
+                .stream().collect(Collectors.groupingBy(ReconciliationJdbcRepo.PaymentRow::orderId, LinkedHashMap::new, Collectors.toList()));
+        for (Long orderId : run.pending) {
+            for (Mismatch mismatch : check(orderId, orders.get(orderId), payments.getOrDefault(orderId, List.of()))) {
+                write(mismatch, run);
+            }
+        }
+        run.pending.clear();
+    }
+
+    static List<Mismatch> check(Long orderId, ReconciliationJdbcRepo.OrderRow order, List<ReconciliationJdbcRepo.PaymentRow> payments) {
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+        List<Long> paymentIds = payments.stream().map(ReconciliationJdbcRepo.PaymentRow::paymentId).toList();
+        if (order == null) {
+            return List.of(new Mismatch(MismatchType.ORPHAN_PAYMENT, orderId, null, paymentIds));
+        }
+        List<Mismatch> mismatches = new ArrayList<>(2);
+        if (payments.size() > 1) {
+            mismatches.add(new Mismatch(MismatchType.DUPLICATE_PAYMENT, orderId, order.status(), paymentIds));
+        }
+        boolean paid = payments.stream().anyMatch(payment -> payment.status() == Payment.PaymentStatus.COMPLETED);
+        if (paid && !Order.Status.SHIPPED.name().equals(order.status()) && !Order.Status.DELIVERED.name().equals(order.status())) {
+            mismatches.add(new Mismatch(MismatchType.PAID_ORDER_NOT_FULFILLED, orderId, order.status(), paymentIds));
+        }
+        return mismatches;
+    }
+
+    private static void write(Mismatch mismatch, Run run) throws IOException {
+        run.out.write(mismatch.type() + "," + (mismatch.orderId() != null ? mismatch.orderId() : "") + ","
+                + (mismatch.orderStatus() != null ? mismatch.orderStatus() : "") + ","
+                + mismatch.paymentIds().stream().map(String::valueOf).collect(Collectors.joining(" ")));
+        run.out.newLine();
+        run.mismatches++;
+        run.byType.merge(mismatch.type(), 1L, Long::sum);
+    }
+
+    private static final class Run {
+        private BufferedWriter out;
+        private final List<Long> pending = new ArrayList<>();
+        private final Map<MismatchType, Long> byType = new EnumMap<>(MismatchType.class);
+        private long ordersRead;
+        private long paymentsRead;
+        private long candidates;
+        private long mismatches;
+    }
+}
@@ -3,6 +3,7 @@ package com.genc.e_commerce.service;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Order;
 import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.event.PaymentEventPayload;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
 import com.genc.e_commerce.repository.CartRepo;
 import com.genc.e_commerce.repository.OrderRepo;
@@ -11,8 +12,10 @@ import jakarta.transaction.Transactional;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -24,38 +27,68 @@ public class PaymentService {
     private final PaymentRepo paymentRepo;
     private final OrderRepo orderRepo;
     private final CartRepo cartRepo;
+    private final WriteBehindCartStore cartStore;
+    private final OutboxService outboxService;
+    private final PaymentStatusCache statusCache;
 
+    @Value("${app.payment.pending-retry-after-ms:600000}")
+    private long pendingRetryAfterMs = 600000;
+
+    /*
+        the payment row a gateway checkout works on between its two transactions. resumed marks a retry of a
+        stale PENDING payment whose first charge may have gone through, so it must not be failed if not sent.
+    */
+    public record PaymentAttempt(long paymentId, long orderId, long amountMinor, Payment.PaymentMethod paymentMethod,
+                                 boolean resumed) {
+    }
+
+    // what a client polling for the outcome of a checkout needs
+    public record PaymentStatusView(long paymentId, long orderId, Payment.PaymentStatus status) {
+    }
 
     @Autowired
-    public PaymentService(PaymentRepo paymentRepo, OrderRepo orderRepo, CartRepo cartRepo) {
+    public PaymentService(PaymentRepo paymentRepo, OrderRepo orderRepo, CartRepo cartRepo, WriteBehindCartStore cartStore,
+                          OutboxService outboxService, PaymentStatusCache statusCache) {
         this.paymentRepo = paymentRepo;
         this.orderRepo = orderRepo;
         this.cartRepo = cartRepo;
+        this.cartStore = cartStore;
+        this.outboxService = outboxService;
+        this.statusCache = statusCache;
     }
 
+    // returns the id of the payment row, which a client can poll with getPaymentStatus
     @Transactional
-    public String processPayment(Long orderId, boolean isPaymentSuccess, Payment.PaymentMethod paymentMethod) {
+    public long processPayment(Long orderId, boolean isPaymentSuccess, Payment.PaymentMethod paymentMethod) {
 
         logger.info("Attempting to process payment for orderId: {}", orderId);
 
         try {
-            Order order = orderRepo.findById(orderId)
+            Order order = orderRepo.findByIdForUpdate(orderId)
                     .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
 
             Long userId = order.getUser().getUserId();
 
-            Payment payment = new Payment();
-            payment.setAmount(order.getTotalAmount());
+            // payment.order_id is unique: a failed attempt's row is reused, anything else is a second payment
+            Payment payment = paymentRepo.findByOrderIdForUpdate(orderId).orElse(null);
+            if (payment == null) {
+                payment = new Payment();
+            } else if (payment.getPaymentStatus() != Payment.PaymentStatus.FAILED) {
+                throw new IllegalStateException("Order " + orderId + " already has a " + payment.getPaymentStatus() + " payment");
+            }
+            payment.setAmountMinor(order.getTotalAmountMinor());
             payment.setPaymentMethod(paymentMethod);
             payment.setPaymentDate(new Date());
 
             logger.debug("Payment method for orderId {}: {}", orderId, paymentMethod);
 
+            Order.Status previousStatus = order.getStatus();
+            List<Cart> paidItems = List.of();
             if (isPaymentSuccess) {
                 payment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
                 order.setStatus(Order.Status.SHIPPED);
                 logger.info("Payment successful for orderId: {}. Order status set to PENDING.", orderId);
-                deleteCartAfterPayment(userId);
+                paidItems = deleteCart(userId, true);
             } else {
                 payment.setPaymentStatus(Payment.PaymentStatus.FAILED);
                 order.setStatus(Order.Status.CANCELLED);
@@ -64,10 +97,17 @@ public class PaymentService {
 
             orderRepo.save(order);
             payment.setOrder(order);
+            payment.setUpdatedTimeStamp(new Date());
             paymentRepo.save(payment);
+            statusCache.evict(payment.getPaymentId(), orderId);
+
+            // everything beyond the core writes (notifications, analytics, ...) runs from the outbox after commit
+            outboxService.publish(
+                    isPaymentSuccess ? PaymentEventPayload.PAYMENT_COMPLETED : PaymentEventPayload.PAYMENT_FAILED,
+                    orderId, paymentEvent(order, previousStatus, payment, paidItems));
 
-            logger.info("Payment processed and saved successfully for orderId: {}", orderId);
-            return "Payment Processed Successfully";
+            logger.info("Payment {} processed and saved successfully for orderId: {}", payment.getPaymentId(), orderId);
+            return payment.getPaymentId();
 
         } catch (Exception e) {
 //            logger.error("Error processing payment for orderId: {}", orderId, e);
@@ -75,25 +115,175 @@ public class PaymentService {
         }
     }
 
-    public Payment.PaymentStatus getPaymentStatus(Long paymentId) {
-        logger.debug("Fetching payment status for paymentId: {}", paymentId);
+/*
+    first transaction of a gateway checkout: records a PENDING payment for a PENDING order and commits, so no
+    connection is held while the gateway is called. A FAILED payment row of the order is reused, since
+    payment.order_id is unique.
+
+    A PENDING payment blocks new attempts while its outcome may still arrive. Once it has not moved for
+    app.payment.pending-retry-after-ms (a gateway timeout with no confirmation since) it is resumed: the
+    charge is sent again under the same payment id, which is the provider's idempotency key, with the original
+    amount and method, so the provider reports the first charge's outcome if it went through.
 
+    The order and then its payment are read with SELECT ... FOR UPDATE, the order settlement locks them in,
+    so a checkout that races a settlement waits for it and then sees the order settled instead of claiming a
+    payment that is no longer FAILED.
+*/
+    @Transactional
+    public PaymentAttempt initiatePayment(Long orderId, Payment.PaymentMethod paymentMethod) {
+        Order order = orderRepo.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order not found with id: " + orderId));
+        if (order.getStatus() != Order.Status.PENDING) {
+            throw new IllegalStateException("Order " + orderId + " is not awaiting payment");
+        }
+        Payment payment = paymentRepo.findByOrderIdForUpdate(orderId).orElse(null);
+        if (payment == null) {
+            payment = new Payment();
+            payment.setOrder(order);
+        } else if (payment.getPaymentStatus() == Payment.PaymentStatus.PENDING) {
+            if (!isStale(payment)) {
+                throw new IllegalStateException("A payment for order " + orderId + " is already in progress");
+            }
+            // claims the retry, so other checkouts of the order see an attempt in progress again
+            payment.setUpdatedTimeStamp(new Date());
+            payment = paymentRepo.save(payment);
+            logger.info("Resuming stale PENDING payment {} for orderId: {}", payment.getPaymentId(), orderId);
+            return new PaymentAttempt(payment.getPaymentId(), orderId, payment.getAmountMinor(),
+                    payment.getPaymentMethod(), true);
+        } else if (payment.getPaymentStatus() != Payment.PaymentStatus.FAILED) {
+            throw new IllegalStateException("Order " + orderId + " is already paid");
+        }
+        payment.setPaymentStatus(Payment.PaymentStatus.PENDING);
+        payment.setAmountMinor(order.getTotalAmountMinor());
+        payment.setPaymentMethod(paymentMethod);
+        payment.setPaymentDate(new Date());
+        payment.setUpdatedTimeStamp(new Date());
+        payment = paymentRepo.save(payment);
+        statusCache.evict(payment.getPaymentId(), orderId);
+        logger.info("Initiated payment {} for orderId: {}", payment.getPaymentId(), orderId);
+        return new PaymentAttempt(payment.getPaymentId(), orderId, payment.getAmountMinor(), paymentMethod, false);
+    }
+
+    private boolean isStale(Payment payment) {
+        Date lastChange = payment.getUpdatedTimeStamp() != null ? payment.getUpdatedTimeStamp() : payment.getPaymentDate();
+        return lastChange == null || System.currentTimeMillis() - lastChange.getTime() >= pendingRetryAfterMs;
+    }
+
+/*
+    second transaction of a gateway checkout: applies the gateway's decision like processPayment does. Only a
+    PENDING payment is changed, so a late or repeated confirmation is a no-op. The money has been taken at
+    this point, so an empty cart does not undo an approved payment.
+*/
+    @Transactional
+    public Payment finalizePayment(long paymentId, boolean approved) {
         Payment payment = paymentRepo.findById(paymentId)
-                .orElseThrow(() -> {
-                    logger.error("Payment not found for paymentId: {}", paymentId);
-                    return new RuntimeException("Payment not found");
+                .orElseThrow(() -> new ResourceNotFoundException("Payment not found with id: " + paymentId));
+        if (payment.getPaymentStatus() != Payment.PaymentStatus.PENDING) {
+            logger.info("Payment {} is already {}, ignoring the gateway decision", paymentId, payment.getPaymentStatus());
+            return payment;
+        }
+        Order order = payment.getOrder();
+        Order.Status previousStatus = order.getStatus();
+        List<Cart> paidItems = List.of();
+        if (approved) {
+            payment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
+            order.setStatus(Order.Status.SHIPPED);
+            paidItems = deleteCart(order.getUser().getUserId(), false);
+        } else {
+            payment.setPaymentStatus(Payment.PaymentStatus.FAILED);
+            order.setStatus(Order.Status.CANCELLED);
+        }
+        payment.setUpdatedTimeStamp(new Date());
+        orderRepo.save(order);
+        paymentRepo.save(payment);
+        statusCache.evict(paymentId, order.getOrderId());
+        outboxService.publish(approved ? PaymentEventPayload.PAYMENT_COMPLETED : PaymentEventPayload.PAYMENT_FAILED,
+                order.getOrderId(), paymentEvent(order, previousStatus, payment, paidItems));
+        logger.info("Payment {} for orderId {} finalized as {}", paymentId, order.getOrderId(), payment.getPaymentStatus());
+        return payment;
+    }
+
+    // the charge was never sent: the attempt fails but the order stays PENDING and can be paid again
+    @Transactional
+    public void releasePayment(long paymentId) {
+        paymentRepo.findById(paymentId)
+                .filter(payment -> payment.getPaymentStatus() == Payment.PaymentStatus.PENDING)
+                .ifPresent(payment -> {
+                    payment.setPaymentStatus(Payment.PaymentStatus.FAILED);
+                    payment.setUpdatedTimeStamp(new Date());
+                    paymentRepo.save(payment);
+                    statusCache.evict(paymentId, payment.getOrder() != null ? payment.getOrder().getOrderId() : null);
                 });
+    }
+
+    public Payment.PaymentStatus getPaymentStatus(Long paymentId) {
+        logger.debug("Fetching payment status for paymentId: {}", paymentId);
 
-        logger.debug("Status for paymentId {}: {}", paymentId, payment.getPaymentStatus());
-        return payment.getPaymentStatus();
+        PaymentStatusView view = statusCache.getByPayment(paymentId);
+        if (view == null) {
+            view = paymentRepo.findStatusByPaymentId(paymentId)
+                    .map(PaymentService::toView)
+                    .orElseThrow(() -> {
+                        logger.error("Payment not found for paymentId: {}", paymentId);
+                        return new RuntimeException("Payment not found");
+                    });
+            statusCache.put(view);
+        }
+
+        logger.debug("Status for paymentId {}: {}", paymentId, view.status());
+        return view.status();
+    }
+
+    // latest payment of the order, for clients that only know the order id
+    public PaymentStatusView getPaymentStatusByOrder(Long orderId) {
+        PaymentStatusView view = statusCache.getByOrder(orderId);
+        if (view == null) {
+            view = paymentRepo.findStatusByOrderId(orderId)
+                    .map(PaymentService::toView)
+                    .orElseThrow(() -> new ResourceNotFoundException("No payment found for order id: " + orderId));
+            statusCache.put(view);
+        }
+        return view;
     }
 
     public String deleteCartAfterPayment(Long userId) {
+        deleteCart(userId, true);
+        return "existing user id cart deleted successfully";
+    }
+
+    // deletes the user's cart and returns the deleted lines; with required, an empty cart is an error
+    private List<Cart> deleteCart(Long userId, boolean required) {
         List<Cart> cartList = cartRepo.findByUserUserId(userId);
-        if (cartList.isEmpty()) {
+        if (cartList.isEmpty() && required) {
             throw new ResourceNotFoundException("no cart item found");
         }
-        cartRepo.deleteAll(cartList);
-        return "existing user id cart deleted successfully";
+        if (!cartList.isEmpty()) {
+            cartRepo.deleteAll(cartList);
+        }
+        if (cartStore.isEnabled()) {
+            // also drop lines added in memory after the order was created, as the database delete does
+            cartStore.clearUser(userId);
+        }
+        return cartList;
+    }
+
+    private static PaymentStatusView toView(PaymentRepo.PaymentStatusRow row) {
+        return new PaymentStatusView(row.getPaymentId(), row.getOrderId(), row.getPaymentStatus());
+    }
+
+    private static PaymentEventPayload paymentEvent(Order order, Order.Status previousStatus, Payment payment,
+                                                    List<Cart> paidItems) {
+        List<PaymentEventPayload.Item> items = new ArrayList<>(paidItems.size());
+        for (Cart cart : paidItems) {
+            if (cart.getProduct() == null) {
+                continue;
+            }
+            Integer categoryId = cart.getProduct().getCategory() != null ? cart.getProduct().getCategory().getCategoryId() : null;
+            items.add(new PaymentEventPayload.Item(cart.getProduct().getProductId(), categoryId, cart.getQuantity(),
+                    cart.getItemPriceTotalMinor()));
+        }
+        return new PaymentEventPayload(order.getOrderId(), order.getUser().getUserId(), payment.getPaymentId(),
+                payment.getAmountMinor(), String.valueOf(payment.getPaymentMethod()), String.valueOf(payment.getPaymentStatus()),
+                String.valueOf(previousStatus), String.valueOf(order.getStatus()), payment.getPaymentDate(), items);
     }
 }
@@ -0,0 +1,243 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.SettlementRecord;
+import com.genc.e_commerce.dto.SettlementResult;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.repository.CartJdbcRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
+import com.genc.e_commerce.repository.PaymentJdbcRepo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+    Settles offline payments in bulk. Records are read from the caller's iterator a chunk at a time and each
+    chunk is one transaction: lock the chunk's orders, then one batch of payment inserts, one conditional
+    UPDATE per target status, one cart read and one cart DELETE for the paid users, and one batch of outbox
+    events. That is a fixed handful of round trips per chunk instead of roughly ten per order through
+    PaymentService.processPayment, and memory stays bounded by the chunk however long the stream is.
+
+    Unlike processPayment, a completed settlement does not require a non-empty cart: the money has already
+    been collected, so whatever is left in the cart is cleared and the order ships.
+*/
+@Service
+public class PaymentSettlementService {
+
+    private static final Logger logger = LogManager.getLogger(PaymentSettlementService.class);
+
+    private static final EnumSet<Order.Status> SETTLEABLE = EnumSet.of(Order.Status.PENDING);
+
+    @Autowired
+    private OrderJdbcRepo orderJdbcRepo;
+
+    @Autowired
+    private PaymentJdbcRepo paymentJdbcRepo;
+
+    @Autowired
+    private CartJdbcRepo cartJdbcRepo;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Autowired
+    private PaymentStatusCache statusCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.payment.settlement.chunk-size:500}")
+    private int chunkSize = 500;
+
+    public record Summary(long records, long settled, long rejected, long failed, long durationMs) {
+    }
+
+/*
+    results are handed to the sink once per chunk, in input order, after the chunk committed or rolled back.
+    A record the iterator cannot produce (malformed input) ends the run after the chunks read so far.
+*/
+    public Summary settle(Iterator<SettlementRecord> records, Consumer<List<SettlementResult>> sink) {
+        long start = System.currentTimeMillis();
+        long line = 0;
+        long settled = 0;
+        long rejected = 0;
+        long failed = 0;
+        List<SettlementRecord> chunk = new ArrayList<>(chunkSize);
+        String unreadable = null;
+        while (true) {
+            boolean more;
+            try {
+                more = records.hasNext();
+                if (more) {
+                    chunk.add(records.next());
+                }
+            } catch (RuntimeException e) {
+                more = false;
+                unreadable = e.getMessage();
+            }
+            if (chunk.size() == chunkSize || (!more && !chunk.isEmpty())) {
+                List<SettlementResult> results = settleChunk(chunk, line + 1);
+                for (SettlementResult result : results) {
+                    switch (result.getOutcome()) {
+                        case SETTLED -> settled++;
+                        case ERROR -> failed++;
+                        default -> rejected++;
+                    }
+                }
+                line += chunk.size();
+                chunk.clear();
+                sink.accept(results);
+            }
+            if (!more) {
+                break;
+            }
+        }
+        if (unreadable != null) {
+            failed++;
+            sink.accept(List.of(new SettlementResult(line + 1, null, SettlementResult.Outcome.INVALID, null, null,
+                    "unreadable record, stopped here: " + unreadable)));
+        }
+        Summary summary = new Summary(line, settled, rejected, failed, System.currentTimeMillis() - start);
+        logger.info("Settlement run finished: {}", summary);
+        return summary;
+    }
+
+    List<SettlementResult> settleChunk(List<SettlementRecord> chunk, long firstLine) {
+        SettlementResult[] results = new SettlementResult[chunk.size()];
+        // order id -> position in the chunk, for the records that pass validation
+        Map<Long, Integer> accepted = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            SettlementRecord record = chunk.get(i);
+            String problem = validate(record);
+            if (problem != null) {
+                results[i] = reject(firstLine + i, record, SettlementResult.Outcome.INVALID, problem);
+            } else if (accepted.putIfAbsent(record.getOrderId(), i) != null) {
+                results[i] = reject(firstLine + i, record, SettlementResult.Outcome.DUPLICATE, "order already settled earlier in this chunk");
+            }
+        }
+
+        if (!accepted.isEmpty()) {
+            try {
+                List<Long> paidUsers = transactionTemplate.execute(status -> settleAccepted(chunk, accepted, results, firstLine));
+                if (cartStore.isEnabled() && paidUsers != null) {
+                    paidUsers.forEach(cartStore::clearUser);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Settlement chunk starting at line {} rolled back", firstLine, e);
+                accepted.forEach((orderId, i) -> results[i] = reject(firstLine + i, chunk.get(i),
+                        SettlementResult.Outcome.ERROR, "chunk rolled back: " + e.getMessage()));
+            }
+        }
+        return List.of(results);
+    }
+
+    // runs inside the chunk transaction; returns the users whose carts were cleared
+    private List<Long> settleAccepted(List<SettlementRecord> chunk, Map<Long, Integer> accepted,
+                                      SettlementResult[] results, long firstLine) {
+        Map<Long, OrderJdbcRepo.SettlementOrder> orders = orderJdbcRepo.lockForSettlement(accepted.keySet());
+        Date now = new Date();
+        List<PaymentJdbcRepo.PaymentRow> payments = new ArrayList<>(accepted.size());
+        List<Long> shipped = new ArrayList<>();
+        List<Long> cancelled = new ArrayList<>();
+        List<Long> paidUsers = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : accepted.entrySet()) {
+            int i = entry.getValue();
+            SettlementRecord record = chunk.get(i);
+            OrderJdbcRepo.SettlementOrder order = orders.get(entry.getKey());
+            if (order == null) {
+                results[i] = reject(firstLine + i, record, SettlementResult.Outcome.NOT_FOUND, "order not found");
+            } else if (!SETTLEABLE.contains(order.status())) {
+                results[i] = new SettlementResult(firstLine + i, order.orderId(), SettlementResult.Outcome.NOT_PENDING,
+                        null, order.status(), "order is not waiting for payment");
+            } else if (order.paymentStatus() == Payment.PaymentStatus.PENDING) {
+                results[i] = new SettlementResult(firstLine + i, order.orderId(), SettlementResult.Outcome.PAYMENT_IN_FLIGHT,
+                        null, order.status(), "a gateway payment for the order is still pending");
+            } else {
+                payments.add(new PaymentJdbcRepo.PaymentRow(order.orderId(), order.totalAmountMinor(), record.getOutcome(),
+                        record.getPaymentMethod(), now));
+                if (record.getOutcome() == Payment.PaymentStatus.COMPLETED) {
+                    shipped.add(order.orderId());
+                    if (order.userId() != null) {
+                        paidUsers.add(order.userId());
+                    }
+                } else {
+                    cancelled.add(order.orderId());
+                }
+            }
+        }
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+
+        paymentJdbcRepo.insertAll(payments);
+        // the rows are locked, so anything but a full match means the data changed under us
+        if (orderJdbcRepo.updateStatus(shipped, SETTLEABLE, Order.Status.SHIPPED) != shipped.size()
+                || orderJdbcRepo.updateStatus(cancelled, SETTLEABLE, Order.Status.CANCELLED) != cancelled.size()) {
+            throw new IllegalStateException("order status changed while the orders were locked");
+        }
+        Map<Long, List<PaymentEventPayload.Item>> itemsByUser = new HashMap<>();
+        for (CartJdbcRepo.CategorizedLine line : cartJdbcRepo.findLinesByUserIds(paidUsers)) {
+            itemsByUser.computeIfAbsent(line.userId(), u -> new ArrayList<>()).add(new PaymentEventPayload.Item(
+                    line.productId(), line.categoryId(), line.quantity(), line.itemPriceTotalMinor()));
+        }
+        cartJdbcRepo.deleteByUserIds(paidUsers);
+        Map<Long, Long> paymentIds = paymentJdbcRepo.findIdsByOrderIds(
+                payments.stream().map(PaymentJdbcRepo.PaymentRow::orderId).toList());
+
+        List<OutboxService.Event> events = new ArrayList<>(payments.size());
+        for (PaymentJdbcRepo.PaymentRow payment : payments) {
+            OrderJdbcRepo.SettlementOrder order = orders.get(payment.orderId());
+            boolean completed = payment.status() == Payment.PaymentStatus.COMPLETED;
+            Order.Status orderStatus = completed ? Order.Status.SHIPPED : Order.Status.CANCELLED;
+            Long paymentId = paymentIds.get(payment.orderId());
+            statusCache.evict(paymentId, payment.orderId());
+            List<PaymentEventPayload.Item> items = completed && order.userId() != null
+                    ? itemsByUser.getOrDefault(order.userId(), List.of()) : List.of();
+            events.add(new OutboxService.Event(
+                    completed ? PaymentEventPayload.PAYMENT_COMPLETED : PaymentEventPayload.PAYMENT_FAILED,
+                    payment.orderId(),
+                    new PaymentEventPayload(payment.orderId(), order.userId() != null ? order.userId() : 0,
+                            paymentId != null ? paymentId : 0, payment.amountMinor(), payment.method().name(),
+                            payment.status().name(), order.status().name(), orderStatus.name(), now, items)));
+            int i = accepted.get(payment.orderId());
+            results[i] = new SettlementResult(firstLine + i, payment.orderId(), SettlementResult.Outcome.SETTLED,
+                    paymentId, orderStatus, null);
+        }
+        outboxService.publishAll(events);
+        return paidUsers;
+    }
+
+    private static String validate(SettlementRecord record) {
+        if (record == null || record.getOrderId() == null) {
+            return "orderId is required";
+        }
+        if (record.getOutcome() != Payment.PaymentStatus.COMPLETED && record.getOutcome() != Payment.PaymentStatus.FAILED) {
+            return "outcome must be COMPLETED or FAILED";
+        }
+        if (record.getPaymentMethod() == null) {
+            return "paymentMethod is required";
+        }
+        return null;
+    }
+
+    private static SettlementResult reject(long line, SettlementRecord record, SettlementResult.Outcome outcome, String message) {
+        return new SettlementResult(line, record != null ? record.getOrderId() : null, outcome, null, null, message);
+    }
+}
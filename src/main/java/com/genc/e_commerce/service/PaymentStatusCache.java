@@ -0,0 +1,93 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.util.TtlCache;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Short-lived cache of payment statuses for clients polling during checkout, keyed both by payment id and by
+    order id. Every code path that changes a payment status evicts it once its transaction has committed, so a
+    poll never sees a status older than the last commit for longer than the race between the two; the TTL only
+    bounds how long a change made outside the application (or a missed eviction) stays hidden.
+*/
+@Service
+public class PaymentStatusCache {
+
+    @Value("${app.payment.status-cache.ttl-ms:2000}")
+    private long ttlMs = 2000;
+
+    @Value("${app.payment.status-cache.max-entries:10000}")
+    private int maxEntries = 10000;
+
+    private TtlCache<Long, PaymentService.PaymentStatusView> byPayment;
+    private TtlCache<Long, PaymentService.PaymentStatusView> byOrder;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public record Stats(long hits, long misses, long evictions, int paymentEntries, int orderEntries) {
+    }
+
+    @PostConstruct
+    public void init() {
+        byPayment = new TtlCache<>(maxEntries, Duration.ofMillis(ttlMs));
+        byOrder = new TtlCache<>(maxEntries, Duration.ofMillis(ttlMs));
+    }
+
+    public PaymentService.PaymentStatusView getByPayment(long paymentId) {
+        return count(byPayment.get(paymentId));
+    }
+
+    public PaymentService.PaymentStatusView getByOrder(long orderId) {
+        return count(byOrder.get(orderId));
+    }
+
+    public void put(PaymentService.PaymentStatusView view) {
+        byPayment.put(view.paymentId(), view);
+        byOrder.put(view.orderId(), view);
+    }
+
+    // evicts once the surrounding transaction commits, or right away outside one; either id may be null
+    public void evict(Long paymentId, Long orderId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictNow(paymentId, orderId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evictNow(paymentId, orderId);
+            }
+        });
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), byPayment.size(), byOrder.size());
+    }
+
+    private void evictNow(Long paymentId, Long orderId) {
+        if (paymentId != null) {
+            byPayment.invalidate(paymentId);
+        }
+        if (orderId != null) {
+            byOrder.invalidate(orderId);
+        }
+        evictions.increment();
+    }
+
+    private PaymentService.PaymentStatusView count(PaymentService.PaymentStatusView view) {
+        if (view != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return view;
+    }
+}
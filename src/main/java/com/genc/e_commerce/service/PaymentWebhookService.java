@@ -0,0 +1,422 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.dto.PaymentWebhookRequest;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.repository.CartJdbcRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
+import com.genc.e_commerce.repository.PaymentWebhookJdbcRepo;
+import com.genc.e_commerce.util.MappedJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Ingests gateway payment callbacks. receive() only appends the callback to a memory-mapped journal on
+    local disk and returns, so a burst costs the caller a memory copy each and is never slowed down by the
+    database. A consumer thread reads the journal in batches, splits each batch by payment over a pool of
+    virtual threads and applies every part in one transaction: skip event ids already in
+    payment_webhook_event, lock the payments, move their statuses (and their orders') with batched
+    statements, and record the event ids. The journal read position is committed only after the whole batch
+    is applied, so after a restart the unapplied tail is replayed and the dedup table drops what had already
+    made it.
+
+    A batch that fails app.payment.webhook.max-attempts times in a row is applied one callback per
+    transaction instead. A callback that still fails on its own is logged and parked in
+    payment_webhook_dead_letter, and the read position moves past it, so one bad callback cannot stall the
+    journal. If parking it fails too (the database is down), the batch is retried as before.
+*/
+@Service
+public class PaymentWebhookService {
+
+    private static final Logger logger = LogManager.getLogger(PaymentWebhookService.class);
+
+    private static final EnumSet<Order.Status> AWAITING_PAYMENT = EnumSet.of(Order.Status.PENDING);
+
+    @Autowired
+    private PaymentWebhookJdbcRepo paymentWebhookJdbcRepo;
+
+    @Autowired
+    private OrderJdbcRepo orderJdbcRepo;
+
+    @Autowired
+    private CartJdbcRepo cartJdbcRepo;
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private WriteBehindCartStore cartStore;
+
+    @Autowired
+    private PaymentStatusCache statusCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.payment.webhook.journal-dir:data/payment-webhooks}")
+    private String journalDir = "data/payment-webhooks";
+
+    @Value("${app.payment.webhook.segment-mb:64}")
+    private int segmentMb = 64;
+
+    @Value("${app.payment.webhook.batch-size:1000}")
+    private int batchSize = 1000;
+
+    @Value("${app.payment.webhook.consumers:4}")
+    private int consumers = 4;
+
+    @Value("${app.payment.webhook.poll-interval-ms:50}")
+    private long pollIntervalMs = 50;
+
+    @Value("${app.payment.webhook.retry-ms:1000}")
+    private long retryMs = 1000;
+
+    @Value("${app.payment.webhook.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.payment.webhook.retention-days:30}")
+    private long retentionDays = 30;
+
+    private MappedJournal journal;
+    private volatile MappedJournal.Position readPosition;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore wakeUps = new Semaphore(0);
+    private volatile boolean running;
+    private Thread consumer;
+    // failed tries of the batch at readPosition; only touched by the consumer thread
+    private int batchAttempts;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder ignored = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public record Stats(long received, long applied, long duplicates, long ignored, long backlogBytes, long batches,
+                        long failedBatches, long deadLettered) {
+    }
+
+    private record PartitionResult(List<Long> paidUsers, List<PaymentWebhookJdbcRepo.PaymentState> changed, int applied,
+                                   int duplicates, int ignored) {
+    }
+
+    @PostConstruct
+    public void open() {
+        journal = new MappedJournal(Path.of(journalDir), "webhooks", segmentMb * 1024 * 1024);
+        readPosition = journal.readPosition();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        consumer = Thread.ofVirtual().name("payment-webhook-consumer").start(this::consumeLoop);
+        logger.info("Payment webhook consumer started at journal position {}", readPosition);
+    }
+
+    // durable once this returns; applying happens in the background
+    public void receive(PaymentWebhookRequest request) {
+        if (request.getEventId() == null || request.getEventId().isBlank() || request.getEventId().length() > 100) {
+            throw new IllegalArgumentException("eventId is required and at most 100 characters");
+        }
+        if (request.getPaymentId() == null) {
+            throw new IllegalArgumentException("paymentId is required");
+        }
+        if (request.getStatus() == null || request.getStatus() == Payment.PaymentStatus.PENDING) {
+            throw new IllegalArgumentException("status must be COMPLETED, FAILED or REFUNDED");
+        }
+        try {
+            journal.append(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize webhook " + request.getEventId(), e);
+        }
+        received.increment();
+        wakeUps.release();
+    }
+
+    private void consumeLoop() {
+        while (running) {
+            try {
+                if (consumeBatch() < batchSize) {
+                    wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                    wakeUps.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                failedBatches.increment();
+                logger.error("Applying payment webhooks failed, retrying in {} ms", retryMs, e);
+                try {
+                    Thread.sleep(retryMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // reads, applies and commits one batch; returns the number of journal records consumed
+    int consumeBatch() throws InterruptedException {
+        List<MappedJournal.Entry> entries = journal.read(readPosition, batchSize);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        List<PaymentWebhookRequest> events = new ArrayList<>(entries.size());
+        for (MappedJournal.Entry entry : entries) {
+            try {
+                events.add(objectMapper.readValue(entry.payload(), PaymentWebhookRequest.class));
+            } catch (IOException e) {
+                ignored.increment();
+                logger.error("Skipping unreadable webhook record before {}", entry.next(), e);
+            }
+        }
+        try {
+            applyBatch(events);
+        } catch (RuntimeException e) {
+            if (++batchAttempts < maxAttempts) {
+                throw e;
+            }
+            logger.warn("Webhook batch at {} failed {} times, applying its callbacks one at a time", readPosition,
+                    batchAttempts);
+            applyOneByOne(events);
+        }
+        batchAttempts = 0;
+        MappedJournal.Position next = entries.get(entries.size() - 1).next();
+        journal.commitReadPosition(next);
+        readPosition = next;
+        batches.increment();
+        return entries.size();
+    }
+
+    // one transaction per partition, partitions run concurrently; every callback of a payment is in the same one
+    private void applyBatch(List<PaymentWebhookRequest> events) throws InterruptedException {
+        // an event id must not reach two partitions, or their transactions would both try to record it
+        Map<String, PaymentWebhookRequest> unique = new LinkedHashMap<>();
+        events.forEach(event -> unique.putIfAbsent(event.getEventId(), event));
+        duplicates.add(events.size() - unique.size());
+        Map<Integer, List<PaymentWebhookRequest>> partitions = new HashMap<>();
+        for (PaymentWebhookRequest event : unique.values()) {
+            partitions.computeIfAbsent(Math.floorMod(event.getPaymentId().hashCode(), consumers), p -> new ArrayList<>()).add(event);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(partitions.size());
+        for (List<PaymentWebhookRequest> partition : partitions.values()) {
+            tasks.add(() -> {
+                applyPartition(partition);
+                return null;
+            });
+        }
+        for (Future<Void> future : workers.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("webhook partition failed", e.getCause());
+            }
+        }
+    }
+
+    // in arrival order, so the callbacks of one payment still apply in sequence
+    private void applyOneByOne(List<PaymentWebhookRequest> events) {
+        for (PaymentWebhookRequest event : events) {
+            try {
+                applyPartition(List.of(event));
+            } catch (RuntimeException e) {
+                deadLetter(event, e);
+            }
+        }
+    }
+
+    private void deadLetter(PaymentWebhookRequest event, RuntimeException error) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            payload = String.valueOf(event);
+        }
+        String message = String.valueOf(error.getMessage());
+        paymentWebhookJdbcRepo.insertDeadLetter(event.getEventId(), event.getPaymentId(), payload,
+                message.length() > 1000 ? message.substring(0, 1000) : message, new Date());
+        deadLettered.increment();
+        logger.error("Parked webhook {} for payment {} as a dead letter", event.getEventId(), event.getPaymentId(), error);
+    }
+
+    // counters are only moved once the partition has committed, so a retried batch is not counted twice
+    void applyPartition(List<PaymentWebhookRequest> events) {
+        PartitionResult result = transactionTemplate.execute(status -> applyInTransaction(events));
+        if (result == null) {
+            return;
+        }
+        applied.add(result.applied());
+        duplicates.add(result.duplicates());
+        ignored.add(result.ignored());
+        result.changed().forEach(change -> statusCache.evict(change.paymentId(), change.orderId()));
+        if (cartStore.isEnabled()) {
+            result.paidUsers().forEach(cartStore::clearUser);
+        }
+    }
+
+    private PartitionResult applyInTransaction(List<PaymentWebhookRequest> events) {
+        Map<String, PaymentWebhookRequest> unique = new LinkedHashMap<>();
+        events.forEach(event -> unique.put(event.getEventId(), event));
+        unique.keySet().removeAll(paymentWebhookJdbcRepo.findApplied(unique.keySet()));
+        int alreadyApplied = events.size() - unique.size();
+        if (unique.isEmpty()) {
+            return new PartitionResult(List.of(), List.of(), 0, alreadyApplied, 0);
+        }
+
+        Map<Long, PaymentWebhookJdbcRepo.PaymentState> payments = new HashMap<>();
+        paymentWebhookJdbcRepo.lockPayments(unique.values().stream().map(PaymentWebhookRequest::getPaymentId).distinct().toList())
+                .forEach(payment -> payments.put(payment.paymentId(), payment));
+
+        // fold the callbacks of each payment in arrival order, ignoring moves the life cycle does not allow
+        Map<Long, Payment.PaymentStatus> statuses = new LinkedHashMap<>();
+        Map<Long, Date> decidedAt = new HashMap<>();
+        int illegal = 0;
+        for (PaymentWebhookRequest event : unique.values()) {
+            PaymentWebhookJdbcRepo.PaymentState payment = payments.get(event.getPaymentId());
+            Payment.PaymentStatus current = payment == null ? null : statuses.getOrDefault(payment.paymentId(), payment.status());
+            if (current == null || !current.canTransitionTo(event.getStatus())) {
+                illegal++;
+                logger.warn("Ignoring webhook {}: payment {} cannot move from {} to {}",
+                        event.getEventId(), event.getPaymentId(), current, event.getStatus());
+                continue;
+            }
+            statuses.put(payment.paymentId(), event.getStatus());
+            if (current == Payment.PaymentStatus.PENDING) {
+                decidedAt.put(payment.paymentId(), event.getOccurredAt() != null ? event.getOccurredAt() : new Date());
+            }
+        }
+
+        Date now = new Date();
+        List<PaymentWebhookJdbcRepo.StatusChange> changes = new ArrayList<>();
+        List<PaymentWebhookJdbcRepo.PaymentState> changed = new ArrayList<>();
+        Set<Long> shipped = new HashSet<>();
+        Set<Long> cancelled = new HashSet<>();
+        List<Long> paidUsers = new ArrayList<>();
+        statuses.forEach((paymentId, status) -> {
+            PaymentWebhookJdbcRepo.PaymentState payment = payments.get(paymentId);
+            if (status == payment.status()) {
+                return;
+            }
+            changes.add(new PaymentWebhookJdbcRepo.StatusChange(paymentId, payment.status(), status));
+            changed.add(payment);
+            // the payment was decided by this batch; its order follows if it is still waiting
+            if (decidedAt.containsKey(paymentId) && Order.Status.PENDING.name().equals(payment.orderStatus())) {
+                if (status == Payment.PaymentStatus.FAILED) {
+                    cancelled.add(payment.orderId());
+                } else {
+                    shipped.add(payment.orderId());
+                    if (payment.userId() != null) {
+                        paidUsers.add(payment.userId());
+                    }
+                }
+            }
+        });
+        paymentWebhookJdbcRepo.updateStatuses(changes, now);
+        if (orderJdbcRepo.updateStatus(shipped, AWAITING_PAYMENT, Order.Status.SHIPPED) != shipped.size()
+                || orderJdbcRepo.updateStatus(cancelled, AWAITING_PAYMENT, Order.Status.CANCELLED) != cancelled.size()) {
+            throw new IllegalStateException("order status changed while its payment was locked");
+        }
+        Map<Long, List<PaymentEventPayload.Item>> itemsByUser = new HashMap<>();
+        for (CartJdbcRepo.CategorizedLine line : cartJdbcRepo.findLinesByUserIds(paidUsers)) {
+            itemsByUser.computeIfAbsent(line.userId(), u -> new ArrayList<>()).add(new PaymentEventPayload.Item(
+                    line.productId(), line.categoryId(), line.quantity(), line.itemPriceTotalMinor()));
+        }
+        cartJdbcRepo.deleteByUserIds(paidUsers);
+
+        List<OutboxService.Event> outboxEvents = new ArrayList<>();
+        decidedAt.forEach((paymentId, occurredAt) -> {
+            PaymentWebhookJdbcRepo.PaymentState payment = payments.get(paymentId);
+            // the first decision of the payment; a refund in the same batch does not change what was paid
+            boolean completed = statuses.get(paymentId) != Payment.PaymentStatus.FAILED;
+            String orderStatus = shipped.contains(payment.orderId()) ? Order.Status.SHIPPED.name()
+                    : cancelled.contains(payment.orderId()) ? Order.Status.CANCELLED.name() : payment.orderStatus();
+            List<PaymentEventPayload.Item> items = completed && payment.userId() != null
+                    ? itemsByUser.getOrDefault(payment.userId(), List.of()) : List.of();
+            outboxEvents.add(new OutboxService.Event(
+                    completed ? PaymentEventPayload.PAYMENT_COMPLETED : PaymentEventPayload.PAYMENT_FAILED, payment.orderId(),
+                    new PaymentEventPayload(payment.orderId(), payment.userId() != null ? payment.userId() : 0, paymentId,
+                            payment.amountMinor(), String.valueOf(payment.method()),
+                            (completed ? Payment.PaymentStatus.COMPLETED : Payment.PaymentStatus.FAILED).name(),
+                            payment.orderStatus(), orderStatus, occurredAt, items)));
+        });
+        outboxService.publishAll(outboxEvents);
+
+        paymentWebhookJdbcRepo.insertApplied(unique.values().stream()
+                .map(event -> new PaymentWebhookJdbcRepo.AppliedEvent(event.getEventId(), event.getPaymentId(), event.getStatus()))
+                .toList(), now);
+        return new PartitionResult(paidUsers, changed, unique.size(), alreadyApplied, illegal);
+    }
+
+    // bounds what a machine crash can lose to the last interval; a JVM crash loses nothing either way
+    @Scheduled(fixedDelayString = "${app.payment.webhook.force-interval-ms:100}")
+    public void force() {
+        journal.force();
+    }
+
+    @Scheduled(cron = "${app.payment.webhook.purge-cron:0 45 3 * * *}")
+    public void purgeApplied() {
+        Date cutoff = new Date(System.currentTimeMillis() - retentionDays * 86_400_000L);
+        long purged = 0;
+        int deleted;
+        do {
+            deleted = paymentWebhookJdbcRepo.purgeApplied(cutoff, 1000);
+            purged += deleted;
+        } while (deleted == 1000);
+        if (purged > 0) {
+            logger.info("Purged {} applied payment webhooks older than {}", purged, cutoff);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(received.sum(), applied.sum(), duplicates.sum(), ignored.sum(), journal.backlogBytes(readPosition),
+                batches.sum(), failedBatches.sum(), deadLettered.sum());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (consumer != null) {
+            consumer.interrupt();
+        }
+        workers.shutdownNow();
+        journal.close();
+    }
+}
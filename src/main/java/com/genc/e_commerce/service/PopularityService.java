@@ -0,0 +1,193 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.util.StripedLongBuffer;
+import com.genc.e_commerce.util.TrendingWindow;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    Real-time product popularity from two event streams: product detail views and add-to-cart. Recording
+    only offers the product id to a striped lock-free buffer; a scheduled drainer moves the ids into
+    sliding-window count-min sketches and their top-K heaps, then publishes an immutable snapshot that the
+    read endpoints return as is. Memory is fixed by the sketch and buffer sizes, not by the catalog.
+
+    - trending now: most viewed products over the short window
+    - best sellers this hour: most added to carts over the long window
+    - popularity order: the union of both, views plus weighted cart adds, used by the browse sort
+
+    Counts are estimates (count-min only overcounts) and events are dropped, and counted, when a buffer
+    fills up faster than it is drained. Everything starts from zero after a restart.
+*/
+@Service
+public class PopularityService {
+
+    private static final Logger logger = LogManager.getLogger(PopularityService.class);
+
+    @Value("${app.popularity.sketch-depth:4}")
+    private int sketchDepth = 4;
+
+    @Value("${app.popularity.sketch-width:2048}")
+    private int sketchWidth = 2048;
+
+    @Value("${app.popularity.top-k:100}")
+    private int topK = 100;
+
+    @Value("${app.popularity.buffer-capacity:4096}")
+    private int bufferCapacity = 4096;
+
+    // each window slides in this many steps
+    @Value("${app.popularity.buckets:12}")
+    private int buckets = 12;
+
+    @Value("${app.popularity.trending-window-minutes:15}")
+    private int trendingWindowMinutes = 15;
+
+    @Value("${app.popularity.best-seller-window-minutes:60}")
+    private int bestSellerWindowMinutes = 60;
+
+    // how many views one add-to-cart is worth in the popularity order
+    @Value("${app.popularity.cart-weight:5}")
+    private int cartWeight = 5;
+
+    private EventStream views;
+    private EventStream cartAdds;
+    private volatile Snapshot snapshot = new Snapshot(List.of(), List.of(), List.of(), null);
+    private volatile long drains;
+    private volatile long lastDrainMs;
+
+    public record Ranked(long productId, long count) {
+    }
+
+    private record Snapshot(List<Ranked> trending, List<Ranked> bestSellers, List<Long> popularity, Date takenAt) {
+    }
+
+    public record Stats(long viewsRecorded, long cartAddsRecorded, long viewsDropped, long cartAddsDropped,
+                        int bufferCapacity, long sketchBytes, long drains, long lastDrainMs, Date snapshotAt) {
+    }
+
+    private static final class EventStream {
+        private final StripedLongBuffer buffer;
+        private final TrendingWindow window;
+        private final long bucketMs;
+        private long bucketStart;
+        private volatile long recorded;
+
+        private EventStream(StripedLongBuffer buffer, TrendingWindow window, long bucketMs, long now) {
+            this.buffer = buffer;
+            this.window = window;
+            this.bucketMs = bucketMs;
+            this.bucketStart = now;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        long now = System.currentTimeMillis();
+        views = new EventStream(new StripedLongBuffer(bufferCapacity),
+                new TrendingWindow(buckets, sketchDepth, sketchWidth, topK),
+                Math.max(1, trendingWindowMinutes * 60_000L / buckets), now);
+        cartAdds = new EventStream(new StripedLongBuffer(bufferCapacity),
+                new TrendingWindow(buckets, sketchDepth, sketchWidth, topK),
+                Math.max(1, bestSellerWindowMinutes * 60_000L / buckets), now);
+    }
+
+    public void recordView(Long productId) {
+        if (productId != null && productId > 0) {
+            views.buffer.offer(productId);
+        }
+    }
+
+    public void recordAddToCart(Long productId) {
+        if (productId != null && productId > 0) {
+            cartAdds.buffer.offer(productId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.popularity.drain-interval-ms:200}")
+    public synchronized void drain() {
+        long start = System.currentTimeMillis();
+        boolean changed = slide(views, start) | slide(cartAdds, start);
+        changed |= fill(views) | fill(cartAdds);
+        drains++;
+        if (changed || snapshot.takenAt() == null) {
+            snapshot = takeSnapshot();
+        }
+        lastDrainMs = System.currentTimeMillis() - start;
+    }
+
+    public List<Ranked> getTrending(int limit) {
+        List<Ranked> trending = snapshot.trending();
+        return trending.subList(0, Math.min(limit, trending.size()));
+    }
+
+    public List<Ranked> getBestSellers(int limit) {
+        List<Ranked> bestSellers = snapshot.bestSellers();
+        return bestSellers.subList(0, Math.min(limit, bestSellers.size()));
+    }
+
+    // the hot products, most popular first; everything else has no known popularity
+    public List<Long> getPopularityRanking() {
+        return snapshot.popularity();
+    }
+
+    public Stats getStats() {
+        long sketchBytes = 2L * (buckets + 1) * sketchDepth * sketchWidth * Integer.BYTES;
+        return new Stats(views.recorded, cartAdds.recorded, views.buffer.dropped(), cartAdds.buffer.dropped(),
+                views.buffer.capacity(), sketchBytes, drains, lastDrainMs, snapshot.takenAt());
+    }
+
+    // retires the buckets that time has moved past; a long pause empties the whole window
+    private static boolean slide(EventStream stream, long now) {
+        long steps = (now - stream.bucketStart) / stream.bucketMs;
+        if (steps <= 0) {
+            return false;
+        }
+        int advances = (int) Math.min(steps, stream.window.bucketCount());
+        for (int i = 0; i < advances; i++) {
+            stream.window.advance();
+        }
+        stream.bucketStart += steps * stream.bucketMs;
+        return true;
+    }
+
+    private static boolean fill(EventStream stream) {
+        int drained = stream.buffer.drain(productId -> stream.window.add(productId, 1));
+        stream.recorded += drained;
+        return drained > 0;
+    }
+
+    private Snapshot takeSnapshot() {
+        List<TrendingWindow.Entry> viewed = views.window.top();
+        List<TrendingWindow.Entry> carted = cartAdds.window.top();
+        Set<Long> candidates = new HashSet<>();
+        List<Ranked> trending = new ArrayList<>(viewed.size());
+        for (TrendingWindow.Entry entry : viewed) {
+            trending.add(new Ranked(entry.key(), entry.count()));
+            candidates.add(entry.key());
+        }
+        List<Ranked> bestSellers = new ArrayList<>(carted.size());
+        for (TrendingWindow.Entry entry : carted) {
+            bestSellers.add(new Ranked(entry.key(), entry.count()));
+            candidates.add(entry.key());
+        }
+        List<Ranked> scored = new ArrayList<>(candidates.size());
+        for (long productId : candidates) {
+            long score = views.window.estimate(productId) + (long) cartWeight * cartAdds.window.estimate(productId);
+            scored.add(new Ranked(productId, score));
+        }
+        scored.sort((a, b) -> a.count() != b.count() ? Long.compare(b.count(), a.count()) : Long.compare(a.productId(), b.productId()));
+        List<Long> popularity = scored.stream().map(Ranked::productId).toList();
+        logger.trace("Popularity snapshot: {} trending, {} best sellers", trending.size(), bestSellers.size());
+        return new Snapshot(List.copyOf(trending), List.copyOf(bestSellers), popularity, new Date());
+    }
+}
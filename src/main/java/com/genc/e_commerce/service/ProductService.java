@@ -1,15 +1,34 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.ProductBatchItem;
 import com.genc.e_commerce.entity.Category;
 import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
 import com.genc.e_commerce.repository.CategoryRepo;
 import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.Money;
+import com.genc.e_commerce.util.SingleFlight;
+import com.genc.e_commerce.util.TtlCache;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ProductService {
@@ -21,6 +40,24 @@ public class ProductService {
     @Autowired
     private CategoryRepo categoryRepo;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PopularityService popularityService;
+
+    @Autowired
+    private CatalogColumnService catalogColumnService;
+
+    // concurrent /product-details calls for the same id share one findById
+    private final SingleFlight<Long, Product> productLookups =
+            new SingleFlight<>("product-details", Duration.ofSeconds(3));
+
+    // product details by id, shared by /product-details and the batch lookup; dropped on update and delete
+    private final TtlCache<Long, Product> productCache = new TtlCache<>(10_000, Duration.ofMinutes(5));
+
+    @Value("${app.product.batch-max-ids:100}")
+    private int batchMaxIds = 100;
 
     public Product addProduct(Product product) {
         logger.info("Attempting to add new product: {}", product.getName());
@@ -32,33 +69,93 @@ public class ProductService {
                         logger.debug("Category '{}' found and linked to product.", existingCategory);
                     });
         }
-        return productRepo.save(product);
+        Product savedProduct = productRepo.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(null, ProductSnapshot.of(savedProduct)));
+        return savedProduct;
     }
 
     public Product updateProduct(Long productId, Product product) {
         logger.info("Attempting to update product with ID: {}", productId);
         Product existingProduct = productRepo.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Product not found with ID: " + productId));
-
+        ProductSnapshot previous = ProductSnapshot.of(existingProduct);
 
         existingProduct.setName(product.getName());
         existingProduct.setDescription(product.getDescription());
-        existingProduct.setPrice(product.getPrice());
+        existingProduct.setPriceMinor(product.getPriceMinor());
         existingProduct.setStockQuantity(product.getStockQuantity());
 
 
-        return productRepo.save(existingProduct);
+        Product savedProduct = productRepo.save(existingProduct);
+        productCache.invalidate(productId);
+        eventPublisher.publishEvent(new ProductChangedEvent(previous, ProductSnapshot.of(savedProduct)));
+        return savedProduct;
     }
 
     public Product getProductDetails(Long productId) {
-         return productRepo.findById(productId).
-                orElseThrow(() -> new RuntimeException("product not found"));
+        Product cached = productCache.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        // the leader caches what it loaded, unless an update or delete invalidated the cache meanwhile
+        return productLookups.execute(productId, () -> {
+            long generation = productCache.generation();
+            Product product = productRepo.findById(productId).
+                    orElseThrow(() -> new RuntimeException("product not found"));
+            productCache.put(productId, product, generation);
+            return product;
+        });
+    }
+
+    /*
+        resolves many ids at once: cache hits are served directly and all misses are loaded with a single
+        findAllById (one IN query). The result follows the request order and marks ids that do not exist.
+    */
+    public List<ProductBatchItem> getProductsByIds(List<Long> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            throw new IllegalArgumentException("at least one product id must be provided");
+        }
+        if (productIds.size() > batchMaxIds) {
+            throw new IllegalArgumentException("at most " + batchMaxIds + " product ids can be fetched at once");
+        }
+
+        Map<Long, Product> resolved = new HashMap<>();
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long productId : productIds) {
+            if (productId == null || resolved.containsKey(productId)) {
+                continue;
+            }
+            Product cached = productCache.get(productId);
+            if (cached != null) {
+                resolved.put(productId, cached);
+            } else {
+                misses.add(productId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long generation = productCache.generation();
+            for (Product product : productRepo.findAllById(misses)) {
+                resolved.put(product.getProductId(), product);
+                productCache.put(product.getProductId(), product, generation);
+            }
+        }
+        logger.debug("Batch lookup of {} ids: {} cache misses sent to the database", productIds.size(), misses.size());
+
+        List<ProductBatchItem> items = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            Product product = productId == null ? null : resolved.get(productId);
+            items.add(new ProductBatchItem(productId, product != null, product));
+        }
+        return items;
     }
 
 
     public String deleteProduct(Long productId) {
         Product product = productRepo.findById(productId).orElseThrow(() -> new RuntimeException("no product found"));
         productRepo.deleteById(productId);
+        productCache.invalidate(productId);
+        eventPublisher.publishEvent(new ProductChangedEvent(ProductSnapshot.of(product), null));
         return "product deleted successfully";
     }
 
@@ -66,4 +163,120 @@ public class ProductService {
         return productRepo.findAll();
     }
 
+    /*
+        server-side filtered listing. The matching ids for the page come from a scan of the off-heap catalog
+        columns, or from an index-only query while those are not loaded or the page is too deep; then the
+        entities for just that page are resolved through the batch lookup (cache first, one IN query for misses).
+    */
+    public Page<Product> browseProducts(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, boolean inStockOnly,
+                                        boolean priceDescending, int page, int size) {
+        long lower = minPrice != null ? Money.ofMajor(minPrice) : 0;
+        long upper = maxPrice != null ? Money.ofMajor(maxPrice) : Long.MAX_VALUE;
+        if (lower > upper) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        int minStock = inStockOnly ? 1 : 0;
+        Sort.Direction direction = priceDescending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(direction, "priceMinor", "productId"));
+
+        Page<Long> ids = catalogColumnService.browseIds(categoryId, lower, upper, minStock, priceDescending, page, size)
+                .orElseGet(() -> categoryId != null
+                        ? productRepo.findIdsByCategoryAndPrice(categoryId, lower, upper, minStock, pageRequest)
+                        : productRepo.findIdsByPrice(lower, upper, minStock, pageRequest));
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), pageRequest, ids.getTotalElements());
+        }
+
+        List<Product> products = new ArrayList<>(ids.getNumberOfElements());
+        for (ProductBatchItem item : getProductsByIds(ids.getContent())) {
+            // an id can vanish between the two queries if the product was deleted meanwhile
+            if (item.isFound()) {
+                products.add(item.getProduct());
+            }
+        }
+        return new PageImpl<>(products, pageRequest, ids.getTotalElements());
+    }
+
+    /*
+        browse sorted by popularity: the hot products that pass the filters come first, most popular first, and
+        the rest follow in price order. Only the hot ids (a few hundred at most) are filtered in one IN query; the
+        rest is the usual index-backed id page with the hot ids left out, two pages at most when the slice
+        straddles a page boundary.
+    */
+    public Page<Product> browseProductsByPopularity(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+                                                    boolean inStockOnly, int page, int size) {
+        long lower = minPrice != null ? Money.ofMajor(minPrice) : 0;
+        long upper = maxPrice != null ? Money.ofMajor(maxPrice) : Long.MAX_VALUE;
+        if (lower > upper) {
+            throw new IllegalArgumentException("minPrice must not be greater than maxPrice");
+        }
+        int minStock = inStockOnly ? 1 : 0;
+
+        List<Long> ranking = popularityService.getPopularityRanking();
+        List<Long> hot = new ArrayList<>();
+        if (!ranking.isEmpty()) {
+            Set<Long> matching = Set.copyOf(productRepo.findIdsAmong(ranking, categoryId, lower, upper, minStock));
+            for (Long productId : ranking) {
+                if (matching.contains(productId)) {
+                    hot.add(productId);
+                }
+            }
+        }
+
+        long offset = (long) page * size;
+        List<Long> pageIds = new ArrayList<>(size);
+        for (long i = offset; i < hot.size() && pageIds.size() < size; i++) {
+            pageIds.add(hot.get((int) i));
+        }
+        long tailOffset = Math.max(0, offset - hot.size());
+        int tailPage = (int) (tailOffset / size);
+        int skip = (int) (tailOffset % size);
+        Page<Long> tail = remainingIds(categoryId, lower, upper, minStock, hot, tailPage, size);
+        long total = hot.size() + tail.getTotalElements();
+        while (pageIds.size() < size) {
+            List<Long> content = tail.getContent();
+            for (int i = skip; i < content.size() && pageIds.size() < size; i++) {
+                pageIds.add(content.get(i));
+            }
+            if (!tail.hasNext() || pageIds.size() == size) {
+                break;
+            }
+            tail = remainingIds(categoryId, lower, upper, minStock, hot, ++tailPage, size);
+            skip = 0;
+        }
+
+        PageRequest pageRequest = PageRequest.of(page, size);
+        if (pageIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageRequest, total);
+        }
+        List<Product> products = new ArrayList<>(pageIds.size());
+        for (ProductBatchItem item : getProductsByIds(pageIds)) {
+            if (item.isFound()) {
+                products.add(item.getProduct());
+            }
+        }
+        return new PageImpl<>(products, pageRequest, total);
+    }
+
+    public Page<Product> getProductPage(int page, int size) {
+        return productRepo.findAll(PageRequest.of(page, size, Sort.by("productId")));
+    }
+
+    private Page<Long> remainingIds(Integer categoryId, long lower, long upper, int minStock, List<Long> excludedIds,
+                                    int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "priceMinor", "productId"));
+        if (excludedIds.isEmpty()) {
+            return categoryId != null
+                    ? productRepo.findIdsByCategoryAndPrice(categoryId, lower, upper, minStock, pageRequest)
+                    : productRepo.findIdsByPrice(lower, upper, minStock, pageRequest);
+        }
+        return categoryId != null
+                ? productRepo.findIdsByCategoryAndPriceExcluding(categoryId, lower, upper, minStock, excludedIds, pageRequest)
+                : productRepo.findIdsByPriceExcluding(lower, upper, minStock, excludedIds, pageRequest);
+    }
+
+    public SingleFlight.Stats getProductLookupStats() {
+        return productLookups.stats();
+    }
+
 }
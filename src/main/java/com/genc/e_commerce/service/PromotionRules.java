@@ -0,0 +1,375 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Promotion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+    Active promotions compiled into an immutable lookup structure. Line rules are kept column-wise in primitive
+    arrays and posted under their product id or category id in two open-addressing tables with primitive keys,
+    so pricing a line is two probes plus a scan of the few rules posted under those keys: nothing is boxed,
+    iterated or allocated per line. Automatic threshold rules are sorted by threshold with running maxima, so
+    the best one for a subtotal is a single binary search.
+
+    Line rules do not stack: a line gets the best single discount among the rules of its product and of its
+    category. The better of the best automatic threshold and the entered coupon then comes off the discounted
+    subtotal. An instance never changes; PromotionService compiles a new one and swaps the reference.
+*/
+public final class PromotionRules {
+
+    public static final long NO_CATEGORY = -1;
+
+    public static final PromotionRules EMPTY = compile(List.of(), 0);
+
+    // line rules, one column per field
+    private final long[] lineRuleIds;
+    private final boolean[] buyGet;
+    private final int[] percentOff;
+    private final int[] buyQuantity;
+    private final int[] freeQuantity;
+    private final Postings byProduct;
+    private final Postings byCategory;
+
+    // automatic thresholds in ascending order, with the best fixed amount and best percentage up to each one
+    private final long[] thresholds;
+    private final long[] bestFixedUpTo;
+    private final int[] bestPercentUpTo;
+
+    private final Map<String, Coupon> coupons;
+    private final long compiledAt;
+    // the next startsAt or endsAt after compiledAt, from which this instance is out of date
+    private final long validUntil;
+
+    public interface LineReader<T> {
+        long productId(T line);
+
+        // NO_CATEGORY when the product has none
+        long categoryId(T line);
+
+        long unitPriceMinor(T line);
+
+        int quantity(T line);
+
+        // what the line adds to the subtotal, normally unit price x quantity
+        long lineTotalMinor(T line);
+    }
+
+    public record Pricing(long subtotalMinor, long lineDiscountMinor, long orderDiscountMinor, long totalMinor,
+                          String appliedCoupon) {
+
+        public long discountMinor() {
+            return lineDiscountMinor + orderDiscountMinor;
+        }
+    }
+
+    private record Coupon(String code, long thresholdMinor, long discountMinor, int percentOff) {
+    }
+
+    private PromotionRules(List<Promotion> lineRules, List<Promotion> automatic, Map<String, Coupon> coupons, long compiledAt,
+                           long validUntil) {
+        int n = lineRules.size();
+        lineRuleIds = new long[n];
+        buyGet = new boolean[n];
+        percentOff = new int[n];
+        buyQuantity = new int[n];
+        freeQuantity = new int[n];
+        Map<Long, List<Integer>> productPostings = new HashMap<>();
+        Map<Long, List<Integer>> categoryPostings = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Promotion rule = lineRules.get(i);
+            lineRuleIds[i] = rule.getPromotionId() != null ? rule.getPromotionId() : 0;
+            buyGet[i] = rule.getType() == Promotion.Type.BUY_X_GET_Y;
+            percentOff[i] = rule.getPercentOff();
+            buyQuantity[i] = rule.getBuyQuantity();
+            freeQuantity[i] = rule.getFreeQuantity();
+            if (rule.getProductId() != null) {
+                productPostings.computeIfAbsent(rule.getProductId(), k -> new ArrayList<>()).add(i);
+            } else {
+                categoryPostings.computeIfAbsent(rule.getCategoryId().longValue(), k -> new ArrayList<>()).add(i);
+            }
+        }
+        byProduct = new Postings(productPostings);
+        byCategory = new Postings(categoryPostings);
+
+        List<Promotion> sorted = new ArrayList<>(automatic);
+        sorted.sort((a, b) -> Long.compare(a.getThresholdMinor(), b.getThresholdMinor()));
+        thresholds = new long[sorted.size()];
+        bestFixedUpTo = new long[sorted.size()];
+        bestPercentUpTo = new int[sorted.size()];
+        long bestFixed = 0;
+        int bestPercent = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            Promotion rule = sorted.get(i);
+            bestFixed = Math.max(bestFixed, rule.getDiscountMinor());
+            bestPercent = Math.max(bestPercent, rule.getPercentOff());
+            thresholds[i] = rule.getThresholdMinor();
+            bestFixedUpTo[i] = bestFixed;
+            bestPercentUpTo[i] = bestPercent;
+        }
+        this.coupons = coupons;
+        this.compiledAt = compiledAt;
+        this.validUntil = validUntil;
+    }
+
+    // keeps the active promotions whose window contains now; rules that fail validation are left out
+    public static PromotionRules compile(List<Promotion> promotions, long now) {
+        List<Promotion> lineRules = new ArrayList<>();
+        List<Promotion> automatic = new ArrayList<>();
+        Map<String, Coupon> coupons = new LinkedHashMap<>();
+        long validUntil = Long.MAX_VALUE;
+        for (Promotion promotion : promotions) {
+            if (!promotion.isActive() || validate(promotion) != null) {
+                continue;
+            }
+            validUntil = Math.min(validUntil, nextBoundary(promotion, now));
+            if (!inWindow(promotion, now)) {
+                continue;
+            }
+            if (promotion.getType() != Promotion.Type.THRESHOLD) {
+                lineRules.add(promotion);
+            } else if (promotion.getCouponCode() == null) {
+                automatic.add(promotion);
+            } else {
+                String code = normalizeCode(promotion.getCouponCode());
+                coupons.put(code, new Coupon(code, promotion.getThresholdMinor(), promotion.getDiscountMinor(),
+                        promotion.getPercentOff()));
+            }
+        }
+        return new PromotionRules(lineRules, automatic, Map.copyOf(coupons), now, validUntil);
+    }
+
+    // null when the rule is complete, otherwise what is wrong with it
+    public static String validate(Promotion promotion) {
+        if (promotion.getType() == null) {
+            return "type is required";
+        }
+        if (promotion.getPercentOff() < 0 || promotion.getPercentOff() > 100) {
+            return "percentOff must be between 0 and 100";
+        }
+        if (promotion.getStartsAt() != null && promotion.getEndsAt() != null
+                && !promotion.getStartsAt().before(promotion.getEndsAt())) {
+            return "startsAt must be before endsAt";
+        }
+        if (promotion.getCouponCode() != null && !promotion.getCouponCode().isBlank()
+                && promotion.getType() != Promotion.Type.THRESHOLD) {
+            return "only a THRESHOLD promotion takes a couponCode";
+        }
+        boolean targeted = promotion.getProductId() != null || promotion.getCategoryId() != null;
+        return switch (promotion.getType()) {
+            case PERCENT_OFF -> !targeted || (promotion.getProductId() != null && promotion.getCategoryId() != null)
+                    ? "a PERCENT_OFF promotion targets either a productId or a categoryId"
+                    : promotion.getPercentOff() < 1 ? "percentOff must be at least 1" : null;
+            case BUY_X_GET_Y -> !targeted || (promotion.getProductId() != null && promotion.getCategoryId() != null)
+                    ? "a BUY_X_GET_Y promotion targets either a productId or a categoryId"
+                    : promotion.getBuyQuantity() < 1 || promotion.getFreeQuantity() < 1
+                    ? "buyQuantity and freeQuantity must be at least 1" : null;
+            case THRESHOLD -> targeted
+                    ? "a THRESHOLD promotion applies to the whole cart"
+                    : promotion.getThresholdMinor() < 0 || promotion.getDiscountMinor() < 0
+                    ? "threshold and discount must not be negative"
+                    : (promotion.getDiscountMinor() > 0) == (promotion.getPercentOff() > 0)
+                    ? "a THRESHOLD promotion takes either a discount or a percentOff" : null;
+        };
+    }
+
+    public static String normalizeCode(String couponCode) {
+        if (couponCode == null || couponCode.isBlank()) {
+            return null;
+        }
+        return couponCode.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /*
+        prices a whole cart in one pass over the lines. lineDiscounts, when given, receives the discount of each
+        line at the line's index and must be at least lines.size() long.
+    */
+    public <T> Pricing price(List<T> lines, LineReader<? super T> reader, String couponCode, long[] lineDiscounts) {
+        long subtotal = 0;
+        long lineDiscount = 0;
+        boolean anyLineRules = lineRuleIds.length > 0;
+        for (int i = 0, n = lines.size(); i < n; i++) {
+            T line = lines.get(i);
+            long lineTotal = reader.lineTotalMinor(line);
+            long best = 0;
+            if (anyLineRules) {
+                long unitPrice = reader.unitPriceMinor(line);
+                int quantity = reader.quantity(line);
+                best = bestOf(byProduct, reader.productId(line), unitPrice, quantity, lineTotal, best);
+                long categoryId = reader.categoryId(line);
+                if (categoryId != NO_CATEGORY) {
+                    best = bestOf(byCategory, categoryId, unitPrice, quantity, lineTotal, best);
+                }
+                best = Math.min(best, lineTotal);
+            }
+            if (lineDiscounts != null) {
+                lineDiscounts[i] = best;
+            }
+            subtotal = Math.addExact(subtotal, lineTotal);
+            lineDiscount += best;
+        }
+
+        long discounted = subtotal - lineDiscount;
+        long orderDiscount = automaticDiscount(discounted);
+        String appliedCoupon = null;
+        String code = normalizeCode(couponCode);
+        Coupon coupon = code != null ? coupons.get(code) : null;
+        if (coupon != null && discounted >= coupon.thresholdMinor()) {
+            long couponDiscount = Math.max(coupon.discountMinor(), percentOf(discounted, coupon.percentOff()));
+            if (couponDiscount > orderDiscount) {
+                orderDiscount = couponDiscount;
+                appliedCoupon = coupon.code();
+            }
+        }
+        orderDiscount = Math.min(orderDiscount, discounted);
+        return new Pricing(subtotal, lineDiscount, orderDiscount, discounted - orderDiscount, appliedCoupon);
+    }
+
+    public boolean hasCoupon(String couponCode) {
+        String code = normalizeCode(couponCode);
+        return code != null && coupons.containsKey(code);
+    }
+
+    public int lineRuleCount() {
+        return lineRuleIds.length;
+    }
+
+    public int thresholdRuleCount() {
+        return thresholds.length;
+    }
+
+    public int couponCount() {
+        return coupons.size();
+    }
+
+    public Date compiledAt() {
+        return new Date(compiledAt);
+    }
+
+    // Long.MAX_VALUE when no promotion window opens or closes after compiledAt
+    public long validUntil() {
+        return validUntil;
+    }
+
+    private long bestOf(Postings postings, long key, long unitPrice, int quantity, long lineTotal, long best) {
+        int slot = postings.find(key);
+        if (slot < 0) {
+            return best;
+        }
+        for (int p = postings.starts[slot], end = postings.ends[slot]; p < end; p++) {
+            int rule = postings.rules[p];
+            long discount;
+            if (buyGet[rule]) {
+                // every complete group of buy + free units gets its free units for nothing
+                long freeUnits = (long) (quantity / (buyQuantity[rule] + freeQuantity[rule])) * freeQuantity[rule];
+                discount = Math.multiplyExact(freeUnits, unitPrice);
+            } else {
+                discount = percentOf(lineTotal, percentOff[rule]);
+            }
+            if (discount > best) {
+                best = discount;
+            }
+        }
+        return best;
+    }
+
+    private long automaticDiscount(long discounted) {
+        // last threshold that the subtotal reaches
+        int index = Arrays.binarySearch(thresholds, discounted);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            // equal thresholds: the running maxima make the last of them the one to read
+            while (index + 1 < thresholds.length && thresholds[index + 1] == discounted) {
+                index++;
+            }
+        }
+        if (index < 0) {
+            return 0;
+        }
+        return Math.max(bestFixedUpTo[index], percentOf(discounted, bestPercentUpTo[index]));
+    }
+
+    // rounds down, the customer never gets more than the stated percentage
+    private static long percentOf(long amount, int percent) {
+        return Math.multiplyExact(amount, percent) / 100;
+    }
+
+    private static long nextBoundary(Promotion promotion, long now) {
+        long next = Long.MAX_VALUE;
+        if (promotion.getStartsAt() != null && promotion.getStartsAt().getTime() > now) {
+            next = promotion.getStartsAt().getTime();
+        }
+        if (promotion.getEndsAt() != null && promotion.getEndsAt().getTime() > now) {
+            next = Math.min(next, promotion.getEndsAt().getTime());
+        }
+        return next;
+    }
+
+    private static boolean inWindow(Promotion promotion, long now) {
+        return (promotion.getStartsAt() == null || promotion.getStartsAt().getTime() <= now)
+                && (promotion.getEndsAt() == null || promotion.getEndsAt().getTime() > now);
+    }
+
+    /*
+        open-addressing table from a long key to a range of the flat rules array. Built once at compile time
+        at most half full, so a lookup is usually a single probe.
+    */
+    private static final class Postings {
+        private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+        private final long[] keys;
+        private final int[] starts;
+        private final int[] ends;
+        private final int[] rules;
+        private final int mask;
+
+        private Postings(Map<Long, List<Integer>> postings) {
+            int capacity = Integer.highestOneBit(Math.max(2, postings.size() * 2) - 1) << 1;
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY_KEY);
+            starts = new int[capacity];
+            ends = new int[capacity];
+            mask = capacity - 1;
+            rules = new int[postings.values().stream().mapToInt(List::size).sum()];
+            int next = 0;
+            for (Map.Entry<Long, List<Integer>> entry : postings.entrySet()) {
+                int slot = slotOf(entry.getKey());
+                while (keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                starts[slot] = next;
+                for (int rule : entry.getValue()) {
+                    rules[next++] = rule;
+                }
+                ends[slot] = next;
+            }
+        }
+
+        private int find(long key) {
+            int slot = slotOf(key);
+            while (true) {
+                long found = keys[slot];
+                if (found == key) {
+                    return slot;
+                }
+                if (found == EMPTY_KEY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private int slotOf(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
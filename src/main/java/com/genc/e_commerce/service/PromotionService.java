@@ -0,0 +1,180 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.entity.Cart;
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Promotion;
+import com.genc.e_commerce.exception.DuplicateResourceException;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.repository.PromotionRepo;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    Owns the compiled promotion rules. Pricing reads the current PromotionRules through one volatile reference
+    and never waits; admin changes and the scheduled refresh (which also picks up changes made by other
+    instances) compile a complete new instance and swap it in. Reloads are serialized, so a compile of an older
+    read can never replace a newer one. Pricing past the first window boundary of the current rules recompiles
+    the promotions already loaded, so a promotion starts and ends on time rather than at the next refresh.
+*/
+@Service
+public class PromotionService {
+
+    private static final Logger logger = LogManager.getLogger(PromotionService.class);
+
+    public static final PromotionRules.LineReader<Cart> CART_ITEMS = new PromotionRules.LineReader<>() {
+        public long productId(Cart line) {
+            return line.getProduct().getProductId();
+        }
+
+        public long categoryId(Cart line) {
+            Category category = line.getProduct().getCategory();
+            return category != null ? category.getCategoryId() : PromotionRules.NO_CATEGORY;
+        }
+
+        public long unitPriceMinor(Cart line) {
+            return line.getProduct().getPriceMinor();
+        }
+
+        public int quantity(Cart line) {
+            return line.getQuantity();
+        }
+
+        public long lineTotalMinor(Cart line) {
+            return line.getItemPriceTotalMinor();
+        }
+    };
+
+    public static final PromotionRules.LineReader<CartResponse> CART_RESPONSES = new PromotionRules.LineReader<>() {
+        public long productId(CartResponse line) {
+            return line.getProductId();
+        }
+
+        public long categoryId(CartResponse line) {
+            return line.getCategoryId() != null ? line.getCategoryId() : PromotionRules.NO_CATEGORY;
+        }
+
+        public long unitPriceMinor(CartResponse line) {
+            return line.getUnitPriceMinor();
+        }
+
+        public int quantity(CartResponse line) {
+            return line.getQuantity();
+        }
+
+        public long lineTotalMinor(CartResponse line) {
+            return line.getItemPriceTotalMinor();
+        }
+    };
+
+    @Autowired
+    private PromotionRepo promotionRepo;
+
+    private volatile PromotionRules rules = PromotionRules.EMPTY;
+    // what rules was compiled from, guarded by this
+    private List<Promotion> loaded = List.of();
+
+    private final LongAdder pricings = new LongAdder();
+    private final LongAdder compilations = new LongAdder();
+    private volatile long lastCompileMs;
+
+    public record Stats(int lineRules, int thresholdRules, int coupons, Date compiledAt, long lastCompileMs,
+                        long compilations, long pricings) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.promotion.refresh-interval-ms:60000}", initialDelayString = "${app.promotion.refresh-interval-ms:60000}")
+    public synchronized void reload() {
+        loaded = promotionRepo.findByActiveTrue();
+        compile();
+    }
+
+    public <T> PromotionRules.Pricing price(List<T> lines, PromotionRules.LineReader<? super T> reader, String couponCode) {
+        pricings.increment();
+        PromotionRules current = rules;
+        if (System.currentTimeMillis() >= current.validUntil()) {
+            current = recompile();
+        }
+        return current.price(lines, reader, couponCode, null);
+    }
+
+    public List<Promotion> getPromotions() {
+        return promotionRepo.findAll();
+    }
+
+    public Promotion createPromotion(Promotion promotion) {
+        promotion.setPromotionId(null);
+        return save(promotion);
+    }
+
+    public Promotion updatePromotion(Long promotionId, Promotion promotion) {
+        if (!promotionRepo.existsById(promotionId)) {
+            throw new ResourceNotFoundException("Promotion not found with ID " + promotionId);
+        }
+        promotion.setPromotionId(promotionId);
+        return save(promotion);
+    }
+
+    public Promotion deactivatePromotion(Long promotionId) {
+        Promotion promotion = promotionRepo.findById(promotionId)
+                .orElseThrow(() -> new ResourceNotFoundException("Promotion not found with ID " + promotionId));
+        promotion.setActive(false);
+        Promotion saved = promotionRepo.save(promotion);
+        reload();
+        logger.info("Promotion {} deactivated", promotionId);
+        return saved;
+    }
+
+    public Stats getStats() {
+        PromotionRules current = rules;
+        return new Stats(current.lineRuleCount(), current.thresholdRuleCount(), current.couponCount(),
+                current.compiledAt(), lastCompileMs, compilations.sum(), pricings.sum());
+    }
+
+    // a promotion window opened or closed since the last compile; the first caller past it recompiles
+    private synchronized PromotionRules recompile() {
+        if (System.currentTimeMillis() >= rules.validUntil()) {
+            compile();
+        }
+        return rules;
+    }
+
+    // caller holds this
+    private void compile() {
+        long start = System.nanoTime();
+        PromotionRules compiled = PromotionRules.compile(loaded, System.currentTimeMillis());
+        lastCompileMs = (System.nanoTime() - start) / 1_000_000;
+        rules = compiled;
+        compilations.increment();
+        logger.debug("Compiled {} line rules, {} thresholds and {} coupons from {} active promotions in {} ms",
+                compiled.lineRuleCount(), compiled.thresholdRuleCount(), compiled.couponCount(), loaded.size(), lastCompileMs);
+    }
+
+    private Promotion save(Promotion promotion) {
+        String problem = PromotionRules.validate(promotion);
+        if (problem != null) {
+            throw new IllegalArgumentException(problem);
+        }
+        promotion.setCouponCode(PromotionRules.normalizeCode(promotion.getCouponCode()));
+        if (promotion.getCouponCode() != null) {
+            promotionRepo.findByCouponCodeIgnoreCase(promotion.getCouponCode())
+                    .filter(existing -> !existing.getPromotionId().equals(promotion.getPromotionId()))
+                    .ifPresent(existing -> {
+                        throw new DuplicateResourceException("Coupon code " + promotion.getCouponCode() + " is already used");
+                    });
+        }
+        Promotion saved = promotionRepo.save(promotion);
+        reload();
+        logger.info("Promotion {} ({}) saved, active: {}", saved.getPromotionId(), saved.getType(), saved.isActive());
+        return saved;
+    }
+}
@@ -0,0 +1,109 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.event.OutboxMessage;
+import com.genc.e_commerce.event.OutboxSubscriber;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.util.CooccurrenceMatrix;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+    "Frequently bought together" from paid baskets. The cart lines deleted when a payment completes travel
+    in the PAYMENT_COMPLETED outbox event; each basket is added to an in-memory co-occurrence matrix at a cost
+    of basket size squared, and /also-bought reads the strongest neighbours of a product from it. Nothing is
+    recomputed over order history: the matrix starts empty after a restart and fills up again with new
+    orders, older baskets fading with the configured half-life.
+
+    A redelivered outbox event counts its basket twice, which only nudges the scores.
+*/
+@Service
+public class RecommendationService implements OutboxSubscriber {
+
+    private static final Logger logger = LogManager.getLogger(RecommendationService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.recommendation.max-neighbors:50}")
+    private int maxNeighbors = 50;
+
+    @Value("${app.recommendation.half-life-hours:168}")
+    private long halfLifeHours = 168;
+
+    // a basket beyond this many products is cut, its pairs would cost more than they say about affinity
+    @Value("${app.recommendation.max-basket-products:50}")
+    private int maxBasketProducts = 50;
+
+    private CooccurrenceMatrix matrix;
+    private final LongAdder basketsApplied = new LongAdder();
+    private final LongAdder basketsTruncated = new LongAdder();
+
+    public record Stats(int products, long pairs, long basketsApplied, long basketsTruncated, long prunes,
+                        long rescales) {
+    }
+
+    @PostConstruct
+    public void init() {
+        matrix = new CooccurrenceMatrix(maxNeighbors, halfLifeHours * 3_600_000L, System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean supports(String eventType) {
+        return PaymentEventPayload.PAYMENT_COMPLETED.equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxMessage message) throws Exception {
+        recordPurchase(objectMapper.readValue(message.payload(), PaymentEventPayload.class));
+    }
+
+    public void recordPurchase(PaymentEventPayload payment) {
+        List<PaymentEventPayload.Item> items = payment.items();
+        if (items == null || items.size() < 2) {
+            return;
+        }
+        int limit = Math.min(items.size(), maxBasketProducts);
+        if (items.size() > limit) {
+            basketsTruncated.increment();
+        }
+        long[] basket = new long[limit];
+        int n = 0;
+        for (int i = 0; i < limit; i++) {
+            Long productId = items.get(i).productId();
+            if (productId != null) {
+                basket[n++] = productId;
+            }
+        }
+        matrix.record(n == limit ? basket : Arrays.copyOf(basket, n), System.currentTimeMillis());
+        basketsApplied.increment();
+        logger.debug("Recorded basket of {} products from order {}", n, payment.orderId());
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isDelete()) {
+            matrix.remove(event.productId());
+        }
+    }
+
+    public List<CooccurrenceMatrix.Neighbor> alsoBought(long productId, int limit) {
+        return matrix.top(productId, limit, System.currentTimeMillis());
+    }
+
+    public Stats getStats() {
+        CooccurrenceMatrix.Stats stats = matrix.getStats();
+        return new Stats(stats.products(), stats.pairs(), basketsApplied.sum(), basketsTruncated.sum(), stats.prunes(),
+                stats.rescales());
+    }
+}
@@ -0,0 +1,366 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.SalesRollup;
+import com.genc.e_commerce.event.OutboxMessage;
+import com.genc.e_commerce.event.OutboxSubscriber;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.repository.SalesRollupJdbcRepo;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Maintains the sales_rollup table incrementally. Order and payment changes only add to in-memory LongAdder
+    cells keyed by (dimension, day, value); a scheduled flush drains every cell with sumThenReset and writes
+    the non-zero deltas in one upsert batch. Reports then read a handful of pre-aggregated rows.
+
+    Payments arrive through the outbox (PAYMENT_COMPLETED / PAYMENT_FAILED), order creation and status moves
+    are recorded by OrderService once their transaction commits. Deltas not flushed yet are lost on a crash,
+    and an outbox event redelivered after one is counted twice; rebuild() recomputes the dimensions that can
+    be derived from order_t and payment when that matters.
+
+    While a rebuild runs, deltas to those dimensions are held back. Once it is done they are replayed, except
+    the ones its snapshot already covered: payment events that were still undelivered in the snapshot, and
+    order changes committed before it was taken. Otherwise they would be counted twice.
+*/
+@Service
+public class SalesAnalyticsService implements OutboxSubscriber {
+
+    private static final Logger logger = LogManager.getLogger(SalesAnalyticsService.class);
+
+    static final String UNCATEGORIZED = "none";
+
+    // flushes a cell must stay empty before an old day's cell is dropped from memory
+    private static final int IDLE_FLUSHES_BEFORE_EVICTION = 3;
+
+    @Autowired
+    private SalesRollupJdbcRepo salesRollupJdbcRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.analytics.zone:}")
+    private String zone = "";
+
+    private final ConcurrentHashMap<Key, Cell> cells = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // read by every delta to a rebuilt dimension, written when a rebuild starts and ends
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    // deltas to the rebuilt dimensions held while a rebuild runs, null otherwise; guarded by rebuildLock
+    private Queue<HeldDelta> heldDeltas;
+    private volatile SalesRollupJdbcRepo.Snapshot lastRebuild;
+    private final LongAdder eventsApplied = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsFlushed = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private volatile long lastFlushMs;
+    private volatile Date lastFlushAt;
+
+    public record Stats(long pendingCells, long eventsApplied, long flushes, long rowsFlushed, long failedFlushes,
+                        long lastFlushMs, Date lastFlushAt) {
+    }
+
+    record Key(SalesRollup.Dimension dimension, LocalDate date, String value) {
+    }
+
+    private static final class Cell {
+        private final LongAdder orderCount = new LongAdder();
+        private final LongAdder units = new LongAdder();
+        private final LongAdder revenueMinor = new LongAdder();
+        private int idleFlushes;
+        // set once the cell is out of the map; whatever still lands in it is moved to a fresh cell
+        private volatile boolean evicted;
+    }
+
+    // outboxId is 0 for deltas recorded after a commit, which carry the nanoTime they were recorded at instead
+    private record HeldDelta(long outboxId, long recordedAtNanos, SalesRollup.Dimension dimension, LocalDate day,
+                             String value, long orderCount, long revenueMinor) {
+    }
+
+    @Override
+    public boolean supports(String eventType) {
+        return PaymentEventPayload.PAYMENT_COMPLETED.equals(eventType) || PaymentEventPayload.PAYMENT_FAILED.equals(eventType);
+    }
+
+    @Override
+    public void handle(OutboxMessage message) throws Exception {
+        recordPayment(objectMapper.readValue(message.payload(), PaymentEventPayload.class), message.id());
+    }
+
+    public void recordPayment(PaymentEventPayload payment) {
+        recordPayment(payment, 0);
+    }
+
+    private void recordPayment(PaymentEventPayload payment, long outboxId) {
+        long recordedAt = System.nanoTime();
+        LocalDate day = dayOf(payment.paymentDate());
+        long amountMinor = payment.amountMinor();
+        addDerivable(outboxId, recordedAt, SalesRollup.Dimension.PAYMENT_STATUS, day, payment.paymentStatus(), 1, amountMinor);
+
+        if ("COMPLETED".equals(payment.paymentStatus())) {
+            addDerivable(outboxId, recordedAt, SalesRollup.Dimension.PAYMENT_METHOD, day, payment.paymentMethod(), 1, amountMinor);
+            // one order counts once per category however many of its lines fall into it
+            Map<String, long[]> byCategory = new HashMap<>();
+            for (PaymentEventPayload.Item item : payment.items()) {
+                String category = item.categoryId() != null ? item.categoryId().toString() : UNCATEGORIZED;
+                long[] totals = byCategory.computeIfAbsent(category, c -> new long[2]);
+                totals[0] += item.quantity();
+                totals[1] += item.itemPriceTotalMinor();
+            }
+            byCategory.forEach((category, totals) ->
+                    add(SalesRollup.Dimension.CATEGORY, day, category, 1, totals[0], totals[1]));
+        }
+
+        if (payment.previousOrderStatus() != null && !payment.previousOrderStatus().equals(payment.orderStatus())) {
+            moveStatus(outboxId, recordedAt, payment.previousOrderStatus(), payment.orderStatus(), day, 1);
+        }
+        eventsApplied.increment();
+    }
+
+    public void recordOrderCreated(Order order) {
+        afterCommit(() -> {
+            long recordedAt = System.nanoTime();
+            LocalDate day = dayOf(order.getOrderDate());
+            String status = order.getStatus().name();
+            add(SalesRollup.Dimension.ORDER_STATUS, day, status, 1, 0, order.getTotalAmountMinor());
+            addDerivable(0, recordedAt, SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, status, 1, 0);
+            eventsApplied.increment();
+        });
+    }
+
+    public void recordStatusChange(Order.Status from, Order.Status to, long orders) {
+        if (orders <= 0 || from == to) {
+            return;
+        }
+        afterCommit(() -> {
+            moveStatus(0, System.nanoTime(), from.name(), to.name(), dayOf(new Date()), orders);
+            eventsApplied.increment();
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.flush-interval-ms:10000}")
+    public void flush() {
+        flushCells();
+    }
+
+    // false when the write failed and the deltas are back in the cells
+    private boolean flushCells() {
+        flushLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            LocalDate evictBefore = dayOf(new Date()).minusDays(1);
+            List<SalesRollupJdbcRepo.Delta> deltas = new ArrayList<>();
+            for (Map.Entry<Key, Cell> entry : cells.entrySet()) {
+                Key key = entry.getKey();
+                Cell cell = entry.getValue();
+                long orderCount = cell.orderCount.sumThenReset();
+                long units = cell.units.sumThenReset();
+                long revenueMinor = cell.revenueMinor.sumThenReset();
+                if (orderCount != 0 || units != 0 || revenueMinor != 0) {
+                    cell.idleFlushes = 0;
+                    deltas.add(new SalesRollupJdbcRepo.Delta(key.dimension(), key.date(), key.value(), orderCount, units, revenueMinor));
+                } else if (key.date().isBefore(evictBefore) && !key.date().equals(SalesRollup.ALL_TIME)
+                        && ++cell.idleFlushes >= IDLE_FLUSHES_BEFORE_EVICTION) {
+                    // late events for old days are rare; a cell idle for several flushes is not in anyone's hands
+                    if (cells.remove(key, cell)) {
+                        cell.evicted = true;
+                        moveToFreshCell(key, cell);
+                    }
+                }
+            }
+            if (deltas.isEmpty()) {
+                return true;
+            }
+            try {
+                salesRollupJdbcRepo.applyDeltas(deltas);
+            } catch (RuntimeException e) {
+                // put the deltas back so the next flush retries them
+                deltas.forEach(delta -> add(delta.dimension(), delta.date(), delta.value(),
+                        delta.orderCount(), delta.units(), delta.revenueMinor()));
+                failedFlushes.increment();
+                logger.error("Sales rollup flush of {} rows failed, retrying on the next run", deltas.size(), e);
+                return false;
+            }
+            flushes.increment();
+            rowsFlushed.add(deltas.size());
+            lastFlushMs = System.currentTimeMillis() - start;
+            lastFlushAt = new Date(start);
+            logger.debug("Flushed {} sales rollup rows in {} ms", deltas.size(), lastFlushMs);
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (salesRollupJdbcRepo.isEmpty()) {
+            rebuild();
+        }
+    }
+
+    /*
+        flushes first so nothing counted before the rebuild is applied on top of the recomputed rows. From then
+        on deltas to the rebuilt dimensions are held, and after the rebuild only those its snapshot did not
+        cover are applied. If the rebuild fails they are all applied as usual.
+    */
+    public void rebuild() {
+        flushLock.lock();
+        try {
+            rebuildLock.writeLock().lock();
+            try {
+                heldDeltas = new ConcurrentLinkedQueue<>();
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+            SalesRollupJdbcRepo.Snapshot snapshot = null;
+            try {
+                if (!flushCells()) {
+                    throw new IllegalStateException("the pending rollup deltas could not be flushed before the rebuild");
+                }
+                long start = System.currentTimeMillis();
+                snapshot = salesRollupJdbcRepo.rebuildDerivable();
+                logger.info("Rebuilt payment and order status rollups in {} ms", System.currentTimeMillis() - start);
+            } finally {
+                replayHeldDeltas(snapshot);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public List<SalesRollupJdbcRepo.RollupRow> getRollups(SalesRollup.Dimension dimension, LocalDate from, LocalDate to) {
+        return salesRollupJdbcRepo.findRange(dimension, from, to);
+    }
+
+    public Stats getStats() {
+        return new Stats(cells.size(), eventsApplied.sum(), flushes.sum(), rowsFlushed.sum(), failedFlushes.sum(),
+                lastFlushMs, lastFlushAt);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    LocalDate dayOf(Date date) {
+        ZoneId zoneId = zone == null || zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        return (date != null ? date : new Date()).toInstant().atZone(zoneId).toLocalDate();
+    }
+
+    private void moveStatus(long outboxId, long recordedAt, String from, String to, LocalDate day, long orders) {
+        add(SalesRollup.Dimension.ORDER_STATUS, day, to, orders, 0, 0);
+        addDerivable(outboxId, recordedAt, SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, from, -orders, 0);
+        addDerivable(outboxId, recordedAt, SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, to, orders, 0);
+    }
+
+    // a delta to a dimension rebuild() recomputes: held while a rebuild runs, dropped if the last one covered it
+    private void addDerivable(long outboxId, long recordedAt, SalesRollup.Dimension dimension, LocalDate day,
+                              String value, long orderCount, long revenueMinor) {
+        rebuildLock.readLock().lock();
+        try {
+            if (heldDeltas != null) {
+                heldDeltas.add(new HeldDelta(outboxId, recordedAt, dimension, day, value, orderCount, revenueMinor));
+            } else if (!coveredBy(lastRebuild, outboxId, recordedAt)) {
+                add(dimension, day, value, orderCount, 0, revenueMinor);
+            }
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    private void replayHeldDeltas(SalesRollupJdbcRepo.Snapshot snapshot) {
+        rebuildLock.writeLock().lock();
+        try {
+            if (snapshot != null) {
+                lastRebuild = snapshot;
+            }
+            int skipped = 0;
+            for (HeldDelta held : heldDeltas) {
+                if (coveredBy(lastRebuild, held.outboxId(), held.recordedAtNanos())) {
+                    skipped++;
+                } else {
+                    add(held.dimension(), held.day(), held.value(), held.orderCount(), 0, held.revenueMinor());
+                }
+            }
+            logger.debug("Replayed {} rollup deltas held during the rebuild, {} were already in it",
+                    heldDeltas.size() - skipped, skipped);
+            heldDeltas = null;
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    /*
+        a payment event is in the rebuilt rows if it was still undelivered in the snapshot. An order change is
+        recorded right after its commit, so one recorded before the snapshot was taken committed before it.
+    */
+    private static boolean coveredBy(SalesRollupJdbcRepo.Snapshot snapshot, long outboxId, long recordedAt) {
+        if (snapshot == null) {
+            return false;
+        }
+        return outboxId > 0
+                ? snapshot.undeliveredPaymentEvents().contains(outboxId)
+                : recordedAt - snapshot.takenAtNanos() < 0;
+    }
+
+    private void add(SalesRollup.Dimension dimension, LocalDate day, String value, long orderCount, long units, long revenueMinor) {
+        Key key = new Key(dimension, day, value != null ? value : "unknown");
+        Cell cell = cells.computeIfAbsent(key, k -> new Cell());
+        cell.orderCount.add(orderCount);
+        cell.units.add(units);
+        cell.revenueMinor.add(revenueMinor);
+        if (cell.evicted) {
+            // the flush dropped the cell while this thread held it
+            moveToFreshCell(key, cell);
+        }
+    }
+
+    // moves what an evicted cell still holds into the map; safe to race with add, each unit moves once
+    private void moveToFreshCell(Key key, Cell cell) {
+        long orderCount = cell.orderCount.sumThenReset();
+        long units = cell.units.sumThenReset();
+        long revenueMinor = cell.revenueMinor.sumThenReset();
+        if (orderCount != 0 || units != 0 || revenueMinor != 0) {
+            add(key.dimension(), key.date(), key.value(), orderCount, units, revenueMinor);
+        }
+    }
+
+    // counters must not move for a write that rolls back
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.MinHashIndex;
+import jakarta.annotation.PostConstruct;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+    "Similar products" by text: product name and description are indexed in a MinHashIndex, loaded once at
+    startup in id-ordered chunks (so the @Lob descriptions are never all in memory at once) and then kept
+    current from ProductChangedEvent. A lookup reads the product's LSH buckets and never reaches the database.
+
+    A rebuild loads into a fresh index while lookups keep using the old one. Events that arrive meanwhile are
+    applied to the old index and held; once the load is done they are replayed onto the fresh index, which may
+    have read an older version of the same rows, and the fresh index is swapped in under the same lock.
+
+    With bands x rows = 16 x 4, two products with text similarity 0.5 share a bucket with probability about
+    0.65, at 0.7 about 0.98; lower similarities are mostly never looked at.
+*/
+@Service
+public class SimilarProductService {
+
+    private static final Logger logger = LogManager.getLogger(SimilarProductService.class);
+
+    private static final int LOAD_CHUNK = 500;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Value("${app.similar.bands:16}")
+    private int bands = 16;
+
+    @Value("${app.similar.rows:4}")
+    private int rows = 4;
+
+    @Value("${app.similar.shingle-length:5}")
+    private int shingleLength = 5;
+
+    // a bucket shared by very many products (boilerplate descriptions) is only read this far
+    @Value("${app.similar.max-bucket-scan:50}")
+    private int maxBucketScan = 50;
+
+    @Value("${app.similar.min-similarity:0.2}")
+    private double minSimilarity = 0.2;
+
+    private volatile MinHashIndex index;
+    private volatile long lastRebuildMs;
+    // guards the swap and heldEvents; heldEvents is non-null while a rebuild is loading
+    private final Object rebuildLock = new Object();
+    private List<ProductChangedEvent> heldEvents;
+
+    public record Stats(int products, int buckets, long lastRebuildMs) {
+    }
+
+    @PostConstruct
+    public void init() {
+        index = newIndex();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        MinHashIndex fresh = newIndex();
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                logger.info("Similar-products rebuild already running, skipping");
+                return;
+            }
+            heldEvents = new ArrayList<>();
+        }
+        try {
+            long afterId = 0;
+            while (true) {
+                List<ProductRepo.ProductTextRow> chunk = productRepo.findTextRowsAfter(afterId, PageRequest.of(0, LOAD_CHUNK));
+                for (ProductRepo.ProductTextRow row : chunk) {
+                    fresh.upsert(row.getProductId(), textOf(row.getName(), row.getDescription()));
+                    afterId = row.getProductId();
+                }
+                if (chunk.size() < LOAD_CHUNK) {
+                    break;
+                }
+            }
+            synchronized (rebuildLock) {
+                heldEvents.forEach(event -> apply(fresh, event));
+                index = fresh;
+            }
+        } finally {
+            synchronized (rebuildLock) {
+                heldEvents = null;
+            }
+        }
+        lastRebuildMs = System.currentTimeMillis() - start;
+        logger.info("Similar-products index built with {} products in {} ms", fresh.getStats().entries(), lastRebuildMs);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        synchronized (rebuildLock) {
+            if (heldEvents != null) {
+                heldEvents.add(event);
+            }
+            apply(index, event);
+        }
+    }
+
+    public List<MinHashIndex.Match> similarTo(long productId, int limit) {
+        return index.similar(productId, limit, minSimilarity);
+    }
+
+    public Stats getStats() {
+        MinHashIndex.Stats stats = index.getStats();
+        return new Stats(stats.entries(), stats.buckets(), lastRebuildMs);
+    }
+
+    private MinHashIndex newIndex() {
+        return new MinHashIndex(bands, rows, shingleLength, maxBucketScan);
+    }
+
+    private static void apply(MinHashIndex target, ProductChangedEvent event) {
+        ProductSnapshot previous = event.previous();
+        ProductSnapshot current = event.current();
+        if (event.isDelete()) {
+            target.remove(event.productId());
+        } else if (previous == null || !Objects.equals(previous.name(), current.name())
+                || !Objects.equals(previous.description(), current.description())) {
+            // price and stock updates leave the text, and so the signature, unchanged
+            target.upsert(current.productId(), textOf(current.name(), current.description()));
+        }
+    }
+
+    private static String textOf(String name, String description) {
+        if (name == null) {
+            return description;
+        }
+        return description == null ? name : name + " " + description;
+    }
+}
@@ -0,0 +1,109 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.CartSummary;
+import com.genc.e_commerce.dto.StorefrontResponse;
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Product;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+    Builds the storefront landing data in one call. Categories, the first product page and the cart summary
+    are fetched at the same time on virtual threads, so the response takes as long as the slowest branch
+    instead of the sum of all three. A branch that fails or runs past its timeout is cancelled and replaced
+    by an empty fallback; the response lists it under unavailableSections.
+*/
+@Service
+public class StorefrontService {
+
+    private static final Logger logger = LogManager.getLogger(StorefrontService.class);
+
+    private final CategoryService categoryService;
+    private final ProductService productService;
+    private final CartService cartService;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${app.storefront.categories-timeout-ms:500}")
+    private long categoriesTimeoutMs;
+    @Value("${app.storefront.products-timeout-ms:800}")
+    private long productsTimeoutMs;
+    @Value("${app.storefront.cart-timeout-ms:500}")
+    private long cartTimeoutMs;
+
+    @Autowired
+    public StorefrontService(CategoryService categoryService, ProductService productService, CartService cartService) {
+        this.categoryService = categoryService;
+        this.productService = productService;
+        this.cartService = cartService;
+    }
+
+    public StorefrontResponse getStorefront(Long userId, int pageSize) {
+        long start = System.nanoTime();
+        StorefrontResponse response = new StorefrontResponse();
+
+        // fork every branch before joining any of them
+        Future<List<Category>> categories = executor.submit(categoryService::getAllCategory);
+        Future<Page<Product>> products = executor.submit(() -> productService.getProductPage(0, pageSize));
+        Future<List<CartResponse>> cart = userId == null ? null
+                : executor.submit((Callable<List<CartResponse>>) () -> cartService.getCartDetails(userId));
+
+        List<Category> categoryList = join("categories", categories, start, categoriesTimeoutMs, response);
+        if (categoryList != null) {
+            response.setCategories(categoryList);
+        }
+
+        Page<Product> productPage = join("products", products, start, productsTimeoutMs, response);
+        if (productPage != null) {
+            response.setProducts(productPage.getContent());
+            response.setTotalProducts(productPage.getTotalElements());
+        }
+
+        if (cart != null) {
+            List<CartResponse> cartItems = join("cart", cart, start, cartTimeoutMs, response);
+            response.setCart(new CartSummary(userId, cartItems != null ? cartItems : List.of()));
+        }
+
+        response.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.debug("Storefront assembled in {} ms, unavailable sections: {}",
+                response.getElapsedMillis(), response.getUnavailableSections());
+        return response;
+    }
+
+    // every branch timeout is measured from the start of the request, not from when it is joined
+    private <T> T join(String section, Future<T> future, long start, long timeoutMs, StorefrontResponse response) {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs) - (System.nanoTime() - start);
+        try {
+            return future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Storefront section '{}' timed out after {} ms, using fallback", section, timeoutMs);
+        } catch (ExecutionException e) {
+            logger.warn("Storefront section '{}' failed, using fallback: {}", section, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        future.cancel(true);
+        response.getUnavailableSections().add(section);
+        return null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,527 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Cart;
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.entity.User;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.repository.CartJdbcRepo;
+import com.genc.e_commerce.repository.CartRepo;
+import com.genc.e_commerce.util.LineJournal;
+import com.genc.e_commerce.util.Money;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+    Optional write-behind storage for cart items (app.cart.write-behind.enabled). Carts are held in memory in
+    shards keyed by user id; every change is applied in memory, journaled to a local append-only file and
+    marked dirty. A scheduled flush writes all dirty lines to cart_item with batched statements in a
+    transaction of its own (never the caller's, whose rollback would otherwise undo the rows after their
+    journal is gone), and then drops the journal segments it covered. Whatever is left in the journal after
+    a crash is replayed into cart_item at startup.
+
+    New lines get their cart_id from a counter seeded with MAX(cart_id), so ids are known before the row
+    exists. This assumes a single application instance writes cart_item while the mode is on.
+*/
+@Service
+public class WriteBehindCartStore {
+
+    private static final Logger logger = LogManager.getLogger(WriteBehindCartStore.class);
+
+    @Autowired
+    private CartRepo cartRepo;
+    @Autowired
+    private CartJdbcRepo cartJdbcRepo;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.cart.write-behind.enabled:false}")
+    private boolean enabled;
+    @Value("${app.cart.write-behind.shards:16}")
+    private int shardCount;
+    @Value("${app.cart.write-behind.journal-dir:data/cart-journal}")
+    private String journalDir;
+    @Value("${app.cart.write-behind.fsync:false}")
+    private boolean fsync;
+    @Value("${app.cart.write-behind.idle-eviction-ms:600000}")
+    private long idleEvictionMs;
+
+    private Shard[] shards;
+    private LineJournal journal;
+    // REQUIRES_NEW: a flush commits or fails on its own even when called inside another transaction
+    private TransactionTemplate flushTransaction;
+    private final AtomicLong nextCartId = new AtomicLong();
+    // cart id -> owning user, so cart-id based calls can find the right shard
+    private final ConcurrentHashMap<Long, Long> cartOwners = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // categoryId is kept for category promotions and is not journaled
+    public record CartLine(long cartId, long userId, long productId, String productName, Integer categoryId,
+                           long unitPriceMinor, int quantity, long itemPriceTotalMinor) {
+
+        CartLine withQuantity(int newQuantity) {
+            return new CartLine(cartId, userId, productId, productName, categoryId, unitPriceMinor, newQuantity,
+                    Money.times(unitPriceMinor, newQuantity));
+        }
+
+        public Cart toCart() {
+            User user = new User();
+            user.setUserId(userId);
+            Product product = new Product();
+            product.setProductId(productId);
+            product.setName(productName);
+            product.setPriceMinor(unitPriceMinor);
+            if (categoryId != null) {
+                Category category = new Category();
+                category.setCategoryId(categoryId);
+                product.setCategory(category);
+            }
+            Cart cart = new Cart();
+            cart.setCartId(cartId);
+            cart.setUser(user);
+            cart.setProduct(product);
+            cart.setQuantity(quantity);
+            cart.setItemPriceTotalMinor(itemPriceTotalMinor);
+            return cart;
+        }
+
+        CartJdbcRepo.CartRow toRow() {
+            return new CartJdbcRepo.CartRow(cartId, userId, productId, quantity, itemPriceTotalMinor);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flushTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        journal = new LineJournal(Path.of(journalDir), "cart", fsync);
+        recover();
+        nextCartId.set(cartJdbcRepo.maxCartId() + 1);
+        logger.info("Write-behind cart store started with {} shards, next cart id {}", shardCount, nextCartId.get());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public CartLine add(long userId, Product product, int quantity) {
+        Shard shard = shardFor(userId);
+        UserCart cart = lockCart(shard, userId);
+        try {
+            CartLine existing = cart.lines.get(product.getProductId());
+            CartLine line = existing != null
+                    ? existing.withQuantity(existing.quantity() + quantity)
+                    : new CartLine(nextCartId.getAndIncrement(), userId, product.getProductId(), product.getName(),
+                    categoryOf(product), product.getPriceMinor(), quantity, Money.times(product.getPriceMinor(), quantity));
+            upsert(shard, cart, line);
+            return line;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public CartLine updateQuantity(long cartId, int quantity) {
+        Long userId = ownerOf(cartId);
+        if (userId == null) {
+            throw new ResourceNotFoundException("No cart item found with the cart ID " + cartId);
+        }
+        Shard shard = shardFor(userId);
+        UserCart cart = lockCart(shard, userId);
+        try {
+            CartLine existing = cart.findByCartId(cartId);
+            if (existing == null) {
+                throw new ResourceNotFoundException("No cart item found with the cart ID " + cartId);
+            }
+            CartLine line = existing.withQuantity(quantity);
+            upsert(shard, cart, line);
+            return line;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public Optional<CartLine> remove(long cartId) {
+        Long userId = ownerOf(cartId);
+        if (userId == null) {
+            return Optional.empty();
+        }
+        Shard shard = shardFor(userId);
+        UserCart cart = lockCart(shard, userId);
+        try {
+            CartLine existing = cart.findByCartId(cartId);
+            if (existing == null) {
+                return Optional.empty();
+            }
+            delete(shard, cart, existing);
+            return Optional.of(existing);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    public List<CartLine> getCart(long userId) {
+        Shard shard = shardFor(userId);
+        UserCart cart = lockCart(shard, userId);
+        try {
+            cart.lastAccess = System.currentTimeMillis();
+            return new ArrayList<>(cart.lines.values());
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /*
+        removes every line of the user (journaled like any delete), e.g. after payment. Inside a transaction
+        this waits for the commit, so a rolled back payment keeps its cart. The emptied cart stays loaded:
+        reloading it from cart_item before the deletes are flushed would bring the lines back. It is dropped
+        from memory by the first flush after its deletes are written.
+    */
+    public void clearUser(long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            clearNow(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                clearNow(userId);
+            }
+        });
+    }
+
+    private void clearNow(long userId) {
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try {
+            UserCart cart = shard.carts.get(userId);
+            if (cart != null) {
+                for (CartLine line : new ArrayList<>(cart.lines.values())) {
+                    delete(shard, cart, line);
+                }
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    // applies a new unit price to every loaded line of the product; the change is journaled and flushed like any edit
+    public int repriceProduct(long productId, long unitPriceMinor) {
+        int repriced = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (UserCart cart : shard.carts.values()) {
+                    CartLine line = cart.lines.get(productId);
+                    if (line != null && line.unitPriceMinor() != unitPriceMinor) {
+                        upsert(shard, cart, new CartLine(line.cartId(), line.userId(), productId, line.productName(),
+                                line.categoryId(), unitPriceMinor, line.quantity(), Money.times(unitPriceMinor, line.quantity())));
+                        repriced++;
+                    }
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return repriced;
+    }
+
+    // drops a line the expiry sweep deleted from the table, unless it changed in memory since and will be written back
+    public void forgetLine(long userId, long cartId) {
+        Shard shard = shardFor(userId);
+        shard.lock.lock();
+        try {
+            UserCart cart = shard.carts.get(userId);
+            if (cart == null || shard.pendingUpserts.containsKey(cartId)) {
+                return;
+            }
+            CartLine line = cart.findByCartId(cartId);
+            if (line != null) {
+                cart.lines.remove(line.productId());
+                cartOwners.remove(cartId);
+            }
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:5000}")
+    public void scheduledFlush() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    /*
+        Seals the journal first, then takes every shard's dirty set. Any change journaled into the sealed
+        segment was marked dirty before it was journaled, so it is part of this flush; the segment can be
+        deleted once the batch commits. On failure the dirty lines are put back and the segment is kept.
+    */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            journal.rotate();
+            Map<Long, CartLine> upserts = new HashMap<>();
+            Map<Long, CartLine> deletes = new HashMap<>();
+            for (Shard shard : shards) {
+                shard.lock.lock();
+                try {
+                    upserts.putAll(shard.pendingUpserts);
+                    deletes.putAll(shard.pendingDeletes);
+                    shard.pendingUpserts.clear();
+                    shard.pendingDeletes.clear();
+                } finally {
+                    shard.lock.unlock();
+                }
+            }
+            List<Path> covered = journal.sealedSegments();
+            if (upserts.isEmpty() && deletes.isEmpty()) {
+                LineJournal.delete(covered);
+                evictIdle();
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                write(upserts.values(), deletes.keySet());
+            } catch (RuntimeException e) {
+                logger.error("Cart flush of {} upserts and {} deletes failed, will retry", upserts.size(), deletes.size(), e);
+                restorePending(upserts, deletes);
+                return;
+            }
+            LineJournal.delete(covered);
+            logger.debug("Flushed {} cart upserts and {} deletes in {} ms",
+                    upserts.size(), deletes.size(), System.currentTimeMillis() - start);
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        logger.info("Draining write-behind cart store before shutdown");
+        flush();
+        journal.close();
+    }
+
+    private void recover() {
+        journal.rotate();
+        List<Path> segments = journal.sealedSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        // fold the records so each cart id ends up with its last state
+        Map<Long, CartLine> upserts = new LinkedHashMap<>();
+        Set<Long> deletes = new HashSet<>();
+        for (Path segment : segments) {
+            for (String record : LineJournal.readLines(segment)) {
+                String[] fields = record.split("\\|");
+                long cartId = Long.parseLong(fields[1]);
+                if (fields[0].equals("U")) {
+                    upserts.put(cartId, new CartLine(cartId, Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                            null, null, 0, Integer.parseInt(fields[4]), parseAmount(fields[5])));
+                    deletes.remove(cartId);
+                } else {
+                    upserts.remove(cartId);
+                    deletes.add(cartId);
+                }
+            }
+        }
+        write(upserts.values(), deletes);
+        LineJournal.delete(segments);
+        logger.info("Replayed {} journaled cart upserts and {} deletes from {} segments",
+                upserts.size(), deletes.size(), segments.size());
+    }
+
+    private static Integer categoryOf(Product product) {
+        return product.getCategory() != null ? product.getCategory().getCategoryId() : null;
+    }
+
+    // segments written before amounts moved to minor units hold a decimal total, e.g. 25.5
+    private static long parseAmount(String field) {
+        if (field.indexOf('.') >= 0 || field.indexOf('E') >= 0) {
+            return Money.ofMajor(Double.parseDouble(field));
+        }
+        return Long.parseLong(field);
+    }
+
+    private void write(Collection<CartLine> upserts, Set<Long> deletes) {
+        flushTransaction.executeWithoutResult(status -> {
+            cartJdbcRepo.deleteAllById(deletes);
+            cartJdbcRepo.upsertAll(upserts.stream().map(CartLine::toRow).toList());
+        });
+    }
+
+    private void restorePending(Map<Long, CartLine> upserts, Map<Long, CartLine> deletes) {
+        for (CartLine line : upserts.values()) {
+            Shard shard = shardFor(line.userId());
+            shard.lock.lock();
+            try {
+                // a newer change to the same line supersedes the failed one
+                if (!shard.pendingUpserts.containsKey(line.cartId()) && !shard.pendingDeletes.containsKey(line.cartId())) {
+                    shard.pendingUpserts.put(line.cartId(), line);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        for (CartLine line : deletes.values()) {
+            Shard shard = shardFor(line.userId());
+            shard.lock.lock();
+            try {
+                if (!shard.pendingUpserts.containsKey(line.cartId())) {
+                    shard.pendingDeletes.put(line.cartId(), line);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // clean carts that are empty or nobody touched for a while are dropped from memory and reloaded on next access
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictionMs;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                Set<Long> dirtyUsers = new HashSet<>();
+                shard.pendingUpserts.values().forEach(line -> dirtyUsers.add(line.userId()));
+                shard.pendingDeletes.values().forEach(line -> dirtyUsers.add(line.userId()));
+                shard.carts.entrySet().removeIf(entry -> {
+                    UserCart cart = entry.getValue();
+                    boolean evict = (cart.lastAccess < cutoff || cart.lines.isEmpty()) && !dirtyUsers.contains(entry.getKey());
+                    if (evict) {
+                        entry.getValue().lines.values().forEach(line -> cartOwners.remove(line.cartId()));
+                    }
+                    return evict;
+                });
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    // caller holds the shard lock
+    private void upsert(Shard shard, UserCart cart, CartLine line) {
+        cart.lines.put(line.productId(), line);
+        cart.lastAccess = System.currentTimeMillis();
+        cartOwners.put(line.cartId(), line.userId());
+        shard.pendingDeletes.remove(line.cartId());
+        shard.pendingUpserts.put(line.cartId(), line);
+        journal.append("U|" + line.cartId() + "|" + line.userId() + "|" + line.productId() + "|"
+                + line.quantity() + "|" + line.itemPriceTotalMinor());
+    }
+
+    // caller holds the shard lock
+    private void delete(Shard shard, UserCart cart, CartLine line) {
+        cart.lines.remove(line.productId());
+        cart.lastAccess = System.currentTimeMillis();
+        cartOwners.remove(line.cartId());
+        shard.pendingUpserts.remove(line.cartId());
+        shard.pendingDeletes.put(line.cartId(), line);
+        journal.append("D|" + line.cartId() + "|" + line.userId());
+    }
+
+    private Long ownerOf(long cartId) {
+        Long userId = cartOwners.get(cartId);
+        if (userId != null) {
+            return userId;
+        }
+        // not in memory yet: the row tells us whose cart to load
+        return cartRepo.findById(cartId).map(cart -> cart.getUser().getUserId()).orElse(null);
+    }
+
+    /*
+        returns the user's cart with the shard lock held, so a flush cannot evict it before the caller's change
+        lands; the caller unlocks. The database read happens outside the lock and the first loader to finish wins.
+    */
+    private UserCart lockCart(Shard shard, long userId) {
+        shard.lock.lock();
+        UserCart cart = shard.carts.get(userId);
+        if (cart != null) {
+            cart.lastAccess = System.currentTimeMillis();
+            return cart;
+        }
+        shard.lock.unlock();
+
+        UserCart loaded = new UserCart();
+        for (Cart row : cartRepo.findByUserUserId(userId)) {
+            Product product = row.getProduct();
+            loaded.lines.put(product.getProductId(), new CartLine(row.getCartId(), userId, product.getProductId(),
+                    product.getName(), categoryOf(product), product.getPriceMinor(), row.getQuantity(),
+                    row.getItemPriceTotalMinor()));
+        }
+
+        shard.lock.lock();
+        UserCart existing = shard.carts.putIfAbsent(userId, loaded);
+        if (existing != null) {
+            existing.lastAccess = System.currentTimeMillis();
+            return existing;
+        }
+        loaded.lines.values().forEach(line -> cartOwners.put(line.cartId(), userId));
+        return loaded;
+    }
+
+    private Shard shardFor(long userId) {
+        return shards[(int) Math.floorMod(Long.hashCode(userId) * 0x9E3779B9L, (long) shards.length)];
+    }
+
+    private static final class Shard {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, UserCart> carts = new HashMap<>();
+        private final Map<Long, CartLine> pendingUpserts = new HashMap<>();
+        private final Map<Long, CartLine> pendingDeletes = new HashMap<>();
+    }
+
+    private static final class UserCart {
+        // keyed by product id, one line per product like the database cart
+        private final Map<Long, CartLine> lines = new LinkedHashMap<>();
+        private long lastAccess = System.currentTimeMillis();
+
+        private CartLine findByCartId(long cartId) {
+            for (CartLine line : lines.values()) {
+                if (line.cartId() == cartId) {
+                    return line;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.genc.e_commerce.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+    Consecutive-failure circuit breaker. After failureThreshold failures in a row the circuit opens and every
+    call is refused for openDurationMs; then a single trial call is let through (half-open). Its success closes
+    the circuit, its failure opens it again for another period. A success reported while the circuit is open
+    comes from a call that started before it opened and does not cut the cool-down short.
+*/
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public record Stats(String name, State state, int consecutiveFailures, long rejected, long opened) {
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDurationMs * 1_000_000L;
+    }
+
+    // true when the caller may go ahead; it must then report the outcome with onSuccess or onFailure
+    public boolean tryAcquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.nanoTime() - openedAt.get() >= openDurationNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+            return true;
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    public void onSuccess() {
+        if (state.get() == State.OPEN) {
+            return;
+        }
+        consecutiveFailures.set(0);
+        state.compareAndSet(State.HALF_OPEN, State.CLOSED);
+    }
+
+    // the acquired call was never made: a half-open trial goes back so the next caller can take it
+    public void release() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        State current = state.get();
+        if (current == State.HALF_OPEN || (current == State.CLOSED && failures >= failureThreshold)) {
+            openedAt.set(System.nanoTime());
+            if (state.compareAndSet(current, State.OPEN)) {
+                opened.incrementAndGet();
+            }
+        }
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public Stats getStats() {
+        return new Stats(name, state.get(), consecutiveFailures.get(), rejected.get(), opened.get());
+    }
+}
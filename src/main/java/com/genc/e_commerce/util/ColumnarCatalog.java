@@ -0,0 +1,603 @@
+package com.genc.e_commerce.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    The catalog's hot fields as columns in direct (off-heap) buffers: product id, price in minor units, stock
+    and category id, one dense row per product, plus the name as a code into a dictionary whose bytes are
+    off-heap as well. The id -> row index is an off-heap open-addressing table, so the only heap objects are
+    the buffer handles: ten million products are a few hundred MB outside the heap and nothing for the GC to
+    trace. A delete moves the last row into the hole, keeping the rows dense.
+
+    Operators read the columns in place, in blocks, with branch-free loops: a row's filter result is computed
+    with non-short-circuit '&' and the row number is always written to the selection vector, with the
+    selection length advanced by the result. Top-N and low-stock lists keep a bounded heap, never a sorted
+    copy.
+
+    Names that are no longer used leave their bytes in the arena until the catalog is rebuilt; their codes
+    are reused.
+*/
+public class ColumnarCatalog {
+
+    private static final int BLOCK = 1024;
+    private static final long EMPTY_ID = 0;
+    private static final int NO_NAME = -1;
+    // stored for products without a category; category ids start at 1
+    private static final int NO_CATEGORY = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // columns, read with absolute getLong/getInt on the byte buffers, which compile to plain loads where
+    // LongBuffer/IntBuffer views are several times slower in a scan loop
+    private ByteBuffer ids;
+    private ByteBuffer prices;
+    private ByteBuffer stock;
+    private ByteBuffer categories;
+    private ByteBuffer names;
+    private int rows;
+    private int capacity;
+    // highest category id ever stored, the size of the per-category counters in the stock report
+    private int maxCategory = NO_CATEGORY;
+
+    // product id -> row
+    private LongBuffer indexKeys;
+    private IntBuffer indexRows;
+
+    // name dictionary: UTF-8 bytes in an arena, per code its offset, length, hash and row count, and a
+    // hash table of code + 1 for interning
+    private ByteBuffer nameBytes;
+    private int nameEnd;
+    private IntBuffer nameOffsets;
+    private IntBuffer nameLengths;
+    private IntBuffer nameHashes;
+    private IntBuffer nameRefs;
+    private IntBuffer nameTable;
+    private int nameCodes;
+    private int liveNames;
+    private int[] freeCodes = new int[16];
+    private int freeCount;
+    private long deadNameBytes;
+
+    public ColumnarCatalog(int initialCapacity) {
+        capacity = Math.max(16, initialCapacity);
+        ids = bytes(capacity * Long.BYTES);
+        prices = bytes(capacity * Long.BYTES);
+        stock = bytes(capacity * Integer.BYTES);
+        categories = bytes(capacity * Integer.BYTES);
+        names = bytes(capacity * Integer.BYTES);
+        indexKeys = longs(tableSize(capacity));
+        indexRows = ints(tableSize(capacity));
+        nameBytes = bytes(capacity * 16);
+        nameOffsets = ints(capacity);
+        nameLengths = ints(capacity);
+        nameHashes = ints(capacity);
+        nameRefs = ints(capacity);
+        nameTable = ints(tableSize(capacity));
+    }
+
+    // a null categoryId matches every category; prices are inclusive
+    public record Filter(Integer categoryId, long minPriceMinor, long maxPriceMinor, int minStock) {
+    }
+
+    public record Slice(List<Long> productIds, long total) {
+    }
+
+    public record CategoryStock(Integer categoryId, long products, long units, long outOfStock) {
+    }
+
+    public record LowStock(long productId, String name, int stockQuantity) {
+    }
+
+    public record StockReport(long products, long units, long outOfStock, long lowStock, long inventoryValueMinor,
+                              List<CategoryStock> categories, List<LowStock> lowestStock) {
+    }
+
+    public record Stats(int rows, int capacity, int names, long offHeapBytes, long deadNameBytes) {
+    }
+
+    // product ids must be greater than zero
+    public void upsert(long productId, String name, long priceMinor, int stockQuantity, Integer categoryId) {
+        byte[] encoded = name != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+        lock.writeLock().lock();
+        try {
+            // interned before the old code is released, so an unchanged name keeps its code and bytes
+            int code = encoded != null ? intern(encoded) : NO_NAME;
+            int slot = findSlot(productId);
+            int row;
+            if (slot >= 0) {
+                row = indexRows.get(slot);
+                release(names.getInt(row << 2));
+            } else {
+                if (rows == capacity) {
+                    grow();
+                }
+                row = rows++;
+                ids.putLong(row << 3, productId);
+                insertSlot(productId, row);
+            }
+            prices.putLong(row << 3, priceMinor);
+            stock.putInt(row << 2, stockQuantity);
+            categories.putInt(row << 2, categoryId != null ? categoryId : NO_CATEGORY);
+            if (categoryId != null && categoryId > maxCategory) {
+                maxCategory = categoryId;
+            }
+            names.putInt(row << 2, code);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(productId);
+            if (slot < 0) {
+                return;
+            }
+            int row = indexRows.get(slot);
+            release(names.getInt(row << 2));
+            deleteSlot(slot);
+            int last = --rows;
+            if (row != last) {
+                long movedId = ids.getLong(last << 3);
+                ids.putLong(row << 3, movedId);
+                prices.putLong(row << 3, prices.getLong(last << 3));
+                stock.putInt(row << 2, stock.getInt(last << 2));
+                categories.putInt(row << 2, categories.getInt(last << 2));
+                names.putInt(row << 2, names.getInt(last << 2));
+                indexRows.put(findSlot(movedId), row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+        the matching products ordered by price, then id, skipping offset: one pass that keeps the best
+        offset + limit rows in a heap whose root is the worst row held
+    */
+    public Slice byPrice(Filter filter, boolean descending, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            int window = offset + limit;
+            long[] heapPrices = new long[window];
+            long[] heapIds = new long[window];
+            int held = 0;
+            long total = 0;
+            int[] selection = new int[BLOCK];
+            for (int from = 0; from < rows; from += BLOCK) {
+                int selected = select(filter, from, Math.min(rows, from + BLOCK), selection);
+                total += selected;
+                for (int i = 0; i < selected; i++) {
+                    int row = selection[i];
+                    long price = prices.getLong(row << 3);
+                    long productId = ids.getLong(row << 3);
+                    if (held < window) {
+                        heapPrices[held] = price;
+                        heapIds[held] = productId;
+                        siftUp(heapPrices, heapIds, held++, descending);
+                    } else if (window > 0 && before(price, productId, heapPrices[0], heapIds[0], descending)) {
+                        heapPrices[0] = price;
+                        heapIds[0] = productId;
+                        siftDown(heapPrices, heapIds, 0, held, descending);
+                    }
+                }
+            }
+            // popping the worst row first fills the result from the back
+            long[] ordered = new long[held];
+            for (int end = held; end > 0; end--) {
+                ordered[end - 1] = heapIds[0];
+                heapPrices[0] = heapPrices[end - 1];
+                heapIds[0] = heapIds[end - 1];
+                siftDown(heapPrices, heapIds, 0, end - 1, descending);
+            }
+            List<Long> page = new ArrayList<>(Math.max(0, held - offset));
+            for (int i = offset; i < held; i++) {
+                page.add(ordered[i]);
+            }
+            return new Slice(page, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        stock dashboard in one pass: totals, per-category counts and the lowStockLimit products with the
+        least stock at or below lowStockThreshold, lowest first
+    */
+    public StockReport stockReport(int lowStockThreshold, int lowStockLimit) {
+        lock.readLock().lock();
+        try {
+            long[] categoryProducts = new long[maxCategory + 1];
+            long[] categoryUnits = new long[maxCategory + 1];
+            long[] categoryOutOfStock = new long[maxCategory + 1];
+            long units = 0;
+            long outOfStock = 0;
+            long lowStock = 0;
+            long value = 0;
+            for (int row = 0; row < rows; row++) {
+                int quantity = stock.getInt(row << 2);
+                int category = categories.getInt(row << 2);
+                int out = quantity <= 0 ? 1 : 0;
+                categoryProducts[category]++;
+                categoryUnits[category] += quantity;
+                categoryOutOfStock[category] += out;
+                units += quantity;
+                outOfStock += out;
+                lowStock += quantity <= lowStockThreshold ? 1 : 0;
+                value += prices.getLong(row << 3) * quantity;
+            }
+            List<CategoryStock> byCategory = new ArrayList<>();
+            for (int category = 0; category <= maxCategory; category++) {
+                if (categoryProducts[category] > 0) {
+                    byCategory.add(new CategoryStock(category == NO_CATEGORY ? null : category,
+                            categoryProducts[category], categoryUnits[category], categoryOutOfStock[category]));
+                }
+            }
+            return new StockReport(rows, units, outOfStock, lowStock, value, byCategory,
+                    lowestStock(lowStockThreshold, lowStockLimit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            long offHeap = (long) capacity * (Long.BYTES * 2 + Integer.BYTES * 3)
+                    + (long) nameOffsets.capacity() * Integer.BYTES * 4
+                    + (long) indexKeys.capacity() * (Long.BYTES + Integer.BYTES)
+                    + (long) nameTable.capacity() * Integer.BYTES + nameBytes.capacity();
+            return new Stats(rows, capacity, liveNames, offHeap, deadNameBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // branch-free: every row number is written, only matching ones advance the selection
+    private int select(Filter filter, int from, int to, int[] selection) {
+        boolean anyCategory = filter.categoryId() == null;
+        int category = anyCategory ? NO_CATEGORY : filter.categoryId();
+        long min = filter.minPriceMinor();
+        long max = filter.maxPriceMinor();
+        int minStock = filter.minStock();
+        int selected = 0;
+        for (int row = from; row < to; row++) {
+            long price = prices.getLong(row << 3);
+            boolean match = price >= min & price <= max & stock.getInt(row << 2) >= minStock
+                    & (anyCategory | categories.getInt(row << 2) == category);
+            selection[selected] = row;
+            selected += match ? 1 : 0;
+        }
+        return selected;
+    }
+
+    // bounded max-heap on (stock, id), so the root is the row to drop first
+    private List<LowStock> lowestStock(int threshold, int limit) {
+        int[] heapRows = new int[limit];
+        int held = 0;
+        for (int row = 0; row < rows; row++) {
+            if (stock.getInt(row << 2) > threshold) {
+                continue;
+            }
+            if (held < limit) {
+                heapRows[held] = row;
+                for (int child = held++; child > 0 && lowerStock(heapRows[(child - 1) / 2], heapRows[child]); ) {
+                    int parent = (child - 1) / 2;
+                    swap(heapRows, parent, child);
+                    child = parent;
+                }
+            } else if (limit > 0 && lowerStock(row, heapRows[0])) {
+                heapRows[0] = row;
+                for (int parent = 0; ; ) {
+                    int largest = parent;
+                    int left = 2 * parent + 1;
+                    if (left < held && lowerStock(heapRows[largest], heapRows[left])) {
+                        largest = left;
+                    }
+                    if (left + 1 < held && lowerStock(heapRows[largest], heapRows[left + 1])) {
+                        largest = left + 1;
+                    }
+                    if (largest == parent) {
+                        break;
+                    }
+                    swap(heapRows, parent, largest);
+                    parent = largest;
+                }
+            }
+        }
+        List<LowStock> lowest = new ArrayList<>(held);
+        for (int i = 0; i < held; i++) {
+            int row = heapRows[i];
+            lowest.add(new LowStock(ids.getLong(row << 3), nameOf(names.getInt(row << 2)), stock.getInt(row << 2)));
+        }
+        lowest.sort((a, b) -> a.stockQuantity() != b.stockQuantity()
+                ? Integer.compare(a.stockQuantity(), b.stockQuantity()) : Long.compare(a.productId(), b.productId()));
+        return lowest;
+    }
+
+    private boolean lowerStock(int a, int b) {
+        int stockA = stock.getInt(a << 2);
+        int stockB = stock.getInt(b << 2);
+        return stockA != stockB ? stockA < stockB : ids.getLong(a << 3) < ids.getLong(b << 3);
+    }
+
+    private static void swap(int[] values, int a, int b) {
+        int value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+    }
+
+    // whether (price, id) comes before (otherPrice, otherId) in the requested order
+    private static boolean before(long price, long productId, long otherPrice, long otherId, boolean descending) {
+        if (price != otherPrice) {
+            return descending ? price > otherPrice : price < otherPrice;
+        }
+        return productId < otherId;
+    }
+
+    // the heap root is the entry that comes last
+    private static void siftUp(long[] heapPrices, long[] heapIds, int position, boolean descending) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!before(heapPrices[parent], heapIds[parent], heapPrices[position], heapIds[position], descending)) {
+                return;
+            }
+            swap(heapPrices, heapIds, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(long[] heapPrices, long[] heapIds, int position, int size, boolean descending) {
+        while (true) {
+            int last = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && before(heapPrices[last], heapIds[last], heapPrices[left], heapIds[left], descending)) {
+                last = left;
+            }
+            if (right < size && before(heapPrices[last], heapIds[last], heapPrices[right], heapIds[right], descending)) {
+                last = right;
+            }
+            if (last == position) {
+                return;
+            }
+            swap(heapPrices, heapIds, position, last);
+            position = last;
+        }
+    }
+
+    private static void swap(long[] heapPrices, long[] heapIds, int a, int b) {
+        long price = heapPrices[a];
+        long productId = heapIds[a];
+        heapPrices[a] = heapPrices[b];
+        heapIds[a] = heapIds[b];
+        heapPrices[b] = price;
+        heapIds[b] = productId;
+    }
+
+    private String nameOf(int code) {
+        if (code == NO_NAME) {
+            return null;
+        }
+        byte[] encoded = new byte[nameLengths.get(code)];
+        nameBytes.get(nameOffsets.get(code), encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    private int intern(byte[] encoded) {
+        int hash = Arrays.hashCode(encoded);
+        int mask = nameTable.capacity() - 1;
+        int at = slotOf(hash, mask);
+        for (int entry = nameTable.get(at); entry != 0; entry = nameTable.get(at)) {
+            int code = entry - 1;
+            if (nameHashes.get(code) == hash && sameBytes(code, encoded)) {
+                nameRefs.put(code, nameRefs.get(code) + 1);
+                return code;
+            }
+            at = (at + 1) & mask;
+        }
+        int code;
+        if (freeCount > 0) {
+            code = freeCodes[--freeCount];
+        } else {
+            if (nameCodes == nameOffsets.capacity()) {
+                int grown = nameCodes * 2;
+                nameOffsets = copy(nameOffsets, grown);
+                nameLengths = copy(nameLengths, grown);
+                nameHashes = copy(nameHashes, grown);
+                nameRefs = copy(nameRefs, grown);
+            }
+            code = nameCodes++;
+        }
+        if (nameEnd + encoded.length > nameBytes.capacity()) {
+            nameBytes = copy(nameBytes, Math.max(nameBytes.capacity() * 2, nameEnd + encoded.length));
+        }
+        nameBytes.put(nameEnd, encoded);
+        nameOffsets.put(code, nameEnd);
+        nameLengths.put(code, encoded.length);
+        nameHashes.put(code, hash);
+        nameRefs.put(code, 1);
+        nameEnd += encoded.length;
+        liveNames++;
+        if (liveNames * 2 > nameTable.capacity()) {
+            rehashNames(nameTable.capacity() * 2);
+        } else {
+            nameTable.put(at, code + 1);
+        }
+        return code;
+    }
+
+    private void release(int code) {
+        if (code == NO_NAME) {
+            return;
+        }
+        int refs = nameRefs.get(code) - 1;
+        nameRefs.put(code, refs);
+        if (refs > 0) {
+            return;
+        }
+        int mask = nameTable.capacity() - 1;
+        int at = slotOf(nameHashes.get(code), mask);
+        while (nameTable.get(at) != code + 1) {
+            at = (at + 1) & mask;
+        }
+        // linear probing delete: shift later entries of the same run back so lookups never stop early
+        int hole = at;
+        int next = (hole + 1) & mask;
+        for (int entry = nameTable.get(next); entry != 0; entry = nameTable.get(next)) {
+            int home = slotOf(nameHashes.get(entry - 1), mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                nameTable.put(hole, entry);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        nameTable.put(hole, 0);
+        deadNameBytes += nameLengths.get(code);
+        liveNames--;
+        if (freeCount == freeCodes.length) {
+            freeCodes = Arrays.copyOf(freeCodes, freeCount * 2);
+        }
+        freeCodes[freeCount++] = code;
+    }
+
+    // rebuilt from the codes in use, which the free list tells apart from released ones
+    private void rehashNames(int tableCapacity) {
+        boolean[] free = new boolean[nameCodes];
+        for (int i = 0; i < freeCount; i++) {
+            free[freeCodes[i]] = true;
+        }
+        nameTable = ints(tableCapacity);
+        int mask = tableCapacity - 1;
+        for (int code = 0; code < nameCodes; code++) {
+            if (!free[code]) {
+                int at = slotOf(nameHashes.get(code), mask);
+                while (nameTable.get(at) != 0) {
+                    at = (at + 1) & mask;
+                }
+                nameTable.put(at, code + 1);
+            }
+        }
+    }
+
+    private boolean sameBytes(int code, byte[] encoded) {
+        int length = nameLengths.get(code);
+        if (length != encoded.length) {
+            return false;
+        }
+        int offset = nameOffsets.get(code);
+        for (int i = 0; i < length; i++) {
+            if (nameBytes.get(offset + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        capacity *= 2;
+        ids = copy(ids, capacity * Long.BYTES);
+        prices = copy(prices, capacity * Long.BYTES);
+        stock = copy(stock, capacity * Integer.BYTES);
+        categories = copy(categories, capacity * Integer.BYTES);
+        names = copy(names, capacity * Integer.BYTES);
+        if (tableSize(capacity) > indexKeys.capacity()) {
+            indexKeys = longs(tableSize(capacity));
+            indexRows = ints(tableSize(capacity));
+            for (int row = 0; row < rows; row++) {
+                insertSlot(ids.getLong(row << 3), row);
+            }
+        }
+    }
+
+    private int findSlot(long productId) {
+        int mask = indexKeys.capacity() - 1;
+        int at = slotOf(productId, mask);
+        while (true) {
+            long key = indexKeys.get(at);
+            if (key == productId) {
+                return at;
+            }
+            if (key == EMPTY_ID) {
+                return -1;
+            }
+            at = (at + 1) & mask;
+        }
+    }
+
+    private void insertSlot(long productId, int row) {
+        int mask = indexKeys.capacity() - 1;
+        int at = slotOf(productId, mask);
+        while (indexKeys.get(at) != EMPTY_ID) {
+            at = (at + 1) & mask;
+        }
+        indexKeys.put(at, productId);
+        indexRows.put(at, row);
+    }
+
+    private void deleteSlot(int at) {
+        int mask = indexKeys.capacity() - 1;
+        int hole = at;
+        int next = (hole + 1) & mask;
+        while (indexKeys.get(next) != EMPTY_ID) {
+            int home = slotOf(indexKeys.get(next), mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                indexKeys.put(hole, indexKeys.get(next));
+                indexRows.put(hole, indexRows.get(next));
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        indexKeys.put(hole, EMPTY_ID);
+    }
+
+    // twice the rows, rounded up to a power of two
+    private static int tableSize(int rows) {
+        return Integer.highestOneBit(rows * 2 - 1) << 1;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static ByteBuffer bytes(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    private static LongBuffer longs(int capacity) {
+        return bytes(capacity * Long.BYTES).asLongBuffer();
+    }
+
+    private static IntBuffer ints(int capacity) {
+        return bytes(capacity * Integer.BYTES).asIntBuffer();
+    }
+
+    // the old buffer's memory is returned when its handle is collected
+    private static ByteBuffer copy(ByteBuffer source, int capacity) {
+        ByteBuffer copy = bytes(capacity);
+        copy.put(0, source, 0, source.capacity());
+        return copy;
+    }
+
+    private static LongBuffer copy(LongBuffer source, int capacity) {
+        LongBuffer copy = longs(capacity);
+        copy.put(0, source, 0, source.capacity());
+        return copy;
+    }
+
+    private static IntBuffer copy(IntBuffer source, int capacity) {
+        IntBuffer copy = ints(capacity);
+        copy.put(0, source, 0, source.capacity());
+        return copy;
+    }
+}
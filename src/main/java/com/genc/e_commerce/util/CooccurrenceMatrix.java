@@ -0,0 +1,356 @@
+package com.genc.e_commerce.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Sparse, decaying product x product co-occurrence counts. Each product has a row of the products bought
+    together with it, held in open-addressing tables keyed by the raw product id, so an update boxes nothing
+    and a basket of n products costs n * (n - 1) row updates.
+
+    Decay is forward decay: a purchase at time t adds 2^((t - epoch) / halfLife) instead of 1, which weights
+    every count as if it were halving every halfLife without ever touching the old ones. Scores are scaled
+    back to "now" when read. Once the increments grow large, all counts are rescaled once and the epoch moves.
+
+    A row may grow to twice maxNeighbors; it is then pruned back to its maxNeighbors strongest entries.
+*/
+public class CooccurrenceMatrix {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    // 2^500 leaves plenty of headroom in a double before counts are rescaled
+    private static final double RESCALE_ABOVE = 0x1p500;
+
+    private final int maxNeighbors;
+    private final double halfLifeMs;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys = new long[16];
+    private Row[] rows = new Row[16];
+    private int size;
+    private long epochMs;
+    private long pairs;
+    private long prunes;
+    private long rescales;
+
+    public CooccurrenceMatrix(int maxNeighbors, long halfLifeMs, long nowMs) {
+        if (maxNeighbors < 1) {
+            throw new IllegalArgumentException("maxNeighbors must be at least 1");
+        }
+        if (halfLifeMs < 1) {
+            throw new IllegalArgumentException("halfLifeMs must be at least 1");
+        }
+        this.maxNeighbors = maxNeighbors;
+        this.halfLifeMs = halfLifeMs;
+        this.epochMs = nowMs;
+        Arrays.fill(keys, EMPTY_KEY);
+    }
+
+    public record Neighbor(long productId, double score) {
+    }
+
+    // adds one basket; repeated ids count once and EMPTY_KEY is not a valid id
+    public void record(long[] productIds, long nowMs) {
+        long[] basket = distinct(productIds);
+        if (basket.length < 2) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            double increment = Math.pow(2, (nowMs - epochMs) / halfLifeMs);
+            if (increment > RESCALE_ABOVE) {
+                rescale(increment, nowMs);
+                increment = 1;
+            }
+            for (long product : basket) {
+                Row row = rowFor(product);
+                for (long other : basket) {
+                    if (other != product) {
+                        pairs += row.add(other, increment);
+                    }
+                }
+                if (row.size > 2 * maxNeighbors) {
+                    pairs -= row.prune(maxNeighbors);
+                    prunes++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // strongest first; scores are the decayed counts as of nowMs
+    public List<Neighbor> top(long productId, int limit, long nowMs) {
+        lock.readLock().lock();
+        try {
+            int slot = find(productId);
+            if (slot < 0 || limit < 1) {
+                return List.of();
+            }
+            Row row = rows[slot];
+            int count = Math.min(limit, row.size);
+            long[] topIds = new long[count];
+            double[] topWeights = new double[count];
+            int filled = 0;
+            for (int i = 0; i < row.keys.length; i++) {
+                if (row.keys[i] == EMPTY_KEY) {
+                    continue;
+                }
+                double weight = row.weights[i];
+                if (filled == count && weight <= topWeights[count - 1]) {
+                    continue;
+                }
+                // insertion into the short sorted prefix
+                int at = filled < count ? filled++ : count - 1;
+                while (at > 0 && topWeights[at - 1] < weight) {
+                    topIds[at] = topIds[at - 1];
+                    topWeights[at] = topWeights[at - 1];
+                    at--;
+                }
+                topIds[at] = row.keys[i];
+                topWeights[at] = weight;
+            }
+            double toNow = Math.pow(2, -(nowMs - epochMs) / halfLifeMs);
+            List<Neighbor> neighbors = new ArrayList<>(filled);
+            for (int i = 0; i < filled; i++) {
+                neighbors.add(new Neighbor(topIds[i], topWeights[i] * toNow));
+            }
+            return neighbors;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        drops the product's row and the product from every other row. Pruning is per row, so a row can still
+        hold the product after the product's own row let go of it: all rows are visited, not just its neighbours.
+        Deletes are rare enough for that.
+    */
+    public void remove(long productId) {
+        lock.writeLock().lock();
+        try {
+            for (Row row : rows) {
+                if (row != null && row.remove(productId)) {
+                    pairs--;
+                }
+            }
+            int slot = find(productId);
+            if (slot >= 0) {
+                pairs -= rows[slot].size;
+                deleteSlot(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(size, pairs, prunes, rescales);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            keys = new long[16];
+            rows = new Row[16];
+            Arrays.fill(keys, EMPTY_KEY);
+            size = 0;
+            pairs = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public record Stats(int products, long pairs, long prunes, long rescales) {
+    }
+
+    private static long[] distinct(long[] productIds) {
+        long[] sorted = productIds.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] != EMPTY_KEY && (n == 0 || sorted[n - 1] != sorted[i])) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return n == sorted.length ? sorted : Arrays.copyOf(sorted, n);
+    }
+
+    private void rescale(double factor, long nowMs) {
+        for (Row row : rows) {
+            if (row != null) {
+                for (int i = 0; i < row.weights.length; i++) {
+                    row.weights[i] /= factor;
+                }
+            }
+        }
+        epochMs = nowMs;
+        rescales++;
+    }
+
+    private Row rowFor(long productId) {
+        int slot = find(productId);
+        if (slot >= 0) {
+            return rows[slot];
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        slot = slotOf(productId, keys.length - 1);
+        while (keys[slot] != EMPTY_KEY) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        keys[slot] = productId;
+        rows[slot] = new Row();
+        size++;
+        return rows[slot];
+    }
+
+    private int find(long productId) {
+        int mask = keys.length - 1;
+        int slot = slotOf(productId, mask);
+        while (true) {
+            long found = keys[slot];
+            if (found == productId) {
+                return slot;
+            }
+            if (found == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Row[] oldRows = rows;
+        keys = new long[oldKeys.length * 2];
+        rows = new Row[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY_KEY);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                rows[slot] = oldRows[i];
+            }
+        }
+    }
+
+    // linear probing delete: shift later entries of the same run back so lookups never stop early
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                rows[hole] = rows[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY_KEY;
+        rows[hole] = null;
+        size--;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // one product's neighbours: product id -> forward-decayed count
+    private static final class Row {
+        private long[] keys = emptyKeys(8);
+        private double[] weights = new double[8];
+        private int size;
+
+        // 1 when the neighbour is new to the row
+        private int add(long other, double increment) {
+            int mask = keys.length - 1;
+            int slot = slotOf(other, mask);
+            while (keys[slot] != EMPTY_KEY) {
+                if (keys[slot] == other) {
+                    weights[slot] += increment;
+                    return 0;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = other;
+            weights[slot] = increment;
+            if (++size * 2 > keys.length) {
+                rebuild(keys.length * 2, Double.NEGATIVE_INFINITY);
+            }
+            return 1;
+        }
+
+        private boolean remove(long other) {
+            int mask = keys.length - 1;
+            int slot = slotOf(other, mask);
+            while (keys[slot] != EMPTY_KEY) {
+                if (keys[slot] == other) {
+                    weights[slot] = Double.NEGATIVE_INFINITY;
+                    rebuild(keys.length, Double.NEGATIVE_INFINITY);
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        // keeps the keep strongest entries (ties at the cut may keep a few more) and returns how many went
+        private int prune(int keep) {
+            double[] sorted = new double[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY_KEY) {
+                    sorted[n++] = weights[i];
+                }
+            }
+            Arrays.sort(sorted);
+            double cut = sorted[sorted.length - keep];
+            int before = size;
+            rebuild(keys.length, cut);
+            return before - size;
+        }
+
+        // re-inserts every entry weighing at least minWeight into a table of the given capacity
+        private void rebuild(int capacity, double minWeight) {
+            long[] oldKeys = keys;
+            double[] oldWeights = weights;
+            keys = emptyKeys(capacity);
+            weights = new double[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY_KEY && oldWeights[i] >= minWeight && oldWeights[i] != Double.NEGATIVE_INFINITY) {
+                    int slot = slotOf(oldKeys[i], mask);
+                    while (keys[slot] != EMPTY_KEY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    weights[slot] = oldWeights[i];
+                    size++;
+                }
+            }
+        }
+
+        private static long[] emptyKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY_KEY);
+            return keys;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.genc.e_commerce.util;
+
+import java.util.Arrays;
+
+/*
+    Count-min sketch over long keys: depth rows of width counters, each key hashed to one counter per row.
+    An estimate is the smallest of its counters, so it can only overcount, by roughly total / width with
+    high probability. Memory is fixed at depth * width ints whatever the number of distinct keys.
+
+    Not thread-safe; sketches of the same shape can be added to and subtracted from each other.
+*/
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x94D049BB133111EBL, 0xBF58476D1CE4E5B9L};
+
+    private final int depth;
+    private final int mask;
+    private final int[] counters;
+
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        }
+        if (width < 2 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counters = new int[depth * width];
+    }
+
+    public void add(long key, int count) {
+        for (int row = 0; row < depth; row++) {
+            counters[index(row, key)] += count;
+        }
+    }
+
+    public int estimate(long key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[index(row, key)]);
+        }
+        return min;
+    }
+
+    public void addAll(CountMinSketch other) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+    }
+
+    public void subtractAll(CountMinSketch other) {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] -= other.counters[i];
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    private int index(int row, long key) {
+        long h = (key ^ (key >>> 31)) * SEEDS[row];
+        return row * (mask + 1) + ((int) (h >>> 32) & mask);
+    }
+}
@@ -0,0 +1,130 @@
+package com.genc.e_commerce.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+    Append-only, line-oriented journal on local disk. Records go to "<name>.log"; rotate() seals the current
+    file under a sortable name and starts a new one, so a writer can hand a finished segment to whoever
+    applies it and delete it afterwards. Every append is a write() to the OS, which survives a crash of the
+    JVM; with fsync enabled each append is also forced to the device.
+*/
+public class LineJournal implements AutoCloseable {
+
+    private static final String SEALED_SUFFIX = ".sealed";
+
+    private final Path directory;
+    private final String name;
+    private final boolean fsync;
+    private FileChannel channel;
+    private long sequence;
+
+    public LineJournal(Path directory, String name, boolean fsync) {
+        this.directory = directory;
+        this.name = name;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+            this.channel = open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal " + currentFile(), e);
+        }
+    }
+
+    public synchronized void append(String record) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(record + "\n");
+        try {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to journal " + currentFile(), e);
+        }
+    }
+
+    // seals the current file and returns it, or null when nothing was written since the last rotation
+    public synchronized Path rotate() {
+        try {
+            if (channel.size() == 0) {
+                return null;
+            }
+            channel.force(false);
+            channel.close();
+            Path sealed = directory.resolve(String.format("%s-%015d-%06d%s",
+                    name, System.currentTimeMillis(), sequence++ % 1_000_000, SEALED_SUFFIX));
+            Files.move(currentFile(), sealed);
+            channel = open();
+            return sealed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rotate journal " + currentFile(), e);
+        }
+    }
+
+    // sealed segments, oldest first
+    public List<Path> sealedSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String fileName = path.getFileName().toString();
+                        return fileName.startsWith(name + "-") && fileName.endsWith(SEALED_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list journal segments in " + directory, e);
+        }
+    }
+
+    public static List<String> readLines(Path segment) {
+        try {
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read journal segment " + segment, e);
+        }
+    }
+
+    public static void delete(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete journal segment " + segment, e);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close journal " + currentFile(), e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(currentFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path currentFile() {
+        return directory.resolve(name + ".log");
+    }
+}
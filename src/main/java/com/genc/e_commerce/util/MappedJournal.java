@@ -0,0 +1,258 @@
+package com.genc.e_commerce.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+    Append-only journal of binary records in fixed-size, memory-mapped segment files ("<name>-<index>.seg").
+    An append is a copy into the mapped page cache under a short lock, so it costs about as much as a memory
+    write and never waits for a reader or the disk; the data survives a crash of the JVM as soon as append()
+    returns, and a crash of the machine once force() has run.
+
+    Record layout: int length, int CRC32 of the payload, payload, padded to 4 bytes. A length of -1 marks
+    the end of a segment that was rolled. Every process start writes into a new segment, so a segment left
+    behind by a crash is only ever read: reading it stops at the first record that is empty or fails its CRC.
+
+    There is a single reader. It keeps its own position and stores it with commitReadPosition once the records
+    before it are safely applied; segments entirely before that position are deleted.
+*/
+public class MappedJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final int ROLL_MARKER = -1;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final String name;
+    private final int segmentBytes;
+
+    private long writeSegment;
+    private FileChannel writeChannel;
+    private MappedByteBuffer writeBuffer;
+    private int writeOffset;
+    // end of the data a reader may consume and the buffer it lies in; published after each append
+    private volatile Tail tail;
+
+    private long readSegment = -1;
+    private MappedByteBuffer readBuffer;
+
+    public record Position(long segment, int offset) {
+    }
+
+    public record Entry(byte[] payload, Position next) {
+    }
+
+    private record Tail(Position position, ByteBuffer buffer) {
+    }
+
+    public MappedJournal(Path directory, String name, int segmentBytes) {
+        this.directory = directory;
+        this.name = name;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(directory);
+            List<Long> existing = segments();
+            openWriteSegment(existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open journal " + name + " in " + directory, e);
+        }
+    }
+
+    public synchronized void append(byte[] payload) {
+        int recordBytes = align(HEADER_BYTES + payload.length);
+        if (recordBytes > segmentBytes) {
+            throw new IllegalArgumentException("record of " + payload.length + " bytes does not fit in a journal segment");
+        }
+        if (writeOffset + recordBytes > segmentBytes) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        writeBuffer.put(writeOffset + HEADER_BYTES, payload);
+        writeBuffer.putInt(writeOffset + 4, (int) crc.getValue());
+        // the length goes last: a record is complete once it is non-zero
+        writeBuffer.putInt(writeOffset, payload.length);
+        writeOffset += recordBytes;
+        tail = new Tail(new Position(writeSegment, writeOffset), writeBuffer);
+    }
+
+    // up to max records starting at from; returns an empty list when the reader has caught up
+    public List<Entry> read(Position from, int max) {
+        List<Entry> entries = new ArrayList<>();
+        long segment = from.segment();
+        int offset = from.offset();
+        while (entries.size() < max) {
+            Tail current = tail;
+            Position end = current.position();
+            if (segment > end.segment()) {
+                break;
+            }
+            boolean sealed = segment < end.segment();
+            int limit = sealed ? segmentBytes : end.offset();
+            // only absolute reads are used, so the writer's buffer can be shared
+            ByteBuffer buffer = sealed ? sealedSegment(segment) : current.buffer();
+            Entry entry = buffer == null || offset + HEADER_BYTES > limit ? null : readEntry(buffer, segment, offset, limit);
+            if (entry == null) {
+                if (!sealed) {
+                    break;
+                }
+                // end of a rolled or crashed segment: continue with the next one that exists
+                segment = nextSegment(segment, end.segment());
+                offset = 0;
+                continue;
+            }
+            entries.add(entry);
+            offset = entry.next().offset();
+        }
+        return entries;
+    }
+
+    // where the reader resumes after a restart: its last committed position, or the oldest segment
+    public Position readPosition() {
+        Path checkpoint = directory.resolve(name + ".checkpoint");
+        try {
+            if (Files.exists(checkpoint)) {
+                String[] parts = Files.readString(checkpoint, StandardCharsets.UTF_8).trim().split(" ");
+                return new Position(Long.parseLong(parts[0]), Integer.parseInt(parts[1]));
+            }
+            List<Long> existing = segments();
+            return new Position(existing.isEmpty() ? writeSegment : existing.get(0), 0);
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Could not read journal checkpoint " + checkpoint, e);
+        }
+    }
+
+    public void commitReadPosition(Position position) {
+        Path checkpoint = directory.resolve(name + ".checkpoint");
+        Path temp = directory.resolve(name + ".checkpoint.tmp");
+        try {
+            Files.writeString(temp, position.segment() + " " + position.offset(), StandardCharsets.UTF_8);
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (Long segment : segments()) {
+                if (segment < position.segment()) {
+                    Files.deleteIfExists(segmentFile(segment));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store journal checkpoint " + checkpoint, e);
+        }
+    }
+
+    // forces the current segment's dirty pages to the device
+    public synchronized void force() {
+        writeBuffer.force();
+    }
+
+    // bytes appended but not yet behind the given reader position, counting whole segments in between
+    public long backlogBytes(Position reader) {
+        Position end = tail.position();
+        if (reader.segment() == end.segment()) {
+            return Math.max(0, end.offset() - reader.offset());
+        }
+        return (end.segment() - reader.segment()) * segmentBytes - reader.offset() + end.offset();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writeBuffer.force();
+            writeChannel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close journal " + name, e);
+        }
+    }
+
+    private void roll() {
+        if (writeOffset + 4 <= segmentBytes) {
+            writeBuffer.putInt(writeOffset, ROLL_MARKER);
+        }
+        try {
+            writeBuffer.force();
+            writeChannel.close();
+            openWriteSegment(writeSegment + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll journal " + name, e);
+        }
+    }
+
+    private void openWriteSegment(long segment) throws IOException {
+        writeChannel = FileChannel.open(segmentFile(segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeBuffer = writeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        writeSegment = segment;
+        writeOffset = 0;
+        tail = new Tail(new Position(segment, 0), writeBuffer);
+    }
+
+    private Entry readEntry(ByteBuffer buffer, long segment, int offset, int limit) {
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_BYTES + length > limit) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+            return null;
+        }
+        return new Entry(payload, new Position(segment, offset + align(HEADER_BYTES + length)));
+    }
+
+    private ByteBuffer sealedSegment(long segment) {
+        if (segment != readSegment) {
+            Path file = segmentFile(segment);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                readBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), segmentBytes));
+                readSegment = segment;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map journal segment " + file, e);
+            }
+        }
+        return readBuffer;
+    }
+
+    private long nextSegment(long after, long last) {
+        for (Long segment : segments()) {
+            if (segment > after) {
+                return segment;
+            }
+        }
+        return last;
+    }
+
+    private List<Long> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(fileName -> fileName.startsWith(name + "-") && fileName.endsWith(SEGMENT_SUFFIX))
+                    .map(fileName -> Long.parseLong(fileName.substring(name.length() + 1, fileName.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list journal segments in " + directory, e);
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s-%015d%s", name, segment, SEGMENT_SUFFIX));
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+}
@@ -0,0 +1,412 @@
+package com.genc.e_commerce.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Near-duplicate index over short texts: MinHash signatures bucketed with LSH (banding). A text is reduced to
+    the set of its character k-shingles; its signature keeps, for each of bands * rows hash functions, the
+    smallest hash over that set, and two signatures agree in a position with probability equal to the
+    Jaccard similarity of the sets. Every band of rows is hashed to a bucket, and texts sharing any bucket are
+    candidates. A query therefore looks at its own bands' buckets only and scores those candidates by
+    signature agreement; nothing is compared pairwise across the index.
+
+    Signatures live in one int[] (slot * hashes), bucket membership in int[]s of per-band next and previous
+    pointers, so a slot leaves its buckets without walking them, and buckets in an open-addressing table
+    from (band, band hash) to the first slot. Freed slots are reused.
+*/
+public class MinHashIndex {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int NONE = -1;
+
+    private final int bands;
+    private final int rows;
+    private final int hashes;
+    private final int shingleLength;
+    private final int maxBucketScan;
+    private final long[] seeds;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // per slot
+    private long[] slotIds = new long[0];
+    private int[] signatures = new int[0];
+    private int[] nextInBand = new int[0];
+    private int[] prevInBand = new int[0];
+    private long[] bandKeys = new long[0];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    // product id -> slot
+    private long[] idKeys;
+    private int[] idSlots;
+    private int size;
+
+    // (band, band hash) -> first slot of the bucket
+    private long[] bucketKeys;
+    private int[] bucketHeads;
+    private int bucketCount;
+
+    public MinHashIndex(int bands, int rows, int shingleLength, int maxBucketScan) {
+        this.bands = bands;
+        this.rows = rows;
+        this.hashes = bands * rows;
+        this.shingleLength = shingleLength;
+        this.maxBucketScan = maxBucketScan;
+        this.seeds = new long[hashes];
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < hashes; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+        idKeys = emptyKeys(16);
+        idSlots = new int[16];
+        bucketKeys = emptyKeys(16);
+        bucketHeads = new int[16];
+    }
+
+    public record Match(long id, double similarity) {
+    }
+
+    public record Stats(int entries, int buckets, int slots) {
+    }
+
+    // ids must not be Long.MIN_VALUE; a text without a single shingle is not indexed
+    public void upsert(long id, String text) {
+        int[] signature = signatureOf(text);
+        lock.writeLock().lock();
+        try {
+            int slot = find(idKeys, id);
+            if (slot >= 0) {
+                unlinkBands(idSlots[slot]);
+                freeSlot(idSlots[slot]);
+                deleteKey(slot);
+            }
+            if (signature == null) {
+                return;
+            }
+            int target = allocateSlot();
+            slotIds[target] = id;
+            System.arraycopy(signature, 0, signatures, target * hashes, hashes);
+            linkBands(target);
+            putKey(id, target);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = find(idKeys, id);
+            if (slot >= 0) {
+                unlinkBands(idSlots[slot]);
+                freeSlot(idSlots[slot]);
+                deleteKey(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the indexed entries sharing a bucket with id, most similar first, with at least minSimilarity
+    public List<Match> similar(long id, int limit, double minSimilarity) {
+        lock.readLock().lock();
+        try {
+            int found = find(idKeys, id);
+            if (found < 0 || limit < 1) {
+                return List.of();
+            }
+            int self = idSlots[found];
+            int[] candidates = new int[Math.min(bands * maxBucketScan, 1024)];
+            int candidateCount = 0;
+            for (int band = 0; band < bands && candidateCount < candidates.length; band++) {
+                int bucket = find(bucketKeys, bandKeys[self * bands + band]);
+                int scanned = 0;
+                for (int slot = bucketHeads[bucket]; slot != NONE && scanned < maxBucketScan; slot = nextInBand[slot * bands + band]) {
+                    scanned++;
+                    if (slot != self && candidateCount < candidates.length) {
+                        candidates[candidateCount++] = slot;
+                    }
+                }
+            }
+            Arrays.sort(candidates, 0, candidateCount);
+
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < candidateCount; i++) {
+                if (i > 0 && candidates[i] == candidates[i - 1]) {
+                    continue;
+                }
+                double similarity = agreement(self, candidates[i]);
+                if (similarity >= minSimilarity) {
+                    matches.add(new Match(slotIds[candidates[i]], similarity));
+                }
+            }
+            matches.sort((a, b) -> a.similarity() != b.similarity()
+                    ? Double.compare(b.similarity(), a.similarity()) : Long.compare(a.id(), b.id()));
+            return matches.size() > limit ? List.copyOf(matches.subList(0, limit)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(size, bucketCount, slotCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+        lower-cased letters and digits with runs of anything else collapsed to one space, shingled without
+        building substrings: each shingle is a polynomial hash of its characters, computed over a ring of
+        the last shingleLength characters
+    */
+    int[] signatureOf(String text) {
+        if (text == null) {
+            return null;
+        }
+        int[] signature = new int[hashes];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        char[] window = new char[shingleLength];
+        int emitted = 0;
+        boolean space = false;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                space = emitted > 0;
+                continue;
+            }
+            if (space) {
+                emitted = emit(signature, window, emitted, ' ');
+                space = false;
+            }
+            emitted = emit(signature, window, emitted, Character.toLowerCase(c));
+        }
+        if (emitted == 0) {
+            return null;
+        }
+        if (emitted < shingleLength) {
+            // a text shorter than one shingle is a single shingle
+            addShingle(signature, window, emitted);
+        }
+        return signature;
+    }
+
+    private int emit(int[] signature, char[] window, int emitted, char c) {
+        window[emitted % shingleLength] = c;
+        emitted++;
+        if (emitted >= shingleLength) {
+            addShingle(signature, window, emitted);
+        }
+        return emitted;
+    }
+
+    private void addShingle(int[] signature, char[] window, int filled) {
+        int length = Math.min(filled, shingleLength);
+        long h = 0x84222325CBF29CE4L;
+        for (int k = filled - length; k < filled; k++) {
+            h = (h ^ window[k % shingleLength]) * 0x100000001B3L;
+        }
+        for (int i = 0; i < hashes; i++) {
+            int value = (int) (mix(h ^ seeds[i]) >>> 33);
+            if (value < signature[i]) {
+                signature[i] = value;
+            }
+        }
+    }
+
+    private double agreement(int a, int b) {
+        int equal = 0;
+        int offsetA = a * hashes;
+        int offsetB = b * hashes;
+        for (int i = 0; i < hashes; i++) {
+            if (signatures[offsetA + i] == signatures[offsetB + i]) {
+                equal++;
+            }
+        }
+        return (double) equal / hashes;
+    }
+
+    private void linkBands(int slot) {
+        for (int band = 0; band < bands; band++) {
+            long key = bandKey(slot, band);
+            bandKeys[slot * bands + band] = key;
+            int bucket = find(bucketKeys, key);
+            if (bucket < 0) {
+                if ((bucketCount + 1) * 2 > bucketKeys.length) {
+                    growBuckets();
+                }
+                bucket = insertionSlot(bucketKeys, key);
+                bucketKeys[bucket] = key;
+                bucketHeads[bucket] = NONE;
+                bucketCount++;
+            }
+            int head = bucketHeads[bucket];
+            nextInBand[slot * bands + band] = head;
+            prevInBand[slot * bands + band] = NONE;
+            if (head != NONE) {
+                prevInBand[head * bands + band] = slot;
+            }
+            bucketHeads[bucket] = slot;
+        }
+    }
+
+    private void unlinkBands(int slot) {
+        for (int band = 0; band < bands; band++) {
+            int next = nextInBand[slot * bands + band];
+            int previous = prevInBand[slot * bands + band];
+            if (next != NONE) {
+                prevInBand[next * bands + band] = previous;
+            }
+            if (previous != NONE) {
+                nextInBand[previous * bands + band] = next;
+                continue;
+            }
+            // the bucket's head: only then is the bucket itself looked up
+            int bucket = find(bucketKeys, bandKeys[slot * bands + band]);
+            if (bucket < 0) {
+                continue;
+            }
+            bucketHeads[bucket] = next;
+            if (next == NONE) {
+                deleteFrom(bucketKeys, bucketHeads, bucket);
+                bucketCount--;
+            }
+        }
+    }
+
+    // band index mixed into the hash of its rows, so equal rows in different bands land in different buckets
+    private long bandKey(int slot, int band) {
+        long h = band * 0x9E3779B97F4A7C15L;
+        int offset = slot * hashes + band * rows;
+        for (int r = 0; r < rows; r++) {
+            h = mix(h ^ signatures[offset + r]);
+        }
+        return h == EMPTY_KEY ? EMPTY_KEY + 1 : h;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == slotIds.length) {
+            int capacity = Math.max(16, slotIds.length * 2);
+            slotIds = Arrays.copyOf(slotIds, capacity);
+            signatures = Arrays.copyOf(signatures, capacity * hashes);
+            nextInBand = Arrays.copyOf(nextInBand, capacity * bands);
+            prevInBand = Arrays.copyOf(prevInBand, capacity * bands);
+            bandKeys = Arrays.copyOf(bandKeys, capacity * bands);
+        }
+        return slotCount++;
+    }
+
+    private void freeSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void putKey(long id, int slot) {
+        if ((size + 1) * 2 > idKeys.length) {
+            long[] oldKeys = idKeys;
+            int[] oldSlots = idSlots;
+            idKeys = emptyKeys(oldKeys.length * 2);
+            idSlots = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY_KEY) {
+                    int at = insertionSlot(idKeys, oldKeys[i]);
+                    idKeys[at] = oldKeys[i];
+                    idSlots[at] = oldSlots[i];
+                }
+            }
+        }
+        int at = insertionSlot(idKeys, id);
+        idKeys[at] = id;
+        idSlots[at] = slot;
+        size++;
+    }
+
+    private void deleteKey(int at) {
+        deleteFrom(idKeys, idSlots, at);
+        size--;
+    }
+
+    private void growBuckets() {
+        long[] oldKeys = bucketKeys;
+        int[] oldHeads = bucketHeads;
+        bucketKeys = emptyKeys(oldKeys.length * 2);
+        bucketHeads = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int at = insertionSlot(bucketKeys, oldKeys[i]);
+                bucketKeys[at] = oldKeys[i];
+                bucketHeads[at] = oldHeads[i];
+            }
+        }
+    }
+
+    private static int find(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int at = slotOf(key, mask);
+        while (true) {
+            long found = keys[at];
+            if (found == key) {
+                return at;
+            }
+            if (found == EMPTY_KEY) {
+                return -1;
+            }
+            at = (at + 1) & mask;
+        }
+    }
+
+    private static int insertionSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int at = slotOf(key, mask);
+        while (keys[at] != EMPTY_KEY) {
+            at = (at + 1) & mask;
+        }
+        return at;
+    }
+
+    // linear probing delete: shift later entries of the same run back so lookups never stop early
+    private static void deleteFrom(long[] keys, int[] values, int at) {
+        int mask = keys.length - 1;
+        int hole = at;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY_KEY;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long[] emptyKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        return keys;
+    }
+}
@@ -0,0 +1,75 @@
+package com.genc.e_commerce.util;
+
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.math.BigDecimal;
+
+/*
+    Marks a long minor-unit amount for JSON: it is written as a decimal number in the shop currency (1250 ->
+    12.50) and read back from one, so clients keep seeing and sending prices as before. This is the only
+    place an amount becomes a decimal on its way out.
+*/
+@Target({ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+@JacksonAnnotationsInside
+@JsonSerialize(using = MinorUnits.Serializer.class)
+@JsonDeserialize(using = MinorUnits.Deserializer.class)
+public @interface MinorUnits {
+
+    class Serializer extends StdSerializer<Long> {
+        private static final long serialVersionUID = 1L;
+
+        public Serializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(Money.toMajor(value));
+        }
+    }
+
+    class Deserializer extends StdDeserializer<Long> {
+        private static final long serialVersionUID = 1L;
+
+        public Deserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            BigDecimal amount;
+            if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                amount = parser.getDecimalValue();
+            } else if (token == JsonToken.VALUE_STRING) {
+                try {
+                    amount = new BigDecimal(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    return (Long) context.handleWeirdStringValue(Long.class, parser.getText(), "not a decimal amount");
+                }
+            } else {
+                return (Long) context.handleUnexpectedToken(Long.class, parser);
+            }
+            try {
+                return Money.ofMajor(amount);
+            } catch (IllegalArgumentException e) {
+                return (Long) context.handleWeirdNumberValue(Long.class, amount, e.getMessage());
+            }
+        }
+    }
+}
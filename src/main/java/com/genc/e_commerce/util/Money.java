@@ -0,0 +1,69 @@
+package com.genc.e_commerce.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/*
+    Money is held as a long count of minor units (cents for USD) of the shop's single currency, in memory and
+    in the database. Arithmetic on it is exact integer arithmetic; the conversions below are for the edges
+    only: decimal amounts coming in over JSON or from configuration, and decimal amounts going out.
+
+    The currency is set once at startup from app.money.currency. It fixes what one minor unit is worth, so
+    changing it on an existing database is a data migration, not a setting.
+*/
+public final class Money {
+
+    private static volatile Currency currency = Currency.getInstance("USD");
+
+    private Money() {
+    }
+
+    public static void setCurrency(Currency newCurrency) {
+        if (newCurrency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException(newCurrency + " has no minor unit");
+        }
+        currency = newCurrency;
+    }
+
+    public static Currency currency() {
+        return currency;
+    }
+
+    public static int fractionDigits() {
+        return currency.getDefaultFractionDigits();
+    }
+
+    // minor units per major unit, e.g. 100 for USD
+    public static long factor() {
+        return BigDecimal.ONE.movePointRight(fractionDigits()).longValueExact();
+    }
+
+    // exact; an amount with more decimals than the currency has is rejected rather than rounded
+    public static long ofMajor(BigDecimal amount) {
+        try {
+            return amount.movePointRight(fractionDigits()).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(amount + " is not a valid " + currency + " amount", e);
+        }
+    }
+
+    // for binary floating point input such as configuration: rounds half up on the decimal the double prints as
+    public static long ofMajor(double amount) {
+        return BigDecimal.valueOf(amount).movePointRight(fractionDigits()).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public static BigDecimal toMajor(long minor) {
+        return BigDecimal.valueOf(minor, fractionDigits());
+    }
+
+    // unit price times quantity; overflow throws instead of wrapping
+    public static long times(long unitMinor, int quantity) {
+        return Math.multiplyExact(unitMinor, quantity);
+    }
+
+    // e.g. "USD 12.50", for logs and messages
+    public static String format(long minor) {
+        return currency.getCurrencyCode() + " " + toMajor(minor).toPlainString();
+    }
+}
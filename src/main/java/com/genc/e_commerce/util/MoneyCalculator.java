@@ -0,0 +1,30 @@
+package com.genc.e_commerce.util;
+
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.ToLongFunction;
+
+/*
+    Cart and order totals over minor units. The amount of each item is read through a primitive function and
+    summed into a long, with an indexed loop for random-access lists, so a total allocates nothing: no boxed
+    Long, no iterator, no stream, no BigDecimal. Sums are overflow-checked.
+*/
+public final class MoneyCalculator {
+
+    private MoneyCalculator() {
+    }
+
+    public static <T> long total(List<T> items, ToLongFunction<? super T> amountMinor) {
+        long total = 0;
+        if (items instanceof RandomAccess) {
+            for (int i = 0, n = items.size(); i < n; i++) {
+                total = Math.addExact(total, amountMinor.applyAsLong(items.get(i)));
+            }
+        } else {
+            for (T item : items) {
+                total = Math.addExact(total, amountMinor.applyAsLong(item));
+            }
+        }
+        return total;
+    }
+}
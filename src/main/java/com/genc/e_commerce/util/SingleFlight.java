@@ -0,0 +1,106 @@
+package com.genc.e_commerce.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+    Collapses concurrent identical reads into one call. The first caller for a key (the leader) runs the
+    loader, every caller that arrives while it is still running waits on the same future and gets the
+    same result (or the same exception). Nothing is cached once the call finishes.
+*/
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final long timeoutNanos;
+    private final ConcurrentHashMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(String name, Duration timeout) {
+        this.name = name;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        calls.increment();
+        long now = System.nanoTime();
+        Flight<V> flight = new Flight<>(now + timeoutNanos);
+        Flight<V> existing = inFlight.putIfAbsent(key, flight);
+
+        // a leader that has been running longer than the per-key timeout no longer gets followers,
+        // the next caller replaces it and runs its own load
+        if (existing != null && existing.deadline - now < 0) {
+            if (inFlight.replace(key, existing, flight)) {
+                existing = null;
+            } else {
+                existing = inFlight.putIfAbsent(key, flight);
+            }
+        }
+
+        if (existing == null) {
+            return lead(key, flight, loader);
+        }
+        return follow(existing, now);
+    }
+
+    private V lead(K key, Flight<V> flight, Supplier<V> loader) {
+        executions.increment();
+        try {
+            V value = loader.get();
+            flight.future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // errors included, or the followers would wait out the whole timeout
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private V follow(Flight<V> flight, long now) {
+        coalesced.increment();
+        try {
+            return flight.future.get(Math.max(flight.deadline - now, 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new IllegalStateException("Timed out waiting for in-flight " + name + " lookup", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for in-flight " + name + " lookup", e);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(name, calls.sum(), executions.sum(), coalesced.sum(), timeouts.sum(), inFlight.size());
+    }
+
+    public record Stats(String name, long calls, long executions, long coalesced, long timeouts, int inFlight) {
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final long deadline;
+
+        private Flight(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.genc.e_commerce.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/*
+    Lossy many-producer, one-consumer buffer of positive longs for hot recording paths. Producers are spread
+    over a fixed number of stripes (about two per core) by thread id, and an offer is one CAS on the stripe's
+    tail and one store; nothing blocks and nothing is allocated. A full stripe drops the value and counts
+    it instead of waiting, so a stalled consumer costs accuracy, never latency.
+
+    drain() must only be called from one thread at a time.
+*/
+public class StripedLongBuffer {
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final LongAdder dropped = new LongAdder();
+
+    public StripedLongBuffer(int capacityPerStripe) {
+        if (capacityPerStripe < 2 || Integer.bitCount(capacityPerStripe) != 1) {
+            throw new IllegalArgumentException("capacityPerStripe must be a power of two");
+        }
+        int count = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(capacityPerStripe);
+        }
+        stripeMask = count - 1;
+    }
+
+    // false when the value was dropped because its stripe was full; values must be greater than zero
+    public boolean offer(long value) {
+        long id = Thread.currentThread().threadId();
+        Stripe stripe = stripes[(int) (id ^ (id >>> 16)) & stripeMask];
+        long tail;
+        do {
+            tail = stripe.tail.get();
+            if (tail - stripe.head.get() >= stripe.capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!stripe.tail.compareAndSet(tail, tail + 1));
+        stripe.slots.setRelease((int) (tail & stripe.mask), value);
+        return true;
+    }
+
+    // hands every published value to the consumer and returns how many there were
+    public int drain(LongConsumer consumer) {
+        int drained = 0;
+        for (Stripe stripe : stripes) {
+            long head = stripe.head.get();
+            while (true) {
+                int slot = (int) (head & stripe.mask);
+                long value = stripe.slots.getAcquire(slot);
+                if (value == 0) {
+                    // empty, or claimed by a producer that has not stored yet; the next drain picks it up
+                    break;
+                }
+                stripe.slots.setPlain(slot, 0);
+                head++;
+                stripe.head.set(head);
+                consumer.accept(value);
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public int capacity() {
+        return stripes.length * stripes[0].capacity;
+    }
+
+    private static final class Stripe {
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLongArray slots;
+        private final int capacity;
+        private final int mask;
+
+        private Stripe(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.slots = new AtomicLongArray(capacity);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.genc.e_commerce.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+    Compressed (radix) trie for type-ahead. Every node keeps the top-K entries of its whole subtree ordered by
+    weight, so a lookup is a walk down the prefix followed by returning a precomputed array; nothing is
+    scanned or sorted at query time. Writes recompute the top-K lists only along the paths they touched.
+
+    Each entry is indexed under its full normalized text and under every suffix that starts at a word, so
+    "shirt" also finds "red shirt".
+*/
+public class SuggestionTrie {
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final int topK;
+    private final Node root = new Node("");
+    private final Map<EntryKey, Entry> entries = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SuggestionTrie(int topK) {
+        this.topK = topK;
+    }
+
+    public void upsert(String type, long id, String text, long weight) {
+        String normalized = normalize(text);
+        lock.writeLock().lock();
+        try {
+            EntryKey key = new EntryKey(type, id);
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (existing.normalized.equals(normalized)) {
+                    existing.weight = weight;
+                    existing.text = text;
+                    refresh(existing);
+                    return;
+                }
+                unindex(existing);
+                entries.remove(key);
+            }
+            if (normalized.isEmpty()) {
+                return;
+            }
+            Entry entry = new Entry(type, id, text, normalized, weight);
+            entries.put(key, entry);
+            for (String indexKey : indexKeys(normalized)) {
+                List<Node> path = insertPath(indexKey);
+                path.get(path.size() - 1).terminals.add(entry);
+                recomputeAlong(path);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addWeight(String type, long id, long delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(new EntryKey(type, id));
+            if (entry != null) {
+                entry.weight += delta;
+                refresh(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // null when the entry is not indexed
+    public Long weightOf(String type, long id) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(new EntryKey(type, id));
+            return entry != null ? entry.weight : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(String type, long id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(new EntryKey(type, id));
+            if (entry != null) {
+                unindex(entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String remaining = normalize(prefix);
+        if (remaining.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            while (!remaining.isEmpty()) {
+                Node child = node.children.get(remaining.charAt(0));
+                if (child == null) {
+                    return List.of();
+                }
+                if (remaining.startsWith(child.label)) {
+                    remaining = remaining.substring(child.label.length());
+                    node = child;
+                } else if (child.label.startsWith(remaining)) {
+                    node = child;
+                    remaining = "";
+                } else {
+                    return List.of();
+                }
+            }
+            Entry[] top = node.top;
+            int count = Math.min(limit, top.length);
+            List<Suggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                suggestions.add(top[i].toSuggestion());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> indexKeys(String normalized) {
+        List<String> keys = new ArrayList<>();
+        keys.add(normalized);
+        for (int i = 1; i < normalized.length(); i++) {
+            if (normalized.charAt(i - 1) == ' ') {
+                keys.add(normalized.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    // a weight change can move the entry up or down in every top-K list on its paths
+    private void refresh(Entry entry) {
+        for (String indexKey : indexKeys(entry.normalized)) {
+            List<Node> path = findPath(indexKey);
+            if (path != null) {
+                recomputeAlong(path);
+            }
+        }
+    }
+
+    private void unindex(Entry entry) {
+        for (String indexKey : indexKeys(entry.normalized)) {
+            List<Node> path = findPath(indexKey);
+            if (path == null) {
+                continue;
+            }
+            Node terminal = path.get(path.size() - 1);
+            terminal.terminals.remove(entry);
+            prune(path);
+            recomputeAlong(path);
+        }
+    }
+
+    private List<Node> insertPath(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        String remaining = key;
+        while (!remaining.isEmpty()) {
+            char first = remaining.charAt(0);
+            Node child = node.children.get(first);
+            if (child == null) {
+                child = new Node(remaining);
+                node.children.put(first, child);
+                path.add(child);
+                return path;
+            }
+            int common = commonPrefixLength(child.label, remaining);
+            if (common < child.label.length()) {
+                // split the edge: node -> middle -> child
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.children.put(child.label.charAt(0), child);
+                middle.top = child.top;
+                node.children.put(first, middle);
+                child = middle;
+            }
+            remaining = remaining.substring(common);
+            path.add(child);
+            node = child;
+        }
+        return path;
+    }
+
+    private List<Node> findPath(String key) {
+        List<Node> path = new ArrayList<>();
+        path.add(root);
+        Node node = root;
+        String remaining = key;
+        while (!remaining.isEmpty()) {
+            Node child = node.children.get(remaining.charAt(0));
+            if (child == null || !remaining.startsWith(child.label)) {
+                return null;
+            }
+            remaining = remaining.substring(child.label.length());
+            path.add(child);
+            node = child;
+        }
+        return path;
+    }
+
+    // drops nodes left without entries or children and merges single-child chains back into one edge
+    private void prune(List<Node> path) {
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node node = path.get(i);
+            Node parent = path.get(i - 1);
+            if (node.terminals.isEmpty() && node.children.isEmpty()) {
+                parent.children.remove(node.label.charAt(0));
+                path.remove(i);
+            } else if (node.terminals.isEmpty() && node.children.size() == 1) {
+                Node only = node.children.values().iterator().next();
+                only.label = node.label + only.label;
+                parent.children.put(only.label.charAt(0), only);
+                path.set(i, only);
+            }
+        }
+    }
+
+    private void recomputeAlong(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            recompute(path.get(i));
+        }
+    }
+
+    private void recompute(Node node) {
+        List<Entry> candidates = new ArrayList<>(node.terminals);
+        for (Node child : node.children.values()) {
+            for (Entry entry : child.top) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> {
+            int byWeight = Long.compare(b.weight, a.weight);
+            return byWeight != 0 ? byWeight : a.normalized.compareTo(b.normalized);
+        });
+        List<Entry> top = new ArrayList<>(Math.min(topK, candidates.size()));
+        for (Entry entry : candidates) {
+            if (top.size() == topK) {
+                break;
+            }
+            // the same entry can reach a node through two of its index keys
+            if (!top.contains(entry)) {
+                top.add(entry);
+            }
+        }
+        node.top = top.toArray(NO_ENTRIES);
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public record Suggestion(String text, String type, long id, long weight) {
+    }
+
+    private record EntryKey(String type, long id) {
+    }
+
+    private static final class Entry {
+        private final String type;
+        private final long id;
+        private final String normalized;
+        private String text;
+        private long weight;
+
+        private Entry(String type, long id, String text, String normalized, long weight) {
+            this.type = type;
+            this.id = id;
+            this.text = text;
+            this.normalized = normalized;
+            this.weight = weight;
+        }
+
+        private Suggestion toSuggestion() {
+            return new Suggestion(text, type, id, weight);
+        }
+    }
+
+    private static final class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private final List<Entry> terminals = new ArrayList<>(1);
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.genc.e_commerce.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+    Approximate per-key counts over a sliding window, with the top-K keys of the window. The window is a ring
+    of bucket sketches plus one sketch holding their sum; advance() retires the oldest bucket by subtracting
+    it from the sum, so an estimate is always a single count-min lookup. The top keys live in a min-heap of
+    fixed size that a key enters once its window estimate beats the smallest one held; retiring a bucket
+    re-estimates the heap and drops keys whose count fell to zero.
+
+    Memory is (buckets + 1) count-min sketches and the heap, independent of how many keys are seen.
+    Not thread-safe: one writer, and readers go through snapshots.
+*/
+public class TrendingWindow {
+
+    private static final long EMPTY_KEY = 0;
+
+    private final CountMinSketch[] buckets;
+    private final CountMinSketch window;
+    private int current;
+
+    // min-heap by count, with an open-addressing index from key to heap position
+    private final long[] heapKeys;
+    private final int[] heapCounts;
+    private int heapSize;
+    private final long[] indexKeys;
+    private final int[] indexPositions;
+    private final int indexMask;
+
+    public TrendingWindow(int buckets, int sketchDepth, int sketchWidth, int topK) {
+        this.buckets = new CountMinSketch[buckets];
+        for (int i = 0; i < buckets; i++) {
+            this.buckets[i] = new CountMinSketch(sketchDepth, sketchWidth);
+        }
+        this.window = new CountMinSketch(sketchDepth, sketchWidth);
+        heapKeys = new long[topK];
+        heapCounts = new int[topK];
+        int indexCapacity = Integer.highestOneBit(Math.max(2, topK * 2) - 1) << 1;
+        indexKeys = new long[indexCapacity];
+        indexPositions = new int[indexCapacity];
+        indexMask = indexCapacity - 1;
+    }
+
+    public record Entry(long key, int count) {
+    }
+
+    // keys must be greater than zero
+    public void add(long key, int count) {
+        buckets[current].add(key, count);
+        window.add(key, count);
+        int estimate = window.estimate(key);
+        int slot = findSlot(key);
+        if (slot >= 0) {
+            int position = indexPositions[slot];
+            heapCounts[position] = estimate;
+            siftDown(position);
+        } else if (heapSize < heapKeys.length) {
+            heapKeys[heapSize] = key;
+            heapCounts[heapSize] = estimate;
+            index(key, heapSize);
+            siftUp(heapSize++);
+        } else if (estimate > heapCounts[0]) {
+            unindex(heapKeys[0]);
+            heapKeys[0] = key;
+            heapCounts[0] = estimate;
+            index(key, 0);
+            siftDown(0);
+        }
+    }
+
+    public int estimate(long key) {
+        return window.estimate(key);
+    }
+
+    // retires the oldest bucket; the freed bucket collects what is added next
+    public void advance() {
+        current = (current + 1) % buckets.length;
+        window.subtractAll(buckets[current]);
+        buckets[current].clear();
+        int kept = 0;
+        for (int i = 0; i < heapSize; i++) {
+            int estimate = window.estimate(heapKeys[i]);
+            if (estimate > 0) {
+                heapKeys[kept] = heapKeys[i];
+                heapCounts[kept++] = estimate;
+            }
+        }
+        heapSize = kept;
+        Arrays.fill(indexKeys, EMPTY_KEY);
+        for (int i = 0; i < heapSize; i++) {
+            index(heapKeys[i], i);
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    // the held keys, highest count first
+    public List<Entry> top() {
+        List<Entry> entries = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            entries.add(new Entry(heapKeys[i], heapCounts[i]));
+        }
+        entries.sort((a, b) -> a.count() != b.count() ? Integer.compare(b.count(), a.count()) : Long.compare(a.key(), b.key()));
+        return entries;
+    }
+
+    public int bucketCount() {
+        return buckets.length;
+    }
+
+    public void clear() {
+        for (CountMinSketch bucket : buckets) {
+            bucket.clear();
+        }
+        window.clear();
+        heapSize = 0;
+        Arrays.fill(indexKeys, EMPTY_KEY);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heapCounts[parent] <= heapCounts[position]) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < heapSize && heapCounts[left] < heapCounts[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapCounts[right] < heapCounts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long key = heapKeys[a];
+        int count = heapCounts[a];
+        heapKeys[a] = heapKeys[b];
+        heapCounts[a] = heapCounts[b];
+        heapKeys[b] = key;
+        heapCounts[b] = count;
+        indexPositions[findSlot(heapKeys[a])] = a;
+        indexPositions[findSlot(heapKeys[b])] = b;
+    }
+
+    private int findSlot(long key) {
+        int slot = slotOf(key);
+        while (true) {
+            long found = indexKeys[slot];
+            if (found == key) {
+                return slot;
+            }
+            if (found == EMPTY_KEY) {
+                return -1;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+    }
+
+    private void index(long key, int position) {
+        int slot = slotOf(key);
+        while (indexKeys[slot] != EMPTY_KEY) {
+            slot = (slot + 1) & indexMask;
+        }
+        indexKeys[slot] = key;
+        indexPositions[slot] = position;
+    }
+
+    // linear probing delete: shift later entries of the same run back so lookups never stop early
+    private void unindex(long key) {
+        int hole = findSlot(key);
+        int next = (hole + 1) & indexMask;
+        while (indexKeys[next] != EMPTY_KEY) {
+            int home = slotOf(indexKeys[next]);
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                indexKeys[hole] = indexKeys[next];
+                indexPositions[hole] = indexPositions[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        indexKeys[hole] = EMPTY_KEY;
+    }
+
+    private int slotOf(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & indexMask;
+    }
+}
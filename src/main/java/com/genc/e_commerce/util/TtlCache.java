@@ -0,0 +1,92 @@
+package com.genc.e_commerce.util;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Small bounded cache with a fixed time-to-live per entry. When the cache is full, expired entries are
+    dropped first and, if that is not enough, new entries are simply not cached until space frees up.
+
+    Loaders that read the source outside any lock take generation() before the read and store with
+    put(key, value, generation): if an invalidate or clear ran in between, the value may predate that write
+    and is not cached.
+*/
+public class TtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    // bumped by every invalidate and clear
+    private final AtomicLong generation = new AtomicLong();
+
+    public TtlCache(int maxEntries, Duration ttl) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() < 0) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    public void put(K key, V value) {
+        if (hasRoomFor(key)) {
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /*
+        caches value only if nothing was invalidated since loadGeneration was taken. The check runs inside
+        compute, and invalidate bumps the generation before it removes, so an invalidate racing with this put
+        either makes the check fail or removes the entry right after it was stored.
+    */
+    public void put(K key, V value, long loadGeneration) {
+        if (!hasRoomFor(key)) {
+            return;
+        }
+        entries.compute(key, (k, existing) -> generation.get() == loadGeneration
+                ? new Entry<>(value, System.nanoTime() + ttlNanos) : existing);
+    }
+
+    public long generation() {
+        return generation.get();
+    }
+
+    public void invalidate(K key) {
+        generation.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private boolean hasRoomFor(K key) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            evictExpired();
+            return entries.size() < maxEntries;
+        }
+        return true;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.expiresAt - now < 0);
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.event.CategoryChangedEvent;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.CategoryRepo;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.SuggestionTrie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AutocompleteServiceTest {
+
+    @Mock
+    private ProductRepo productRepo;
+    @Mock
+    private CategoryRepo categoryRepo;
+
+    @InjectMocks
+    private AutocompleteService autocompleteService;
+
+    @BeforeEach
+    void setUp() {
+        Category electronics = new Category();
+        electronics.setCategoryId(1);
+        electronics.setCategoryName("Electronics");
+
+        when(productRepo.findNameRows()).thenReturn(List.of(
+                row(10L, "Laptop Pro 15", 1),
+                row(11L, "Laptop Stand", 1),
+                row(12L, "Lamp", null)));
+        when(categoryRepo.findAll()).thenReturn(List.of(electronics));
+        autocompleteService.rebuild();
+    }
+
+    @Test
+    void suggest_shouldMatchPrefixesOfNamesAndOfLaterWords() {
+        // --- ACT ---
+        List<SuggestionTrie.Suggestion> byPrefix = autocompleteService.suggest("LAP", 10);
+        List<SuggestionTrie.Suggestion> byWord = autocompleteService.suggest("sta", 10);
+
+        // --- ASSERT ---
+        assertEquals(List.of("Laptop Pro 15", "Laptop Stand"), texts(byPrefix));
+        assertEquals(List.of("Laptop Stand"), texts(byWord));
+        assertEquals(List.of("Lamp", "Laptop Pro 15", "Laptop Stand"), texts(autocompleteService.suggest("la", 10)));
+        assertTrue(autocompleteService.suggest("x", 10).isEmpty());
+        // the category weighs two products and is ranked first
+        assertEquals("Electronics", autocompleteService.suggest("e", 10).get(0).text());
+        assertEquals(2, autocompleteService.suggest("e", 10).get(0).weight());
+    }
+
+    @Test
+    void suggest_shouldRankByPopularityWeight() {
+        // --- ACT ---
+        autocompleteService.addProductWeight(11L, 5);
+
+        // --- ASSERT ---
+        assertEquals(List.of("Laptop Stand", "Lamp"), texts(autocompleteService.suggest("la", 2)));
+    }
+
+    @Test
+    void onProductChanged_shouldUpdateTheIndexIncrementally() {
+        // --- ACT ---
+        // rename, delete and add without touching the repositories again
+        autocompleteService.onProductChanged(new ProductChangedEvent(
+                snapshot(10L, "Laptop Pro 15", 1, "Electronics"), snapshot(10L, "Notebook Pro 15", 1, "Electronics")));
+        autocompleteService.onProductChanged(new ProductChangedEvent(snapshot(12L, "Lamp", null, null), null));
+        autocompleteService.onProductChanged(new ProductChangedEvent(null, snapshot(13L, "Garden Hose", 2, "Garden")));
+
+        // --- ASSERT ---
+        assertEquals(List.of("Laptop Stand"), texts(autocompleteService.suggest("la", 10)));
+        assertEquals(List.of("Notebook Pro 15"), texts(autocompleteService.suggest("note", 10)));
+        assertEquals(List.of("Garden", "Garden Hose"), texts(autocompleteService.suggest("gar", 10)));
+        verify(productRepo, times(1)).findNameRows();
+    }
+
+    @Test
+    void onCategoryChanged_shouldRenameAndRemoveCategories() {
+        // --- ACT ---
+        autocompleteService.onCategoryChanged(new CategoryChangedEvent(1, "Electronics", "Gadgets"));
+        autocompleteService.onCategoryChanged(new CategoryChangedEvent(2, null, "Garden"));
+        autocompleteService.onCategoryChanged(new CategoryChangedEvent(2, "Garden", null));
+
+        // --- ASSERT ---
+        assertTrue(autocompleteService.suggest("elec", 10).isEmpty());
+        // the renamed category keeps its product count
+        assertEquals(2, autocompleteService.suggest("gad", 10).get(0).weight());
+        assertTrue(autocompleteService.suggest("gar", 10).isEmpty());
+    }
+
+    @Test
+    void rebuild_shouldReplayWritesMadeWhileLoadingOverTheRowsItRead() {
+        // --- ARRANGE ---
+        // the load already sees the lamp in Electronics; the lantern is added after it read its rows
+        doAnswer(invocation -> {
+            autocompleteService.onProductChanged(new ProductChangedEvent(
+                    snapshot(12L, "Lamp", null, null), snapshot(12L, "Lamp", 1, "Electronics")));
+            autocompleteService.onProductChanged(new ProductChangedEvent(null, snapshot(13L, "Lantern", 1, "Electronics")));
+            autocompleteService.onCategoryChanged(new CategoryChangedEvent(1, "Electronics", "Gadgets"));
+            autocompleteService.addProductWeight(11L, 5);
+            return List.of(row(10L, "Laptop Pro 15", 1), row(11L, "Laptop Stand", 1), row(12L, "Lamp", 1));
+        }).when(productRepo).findNameRows();
+
+        // --- ACT ---
+        autocompleteService.rebuild();
+
+        // --- ASSERT ---
+        assertEquals(List.of("Laptop Stand", "Lamp", "Lantern", "Laptop Pro 15"),
+                texts(autocompleteService.suggest("la", 10)));
+        assertTrue(autocompleteService.suggest("elec", 10).isEmpty());
+        // four products, each counted once
+        assertEquals(4, autocompleteService.suggest("gad", 10).get(0).weight());
+    }
+
+    private static List<String> texts(List<SuggestionTrie.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestionTrie.Suggestion::text).toList();
+    }
+
+    private static ProductSnapshot snapshot(Long id, String name, Integer categoryId, String categoryName) {
+        return new ProductSnapshot(id, name, "desc", 1000, 1, categoryId, categoryName);
+    }
+
+    private static ProductRepo.ProductNameRow row(Long id, String name, Integer categoryId) {
+        return new ProductRepo.ProductNameRow() {
+            public Long getProductId() { return id; }
+            public String getName() { return name; }
+            public Integer getCategoryId() { return categoryId; }
+        };
+    }
+}
@@ -0,0 +1,73 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.repository.CartExpiryJdbcRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartExpiryServiceTest {
+
+    @Mock
+    private CartExpiryJdbcRepo cartExpiryJdbcRepo;
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @InjectMocks
+    private CartExpiryService cartExpiryService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cartExpiryService, "chunkSize", 2);
+        ReflectionTestUtils.setField(cartExpiryService, "throttleMs", 0L);
+    }
+
+    @Test
+    void sweep_shouldDeleteExpiredLinesChunkByChunkUntilAShortChunk() {
+        // --- ARRANGE ---
+        when(cartExpiryJdbcRepo.findExpired(any(Date.class), eq(2))).thenReturn(
+                List.of(new CartExpiryJdbcRepo.ExpiredLine(1L, 10L), new CartExpiryJdbcRepo.ExpiredLine(2L, 10L)),
+                List.of(new CartExpiryJdbcRepo.ExpiredLine(5L, 11L)));
+        when(cartExpiryJdbcRepo.deleteExpired(eq(List.of(1L, 2L)), any(Date.class))).thenReturn(2);
+        when(cartExpiryJdbcRepo.deleteExpired(eq(List.of(5L)), any(Date.class))).thenReturn(1);
+
+        // --- ACT ---
+        cartExpiryService.sweep();
+
+        // --- ASSERT ---
+        CartExpiryService.Stats stats = cartExpiryService.getStats();
+        assertEquals(3, stats.linesDeleted());
+        assertEquals(3, stats.lastRunDeleted());
+        assertEquals(2, stats.chunks());
+        assertEquals(1, stats.runs());
+        assertNotNull(stats.lastRunAt());
+        // a short chunk means nothing older is left, so there is no third select
+        verify(cartExpiryJdbcRepo, times(2)).findExpired(any(Date.class), eq(2));
+        verify(cartStore, never()).forgetLine(anyLong(), anyLong());
+    }
+
+    @Test
+    void backfill_shouldStampLegacyRowsInChunksUntilNoneAreLeft() {
+        // --- ARRANGE ---
+        when(cartExpiryJdbcRepo.backfillLastModified(any(Date.class), eq(2))).thenReturn(2, 2, 1);
+
+        // --- ACT ---
+        cartExpiryService.backfill();
+
+        // --- ASSERT ---
+        assertEquals(5, cartExpiryService.getStats().backfilled());
+        verify(cartExpiryJdbcRepo, times(3)).backfillLastModified(any(Date.class), eq(2));
+    }
+}
@@ -0,0 +1,92 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.CartPricingJdbcRepo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartRepricingServiceTest {
+
+    @Mock
+    private CartPricingJdbcRepo cartPricingJdbcRepo;
+    @Mock
+    private WriteBehindCartStore cartStore;
+
+    @InjectMocks
+    private CartRepricingService cartRepricingService;
+
+    private static ProductChangedEvent priceChange(long productId, long from, long to) {
+        return new ProductChangedEvent(
+                new ProductSnapshot(productId, "Laptop", "desc", from, 5, 1, "Electronics"),
+                new ProductSnapshot(productId, "Laptop", "desc", to, 5, 1, "Electronics"));
+    }
+
+    @Test
+    void reprice_afterPriceChange_shouldUpdateCartLinesInRangesUntilDone() {
+        // --- ARRANGE ---
+        when(cartPricingJdbcRepo.nextChunkEnd(7L, 0L, 500)).thenReturn(600L);
+        when(cartPricingJdbcRepo.repriceRange(7L, 0L, 600L)).thenReturn(500);
+        when(cartPricingJdbcRepo.nextChunkEnd(7L, 600L, 500)).thenReturn(null);
+        cartRepricingService.onProductChanged(priceChange(7L, 1000, 1200));
+        assertEquals(1, cartRepricingService.getStats().pendingProducts());
+
+        // --- ACT ---
+        cartRepricingService.reprice();
+
+        // --- ASSERT ---
+        CartRepricingService.Stats stats = cartRepricingService.getStats();
+        assertEquals(0, stats.pendingProducts());
+        assertEquals(0, stats.lagMs());
+        assertEquals(500, stats.rowsRepriced());
+        assertEquals(1, stats.chunks());
+    }
+
+    @Test
+    void reprice_whenRowBudgetIsUsedUp_shouldContinueFromLastRangeOnNextRun() {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(cartRepricingService, "maxRowsPerRun", 500);
+        when(cartPricingJdbcRepo.nextChunkEnd(7L, 0L, 500)).thenReturn(600L);
+        when(cartPricingJdbcRepo.repriceRange(7L, 0L, 600L)).thenReturn(500);
+        when(cartPricingJdbcRepo.nextChunkEnd(7L, 600L, 500)).thenReturn(900L);
+        when(cartPricingJdbcRepo.repriceRange(7L, 600L, 900L)).thenReturn(300);
+        when(cartPricingJdbcRepo.nextChunkEnd(7L, 900L, 500)).thenReturn(null);
+        cartRepricingService.onProductChanged(priceChange(7L, 1000, 1200));
+
+        // --- ACT ---
+        cartRepricingService.reprice();
+        int pendingAfterFirstRun = cartRepricingService.getStats().pendingProducts();
+        cartRepricingService.reprice();
+
+        // --- ASSERT ---
+        assertEquals(1, pendingAfterFirstRun);
+        assertEquals(0, cartRepricingService.getStats().pendingProducts());
+        assertEquals(800, cartRepricingService.getStats().rowsRepriced());
+        verify(cartPricingJdbcRepo, times(1)).repriceRange(7L, 0L, 600L);
+        verify(cartPricingJdbcRepo, times(1)).repriceRange(7L, 600L, 900L);
+    }
+
+    @Test
+    void onProductChanged_whenPriceIsUnchanged_shouldNotQueueProduct() {
+        // --- ARRANGE ---
+        ProductChangedEvent renamed = new ProductChangedEvent(
+                new ProductSnapshot(7L, "Laptop", "desc", 1000, 5, 1, "Electronics"),
+                new ProductSnapshot(7L, "Laptop Pro", "desc", 1000, 5, 1, "Electronics"));
+
+        // --- ACT ---
+        cartRepricingService.onProductChanged(renamed);
+        cartRepricingService.reprice();
+
+        // --- ASSERT ---
+        assertEquals(0, cartRepricingService.getStats().pendingProducts());
+        verifyNoInteractions(cartPricingJdbcRepo);
+    }
+}
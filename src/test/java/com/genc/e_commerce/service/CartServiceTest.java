@@ -1,11 +1,14 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.CartBatchRequest;
 import com.genc.e_commerce.dto.CartRequest;
 import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.CartSummary;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Product;
 import com.genc.e_commerce.entity.User;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
+import com.genc.e_commerce.repository.CartJdbcRepo;
 import com.genc.e_commerce.repository.CartRepo;
 import com.genc.e_commerce.repository.ProductRepo;
 import com.genc.e_commerce.repository.UserRepository;
@@ -34,6 +37,14 @@ class CartServiceTest {
     private UserRepository userRepository;
     @Mock
     private ProductRepo productRepo;
+    @Mock
+    private WriteBehindCartStore cartStore;
+    @Mock
+    private CartJdbcRepo cartJdbcRepo;
+    @Mock
+    private PromotionService promotionService;
+    @Mock
+    private PopularityService popularityService;
 
     // 2. Inject the mocks into the service instance
     @InjectMocks
@@ -51,7 +62,7 @@ class CartServiceTest {
 
         testProduct = new Product();
         testProduct.setProductId(10L);
-        testProduct.setPrice(100.0); // Unit price
+        testProduct.setPriceMinor(10000); // Unit price, 100.00
 
         cartRequest = new CartRequest();
         cartRequest.setUserId(1L);
@@ -76,8 +87,9 @@ class CartServiceTest {
         // --- ASSERT ---
         assertNotNull(result);
         assertEquals(2, result.getQuantity());
-        assertEquals(200.0, result.getItemPriceTotal()); // 100.0 * 2
+        assertEquals(20000, result.getItemPriceTotalMinor()); // 100.00 * 2
         verify(cartRepo, times(1)).save(any(Cart.class));
+        verify(popularityService).recordAddToCart(10L);
     }
 
     @Test
@@ -99,7 +111,7 @@ class CartServiceTest {
         // --- ASSERT ---
         assertNotNull(result);
         assertEquals(5, result.getQuantity()); // 3 + 2 = 5
-        assertEquals(500.0, result.getItemPriceTotal()); // 100.0 * 5
+        assertEquals(50000, result.getItemPriceTotalMinor()); // 100.00 * 5
         verify(cartRepo, times(1)).save(existingCartItem);
     }
 
@@ -159,7 +171,7 @@ class CartServiceTest {
         cartItem1.setUser(testUser);
         cartItem1.setProduct(testProduct);
         cartItem1.setQuantity(2);
-        cartItem1.setItemPriceTotal(200.0);
+        cartItem1.setItemPriceTotalMinor(20000);
         List<Cart> cartList = Collections.singletonList(cartItem1);
 
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
@@ -175,6 +187,31 @@ class CartServiceTest {
         assertEquals(2, result.get(0).getQuantity());
     }
 
+    @Test
+    void priceCart_shouldReturnTheDiscountedSummary() {
+        // --- ARRANGE ---
+        Cart cartItem1 = new Cart();
+        cartItem1.setCartId(1L);
+        cartItem1.setUser(testUser);
+        cartItem1.setProduct(testProduct);
+        cartItem1.setQuantity(2);
+        cartItem1.setItemPriceTotalMinor(20000);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(cartRepo.findByUserUserId(1L)).thenReturn(List.of(cartItem1));
+        when(promotionService.price(anyList(), eq(PromotionService.CART_RESPONSES), eq("save10")))
+                .thenReturn(new PromotionRules.Pricing(20000, 1000, 2000, 17000, "SAVE10"));
+
+        // --- ACT ---
+        CartSummary summary = cartService.priceCart(1L, "save10");
+
+        // --- ASSERT ---
+        assertEquals(20000, summary.getTotalAmountMinor());
+        assertEquals(3000, summary.getDiscountMinor());
+        assertEquals(17000, summary.getPayableMinor());
+        assertEquals("SAVE10", summary.getCouponCode());
+    }
+
     // ## Tests for updateQuantity ##
     //----------------------------------------------------------------------
 
@@ -187,7 +224,7 @@ class CartServiceTest {
         cartItem1.setUser(testUser);
         cartItem1.setProduct(testProduct);
         cartItem1.setQuantity(2);
-        cartItem1.setItemPriceTotal(200.0);
+        cartItem1.setItemPriceTotalMinor(20000);
         when(cartRepo.findById(1L)).thenReturn(Optional.of(cartItem1));
         when(cartRepo.save(any(Cart.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -197,7 +234,7 @@ class CartServiceTest {
         // --- ASSERT ---
         assertNotNull(result);
         assertEquals(5, result.getQuantity());
-        assertEquals(500.0, result.getItemPriceTotal()); // 100.0 * 5
+        assertEquals(50000, result.getItemPriceTotalMinor()); // 100.00 * 5
         verify(cartRepo, times(1)).save(cartItem1);
     }
 
@@ -212,4 +249,65 @@ class CartServiceTest {
         verify(cartRepo, never()).findById(anyLong());
         verify(cartRepo, never()).save(any(Cart.class));
     }
-}
\ No newline at end of file
+
+    // ## Tests for applyBatch ##
+    //----------------------------------------------------------------------
+
+    private static CartBatchRequest.Operation operation(CartBatchRequest.Type type, Long productId, Long cartId, Integer quantity) {
+        CartBatchRequest.Operation operation = new CartBatchRequest.Operation();
+        operation.setType(type);
+        operation.setProductId(productId);
+        operation.setCartId(cartId);
+        operation.setQuantity(quantity);
+        return operation;
+    }
+
+    @Test
+    void applyBatch_shouldFoldOperationsIntoOneStatementBatchEach() {
+        // --- ARRANGE ---
+        Product otherProduct = new Product();
+        otherProduct.setProductId(20L);
+        otherProduct.setPriceMinor(500);
+        CartBatchRequest batchRequest = new CartBatchRequest();
+        batchRequest.setUserId(1L);
+        batchRequest.setOperations(List.of(
+                operation(CartBatchRequest.Type.SET_QUANTITY, null, 100L, 4),   // line for product 10 by cart id
+                operation(CartBatchRequest.Type.ADD, 10L, null, 1),             // same line again -> 5
+                operation(CartBatchRequest.Type.REMOVE, 30L, null, null),       // existing line removed
+                operation(CartBatchRequest.Type.ADD, 20L, null, 2),             // new line
+                operation(CartBatchRequest.Type.ADD, 20L, null, 1)));           // same new line -> 3
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(cartJdbcRepo.findByUserId(1L)).thenReturn(List.of(
+                new CartJdbcRepo.CartRow(100L, 1L, 10L, 2, 20000),
+                new CartJdbcRepo.CartRow(101L, 1L, 30L, 1, 700)));
+        when(productRepo.findAllById(List.of(10L, 20L))).thenReturn(List.of(testProduct, otherProduct));
+        when(cartRepo.findByUserUserId(1L)).thenReturn(Collections.emptyList());
+
+        // --- ACT ---
+        cartService.applyBatch(batchRequest);
+
+        // --- ASSERT ---
+        verify(cartJdbcRepo, times(1)).deleteAllById(List.of(101L));
+        verify(cartJdbcRepo, times(1)).updateQuantities(List.of(new CartJdbcRepo.CartRow(100L, 1L, 10L, 5, 50000)));
+        verify(cartJdbcRepo, times(1)).insertAll(List.of(new CartJdbcRepo.CartRow(0, 1L, 20L, 3, 1500)));
+        verify(cartRepo, never()).save(any(Cart.class));
+        verify(productRepo, never()).findById(any());
+    }
+
+    @Test
+    void applyBatch_whenCartIdIsNotInUsersCart_shouldThrowAndWriteNothing() {
+        // --- ARRANGE ---
+        CartBatchRequest batchRequest = new CartBatchRequest();
+        batchRequest.setUserId(1L);
+        batchRequest.setOperations(List.of(
+                operation(CartBatchRequest.Type.ADD, 10L, null, 1),
+                operation(CartBatchRequest.Type.REMOVE, null, 999L, null)));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(cartJdbcRepo.findByUserId(1L)).thenReturn(Collections.emptyList());
+
+        // --- ACT & ASSERT ---
+        assertThrows(ResourceNotFoundException.class, () -> cartService.applyBatch(batchRequest));
+        verify(cartJdbcRepo, never()).insertAll(any());
+        verify(cartJdbcRepo, never()).deleteAllById(any());
+    }
+}
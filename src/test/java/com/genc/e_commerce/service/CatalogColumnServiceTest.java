@@ -0,0 +1,180 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.ColumnarCatalog;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogColumnServiceTest {
+
+    @Mock
+    private ProductRepo productRepo;
+
+    @InjectMocks
+    private CatalogColumnService catalogColumnService;
+
+    @Test
+    void browseIds_shouldFilterAndSortByPriceFromTheLoadedColumns() {
+        // --- ARRANGE ---
+        when(productRepo.findColumnRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                row(1L, "Laptop", 99_900, 4, 1),
+                row(2L, "Mouse", 1_500, 0, 1),
+                row(3L, "Keyboard", 4_500, 12, 1),
+                row(4L, "Novel", 1_500, 30, 2),
+                row(5L, "Poster", 900, 2, null)));
+
+        // --- ACT ---
+        assertTrue(catalogColumnService.browseIds(null, 0, Long.MAX_VALUE, 0, false, 0, 10).isEmpty()); // not loaded
+        catalogColumnService.rebuild();
+        Page<Long> cheapestFirst = catalogColumnService.browseIds(null, 0, Long.MAX_VALUE, 0, false, 0, 3).orElseThrow();
+        Page<Long> secondPage = catalogColumnService.browseIds(null, 0, Long.MAX_VALUE, 0, false, 1, 3).orElseThrow();
+        Page<Long> electronicsInStock = catalogColumnService.browseIds(1, 1_000, 50_000, 1, true, 0, 10).orElseThrow();
+
+        // --- ASSERT ---
+        // equal prices are ordered by id
+        assertEquals(List.of(5L, 2L, 4L), cheapestFirst.getContent());
+        assertEquals(5, cheapestFirst.getTotalElements());
+        assertEquals(List.of(3L, 1L), secondPage.getContent());
+        assertEquals(List.of(3L), electronicsInStock.getContent());
+        assertEquals(1, electronicsInStock.getTotalElements());
+        // pages past the sort window go to the database
+        assertTrue(catalogColumnService.browseIds(null, 0, Long.MAX_VALUE, 0, false, 500, 100).isEmpty());
+    }
+
+    @Test
+    void onProductChanged_shouldKeepColumnsAndStockReportInStepWithWrites() {
+        // --- ARRANGE ---
+        when(productRepo.findColumnRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                row(1L, "Mug", 800, 3, 1),
+                row(2L, "Mug", 800, 0, 1),
+                row(3L, "Teapot", 2_400, 40, 2)));
+        catalogColumnService.rebuild();
+
+        // --- ACT ---
+        catalogColumnService.onProductChanged(new ProductChangedEvent(null, snapshot(4L, "Kettle", 3_000, 1, 2)));
+        catalogColumnService.onProductChanged(new ProductChangedEvent(
+                snapshot(3L, "Teapot", 2_400, 40, 2), snapshot(3L, "Teapot", 2_400, 38, 2)));
+        catalogColumnService.onProductChanged(new ProductChangedEvent(snapshot(1L, "Mug", 800, 3, 1), null));
+        ColumnarCatalog.StockReport report = catalogColumnService.getStockReport(5, 10).orElseThrow();
+
+        // --- ASSERT ---
+        assertEquals(3, report.products());
+        assertEquals(39, report.units());
+        assertEquals(1, report.outOfStock());
+        assertEquals(2, report.lowStock());
+        assertEquals(2_400L * 38 + 3_000, report.inventoryValueMinor());
+        assertEquals(List.of(new ColumnarCatalog.CategoryStock(1, 1, 0, 1), new ColumnarCatalog.CategoryStock(2, 2, 39, 0)),
+                report.categories());
+        // the deleted row was filled with the last one, names come back from the dictionary
+        assertEquals(List.of(new ColumnarCatalog.LowStock(2L, "Mug", 0), new ColumnarCatalog.LowStock(4L, "Kettle", 1)),
+                report.lowestStock());
+        assertEquals(3, catalogColumnService.getStats().columns().names());
+        // the stock change left the teapot's name where it was
+        assertEquals(0, catalogColumnService.getStats().columns().deadNameBytes());
+    }
+
+    @Test
+    void rebuild_shouldReplayWritesMadeWhileLoadingOverTheRowsItRead() {
+        // --- ARRANGE ---
+        // the chunk is read before the restock and the delete, which land while the load is running
+        when(productRepo.findColumnRowsAfter(eq(0L), any(Pageable.class))).thenAnswer(invocation -> {
+            List<ProductRepo.ProductColumnRow> chunk = List.of(row(1L, "Mug", 800, 0, 1), row(2L, "Teapot", 2_400, 5, 1));
+            catalogColumnService.onProductChanged(new ProductChangedEvent(
+                    snapshot(1L, "Mug", 800, 0, 1), snapshot(1L, "Mug", 800, 20, 1)));
+            catalogColumnService.onProductChanged(new ProductChangedEvent(snapshot(2L, "Teapot", 2_400, 5, 1), null));
+            return chunk;
+        });
+
+        // --- ACT ---
+        catalogColumnService.rebuild();
+        catalogColumnService.onProductChanged(new ProductChangedEvent(null, snapshot(3L, "Kettle", 3_000, 1, 1)));
+
+        // --- ASSERT ---
+        ColumnarCatalog.StockReport report = catalogColumnService.getStockReport(5, 10).orElseThrow();
+        assertEquals(2, report.products());
+        assertEquals(21, report.units());
+        assertEquals(0, report.outOfStock());
+    }
+
+    // 2 million rows and a wall-clock bound: run with mvn test -Pperformance
+    @Test
+    @Tag("performance")
+    void catalog_shouldScanMillionsOfRowsInMilliseconds() {
+        // --- ARRANGE ---
+        int products = 2_000_000;
+        ColumnarCatalog catalog = new ColumnarCatalog(products);
+        for (int id = 1; id <= products; id++) {
+            catalog.upsert(id, "Product " + (id % 50_000), (id * 7919L) % 100_000, id % 37, id % 20 + 1);
+        }
+        ColumnarCatalog.Filter filter = new ColumnarCatalog.Filter(7, 10_000, 20_000, 1);
+
+        long expected = 0;
+        for (int id = 1; id <= products; id++) {
+            long price = (id * 7919L) % 100_000;
+            if (id % 20 + 1 == 7 && price >= 10_000 && price <= 20_000 && id % 37 >= 1) {
+                expected++;
+            }
+        }
+
+        // --- ACT ---
+        long start = System.nanoTime();
+        ColumnarCatalog.Slice slice = null;
+        for (int i = 0; i < 5; i++) {
+            slice = catalog.byPrice(filter, false, 0, 20);
+        }
+        long averageMs = (System.nanoTime() - start) / 5 / 1_000_000;
+
+        // --- ASSERT ---
+        assertEquals(expected, slice.total());
+        assertEquals(20, slice.productIds().size());
+        assertEquals(50_000, catalog.getStats().names());
+        // generous bound for slow CI machines; typically a few milliseconds
+        assertTrue(averageMs < 1_000, "average scan took " + averageMs + " ms");
+    }
+
+    private static ProductRepo.ProductColumnRow row(Long productId, String name, long priceMinor, int stockQuantity,
+                                                    Integer categoryId) {
+        return new ProductRepo.ProductColumnRow() {
+            public Long getProductId() {
+                return productId;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public long getPriceMinor() {
+                return priceMinor;
+            }
+
+            public int getStockQuantity() {
+                return stockQuantity;
+            }
+
+            public Integer getCategoryId() {
+                return categoryId;
+            }
+        };
+    }
+
+    private static ProductSnapshot snapshot(Long productId, String name, long priceMinor, int stockQuantity,
+                                            Integer categoryId) {
+        return new ProductSnapshot(productId, name, null, priceMinor, stockQuantity, categoryId, null);
+    }
+}
@@ -0,0 +1,121 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CatalogFacets;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogFacetServiceTest {
+
+    @Mock
+    private ProductRepo productRepo;
+
+    @InjectMocks
+    private CatalogFacetService catalogFacetService;
+
+    @BeforeEach
+    void setUp() {
+        // start from a catalog with a single in-stock product in "Electronics"
+        when(productRepo.findFacetRows()).thenReturn(List.of(row(1L, 1, "Electronics", 3000, 5)));
+        catalogFacetService.rebuild();
+    }
+
+    @Test
+    void onProductChanged_whenPriceAndCategoryChange_shouldMoveCountsWithoutRequery() {
+        // --- ARRANGE ---
+        ProductSnapshot before = new ProductSnapshot(1L, "Laptop", "desc", 3000, 5, 1, "Electronics");
+        ProductSnapshot after = new ProductSnapshot(1L, "Laptop", "desc", 60000, 0, 2, "Computers");
+
+        // --- ACT ---
+        catalogFacetService.onProductChanged(new ProductChangedEvent(before, after));
+        catalogFacetService.onProductChanged(new ProductChangedEvent(null,
+                new ProductSnapshot(2L, "Cable", "desc", 500, 10, null, null)));
+        CatalogFacets facets = catalogFacetService.getFacets();
+
+        // --- ASSERT ---
+        assertEquals(2, facets.getTotalProducts());
+        assertEquals(1, facets.getInStockProducts());
+        assertEquals(1, countFor(facets, 2));
+        assertEquals(1, countFor(facets, null));
+        assertEquals(0, countFor(facets, 1)); // categories that drop to zero are not listed
+        assertEquals(1, facets.getPriceBuckets().get(0).getCount());  // 0..25
+        assertEquals(0, facets.getPriceBuckets().get(1).getCount());  // 25..50
+        assertEquals(1, facets.getPriceBuckets().get(5).getCount());  // 500..1000
+        verify(productRepo, times(1)).findFacetRows();
+    }
+
+    @Test
+    void rebuild_shouldCountWritesMadeDuringTheLoadOnce() {
+        // --- ARRANGE ---
+        ProductSnapshot laptop = new ProductSnapshot(1L, "Laptop", "desc", 3000, 5, 1, "Electronics");
+        ProductSnapshot soldOut = new ProductSnapshot(1L, "Laptop", "desc", 3000, 0, 1, "Electronics");
+        ProductSnapshot cable = new ProductSnapshot(2L, "Cable", "desc", 500, 10, null, null);
+        // the query already sees the sold-out laptop; the cable is added after it read its rows
+        when(productRepo.findFacetRows()).thenAnswer(invocation -> {
+            catalogFacetService.onProductChanged(new ProductChangedEvent(laptop, soldOut));
+            catalogFacetService.onProductChanged(new ProductChangedEvent(null, cable));
+            return List.of(row(1L, 1, "Electronics", 3000, 0));
+        });
+
+        // --- ACT ---
+        catalogFacetService.rebuild();
+
+        // --- ASSERT ---
+        CatalogFacets facets = catalogFacetService.getFacets();
+        assertEquals(2, facets.getTotalProducts());
+        assertEquals(1, facets.getInStockProducts());
+        assertEquals(1, countFor(facets, 1));
+        assertEquals(1, countFor(facets, null));
+    }
+
+    @Test
+    void onProductChanged_whenProductDeleted_shouldDecrementCounts() {
+        // --- ACT ---
+        catalogFacetService.onProductChanged(new ProductChangedEvent(
+                new ProductSnapshot(1L, "Laptop", "desc", 3000, 5, 1, "Electronics"), null));
+
+        // --- ASSERT ---
+        CatalogFacets facets = catalogFacetService.getFacets();
+        assertEquals(0, facets.getTotalProducts());
+        assertTrue(facets.getCategories().isEmpty());
+    }
+
+    @Test
+    void bucketOf_shouldPlacePricesInTheBucketOfTheirLowerBound() {
+        long[] bounds = {0, 2500, 5000};
+        assertEquals(0, CatalogFacetService.bucketOf(0, bounds));
+        assertEquals(0, CatalogFacetService.bucketOf(2499, bounds));
+        assertEquals(1, CatalogFacetService.bucketOf(2500, bounds));
+        assertEquals(2, CatalogFacetService.bucketOf(500000, bounds));
+    }
+
+    private static long countFor(CatalogFacets facets, Integer categoryId) {
+        return facets.getCategories().stream()
+                .filter(category -> java.util.Objects.equals(category.getCategoryId(), categoryId))
+                .mapToLong(CatalogFacets.CategoryCount::getCount)
+                .sum();
+    }
+
+    private static ProductRepo.ProductFacetRow row(Long productId, Integer categoryId, String categoryName, long priceMinor,
+                                                   int stock) {
+        return new ProductRepo.ProductFacetRow() {
+            public Long getProductId() { return productId; }
+            public Integer getCategoryId() { return categoryId; }
+            public String getCategoryName() { return categoryName; }
+            public long getPriceMinor() { return priceMinor; }
+            public int getStockQuantity() { return stock; }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartBatchRequest;
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.ProductBatchItem;
+import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.exception.ResourceNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GuestCartServiceTest {
+
+    @Mock
+    private ProductService productService;
+    @Mock
+    private CartService cartService;
+
+    @InjectMocks
+    private GuestCartService guestCartService;
+
+    private Product testProduct;
+
+    @BeforeEach
+    void setUp() {
+        testProduct = new Product();
+        testProduct.setProductId(10L);
+        testProduct.setName("Mug");
+        testProduct.setPriceMinor(500);
+    }
+
+    @Test
+    void addToCart_shouldKeepCartInMemoryAndPriceItFromProducts() {
+        // --- ARRANGE ---
+        when(productService.getProductsByIds(List.of(10L)))
+                .thenReturn(List.of(new ProductBatchItem(10L, true, testProduct)));
+
+        // --- ACT ---
+        guestCartService.addToCart("token-a", 10L, 1);
+        List<CartResponse> cart = guestCartService.addToCart("token-a", 10L, 2);
+
+        // --- ASSERT ---
+        assertEquals(1, cart.size());
+        assertEquals(3, cart.get(0).getQuantity());
+        assertEquals(1500, cart.get(0).getItemPriceTotalMinor());
+        assertNull(cart.get(0).getCartId());
+        verifyNoInteractions(cartService);
+    }
+
+    @Test
+    void addToCart_whenProductDoesNotExist_shouldThrowAndStoreNothing() {
+        // --- ARRANGE ---
+        when(productService.getProductsByIds(List.of(99L))).thenReturn(List.of(new ProductBatchItem(99L, false, null)));
+
+        // --- ACT & ASSERT ---
+        assertThrows(ResourceNotFoundException.class, () -> guestCartService.addToCart("token-a", 99L, 1));
+        assertEquals(0, guestCartService.size());
+    }
+
+    @Test
+    void addToCart_whenStoreIsFull_shouldEvictLeastRecentlyUsedCart() {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(guestCartService, "maxCarts", 2);
+        when(productService.getProductsByIds(List.of(10L)))
+                .thenReturn(List.of(new ProductBatchItem(10L, true, testProduct)));
+        guestCartService.addToCart("token-a", 10L, 1);
+        guestCartService.addToCart("token-b", 10L, 1);
+        guestCartService.getCart("token-a"); // token-b is now the least recently used
+
+        // --- ACT ---
+        guestCartService.addToCart("token-c", 10L, 1);
+
+        // --- ASSERT ---
+        assertEquals(2, guestCartService.size());
+        assertTrue(guestCartService.getCart("token-b").isEmpty());
+        assertEquals(1, guestCartService.getCart("token-a").size());
+    }
+
+    @Test
+    void mergeIntoUser_shouldSendWholeCartAsOneBatchAndForgetIt() {
+        // --- ARRANGE ---
+        Product otherProduct = new Product();
+        otherProduct.setProductId(20L);
+        when(productService.getProductsByIds(List.of(10L))).thenReturn(List.of(new ProductBatchItem(10L, true, testProduct)));
+        when(productService.getProductsByIds(List.of(20L))).thenReturn(List.of(new ProductBatchItem(20L, true, otherProduct)));
+        when(productService.getProductsByIds(List.of(10L, 20L))).thenReturn(List.of(
+                new ProductBatchItem(10L, true, testProduct), new ProductBatchItem(20L, true, otherProduct)));
+        guestCartService.addToCart("token-a", 10L, 2);
+        guestCartService.addToCart("token-a", 20L, 1);
+        ArgumentCaptor<CartBatchRequest> batch = ArgumentCaptor.forClass(CartBatchRequest.class);
+
+        // --- ACT ---
+        GuestCartService.MergeResult result = guestCartService.mergeIntoUser("token-a", 1L);
+
+        // --- ASSERT ---
+        assertEquals(2, result.merged());
+        assertTrue(result.droppedProductIds().isEmpty());
+        verify(cartService, times(1)).applyBatch(batch.capture());
+        assertEquals(1L, batch.getValue().getUserId());
+        assertEquals(2, batch.getValue().getOperations().size());
+        assertTrue(batch.getValue().getOperations().stream().allMatch(op -> op.getType() == CartBatchRequest.Type.ADD));
+        assertEquals(0, guestCartService.size());
+        assertEquals(0, guestCartService.mergeIntoUser("token-a", 1L).merged());
+        verify(cartService, times(1)).applyBatch(any());
+    }
+
+    @Test
+    void mergeIntoUser_whenAProductWasDeleted_shouldMergeTheRestAndReportIt() {
+        // --- ARRANGE ---
+        when(productService.getProductsByIds(List.of(10L))).thenReturn(List.of(new ProductBatchItem(10L, true, testProduct)));
+        Product otherProduct = new Product();
+        otherProduct.setProductId(20L);
+        when(productService.getProductsByIds(List.of(20L))).thenReturn(List.of(new ProductBatchItem(20L, true, otherProduct)));
+        guestCartService.addToCart("token-a", 10L, 2);
+        guestCartService.addToCart("token-a", 20L, 1);
+        // product 20 is deleted before the shopper logs in
+        when(productService.getProductsByIds(List.of(10L, 20L))).thenReturn(List.of(
+                new ProductBatchItem(10L, true, testProduct), new ProductBatchItem(20L, false, null)));
+        ArgumentCaptor<CartBatchRequest> batch = ArgumentCaptor.forClass(CartBatchRequest.class);
+
+        // --- ACT ---
+        GuestCartService.MergeResult result = guestCartService.mergeIntoUser("token-a", 1L);
+
+        // --- ASSERT ---
+        assertEquals(1, result.merged());
+        assertEquals(List.of(20L), result.droppedProductIds());
+        verify(cartService).applyBatch(batch.capture());
+        assertEquals(1, batch.getValue().getOperations().size());
+        assertEquals(10L, batch.getValue().getOperations().get(0).getProductId());
+        assertEquals(0, guestCartService.size());
+    }
+}
@@ -1,11 +1,16 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.OrderHistoryPage;
 import com.genc.e_commerce.dto.OrderRequest;
+import com.genc.e_commerce.dto.OrderResponse;
+import com.genc.e_commerce.dto.OrderTransitionRequest;
+import com.genc.e_commerce.dto.OrderTransitionResult;
 import com.genc.e_commerce.entity.Cart;
 import com.genc.e_commerce.entity.Order;
 import com.genc.e_commerce.entity.User;
 import com.genc.e_commerce.exception.ResourceNotFoundException;
 import com.genc.e_commerce.repository.CartRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
 import com.genc.e_commerce.repository.OrderRepo;
 import com.genc.e_commerce.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,9 +19,16 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,6 +46,16 @@ class OrderServiceTest {
     private UserRepository userRepository;
     @Mock
     private CartRepo cartRepo;
+    @Mock
+    private WriteBehindCartStore cartStore;
+    @Mock
+    private OrderJdbcRepo orderJdbcRepo;
+    @Mock
+    private SalesAnalyticsService salesAnalytics;
+    @Mock
+    private PromotionService promotionService;
+    @Mock
+    private TransactionTemplate transactionTemplate;
 
     // 2. Inject the mocks into an instance of OrderService
     @InjectMocks
@@ -51,18 +73,22 @@ class OrderServiceTest {
 
         orderRequest = new OrderRequest();
         orderRequest.setUserId(1L);
-        orderRequest.setTotalAmount(500.00);
+        orderRequest.setTotalAmountMinor(50000);
+
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
     }
 
     @Test
     void createOrder_whenUserExistsAndCartIsNotEmpty_shouldCreateNewOrder() {
         // --- ARRANGE ---
-        List<Cart> cartItems = Collections.singletonList(new Cart()); // Simulate a non-empty cart
+        List<Cart> cartItems = List.of(cartLine(30000), cartLine(20000)); // 300.00 + 200.00
 
         // Mock repository calls
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(orderRepo.findByUserUserIdAndStatus(1L, Order.Status.PENDING)).thenReturn(Optional.empty()); // No existing pending order
         when(cartRepo.findByUserUserId(1L)).thenReturn(cartItems);
+        noPromotions();
         when(orderRepo.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0)); // Return the saved order
 
         // --- ACT ---
@@ -71,13 +97,52 @@ class OrderServiceTest {
         // --- ASSERT ---
         assertNotNull(createdOrder);
         assertEquals(Order.Status.PENDING, createdOrder.getStatus());
-        assertEquals(500.00, createdOrder.getTotalAmount());
+        assertEquals(50000, createdOrder.getTotalAmountMinor());
         assertEquals(testUser, createdOrder.getUser());
 
         // Verify that the necessary repository methods were called
         verify(orderRepo, times(1)).save(any(Order.class));
+        verify(salesAnalytics).recordOrderCreated(createdOrder);
+    }
+
+
+    @Test
+    void createOrder_whenRequestTotalDiffersFromCart_shouldUseCartTotal() {
+        // --- ARRANGE ---
+        orderRequest.setTotalAmountMinor(100);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(orderRepo.findByUserUserIdAndStatus(1L, Order.Status.PENDING)).thenReturn(Optional.empty());
+        when(cartRepo.findByUserUserId(1L)).thenReturn(List.of(cartLine(1999), cartLine(1)));
+        noPromotions();
+        when(orderRepo.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // --- ACT ---
+        Order createdOrder = orderService.createOrder(orderRequest);
+
+        // --- ASSERT ---
+        assertEquals(2000, createdOrder.getTotalAmountMinor());
     }
 
+    @Test
+    void createOrder_withCoupon_shouldChargeTheDiscountedTotal() {
+        // --- ARRANGE ---
+        orderRequest.setCouponCode("save10");
+        List<Cart> cartItems = List.of(cartLine(50000));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(orderRepo.findByUserUserIdAndStatus(1L, Order.Status.PENDING)).thenReturn(Optional.empty());
+        when(cartRepo.findByUserUserId(1L)).thenReturn(cartItems);
+        when(promotionService.price(cartItems, PromotionService.CART_ITEMS, "save10"))
+                .thenReturn(new PromotionRules.Pricing(50000, 0, 5000, 45000, "SAVE10"));
+        when(orderRepo.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // --- ACT ---
+        Order createdOrder = orderService.createOrder(orderRequest);
+
+        // --- ASSERT ---
+        assertEquals(45000, createdOrder.getTotalAmountMinor());
+        assertEquals(5000, createdOrder.getDiscountMinor());
+        assertEquals("SAVE10", createdOrder.getCouponCode());
+    }
     @Test
     void createOrder_whenUserNotFound_shouldThrowRuntimeException() {
         // --- ARRANGE ---
@@ -155,4 +220,114 @@ class OrderServiceTest {
 
         assertEquals("Order not found with ID: 999", exception.getMessage());
     }
-}
\ No newline at end of file
+
+    // ## Tests for getOrderHistory ##
+    //----------------------------------------------------------------------
+
+    @Test
+    void getOrderHistory_whenMoreRowsThanPageSize_shouldReturnCursorThatSeeksPastLastRow() {
+        // --- ARRANGE ---
+        Date newest = new Date(3_000L);
+        Date older = new Date(2_000L);
+        when(orderRepo.findHistory(1L, Limit.of(3))).thenReturn(List.of(
+                new OrderResponse(30L, 1000, newest, Order.Status.DELIVERED),
+                new OrderResponse(20L, 2000, older, Order.Status.SHIPPED),
+                new OrderResponse(19L, 3000, older, Order.Status.PENDING)));
+        when(orderRepo.findHistoryAfter(1L, older, 20L, Limit.of(3))).thenReturn(List.of(
+                new OrderResponse(19L, 3000, older, Order.Status.PENDING)));
+
+        // --- ACT ---
+        OrderHistoryPage first = orderService.getOrderHistory(1L, null, null, 2);
+        OrderHistoryPage second = orderService.getOrderHistory(1L, null, first.getNextCursor(), 2);
+
+        // --- ASSERT ---
+        assertEquals(List.of(30L, 20L), first.getOrders().stream().map(OrderResponse::getOrderId).toList());
+        assertNotNull(first.getNextCursor());
+        assertEquals(List.of(19L), second.getOrders().stream().map(OrderResponse::getOrderId).toList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void getOrderHistory_whenCursorIsGarbage_shouldThrowIllegalArgument() {
+        // --- ACT & ASSERT ---
+        assertThrows(IllegalArgumentException.class,
+                () -> orderService.getOrderHistory(1L, Order.Status.SHIPPED, "not-a-cursor", 20));
+        verifyNoInteractions(orderRepo);
+    }
+
+    // ## Tests for transitionStatuses ##
+    //----------------------------------------------------------------------
+
+    @Test
+    void statusCanTransitionTo_shouldOnlyAllowForwardMoves() {
+        assertTrue(Order.Status.PENDING.canTransitionTo(Order.Status.SHIPPED));
+        assertTrue(Order.Status.SHIPPED.canTransitionTo(Order.Status.DELIVERED));
+        assertFalse(Order.Status.DELIVERED.canTransitionTo(Order.Status.SHIPPED));
+        assertFalse(Order.Status.CANCELLED.canTransitionTo(Order.Status.PENDING));
+        assertEquals(EnumSet.of(Order.Status.SHIPPED), Order.Status.DELIVERED.legalSources());
+    }
+
+    @Test
+    void transitionStatuses_shouldUpdateLegalOrdersWithOneConditionalUpdateAndReportEveryId() {
+        // --- ARRANGE ---
+        OrderTransitionRequest request = new OrderTransitionRequest();
+        request.setOrderIds(List.of(1L, 2L, 3L, 4L, 5L));
+        request.setToStatus(Order.Status.DELIVERED);
+        Map<Long, Order.Status> current = new HashMap<>();
+        current.put(1L, Order.Status.SHIPPED);
+        current.put(2L, Order.Status.SHIPPED);
+        current.put(3L, Order.Status.PENDING);
+        current.put(4L, Order.Status.DELIVERED);
+        when(orderJdbcRepo.findStatuses(List.of(1L, 2L, 3L, 4L, 5L))).thenReturn(current);
+        // order 2 was cancelled by someone else between the read and the update
+        when(orderJdbcRepo.updateStatus(List.of(1L, 2L), EnumSet.of(Order.Status.SHIPPED), Order.Status.DELIVERED)).thenReturn(1);
+        when(orderJdbcRepo.findStatuses(List.of(1L, 2L))).thenReturn(Map.of(1L, Order.Status.DELIVERED, 2L, Order.Status.CANCELLED));
+
+        // --- ACT ---
+        List<OrderTransitionResult> results = orderService.transitionStatuses(request);
+
+        // --- ASSERT ---
+        assertEquals(List.of(
+                OrderTransitionResult.Outcome.UPDATED,
+                OrderTransitionResult.Outcome.CONFLICT,
+                OrderTransitionResult.Outcome.ILLEGAL_TRANSITION,
+                OrderTransitionResult.Outcome.UNCHANGED,
+                OrderTransitionResult.Outcome.NOT_FOUND), results.stream().map(OrderTransitionResult::getOutcome).toList());
+        assertEquals(Order.Status.CANCELLED, results.get(1).getStatus());
+        verify(salesAnalytics).recordStatusChange(Order.Status.SHIPPED, Order.Status.DELIVERED, 1L);
+        verify(orderRepo, never()).findById(any());
+        verify(orderRepo, never()).save(any(Order.class));
+    }
+
+    @Test
+    void transitionStatuses_whenAnOrderIsDeletedBeforeTheUpdate_shouldReportItNotFoundAndNotCountIt() {
+        // --- ARRANGE ---
+        OrderTransitionRequest request = new OrderTransitionRequest();
+        request.setOrderIds(List.of(1L, 2L));
+        request.setToStatus(Order.Status.DELIVERED);
+        when(orderJdbcRepo.findStatuses(List.of(1L, 2L))).thenReturn(
+                Map.of(1L, Order.Status.SHIPPED, 2L, Order.Status.SHIPPED), Map.of(1L, Order.Status.DELIVERED));
+        when(orderJdbcRepo.updateStatus(List.of(1L, 2L), EnumSet.of(Order.Status.SHIPPED), Order.Status.DELIVERED)).thenReturn(1);
+
+        // --- ACT ---
+        List<OrderTransitionResult> results = orderService.transitionStatuses(request);
+
+        // --- ASSERT ---
+        assertEquals(List.of(OrderTransitionResult.Outcome.UPDATED, OrderTransitionResult.Outcome.NOT_FOUND),
+                results.stream().map(OrderTransitionResult::getOutcome).toList());
+        assertNull(results.get(1).getStatus());
+        verify(salesAnalytics).recordStatusChange(Order.Status.SHIPPED, Order.Status.DELIVERED, 1L);
+    }
+
+    private void noPromotions() {
+        when(promotionService.price(any(), any(), any())).thenAnswer(invocation -> PromotionRules.EMPTY.price(
+                invocation.<List<Cart>>getArgument(0), invocation.<PromotionRules.LineReader<Cart>>getArgument(1),
+                invocation.getArgument(2), null));
+    }
+
+    private static Cart cartLine(long itemPriceTotalMinor) {
+        Cart cart = new Cart();
+        cart.setItemPriceTotalMinor(itemPriceTotalMinor);
+        return cart;
+    }
+}
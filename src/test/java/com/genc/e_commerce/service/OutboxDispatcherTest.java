@@ -0,0 +1,105 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.OutboxMessage;
+import com.genc.e_commerce.event.OutboxSubscriber;
+import com.genc.e_commerce.repository.OutboxJdbcRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxJdbcRepo outboxJdbcRepo;
+
+    @InjectMocks
+    private OutboxDispatcher outboxDispatcher;
+
+    private final List<Long> handled = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // fails every event whose payload says so, records the rest
+        OutboxSubscriber subscriber = new OutboxSubscriber() {
+            @Override
+            public boolean supports(String eventType) {
+                return eventType.equals("PAYMENT_COMPLETED");
+            }
+
+            @Override
+            public void handle(OutboxMessage message) {
+                if (message.payload().equals("fail")) {
+                    throw new IllegalStateException("downstream unavailable");
+                }
+                handled.add(message.id());
+            }
+        };
+        ReflectionTestUtils.setField(outboxDispatcher, "subscribers", List.of(subscriber));
+        ReflectionTestUtils.setField(outboxDispatcher, "maxAttempts", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboxDispatcher.stop();
+    }
+
+    @Test
+    void dispatchBatch_shouldMarkDeliveredAndScheduleRetryForFailures() throws Exception {
+        // --- ARRANGE ---
+        when(outboxJdbcRepo.findDue(any(Date.class), eq(100))).thenReturn(List.of(
+                new OutboxMessage(1L, "PAYMENT_COMPLETED", 10L, "{}", 0, new Date()),
+                new OutboxMessage(2L, "PAYMENT_COMPLETED", 11L, "fail", 0, new Date()),
+                new OutboxMessage(3L, "PAYMENT_COMPLETED", 12L, "fail", 2, new Date()),
+                new OutboxMessage(4L, "SOMETHING_ELSE", 13L, "fail", 0, new Date())));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<OutboxJdbcRepo.Failure>> failures = ArgumentCaptor.forClass(Collection.class);
+
+        // --- ACT ---
+        int read = outboxDispatcher.dispatchBatch();
+
+        // --- ASSERT ---
+        assertEquals(4, read);
+        assertEquals(List.of(1L), handled);
+        // an event nobody subscribes to counts as delivered
+        verify(outboxJdbcRepo).markDelivered(eq(List.of(1L, 4L)), any(Date.class));
+        verify(outboxJdbcRepo).markFailed(failures.capture());
+        List<OutboxJdbcRepo.Failure> failed = new ArrayList<>(failures.getValue());
+        assertEquals(2, failed.size());
+        assertEquals(1, failed.get(0).attempts());
+        assertFalse(failed.get(0).dead());
+        assertTrue(failed.get(0).nextAttemptAt().after(new Date()));
+        assertEquals(3, failed.get(1).attempts());
+        assertTrue(failed.get(1).dead());
+    }
+
+    @Test
+    void backoffMs_shouldGrowExponentiallyUpToTheCap() {
+        // --- ACT ---
+        long first = outboxDispatcher.backoffMs(1);
+        long fourth = outboxDispatcher.backoffMs(4);
+        long capped = outboxDispatcher.backoffMs(40);
+
+        // --- ASSERT ---
+        assertTrue(first >= 1000 && first <= 1200);
+        assertTrue(fourth >= 8000 && fourth <= 9600);
+        assertTrue(capped >= 300000 && capped <= 360000);
+    }
+}
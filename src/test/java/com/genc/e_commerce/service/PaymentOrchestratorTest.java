@@ -0,0 +1,214 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CheckoutResult;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.gateway.GatewayResponse;
+import com.genc.e_commerce.gateway.PaymentGateway;
+import com.genc.e_commerce.util.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentOrchestratorTest {
+
+    @Mock
+    private PaymentService paymentService;
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @InjectMocks
+    private PaymentOrchestrator paymentOrchestrator;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentOrchestrator, "timeoutMs", 100L);
+        ReflectionTestUtils.setField(paymentOrchestrator, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(paymentOrchestrator, "failureThreshold", 2);
+        paymentOrchestrator.init();
+        lenient().when(paymentService.initiatePayment(any(), any())).thenAnswer(invocation -> new PaymentService.PaymentAttempt(
+                invocation.<Long>getArgument(0) + 1000, invocation.getArgument(0), 2500, invocation.getArgument(1), false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentOrchestrator.shutdown();
+    }
+
+    @Test
+    void checkout_whenApproved_shouldFinalizeInASecondTransaction() throws Exception {
+        // --- ARRANGE ---
+        when(paymentGateway.charge(any())).thenReturn(new GatewayResponse(GatewayResponse.Decision.APPROVED, "ref-1", null));
+        when(paymentService.finalizePayment(1001L, true)).thenReturn(payment(Payment.PaymentStatus.COMPLETED, Order.Status.SHIPPED));
+
+        // --- ACT ---
+        CheckoutResult result = paymentOrchestrator.checkout(1L, Payment.PaymentMethod.CARD).get(5, TimeUnit.SECONDS);
+
+        // --- ASSERT ---
+        assertEquals(CheckoutResult.Outcome.APPROVED, result.getOutcome());
+        assertEquals(1001L, result.getPaymentId());
+        assertEquals(Order.Status.SHIPPED, result.getOrderStatus());
+        verify(paymentService, never()).releasePayment(anyLong());
+    }
+
+    @Test
+    void checkout_whenGatewayHangs_shouldTimeOutLeavePaymentPendingAndOpenTheCircuit() throws Exception {
+        // --- ARRANGE ---
+        // a gateway far slower than the timeout
+        when(paymentGateway.charge(any())).thenAnswer(invocation -> {
+            Thread.sleep(10_000);
+            return new GatewayResponse(GatewayResponse.Decision.APPROVED, "late", null);
+        });
+
+        // --- ACT ---
+        CheckoutResult first = paymentOrchestrator.checkout(1L, Payment.PaymentMethod.CARD).get(5, TimeUnit.SECONDS);
+        CheckoutResult second = paymentOrchestrator.checkout(2L, Payment.PaymentMethod.CARD).get(5, TimeUnit.SECONDS);
+        CheckoutResult third = paymentOrchestrator.checkout(3L, Payment.PaymentMethod.CARD).get(5, TimeUnit.SECONDS);
+
+        // --- ASSERT ---
+        assertEquals(CheckoutResult.Outcome.PENDING, first.getOutcome());
+        assertEquals(CheckoutResult.Outcome.PENDING, second.getOutcome());
+        // two failures in a row open the circuit: the third call is refused without reaching the gateway
+        assertEquals(CheckoutResult.Outcome.UNAVAILABLE, third.getOutcome());
+        assertEquals(CircuitBreaker.State.OPEN, paymentOrchestrator.getStats().circuitBreaker().state());
+        verify(paymentGateway, times(2)).charge(any());
+        verify(paymentService).releasePayment(1003L);
+        verify(paymentService, never()).finalizePayment(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void checkout_whenBulkheadIsFull_shouldFailFastWithoutCallingTheGateway() throws Exception {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(paymentOrchestrator, "timeoutMs", 5_000L);
+        CountDownLatch gatewayEntered = new CountDownLatch(2);
+        CountDownLatch gatewayRelease = new CountDownLatch(1);
+        when(paymentGateway.charge(any())).thenAnswer(invocation -> {
+            gatewayEntered.countDown();
+            gatewayRelease.await();
+            return new GatewayResponse(GatewayResponse.Decision.DECLINED, "ref", "insufficient funds");
+        });
+        when(paymentService.finalizePayment(anyLong(), eq(false))).thenReturn(payment(Payment.PaymentStatus.FAILED, Order.Status.CANCELLED));
+
+        // --- ACT ---
+        List<CompletableFuture<CheckoutResult>> inFlight = List.of(
+                paymentOrchestrator.checkout(1L, Payment.PaymentMethod.UPI),
+                paymentOrchestrator.checkout(2L, Payment.PaymentMethod.UPI));
+        assertTrue(gatewayEntered.await(5, TimeUnit.SECONDS));
+        List<CheckoutResult> rejected = new ArrayList<>();
+        for (long orderId = 3; orderId <= 5; orderId++) {
+            rejected.add(paymentOrchestrator.checkout(orderId, Payment.PaymentMethod.UPI).get(1, TimeUnit.SECONDS));
+        }
+        gatewayRelease.countDown();
+
+        // --- ASSERT ---
+        rejected.forEach(result -> assertEquals(CheckoutResult.Outcome.UNAVAILABLE, result.getOutcome()));
+        for (CompletableFuture<CheckoutResult> future : inFlight) {
+            assertEquals(CheckoutResult.Outcome.DECLINED, future.get(5, TimeUnit.SECONDS).getOutcome());
+        }
+        verify(paymentGateway, times(2)).charge(any());
+        assertEquals(0, paymentOrchestrator.getStats().callsInFlight());
+    }
+
+    @Test
+    void checkout_whenInterruptedDuringTheHalfOpenTrial_shouldNotLeaveTheCircuitStuck() throws Exception {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(paymentOrchestrator, "openMs", 0L);
+        paymentOrchestrator.init();
+        when(paymentGateway.charge(any())).thenThrow(new IllegalStateException("gateway down"));
+        paymentOrchestrator.runCheckout(1L, Payment.PaymentMethod.CARD);
+        paymentOrchestrator.runCheckout(2L, Payment.PaymentMethod.CARD);
+        assertEquals(CircuitBreaker.State.OPEN, paymentOrchestrator.getStats().circuitBreaker().state());
+
+        // --- ACT ---
+        // the half-open trial is taken, then the waiting thread is interrupted
+        Thread.currentThread().interrupt();
+        CheckoutResult interrupted = paymentOrchestrator.runCheckout(3L, Payment.PaymentMethod.CARD);
+        assertTrue(Thread.interrupted());
+        CircuitBreaker.State afterInterrupt = paymentOrchestrator.getStats().circuitBreaker().state();
+        doReturn(new GatewayResponse(GatewayResponse.Decision.APPROVED, "ref-4", null)).when(paymentGateway).charge(any());
+        when(paymentService.finalizePayment(1004L, true)).thenReturn(payment(Payment.PaymentStatus.COMPLETED, Order.Status.SHIPPED));
+        CheckoutResult next = paymentOrchestrator.runCheckout(4L, Payment.PaymentMethod.CARD);
+
+        // --- ASSERT ---
+        assertEquals(CheckoutResult.Outcome.PENDING, interrupted.getOutcome());
+        assertEquals(CircuitBreaker.State.OPEN, afterInterrupt);
+        // a new trial is possible, and its success closes the circuit
+        assertEquals(CheckoutResult.Outcome.APPROVED, next.getOutcome());
+        assertEquals(CircuitBreaker.State.CLOSED, paymentOrchestrator.getStats().circuitBreaker().state());
+    }
+
+    @Test
+    void checkout_whenAResumedPaymentCannotBeSent_shouldLeaveItPending() {
+        // --- ARRANGE ---
+        ReflectionTestUtils.setField(paymentOrchestrator, "maxConcurrent", 0);
+        paymentOrchestrator.init();
+        doReturn(new PaymentService.PaymentAttempt(1001L, 1L, 2500, Payment.PaymentMethod.CARD, true))
+                .when(paymentService).initiatePayment(any(), any());
+
+        // --- ACT ---
+        CheckoutResult result = paymentOrchestrator.runCheckout(1L, Payment.PaymentMethod.CARD);
+
+        // --- ASSERT ---
+        assertEquals(CheckoutResult.Outcome.UNAVAILABLE, result.getOutcome());
+        assertEquals(Payment.PaymentStatus.PENDING, result.getPaymentStatus());
+        verify(paymentService, never()).releasePayment(anyLong());
+    }
+
+    @Test
+    void runCheckout_whenTheExecutorRejectsTheCall_shouldReleaseThePermitAndThePayment() {
+        // --- ARRANGE ---
+        paymentOrchestrator.shutdown();
+
+        // --- ACT ---
+        CheckoutResult result = paymentOrchestrator.runCheckout(1L, Payment.PaymentMethod.CARD);
+
+        // --- ASSERT ---
+        assertEquals(CheckoutResult.Outcome.UNAVAILABLE, result.getOutcome());
+        assertEquals(0, paymentOrchestrator.getStats().callsInFlight());
+        verify(paymentService).releasePayment(1001L);
+        verifyNoInteractions(paymentGateway);
+    }
+
+    @Test
+    void circuitBreaker_shouldIgnoreALateSuccessWhileOpen() {
+        // --- ARRANGE ---
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 60_000);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        // --- ACT ---
+        // the second call started before the circuit opened and succeeds afterwards
+        breaker.onSuccess();
+
+        // --- ASSERT ---
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    private static Payment payment(Payment.PaymentStatus status, Order.Status orderStatus) {
+        Order order = new Order();
+        order.setStatus(orderStatus);
+        Payment payment = new Payment();
+        payment.setPaymentStatus(status);
+        payment.setOrder(order);
+        return payment;
+    }
+}
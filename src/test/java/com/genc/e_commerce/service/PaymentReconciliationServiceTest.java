@@ -0,0 +1,112 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.repository.ReconciliationJdbcRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentReconciliationServiceTest {
+
+    @Mock
+    private ReconciliationJdbcRepo reconciliationJdbcRepo;
+
+    @InjectMocks
+    private PaymentReconciliationService paymentReconciliationService;
+
+    @TempDir
+    Path reportDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentReconciliationService, "reportDir", reportDir.toString());
+    }
+
+    @Test
+    void reconcile_shouldMergeBothScansAndReportOnlyMismatchesThatSurviveTheReRead() throws Exception {
+        // --- ARRANGE ---
+        AtomicBoolean ordersClosed = new AtomicBoolean();
+        when(reconciliationJdbcRepo.streamOrders()).thenReturn(Stream.of(
+                order(1L, "PENDING"), order(2L, "SHIPPED"), order(3L, "PENDING"), order(5L, "CANCELLED"))
+                .onClose(() -> ordersClosed.set(true)));
+        when(reconciliationJdbcRepo.streamPayments()).thenReturn(Stream.of(
+                payment(9L, null, Payment.PaymentStatus.FAILED),
+                payment(1L, 1L, Payment.PaymentStatus.COMPLETED),
+                payment(2L, 2L, Payment.PaymentStatus.COMPLETED),
+                payment(31L, 3L, Payment.PaymentStatus.COMPLETED),
+                payment(32L, 3L, Payment.PaymentStatus.FAILED),
+                payment(4L, 4L, Payment.PaymentStatus.PENDING)));
+        // order 1 was shipped between the scan and the re-read
+        when(reconciliationJdbcRepo.findOrders(List.of(1L, 3L, 4L))).thenReturn(Map.of(
+                1L, order(1L, "SHIPPED"), 3L, order(3L, "PENDING")));
+        when(reconciliationJdbcRepo.findPaymentsByOrderIds(List.of(1L, 3L, 4L))).thenReturn(List.of(
+                payment(1L, 1L, Payment.PaymentStatus.COMPLETED),
+                payment(31L, 3L, Payment.PaymentStatus.COMPLETED),
+                payment(32L, 3L, Payment.PaymentStatus.FAILED),
+                payment(4L, 4L, Payment.PaymentStatus.PENDING)));
+
+        // --- ACT ---
+        PaymentReconciliationService.Report report = paymentReconciliationService.reconcile();
+
+        // --- ASSERT ---
+        assertEquals(PaymentReconciliationService.State.COMPLETED, report.state());
+        assertEquals(List.of(
+                "type,order_id,order_status,payment_ids",
+                "ORPHAN_PAYMENT,,,9",
+                "DUPLICATE_PAYMENT,3,PENDING,31 32",
+                "PAID_ORDER_NOT_FULFILLED,3,PENDING,31 32",
+                "ORPHAN_PAYMENT,4,,4"), Files.readAllLines(Path.of(report.file())));
+        assertEquals(6, report.paymentsRead());
+        assertEquals(4, report.candidates());
+        assertEquals(4, report.mismatches());
+        assertEquals(2, report.byType().get(PaymentReconciliationService.MismatchType.ORPHAN_PAYMENT));
+        assertTrue(ordersClosed.get());
+        assertSame(report, paymentReconciliationService.getLastReport());
+    }
+
+    @Test
+    void reconcile_shouldReportFailureWithoutLeavingAPartialFile() throws Exception {
+        // --- ARRANGE ---
+        when(reconciliationJdbcRepo.streamOrders()).thenReturn(Stream.of(order(1L, "PENDING")));
+        when(reconciliationJdbcRepo.streamPayments()).thenReturn(Stream.of(payment(1L, 1L, Payment.PaymentStatus.COMPLETED))
+                .map(row -> {
+                    throw new IllegalStateException("connection reset");
+                }));
+
+        // --- ACT ---
+        PaymentReconciliationService.Report report = paymentReconciliationService.reconcile();
+
+        // --- ASSERT ---
+        assertEquals(PaymentReconciliationService.State.FAILED, report.state());
+        assertEquals("connection reset", report.error());
+        try (Stream<Path> files = Files.list(reportDir)) {
+            assertEquals(0, files.count());
+        }
+        verify(reconciliationJdbcRepo, never()).findOrders(any());
+    }
+
+    private static ReconciliationJdbcRepo.OrderRow order(long orderId, String status) {
+        return new ReconciliationJdbcRepo.OrderRow(orderId, status);
+    }
+
+    private static ReconciliationJdbcRepo.PaymentRow payment(long paymentId, Long orderId, Payment.PaymentStatus status) {
+        return new ReconciliationJdbcRepo.PaymentRow(paymentId, orderId, status);
+    }
+}
@@ -7,13 +7,17 @@ import com.genc.e_commerce.repository.PaymentRepo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 // Use the Mockito extension for JUnit 5
@@ -29,6 +33,12 @@ class PaymentServiceTest {
 
     @Mock
     private CartRepo cartRepo;
+    @Mock
+    private WriteBehindCartStore cartStore;
+    @Mock
+    private OutboxService outboxService;
+    @Mock
+    private PaymentStatusCache statusCache;
 
     // 2. Create an instance of the service and inject the mocks into it
     @InjectMocks
@@ -46,7 +56,7 @@ class PaymentServiceTest {
         testOrder = new Order();
         testOrder.setOrderId(100L);
         testOrder.setUser(testUser);
-        testOrder.setTotalAmount(1500.0);
+        testOrder.setTotalAmountMinor(150000);
         testOrder.setStatus(Order.Status.SHIPPED);
     }
 
@@ -55,16 +65,21 @@ class PaymentServiceTest {
     void processPayment_WhenPaymentIsSuccessful_ShouldUpdateStatusAndClearCart() {
         // --- ARRANGE ---
         // Define the behavior of our mocks for this specific test case
-        when(orderRepo.findById(100L)).thenReturn(Optional.of(testOrder));
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
         when(cartRepo.findByUserUserId(1L)).thenReturn(Collections.singletonList(new Cart())); // Simulate an existing cart
+        when(paymentRepo.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment saved = invocation.getArgument(0);
+            saved.setPaymentId(7L);
+            return saved;
+        });
 
         // --- ACT ---
         // Call the method we want to test
-        String result = paymentService.processPayment(100L, true, Payment.PaymentMethod.CARD);
+        long paymentId = paymentService.processPayment(100L, true, Payment.PaymentMethod.CARD);
 
         // --- ASSERT ---
         // Verify the results
-        assertEquals("Payment Processed Successfully", result);
+        assertEquals(7L, paymentId);
         assertEquals(Order.Status.SHIPPED, testOrder.getStatus()); // Check if the order status was updated correctly
 
         // Verify that the save methods were called on the repositories
@@ -78,13 +93,12 @@ class PaymentServiceTest {
     @Test
     void processPayment_WhenPaymentFails_ShouldUpdateStatusToCancelled() {
         // --- ARRANGE ---
-        when(orderRepo.findById(100L)).thenReturn(Optional.of(testOrder));
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
 
         // --- ACT ---
-        String result = paymentService.processPayment(100L, false, Payment.PaymentMethod.CARD);
+        paymentService.processPayment(100L, false, Payment.PaymentMethod.CARD);
 
         // --- ASSERT ---
-        assertEquals("Payment Processed Successfully", result);
         assertEquals(Order.Status.CANCELLED, testOrder.getStatus());
 
         verify(orderRepo, times(1)).save(testOrder);
@@ -94,11 +108,36 @@ class PaymentServiceTest {
         verify(cartRepo, never()).deleteAll(anyList());
     }
 
+    @Test
+    void processPayment_WhenPaymentIsSuccessful_ShouldWriteOutboxEventWithPaidItems() {
+        // --- ARRANGE ---
+        Product product = new Product();
+        product.setProductId(10L);
+        Cart cartLine = new Cart();
+        cartLine.setProduct(product);
+        cartLine.setQuantity(2);
+        cartLine.setItemPriceTotalMinor(4000);
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
+        when(cartRepo.findByUserUserId(1L)).thenReturn(Collections.singletonList(cartLine));
+        ArgumentCaptor<PaymentEventPayload> payload = ArgumentCaptor.forClass(PaymentEventPayload.class);
+
+        // --- ACT ---
+        paymentService.processPayment(100L, true, Payment.PaymentMethod.UPI);
+
+        // --- ASSERT ---
+        verify(outboxService, times(1)).publish(eq(PaymentEventPayload.PAYMENT_COMPLETED), eq(100L), payload.capture());
+        assertEquals(1L, payload.getValue().userId());
+        assertEquals("UPI", payload.getValue().paymentMethod());
+        assertEquals(1, payload.getValue().items().size());
+        assertEquals(10L, payload.getValue().items().get(0).productId());
+        assertEquals(2, payload.getValue().items().get(0).quantity());
+    }
+
     @Test
     void processPayment_WhenOrderNotFound_ShouldThrowException() {
         // --- ARRANGE ---
         // Mock the repository to find nothing
-        when(orderRepo.findById(999L)).thenReturn(Optional.empty());
+        when(orderRepo.findByIdForUpdate(999L)).thenReturn(Optional.empty());
 
         // --- ACT & ASSERT ---
         // Assert that calling the method with a non-existent ID throws the expected exception
@@ -107,18 +146,137 @@ class PaymentServiceTest {
         });
     }
 
+    @Test
+    void processPayment_WhenOrderAlreadyPaid_ShouldRejectASecondPayment() {
+        // --- ARRANGE ---
+        Payment existing = new Payment();
+        existing.setPaymentId(5L);
+        existing.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
+        when(paymentRepo.findByOrderIdForUpdate(100L)).thenReturn(Optional.of(existing));
+
+        // --- ACT & ASSERT ---
+        assertThrows(RuntimeException.class, () -> paymentService.processPayment(100L, true, Payment.PaymentMethod.CARD));
+        verify(paymentRepo, never()).save(any(Payment.class));
+        verify(outboxService, never()).publish(any(), any(), any());
+    }
+
     @Test
     void getPaymentStatus_WhenPaymentExists_ShouldReturnStatus() {
         // --- ARRANGE ---
-        Payment mockPayment = new Payment();
-        mockPayment.setPaymentId(1L);
-        mockPayment.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
-        when(paymentRepo.findById(1L)).thenReturn(Optional.of(mockPayment));
+        when(paymentRepo.findStatusByPaymentId(1L)).thenReturn(Optional.of(statusRow(1L, 100L, Payment.PaymentStatus.COMPLETED)));
 
         // --- ACT ---
         Payment.PaymentStatus status = paymentService.getPaymentStatus(1L);
 
         // --- ASSERT ---
         assertEquals(Payment.PaymentStatus.COMPLETED, status);
+        verify(statusCache).put(new PaymentService.PaymentStatusView(1L, 100L, Payment.PaymentStatus.COMPLETED));
+    }
+
+    @Test
+    void getPaymentStatusByOrder_WhenCached_ShouldNotQueryTheDatabase() {
+        // --- ARRANGE ---
+        PaymentService.PaymentStatusView cached = new PaymentService.PaymentStatusView(1L, 100L, Payment.PaymentStatus.PENDING);
+        when(statusCache.getByOrder(100L)).thenReturn(cached);
+
+        // --- ACT ---
+        PaymentService.PaymentStatusView view = paymentService.getPaymentStatusByOrder(100L);
+
+        // --- ASSERT ---
+        assertSame(cached, view);
+        verifyNoInteractions(paymentRepo);
+    }
+
+    @Test
+    void initiatePayment_WhenPreviousAttemptFailed_ShouldReuseItsRowAsPending() {
+        // --- ARRANGE ---
+        testOrder.setStatus(Order.Status.PENDING);
+        Payment failed = new Payment();
+        failed.setPaymentId(7L);
+        failed.setOrder(testOrder);
+        failed.setPaymentStatus(Payment.PaymentStatus.FAILED);
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
+        when(paymentRepo.findByOrderIdForUpdate(100L)).thenReturn(Optional.of(failed));
+        when(paymentRepo.save(failed)).thenReturn(failed);
+
+        // --- ACT ---
+        PaymentService.PaymentAttempt attempt = paymentService.initiatePayment(100L, Payment.PaymentMethod.CARD);
+
+        // --- ASSERT ---
+        assertEquals(7L, attempt.paymentId());
+        assertEquals(150000, attempt.amountMinor());
+        assertEquals(Payment.PaymentStatus.PENDING, failed.getPaymentStatus());
+        verifyNoInteractions(outboxService);
+    }
+
+    @Test
+    void initiatePayment_WhenPendingPaymentIsStale_ShouldResumeItUnderTheSamePaymentId() {
+        // --- ARRANGE ---
+        testOrder.setStatus(Order.Status.PENDING);
+        Payment timedOut = new Payment();
+        timedOut.setPaymentId(7L);
+        timedOut.setOrder(testOrder);
+        timedOut.setAmountMinor(150000);
+        timedOut.setPaymentMethod(Payment.PaymentMethod.UPI);
+        timedOut.setUpdatedTimeStamp(new Date(System.currentTimeMillis() - 3_600_000)); // an hour without an answer
+        Payment inFlight = new Payment();
+        inFlight.setPaymentId(8L);
+        inFlight.setUpdatedTimeStamp(new Date());
+        Order otherOrder = new Order();
+        otherOrder.setOrderId(200L);
+        otherOrder.setStatus(Order.Status.PENDING);
+        when(orderRepo.findByIdForUpdate(100L)).thenReturn(Optional.of(testOrder));
+        when(orderRepo.findByIdForUpdate(200L)).thenReturn(Optional.of(otherOrder));
+        when(paymentRepo.findByOrderIdForUpdate(100L)).thenReturn(Optional.of(timedOut));
+        when(paymentRepo.findByOrderIdForUpdate(200L)).thenReturn(Optional.of(inFlight));
+        when(paymentRepo.save(timedOut)).thenReturn(timedOut);
+
+        // --- ACT ---
+        PaymentService.PaymentAttempt attempt = paymentService.initiatePayment(100L, Payment.PaymentMethod.CARD);
+
+        // --- ASSERT ---
+        // the retry must look like the first charge to the provider
+        assertEquals(new PaymentService.PaymentAttempt(7L, 100L, 150000, Payment.PaymentMethod.UPI, true), attempt);
+        assertEquals(Payment.PaymentStatus.PENDING, timedOut.getPaymentStatus());
+        assertThrows(IllegalStateException.class, () -> paymentService.initiatePayment(200L, Payment.PaymentMethod.CARD));
+    }
+
+    @Test
+    void finalizePayment_WhenAlreadySettled_ShouldLeaveEverythingUnchanged() {
+        // --- ARRANGE ---
+        Payment completed = new Payment();
+        completed.setPaymentId(7L);
+        completed.setOrder(testOrder);
+        completed.setPaymentStatus(Payment.PaymentStatus.COMPLETED);
+        when(paymentRepo.findById(7L)).thenReturn(Optional.of(completed));
+
+        // --- ACT ---
+        Payment result = paymentService.finalizePayment(7L, false);
+
+        // --- ASSERT ---
+        assertEquals(Payment.PaymentStatus.COMPLETED, result.getPaymentStatus());
+        assertEquals(Order.Status.SHIPPED, testOrder.getStatus());
+        verify(paymentRepo, never()).save(any(Payment.class));
+        verifyNoInteractions(outboxService);
+    }
+
+    private static PaymentRepo.PaymentStatusRow statusRow(long paymentId, long orderId, Payment.PaymentStatus status) {
+        return new PaymentRepo.PaymentStatusRow() {
+            @Override
+            public Long getPaymentId() {
+                return paymentId;
+            }
+
+            @Override
+            public Long getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public Payment.PaymentStatus getPaymentStatus() {
+                return status;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.SettlementRecord;
+import com.genc.e_commerce.dto.SettlementResult;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.repository.CartJdbcRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
+import com.genc.e_commerce.repository.PaymentJdbcRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentSettlementServiceTest {
+
+    @Mock
+    private OrderJdbcRepo orderJdbcRepo;
+    @Mock
+    private PaymentJdbcRepo paymentJdbcRepo;
+    @Mock
+    private CartJdbcRepo cartJdbcRepo;
+    @Mock
+    private OutboxService outboxService;
+    @Mock
+    private WriteBehindCartStore cartStore;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private PaymentStatusCache statusCache;
+
+    @InjectMocks
+    private PaymentSettlementService paymentSettlementService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentSettlementService, "chunkSize", 4);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void settle_shouldBatchEachChunkAndReportEveryRecordInOrder() {
+        // --- ARRANGE ---
+        List<SettlementRecord> records = List.of(
+                record(1L, Payment.PaymentStatus.COMPLETED),
+                record(null, Payment.PaymentStatus.COMPLETED),
+                record(2L, Payment.PaymentStatus.FAILED),
+                record(1L, Payment.PaymentStatus.FAILED),
+                record(3L, Payment.PaymentStatus.COMPLETED),
+                record(4L, Payment.PaymentStatus.COMPLETED));
+        when(orderJdbcRepo.lockForSettlement(Set.of(1L, 2L))).thenReturn(Map.of(
+                1L, new OrderJdbcRepo.SettlementOrder(1L, 10L, 5000, Order.Status.PENDING, null),
+                2L, new OrderJdbcRepo.SettlementOrder(2L, 20L, 3000, Order.Status.PENDING, Payment.PaymentStatus.FAILED)));
+        when(orderJdbcRepo.lockForSettlement(Set.of(3L, 4L))).thenReturn(Map.of(
+                3L, new OrderJdbcRepo.SettlementOrder(3L, 30L, 1000, Order.Status.SHIPPED, Payment.PaymentStatus.COMPLETED)));
+        when(orderJdbcRepo.updateStatus(List.of(1L), EnumSet.of(Order.Status.PENDING), Order.Status.SHIPPED)).thenReturn(1);
+        when(orderJdbcRepo.updateStatus(List.of(2L), EnumSet.of(Order.Status.PENDING), Order.Status.CANCELLED)).thenReturn(1);
+        when(cartJdbcRepo.findLinesByUserIds(List.of(10L))).thenReturn(List.of(
+                new CartJdbcRepo.CategorizedLine(10L, 100L, 5, 2, 5000)));
+        when(paymentJdbcRepo.findIdsByOrderIds(List.of(1L, 2L))).thenReturn(Map.of(1L, 501L, 2L, 502L));
+        List<SettlementResult> results = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<PaymentJdbcRepo.PaymentRow>> payments = ArgumentCaptor.forClass(Collection.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<OutboxService.Event>> events = ArgumentCaptor.forClass(Collection.class);
+
+        // --- ACT ---
+        PaymentSettlementService.Summary summary = paymentSettlementService.settle(records.iterator(), results::addAll);
+
+        // --- ASSERT ---
+        assertEquals(List.of(
+                SettlementResult.Outcome.SETTLED,
+                SettlementResult.Outcome.INVALID,
+                SettlementResult.Outcome.SETTLED,
+                SettlementResult.Outcome.DUPLICATE,
+                SettlementResult.Outcome.NOT_PENDING,
+                SettlementResult.Outcome.NOT_FOUND), results.stream().map(SettlementResult::getOutcome).toList());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), results.stream().map(SettlementResult::getLine).toList());
+        assertEquals(501L, results.get(0).getPaymentId());
+        assertEquals(Order.Status.CANCELLED, results.get(2).getOrderStatus());
+
+        // one payment batch and one event batch for the first chunk, nothing written for the second
+        verify(paymentJdbcRepo, times(1)).insertAll(payments.capture());
+        assertEquals(2, payments.getValue().size());
+        verify(cartJdbcRepo).deleteByUserIds(List.of(10L));
+        verify(outboxService, times(1)).publishAll(events.capture());
+        assertEquals(2, events.getValue().size());
+        PaymentJdbcRepo.PaymentRow failed = new ArrayList<>(payments.getValue()).get(1);
+        assertEquals(2L, failed.orderId());
+        assertEquals(3000, failed.amountMinor());
+        assertEquals(Payment.PaymentStatus.FAILED, failed.status());
+        assertEquals(new PaymentSettlementService.Summary(6, 2, 4, 0, summary.durationMs()), summary);
+    }
+
+    @Test
+    void settle_whenAGatewayPaymentIsInFlight_shouldLeaveTheOrderAlone() {
+        // --- ARRANGE ---
+        when(orderJdbcRepo.lockForSettlement(Set.of(9L))).thenReturn(Map.of(
+                9L, new OrderJdbcRepo.SettlementOrder(9L, 90L, 4000, Order.Status.PENDING, Payment.PaymentStatus.PENDING)));
+        List<SettlementResult> results = new ArrayList<>();
+
+        // --- ACT ---
+        paymentSettlementService.settle(List.of(record(9L, Payment.PaymentStatus.COMPLETED)).iterator(), results::addAll);
+
+        // --- ASSERT ---
+        assertEquals(SettlementResult.Outcome.PAYMENT_IN_FLIGHT, results.get(0).getOutcome());
+        verify(paymentJdbcRepo, never()).insertAll(anyCollection());
+        verify(orderJdbcRepo, never()).updateStatus(anyCollection(), anyCollection(), any());
+        verify(outboxService, never()).publishAll(anyCollection());
+    }
+
+    @Test
+    void settle_whenTheChunkTransactionFails_shouldReportErrorForItsRecords() {
+        // --- ARRANGE ---
+        when(orderJdbcRepo.lockForSettlement(Set.of(7L))).thenReturn(Map.of(
+                7L, new OrderJdbcRepo.SettlementOrder(7L, 70L, 2000, Order.Status.PENDING, null)));
+        doThrow(new RuntimeException("Deadlock found")).when(paymentJdbcRepo).insertAll(anyCollection());
+        List<SettlementResult> results = new ArrayList<>();
+
+        // --- ACT ---
+        paymentSettlementService.settle(List.of(record(7L, Payment.PaymentStatus.COMPLETED),
+                record(8L, Payment.PaymentStatus.REFUNDED)).iterator(), results::addAll);
+
+        // --- ASSERT ---
+        assertEquals(SettlementResult.Outcome.ERROR, results.get(0).getOutcome());
+        assertEquals(SettlementResult.Outcome.INVALID, results.get(1).getOutcome());
+        verify(outboxService, never()).publishAll(anyCollection());
+        verify(cartStore, never()).clearUser(anyLong());
+    }
+
+    private static SettlementRecord record(Long orderId, Payment.PaymentStatus outcome) {
+        SettlementRecord record = new SettlementRecord();
+        record.setOrderId(orderId);
+        record.setOutcome(outcome);
+        record.setPaymentMethod(Payment.PaymentMethod.CASH_ON_DELIVERY);
+        return record;
+    }
+}
@@ -0,0 +1,203 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.dto.PaymentWebhookRequest;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.Payment;
+import com.genc.e_commerce.repository.CartJdbcRepo;
+import com.genc.e_commerce.repository.OrderJdbcRepo;
+import com.genc.e_commerce.repository.PaymentWebhookJdbcRepo;
+import com.genc.e_commerce.util.MappedJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentWebhookServiceTest {
+
+    @Mock
+    private PaymentWebhookJdbcRepo paymentWebhookJdbcRepo;
+    @Mock
+    private OrderJdbcRepo orderJdbcRepo;
+    @Mock
+    private CartJdbcRepo cartJdbcRepo;
+    @Mock
+    private OutboxService outboxService;
+    @Mock
+    private WriteBehindCartStore cartStore;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private PaymentStatusCache statusCache;
+
+    @InjectMocks
+    private PaymentWebhookService paymentWebhookService;
+
+    @TempDir
+    Path journalDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(paymentWebhookService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(paymentWebhookService, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(paymentWebhookService, "segmentMb", 1);
+        ReflectionTestUtils.setField(paymentWebhookService, "consumers", 1);
+        paymentWebhookService.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentWebhookService.stop();
+    }
+
+    @Test
+    void consumeBatch_shouldApplyNewEventsOnceAndCommitTheJournalPosition() throws Exception {
+        // --- ARRANGE ---
+        runTransactionsInline();
+        paymentWebhookService.receive(webhook("evt-1", 1L, Payment.PaymentStatus.COMPLETED));
+        paymentWebhookService.receive(webhook("evt-1", 1L, Payment.PaymentStatus.COMPLETED));
+        paymentWebhookService.receive(webhook("evt-0", 1L, Payment.PaymentStatus.COMPLETED));
+        paymentWebhookService.receive(webhook("evt-2", 2L, Payment.PaymentStatus.FAILED));
+        paymentWebhookService.receive(webhook("evt-3", 3L, Payment.PaymentStatus.COMPLETED));
+        when(paymentWebhookJdbcRepo.findApplied(anyCollection())).thenReturn(Set.of("evt-0"));
+        when(paymentWebhookJdbcRepo.lockPayments(List.of(1L, 2L, 3L))).thenReturn(List.of(
+                payment(1L, 10L, 100L, Payment.PaymentStatus.PENDING),
+                payment(2L, 20L, 200L, Payment.PaymentStatus.PENDING),
+                payment(3L, 30L, 300L, Payment.PaymentStatus.FAILED)));
+        when(orderJdbcRepo.updateStatus(Set.of(10L), EnumSet.of(Order.Status.PENDING), Order.Status.SHIPPED)).thenReturn(1);
+        when(orderJdbcRepo.updateStatus(Set.of(20L), EnumSet.of(Order.Status.PENDING), Order.Status.CANCELLED)).thenReturn(1);
+        when(cartJdbcRepo.findLinesByUserIds(List.of(100L))).thenReturn(List.of(
+                new CartJdbcRepo.CategorizedLine(100L, 7L, 2, 1, 2500)));
+        when(cartStore.isEnabled()).thenReturn(true);
+
+        // --- ACT ---
+        int consumed = paymentWebhookService.consumeBatch();
+
+        // --- ASSERT ---
+        assertEquals(5, consumed);
+        verify(paymentWebhookJdbcRepo).updateStatuses(eq(List.of(
+                new PaymentWebhookJdbcRepo.StatusChange(1L, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.COMPLETED),
+                new PaymentWebhookJdbcRepo.StatusChange(2L, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.FAILED))), any(Date.class));
+        verify(cartJdbcRepo).deleteByUserIds(List.of(100L));
+        verify(cartStore).clearUser(100L);
+
+        ArgumentCaptor<Collection<OutboxService.Event>> events = ArgumentCaptor.captor();
+        verify(outboxService).publishAll(events.capture());
+        assertEquals(List.of("PAYMENT_COMPLETED", "PAYMENT_FAILED"),
+                events.getValue().stream().map(OutboxService.Event::eventType).toList());
+
+        ArgumentCaptor<Collection<PaymentWebhookJdbcRepo.AppliedEvent>> applied = ArgumentCaptor.captor();
+        verify(paymentWebhookJdbcRepo).insertApplied(applied.capture(), any(Date.class));
+        assertEquals(List.of("evt-1", "evt-2", "evt-3"),
+                applied.getValue().stream().map(PaymentWebhookJdbcRepo.AppliedEvent::eventId).toList());
+
+        PaymentWebhookService.Stats stats = paymentWebhookService.getStats();
+        assertEquals(5, stats.received());
+        assertEquals(3, stats.applied());
+        assertEquals(2, stats.duplicates());
+        assertEquals(1, stats.ignored());
+        assertEquals(0, stats.backlogBytes());
+        assertEquals(0, paymentWebhookService.consumeBatch());
+    }
+
+    @Test
+    void consumeBatch_shouldKeepTheJournalPositionWhenApplyingFails() throws Exception {
+        // --- ARRANGE ---
+        runTransactionsInline();
+        paymentWebhookService.receive(webhook("evt-1", 1L, Payment.PaymentStatus.COMPLETED));
+        when(paymentWebhookJdbcRepo.findApplied(anyCollection())).thenReturn(Set.of());
+        when(paymentWebhookJdbcRepo.lockPayments(List.of(1L))).thenThrow(new IllegalStateException("lock wait timeout"));
+
+        // --- ACT & ASSERT ---
+        assertThrows(IllegalStateException.class, () -> paymentWebhookService.consumeBatch());
+        assertEquals(0, paymentWebhookService.getStats().applied());
+        assertTrue(paymentWebhookService.getStats().backlogBytes() > 0);
+        // a restart resumes before the failed event
+        try (MappedJournal reopened = new MappedJournal(journalDir, "webhooks", 1024 * 1024)) {
+            assertEquals(1, reopened.read(reopened.readPosition(), 10).size());
+        }
+        verify(paymentWebhookJdbcRepo, never()).insertApplied(anyCollection(), any());
+    }
+
+    @Test
+    void consumeBatch_afterMaxAttempts_shouldDeadLetterTheFailingEventAndMoveOn() throws Exception {
+        // --- ARRANGE ---
+        runTransactionsInline();
+        ReflectionTestUtils.setField(paymentWebhookService, "maxAttempts", 2);
+        paymentWebhookService.receive(webhook("evt-1", 1L, Payment.PaymentStatus.COMPLETED));
+        paymentWebhookService.receive(webhook("evt-2", 2L, Payment.PaymentStatus.FAILED));
+        when(paymentWebhookJdbcRepo.findApplied(anyCollection())).thenReturn(Set.of());
+        when(paymentWebhookJdbcRepo.lockPayments(List.of(1L, 2L))).thenThrow(new IllegalStateException("bad row"));
+        when(paymentWebhookJdbcRepo.lockPayments(List.of(1L))).thenThrow(new IllegalStateException("bad row"));
+        when(paymentWebhookJdbcRepo.lockPayments(List.of(2L))).thenReturn(List.of(
+                payment(2L, 20L, 200L, Payment.PaymentStatus.PENDING)));
+        when(orderJdbcRepo.updateStatus(anyCollection(), any(), any())).thenAnswer(invocation ->
+                invocation.<Collection<?>>getArgument(0).size());
+
+        // --- ACT ---
+        assertThrows(IllegalStateException.class, () -> paymentWebhookService.consumeBatch());
+        int consumed = paymentWebhookService.consumeBatch();
+
+        // --- ASSERT ---
+        assertEquals(2, consumed);
+        verify(paymentWebhookJdbcRepo).insertDeadLetter(eq("evt-1"), eq(1L), contains("evt-1"), eq("bad row"), any(Date.class));
+        ArgumentCaptor<Collection<PaymentWebhookJdbcRepo.AppliedEvent>> applied = ArgumentCaptor.captor();
+        verify(paymentWebhookJdbcRepo).insertApplied(applied.capture(), any(Date.class));
+        assertEquals(List.of("evt-2"), applied.getValue().stream().map(PaymentWebhookJdbcRepo.AppliedEvent::eventId).toList());
+        assertEquals(1, paymentWebhookService.getStats().deadLettered());
+        assertEquals(0, paymentWebhookService.getStats().backlogBytes());
+    }
+
+    @Test
+    void receive_shouldRejectInvalidCallbacksWithoutJournalingThem() {
+        // --- ACT & ASSERT ---
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentWebhookService.receive(webhook(" ", 1L, Payment.PaymentStatus.COMPLETED)));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentWebhookService.receive(webhook("evt-1", null, Payment.PaymentStatus.COMPLETED)));
+        assertThrows(IllegalArgumentException.class,
+                () -> paymentWebhookService.receive(webhook("evt-1", 1L, Payment.PaymentStatus.PENDING)));
+        assertEquals(0, paymentWebhookService.getStats().received());
+        assertEquals(0, paymentWebhookService.getStats().backlogBytes());
+    }
+
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private static PaymentWebhookRequest webhook(String eventId, Long paymentId, Payment.PaymentStatus status) {
+        PaymentWebhookRequest request = new PaymentWebhookRequest();
+        request.setEventId(eventId);
+        request.setPaymentId(paymentId);
+        request.setStatus(status);
+        request.setOccurredAt(new Date());
+        return request;
+    }
+
+    private static PaymentWebhookJdbcRepo.PaymentState payment(long paymentId, long orderId, long userId, Payment.PaymentStatus status) {
+        return new PaymentWebhookJdbcRepo.PaymentState(paymentId, orderId, userId, 2500, Payment.PaymentMethod.CARD,
+                status, Order.Status.PENDING.name());
+    }
+}
@@ -0,0 +1,114 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.util.StripedLongBuffer;
+import com.genc.e_commerce.util.TrendingWindow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularityServiceTest {
+
+    private PopularityService popularityService;
+
+    @BeforeEach
+    void setUp() {
+        popularityService = new PopularityService();
+        popularityService.init();
+    }
+
+    @Test
+    void drain_shouldRankViewsCartAddsAndTheirWeightedUnion() {
+        // --- ARRANGE ---
+        for (int i = 0; i < 30; i++) {
+            popularityService.recordView(1L);
+        }
+        for (int i = 0; i < 20; i++) {
+            popularityService.recordView(2L);
+        }
+        for (int i = 0; i < 8; i++) {
+            popularityService.recordAddToCart(3L);
+        }
+        popularityService.recordAddToCart(2L);
+        popularityService.recordView(null);
+
+        // --- ACT ---
+        assertTrue(popularityService.getTrending(10).isEmpty()); // nothing is visible before a drain
+        popularityService.drain();
+
+        // --- ASSERT ---
+        assertEquals(List.of(new PopularityService.Ranked(1L, 30), new PopularityService.Ranked(2L, 20)),
+                popularityService.getTrending(10));
+        assertEquals(List.of(3L, 2L), ids(popularityService.getBestSellers(10)));
+        assertEquals(1, popularityService.getTrending(1).size());
+        // 8 cart adds * 5 = 40 beats 30 views; 20 views + 1 cart add = 25
+        assertEquals(List.of(3L, 1L, 2L), popularityService.getPopularityRanking());
+        assertEquals(50, popularityService.getStats().viewsRecorded());
+        assertEquals(9, popularityService.getStats().cartAddsRecorded());
+    }
+
+    @Test
+    void window_shouldForgetRetiredBucketsAndKeepTheTopKeys() {
+        // --- ARRANGE ---
+        // 3 buckets, 2 keys held
+        TrendingWindow window = new TrendingWindow(3, 4, 256, 2);
+        window.add(1, 5);
+        window.advance();
+        window.add(2, 3);
+        window.add(3, 1);
+        window.add(3, 1);
+
+        // --- ACT ---
+        List<TrendingWindow.Entry> beforeExpiry = window.top();
+        window.advance();
+        window.add(4, 4); // pushes key 2 out of the full heap
+        window.advance(); // key 1's bucket is retired
+        List<TrendingWindow.Entry> afterExpiry = window.top();
+        window.add(2, 1); // back in with its whole window count
+
+        // --- ASSERT ---
+        assertEquals(List.of(new TrendingWindow.Entry(1, 5), new TrendingWindow.Entry(2, 3)), beforeExpiry);
+        assertEquals(0, window.estimate(1));
+        assertEquals(List.of(new TrendingWindow.Entry(4, 4)), afterExpiry);
+        assertEquals(List.of(new TrendingWindow.Entry(2, 4), new TrendingWindow.Entry(4, 4)), window.top());
+    }
+
+    @Test
+    void buffer_shouldHandEveryAcceptedValueToTheConsumerOnce() throws InterruptedException {
+        // --- ARRANGE ---
+        StripedLongBuffer buffer = new StripedLongBuffer(64);
+        AtomicLong accepted = new AtomicLong();
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    if (buffer.offer(i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        // --- ACT ---
+        long drained = 0;
+        while (producers.stream().anyMatch(Thread::isAlive)) {
+            drained += buffer.drain(value -> assertTrue(value > 0));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        drained += buffer.drain(value -> assertTrue(value > 0));
+
+        // --- ASSERT ---
+        assertEquals(accepted.get(), drained);
+        assertEquals(40_000, accepted.get() + buffer.dropped());
+    }
+
+    private static List<Long> ids(List<PopularityService.Ranked> ranked) {
+        return ranked.stream().map(PopularityService.Ranked::productId).toList();
+    }
+}
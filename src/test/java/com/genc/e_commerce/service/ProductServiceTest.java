@@ -1,7 +1,9 @@
 package com.genc.e_commerce.service;
 
+import com.genc.e_commerce.dto.ProductBatchItem;
 import com.genc.e_commerce.entity.Category;
 import com.genc.e_commerce.entity.Product;
+import com.genc.e_commerce.event.ProductChangedEvent;
 import com.genc.e_commerce.repository.CategoryRepo;
 import com.genc.e_commerce.repository.ProductRepo;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,12 +12,26 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 // Use the Mockito extension for JUnit 5
@@ -29,6 +45,15 @@ class ProductServiceTest {
     @Mock
     private CategoryRepo categoryRepo;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PopularityService popularityService;
+
+    @Mock
+    private CatalogColumnService catalogColumnService;
+
     // 2. Inject the mocks into a real instance of ProductService.
     @InjectMocks
     private ProductService productService;
@@ -46,7 +71,7 @@ class ProductServiceTest {
         testProduct = new Product();
         testProduct.setProductId(100L);
         testProduct.setName("Laptop");
-        testProduct.setPrice(1200.00);
+        testProduct.setPriceMinor(120000);
         testProduct.setCategory(testCategory);
     }
 
@@ -76,7 +101,7 @@ class ProductServiceTest {
         // --- ARRANGE ---
         Product updatedInfo = new Product();
         updatedInfo.setName("Gaming Laptop");
-        updatedInfo.setPrice(1500.00);
+        updatedInfo.setPriceMinor(150000);
 
         // Mock the findById to return our existing test product.
         when(productRepo.findById(100L)).thenReturn(Optional.of(testProduct));
@@ -88,9 +113,12 @@ class ProductServiceTest {
         // --- ASSERT ---
         assertNotNull(result);
         assertEquals("Gaming Laptop", result.getName()); // Check that the name was updated.
-        assertEquals(1500.00, result.getPrice());     // Check that the price was updated.
+        assertEquals(150000, result.getPriceMinor());     // Check that the price was updated.
         verify(productRepo, times(1)).findById(100L);
         verify(productRepo, times(1)).save(testProduct);
+        // listeners get the price before and after the change
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof ProductChangedEvent changed
+                && changed.previous().priceMinor() == 120000 && changed.current().priceMinor() == 150000));
     }
 
     @Test
@@ -121,6 +149,34 @@ class ProductServiceTest {
         assertEquals("Laptop", foundProduct.getName());
     }
 
+    @Test
+    void getProductDetails_whenAnUpdateLandsDuringTheLoad_shouldNotCacheTheOldProduct() {
+        // --- ARRANGE ---
+        Product updatedInfo = new Product();
+        updatedInfo.setName("Gaming Laptop");
+        Product staleCopy = product(100L);
+        staleCopy.setName("Laptop");
+        AtomicInteger loads = new AtomicInteger();
+        when(productRepo.findById(100L)).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                // the update commits and invalidates while this first lookup still holds the old row
+                productService.updateProduct(100L, updatedInfo);
+                return Optional.of(staleCopy);
+            }
+            return Optional.of(testProduct);
+        });
+        when(productRepo.save(any(Product.class))).thenReturn(testProduct);
+
+        // --- ACT ---
+        Product first = productService.getProductDetails(100L);
+        Product second = productService.getProductDetails(100L);
+
+        // --- ASSERT ---
+        assertEquals("Laptop", first.getName());
+        assertEquals("Gaming Laptop", second.getName());
+        verify(productRepo, times(3)).findById(100L);
+    }
+
     @Test
     void deleteProduct_whenProductExists_shouldReturnSuccessMessage() {
         // --- ARRANGE ---
@@ -155,4 +211,127 @@ class ProductServiceTest {
         assertEquals(2, results.size());
         assertEquals("Laptop", results.get(0).getName());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getProductDetails_underConcurrentSpike_shouldKeepDatabaseCallsFlat() throws Exception {
+        // --- ARRANGE ---
+        // A slow findById so that concurrent callers overlap with the in-flight query.
+        AtomicInteger dbCalls = new AtomicInteger();
+        when(productRepo.findById(100L)).thenAnswer(invocation -> {
+            dbCalls.incrementAndGet();
+            Thread.sleep(100);
+            return Optional.of(testProduct);
+        });
+
+        for (int concurrency : new int[]{10, 100, 500}) {
+            dbCalls.set(0);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Product>> results = new ArrayList<>();
+
+            // --- ACT ---
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < concurrency; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return productService.getProductDetails(100L);
+                    }));
+                }
+                start.countDown();
+                for (Future<Product> result : results) {
+                    assertEquals("Laptop", result.get().getName());
+                }
+            }
+
+            // --- ASSERT ---
+            // The query count stays the same whether 10 or 500 callers arrive together.
+            assertTrue(dbCalls.get() <= 2, "expected coalesced lookups at concurrency " + concurrency
+                    + " but saw " + dbCalls.get() + " database calls");
+        }
+        assertTrue(productService.getProductLookupStats().coalesced() > 0);
+    }
+
+    @Test
+    void getProductsByIds_shouldServeCacheHitsAndLoadMissesInOneQuery() {
+        // --- ARRANGE ---
+        Product anotherProduct = new Product();
+        anotherProduct.setProductId(101L);
+        anotherProduct.setName("Mouse");
+
+        // warm the cache for product 100 through the single lookup
+        when(productRepo.findById(100L)).thenReturn(Optional.of(testProduct));
+        productService.getProductDetails(100L);
+        when(productRepo.findAllById(anyIterable())).thenReturn(List.of(anotherProduct));
+
+        // --- ACT ---
+        List<ProductBatchItem> items = productService.getProductsByIds(List.of(101L, 999L, 100L));
+
+        // --- ASSERT ---
+        // results come back in request order with the unknown id marked as missing
+        assertEquals(3, items.size());
+        assertEquals("Mouse", items.get(0).getProduct().getName());
+        assertFalse(items.get(1).isFound());
+        assertEquals(999L, items.get(1).getProductId());
+        assertEquals("Laptop", items.get(2).getProduct().getName());
+        // only the cache misses went to the database, in a single call
+        verify(productRepo, times(1)).findAllById(argThat(ids -> {
+            List<Long> requested = new ArrayList<>();
+            ids.forEach(requested::add);
+            return requested.equals(List.of(101L, 999L));
+        }));
+    }
+
+    @Test
+    void getProductsByIds_whenTooManyIds_shouldThrowException() {
+        // --- ARRANGE ---
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 101; id++) {
+            ids.add(id);
+        }
+
+        // --- ACT & ASSERT ---
+        assertThrows(IllegalArgumentException.class, () -> productService.getProductsByIds(ids));
+        verify(productRepo, never()).findAllById(anyIterable());
+    }
+
+    @Test
+    void browseProductsByPopularity_shouldListHotMatchesFirstThenTheRest() {
+        // --- ARRANGE ---
+        // 9 is hot but filtered out, 7 and 8 match but have no known popularity
+        when(popularityService.getPopularityRanking()).thenReturn(List.of(5L, 3L, 9L));
+        when(productRepo.findIdsAmong(List.of(5L, 3L, 9L), null, 0, Long.MAX_VALUE, 1)).thenReturn(List.of(3L, 5L));
+        when(productRepo.findIdsByPriceExcluding(eq(0L), eq(Long.MAX_VALUE), eq(1), eq(List.of(5L, 3L)), any()))
+                .thenAnswer(invocation -> new PageImpl<>(List.of(7L, 8L), invocation.getArgument(4), 2));
+        when(productRepo.findAllById(anyIterable())).thenReturn(List.of(product(3L), product(5L), product(7L)));
+
+        // --- ACT ---
+        Page<Product> page = productService.browseProductsByPopularity(null, null, null, true, 0, 3);
+
+        // --- ASSERT ---
+        assertEquals(List.of(5L, 3L, 7L), page.getContent().stream().map(Product::getProductId).toList());
+        assertEquals(4, page.getTotalElements());
+        verify(productRepo).findIdsByPriceExcluding(eq(0L), eq(Long.MAX_VALUE), eq(1), eq(List.of(5L, 3L)),
+                eq(PageRequest.of(0, 3, Sort.by("priceMinor", "productId"))));
+    }
+
+    @Test
+    void browseProducts_whenColumnsAreLoaded_shouldNotQueryIdsFromTheDatabase() {
+        // --- ARRANGE ---
+        when(catalogColumnService.browseIds(1, 0, Long.MAX_VALUE, 0, true, 0, 2))
+                .thenReturn(Optional.of(new PageImpl<>(List.of(7L, 3L), PageRequest.of(0, 2), 5)));
+        when(productRepo.findAllById(anyIterable())).thenReturn(List.of(product(3L), product(7L)));
+
+        // --- ACT ---
+        Page<Product> page = productService.browseProducts(1, null, null, false, true, 0, 2);
+
+        // --- ASSERT ---
+        assertEquals(List.of(7L, 3L), page.getContent().stream().map(Product::getProductId).toList());
+        assertEquals(5, page.getTotalElements());
+        verify(productRepo, never()).findIdsByCategoryAndPrice(anyInt(), anyLong(), anyLong(), anyInt(), any());
+    }
+
+    private static Product product(long productId) {
+        Product product = new Product();
+        product.setProductId(productId);
+        return product;
+    }
+}
@@ -0,0 +1,199 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.entity.Promotion;
+import com.genc.e_commerce.util.Money;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromotionRulesTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    void price_shouldApplyTheBestLineRuleWithoutStacking() {
+        // --- ARRANGE ---
+        PromotionRules rules = PromotionRules.compile(List.of(
+                percentOff(1L, null, 10),
+                percentOff(null, 5, 20),
+                buyGet(2L, 2, 1)), NOW);
+        List<CartResponse> cart = List.of(
+                line(1L, 5, 1000, 2),   // 10% by product vs 20% by category: 20% wins
+                line(2L, null, 500, 7), // two complete groups of 2 + 1, two units free
+                line(3L, null, 300, 1)); // no rule
+        long[] lineDiscounts = new long[cart.size()];
+
+        // --- ACT ---
+        PromotionRules.Pricing pricing = rules.price(cart, PromotionService.CART_RESPONSES, null, lineDiscounts);
+
+        // --- ASSERT ---
+        assertArrayEquals(new long[]{400, 1000, 0}, lineDiscounts);
+        assertEquals(2000 + 3500 + 300, pricing.subtotalMinor());
+        assertEquals(1400, pricing.lineDiscountMinor());
+        assertEquals(0, pricing.orderDiscountMinor());
+        assertEquals(4400, pricing.totalMinor());
+        assertNull(pricing.appliedCoupon());
+    }
+
+    @Test
+    void price_shouldTakeTheBetterOfTheAutomaticThresholdAndTheCoupon() {
+        // --- ARRANGE ---
+        PromotionRules rules = PromotionRules.compile(List.of(
+                threshold(Money.ofMajor(50.0), Money.ofMajor(5.0), 0, null),
+                threshold(Money.ofMajor(100.0), 0, 10, null),
+                threshold(Money.ofMajor(80.0), Money.ofMajor(15.0), 0, " save15 ")), NOW);
+        List<CartResponse> small = List.of(line(1L, null, Money.ofMajor(60.0), 1));
+        List<CartResponse> large = List.of(line(1L, null, Money.ofMajor(200.0), 1));
+
+        // --- ACT ---
+        PromotionRules.Pricing belowCouponThreshold = rules.price(small, PromotionService.CART_RESPONSES, "SAVE15", null);
+        PromotionRules.Pricing couponWins = rules.price(List.of(line(1L, null, Money.ofMajor(90.0), 1)),
+                PromotionService.CART_RESPONSES, "save15", null);
+        PromotionRules.Pricing automaticWins = rules.price(large, PromotionService.CART_RESPONSES, "save15", null);
+
+        // --- ASSERT ---
+        assertEquals(Money.ofMajor(5.0), belowCouponThreshold.orderDiscountMinor());
+        assertNull(belowCouponThreshold.appliedCoupon());
+        assertEquals(Money.ofMajor(15.0), couponWins.orderDiscountMinor());
+        assertEquals("SAVE15", couponWins.appliedCoupon());
+        // 10% of 200.00 beats the 15.00 coupon
+        assertEquals(Money.ofMajor(20.0), automaticWins.orderDiscountMinor());
+        assertNull(automaticWins.appliedCoupon());
+        assertTrue(rules.hasCoupon("Save15"));
+    }
+
+    @Test
+    void compile_shouldLeaveOutInactiveExpiredAndInvalidRules() {
+        // --- ARRANGE ---
+        Promotion inactive = percentOff(1L, null, 50);
+        inactive.setActive(false);
+        Promotion expired = percentOff(1L, null, 50);
+        expired.setEndsAt(new Date(NOW));
+        Promotion notStarted = percentOff(1L, null, 50);
+        notStarted.setStartsAt(new Date(NOW + 1));
+        Promotion untargeted = percentOff(null, null, 50);
+        Promotion couponOnLineRule = percentOff(1L, null, 50);
+        couponOnLineRule.setCouponCode("HALF");
+
+        // --- ACT ---
+        PromotionRules rules = PromotionRules.compile(
+                List.of(inactive, expired, notStarted, untargeted, couponOnLineRule, percentOff(1L, null, 5)), NOW);
+
+        // --- ASSERT ---
+        assertEquals(1, rules.lineRuleCount());
+        assertEquals(0, rules.couponCount());
+        assertNotNull(PromotionRules.validate(untargeted));
+        assertNotNull(PromotionRules.validate(couponOnLineRule));
+        assertEquals(50, rules.price(List.of(line(1L, null, 1000, 1)), PromotionService.CART_RESPONSES, null, null)
+                .discountMinor());
+    }
+
+    @Test
+    void compile_shouldBeValidUntilTheNextWindowBoundary() {
+        // --- ARRANGE ---
+        Promotion running = percentOff(1L, null, 10);
+        running.setEndsAt(new Date(NOW + 5_000));
+        Promotion upcoming = percentOff(2L, null, 20);
+        upcoming.setStartsAt(new Date(NOW + 2_000));
+        Promotion inactive = percentOff(3L, null, 30);
+        inactive.setActive(false);
+        inactive.setStartsAt(new Date(NOW + 1_000));
+
+        // --- ACT ---
+        PromotionRules atStart = PromotionRules.compile(List.of(running, upcoming, inactive), NOW);
+        PromotionRules afterUpcomingStarts = PromotionRules.compile(List.of(running, upcoming, inactive), NOW + 2_000);
+
+        // --- ASSERT ---
+        assertEquals(NOW + 2_000, atStart.validUntil());
+        assertEquals(1, atStart.lineRuleCount());
+        assertEquals(NOW + 5_000, afterUpcomingStarts.validUntil());
+        assertEquals(2, afterUpcomingStarts.lineRuleCount());
+        assertEquals(Long.MAX_VALUE, PromotionRules.compile(List.of(percentOff(1L, null, 5)), NOW).validUntil());
+    }
+
+    // 10k rules must not make pricing allocate per line
+    @Test
+    void price_withManyRules_shouldNotAllocatePerLine() {
+        // --- ARRANGE ---
+        List<Promotion> promotions = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            promotions.add(i % 2 == 0 ? percentOff((long) i, null, 1 + i % 30) : buyGet((long) i, 2, 1));
+        }
+        for (int i = 0; i < 200; i++) {
+            promotions.add(percentOff(null, i, 5));
+            promotions.add(threshold(Money.ofMajor(10.0 * i), 100L * (i + 1), 0, null));
+        }
+        PromotionRules rules = PromotionRules.compile(promotions, NOW);
+        List<CartResponse> cart = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            cart.add(line((long) i * 97, i % 250, 1999, 1 + i % 4));
+        }
+        long[] lineDiscounts = new long[cart.size()];
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long checksum = totals(rules, cart, lineDiscounts, 20_000);
+
+        // --- ACT ---
+        long before = threads.getThreadAllocatedBytes(threadId);
+        checksum += totals(rules, cart, lineDiscounts, 50_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // --- ASSERT ---
+        assertEquals(10_000 + 200, rules.lineRuleCount());
+        assertEquals(200, rules.thresholdRuleCount());
+        assertTrue(checksum > 0);
+        // one Pricing record per cart is expected; 5 million lines read with boxing would be far above this
+        assertTrue(allocated < 50_000L * 64, "pricing allocated " + allocated + " bytes");
+    }
+
+    private static long totals(PromotionRules rules, List<CartResponse> cart, long[] lineDiscounts, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += rules.price(cart, PromotionService.CART_RESPONSES, null, lineDiscounts).totalMinor();
+        }
+        return checksum;
+    }
+
+    private static CartResponse line(Long productId, Integer categoryId, long unitPriceMinor, int quantity) {
+        return new CartResponse(null, null, productId, "item", quantity, unitPriceMinor,
+                Money.times(unitPriceMinor, quantity), categoryId);
+    }
+
+    private static Promotion percentOff(Long productId, Integer categoryId, int percent) {
+        Promotion promotion = active(Promotion.Type.PERCENT_OFF);
+        promotion.setProductId(productId);
+        promotion.setCategoryId(categoryId);
+        promotion.setPercentOff(percent);
+        return promotion;
+    }
+
+    private static Promotion buyGet(Long productId, int buy, int free) {
+        Promotion promotion = active(Promotion.Type.BUY_X_GET_Y);
+        promotion.setProductId(productId);
+        promotion.setBuyQuantity(buy);
+        promotion.setFreeQuantity(free);
+        return promotion;
+    }
+
+    private static Promotion threshold(long thresholdMinor, long discountMinor, int percent, String couponCode) {
+        Promotion promotion = active(Promotion.Type.THRESHOLD);
+        promotion.setThresholdMinor(thresholdMinor);
+        promotion.setDiscountMinor(discountMinor);
+        promotion.setPercentOff(percent);
+        promotion.setCouponCode(couponCode);
+        return promotion;
+    }
+
+    private static Promotion active(Promotion.Type type) {
+        Promotion promotion = new Promotion();
+        promotion.setType(type);
+        promotion.setActive(true);
+        return promotion;
+    }
+}
@@ -0,0 +1,129 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.util.CooccurrenceMatrix;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationServiceTest {
+
+    private RecommendationService recommendationService;
+
+    @BeforeEach
+    void setUp() {
+        recommendationService = new RecommendationService();
+        recommendationService.init();
+    }
+
+    @Test
+    void alsoBought_shouldRankProductsByHowOftenTheyWerePaidForTogether() {
+        // --- ARRANGE ---
+        recommendationService.recordPurchase(payment(1L, 2L, 3L));
+        recommendationService.recordPurchase(payment(1L, 2L));
+        recommendationService.recordPurchase(payment(4L, 1L, 1L));
+        recommendationService.recordPurchase(payment(9L)); // a single product pairs with nothing
+
+        // --- ACT ---
+        List<CooccurrenceMatrix.Neighbor> alsoBought = recommendationService.alsoBought(1L, 10);
+
+        // --- ASSERT ---
+        assertEquals(3, alsoBought.size());
+        assertEquals(2L, alsoBought.get(0).productId());
+        assertTrue(ids(alsoBought).containsAll(List.of(3L, 4L)));
+        assertEquals(2.0, alsoBought.get(0).score(), 0.01);
+        assertEquals(List.of(1L), ids(recommendationService.alsoBought(4L, 10)));
+        assertTrue(recommendationService.alsoBought(9L, 10).isEmpty());
+        assertEquals(1, recommendationService.alsoBought(1L, 1).size());
+
+        // a deleted product disappears from its neighbours as well
+        recommendationService.onProductChanged(new ProductChangedEvent(
+                new ProductSnapshot(2L, "Mouse", "desc", 500, 3, null, null), null));
+        assertFalse(ids(recommendationService.alsoBought(1L, 10)).contains(2L));
+        assertTrue(recommendationService.alsoBought(2L, 10).isEmpty());
+        assertEquals(3, recommendationService.getStats().basketsApplied());
+    }
+
+    @Test
+    void matrix_shouldDecayOldBasketsAndPruneRowsToTheStrongestNeighbours() {
+        // --- ARRANGE ---
+        // one neighbour kept per product, counts halve every second
+        CooccurrenceMatrix matrix = new CooccurrenceMatrix(1, 1000, 0);
+        matrix.record(new long[]{1, 2}, 0);
+        matrix.record(new long[]{1, 3}, 2000);
+
+        // --- ACT ---
+        List<CooccurrenceMatrix.Neighbor> decayed = matrix.top(1, 10, 2000);
+        matrix.record(new long[]{1, 3}, 2000);
+        matrix.record(new long[]{1, 5}, 2000);
+        List<CooccurrenceMatrix.Neighbor> pruned = matrix.top(1, 10, 2000);
+
+        // --- ASSERT ---
+        assertEquals(List.of(3L, 2L), ids(decayed));
+        assertEquals(1.0, decayed.get(0).score(), 1e-9);
+        assertEquals(0.25, decayed.get(1).score(), 1e-9);
+        // the row reached 3 entries, twice the limit plus one, and kept only the strongest
+        assertEquals(List.of(3L), ids(pruned));
+        assertEquals(2.0, pruned.get(0).score(), 1e-9);
+        assertEquals(1, matrix.getStats().prunes());
+    }
+
+    @Test
+    void matrix_shouldRescaleCountsWithoutChangingScores() {
+        // --- ARRANGE ---
+        CooccurrenceMatrix matrix = new CooccurrenceMatrix(10, 1, 0);
+        matrix.record(new long[]{1, 2}, 0);
+
+        // --- ACT ---
+        // 600 half-lives later the increment would exceed the rescale limit
+        matrix.record(new long[]{1, 3}, 600);
+
+        // --- ASSERT ---
+        List<CooccurrenceMatrix.Neighbor> top = matrix.top(1, 10, 600);
+        assertEquals(List.of(3L, 2L), ids(top));
+        assertEquals(1.0, top.get(0).score(), 1e-9);
+        assertEquals(1, matrix.getStats().rescales());
+        assertEquals(4, matrix.getStats().pairs());
+    }
+
+    @Test
+    void matrix_remove_shouldDropTheProductFromRowsItsOwnRowNoLongerLists() {
+        // --- ARRANGE ---
+        // 1's row keeps only 3 after pruning, while 2's row still lists 1
+        CooccurrenceMatrix matrix = new CooccurrenceMatrix(1, 1000, 0);
+        matrix.record(new long[]{1, 2}, 0);
+        matrix.record(new long[]{1, 3}, 0);
+        matrix.record(new long[]{1, 3}, 0);
+        matrix.record(new long[]{1, 4}, 0);
+
+        // --- ACT ---
+        matrix.remove(1);
+
+        // --- ASSERT ---
+        assertTrue(matrix.top(1, 10, 0).isEmpty());
+        assertTrue(matrix.top(2, 10, 0).isEmpty());
+        assertTrue(matrix.top(3, 10, 0).isEmpty());
+        assertEquals(0, matrix.getStats().pairs());
+        assertThrows(IllegalArgumentException.class, () -> new CooccurrenceMatrix(0, 1000, 0));
+    }
+
+    private static PaymentEventPayload payment(Long... productIds) {
+        List<PaymentEventPayload.Item> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            items.add(new PaymentEventPayload.Item(productId, null, 1, 100));
+        }
+        return new PaymentEventPayload(1L, 1L, 1L, 100L * productIds.length, "CARD", "COMPLETED", "PENDING", "SHIPPED",
+                new Date(), items);
+    }
+
+    private static List<Long> ids(List<CooccurrenceMatrix.Neighbor> neighbors) {
+        return neighbors.stream().map(CooccurrenceMatrix.Neighbor::productId).toList();
+    }
+}
@@ -0,0 +1,149 @@
+package com.genc.e_commerce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.genc.e_commerce.entity.Order;
+import com.genc.e_commerce.entity.SalesRollup;
+import com.genc.e_commerce.event.OutboxMessage;
+import com.genc.e_commerce.event.PaymentEventPayload;
+import com.genc.e_commerce.repository.SalesRollupJdbcRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SalesAnalyticsServiceTest {
+
+    @Mock
+    private SalesRollupJdbcRepo salesRollupJdbcRepo;
+    @Mock
+    private ObjectMapper objectMapper;
+
+    @InjectMocks
+    private SalesAnalyticsService salesAnalyticsService;
+
+    private final LocalDate day = LocalDate.of(2026, 3, 1);
+    private final Date paidAt = Date.from(day.atTime(12, 0).toInstant(ZoneOffset.UTC));
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(salesAnalyticsService, "zone", "UTC");
+    }
+
+    @Test
+    void flush_shouldWriteAccumulatedDeltasOnceAndResetTheCells() {
+        // --- ARRANGE ---
+        List<PaymentEventPayload.Item> items = List.of(
+                new PaymentEventPayload.Item(1L, 7, 2, 2000),
+                new PaymentEventPayload.Item(2L, 7, 1, 550),
+                new PaymentEventPayload.Item(3L, null, 1, 450));
+        salesAnalyticsService.recordPayment(new PaymentEventPayload(10L, 1L, 100L, 3000, "CARD", "COMPLETED",
+                "PENDING", "SHIPPED", paidAt, items));
+        salesAnalyticsService.recordPayment(new PaymentEventPayload(11L, 2L, 101L, 1225, "CARD", "COMPLETED",
+                "PENDING", "SHIPPED", paidAt, List.of()));
+        salesAnalyticsService.recordPayment(new PaymentEventPayload(12L, 3L, 102L, 999, "UPI", "FAILED",
+                "PENDING", "CANCELLED", paidAt, List.of()));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<SalesRollupJdbcRepo.Delta>> captor = ArgumentCaptor.forClass(Collection.class);
+
+        // --- ACT ---
+        salesAnalyticsService.flush();
+        salesAnalyticsService.flush();
+
+        // --- ASSERT ---
+        // the second flush had nothing to write
+        verify(salesRollupJdbcRepo, times(1)).applyDeltas(captor.capture());
+        Set<SalesRollupJdbcRepo.Delta> deltas = new HashSet<>(captor.getValue());
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.PAYMENT_METHOD, day, "CARD", 2, 0, 4225)));
+        assertFalse(deltas.stream().anyMatch(d -> d.dimension() == SalesRollup.Dimension.PAYMENT_METHOD && d.value().equals("UPI")));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.PAYMENT_STATUS, day, "FAILED", 1, 0, 999)));
+        // two lines of category 7 count as one order
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.CATEGORY, day, "7", 1, 3, 2550)));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.CATEGORY, day, "none", 1, 1, 450)));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.ORDER_STATUS, day, "SHIPPED", 2, 0, 0)));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, "PENDING", -3, 0, 0)));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, "CANCELLED", 1, 0, 0)));
+        assertEquals(0, salesAnalyticsService.getStats().failedFlushes());
+    }
+
+    @Test
+    void flush_whenTheWriteFails_shouldKeepTheDeltasForTheNextRun() {
+        // --- ARRANGE ---
+        salesAnalyticsService.recordStatusChange(Order.Status.SHIPPED, Order.Status.DELIVERED, 5);
+        doThrow(new RuntimeException("database unavailable")).doNothing()
+                .when(salesRollupJdbcRepo).applyDeltas(anyCollection());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<SalesRollupJdbcRepo.Delta>> captor = ArgumentCaptor.forClass(Collection.class);
+
+        // --- ACT ---
+        salesAnalyticsService.flush();
+        salesAnalyticsService.flush();
+
+        // --- ASSERT ---
+        verify(salesRollupJdbcRepo, times(2)).applyDeltas(captor.capture());
+        assertEquals(new HashSet<>(captor.getAllValues().get(0)), new HashSet<>(captor.getAllValues().get(1)));
+        assertTrue(captor.getAllValues().get(1).contains(
+                delta(SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, "SHIPPED", -5, 0, 0)));
+        assertEquals(1, salesAnalyticsService.getStats().failedFlushes());
+        assertEquals(1, salesAnalyticsService.getStats().flushes());
+    }
+
+    @Test
+    void rebuild_shouldNotCountEventsTheSnapshotAlreadyCoversTwice() throws Exception {
+        // --- ARRANGE ---
+        PaymentEventPayload covered = new PaymentEventPayload(10L, 1L, 100L, 3000, "CARD", "COMPLETED",
+                "PENDING", "SHIPPED", paidAt, List.of());
+        PaymentEventPayload later = new PaymentEventPayload(11L, 2L, 101L, 1225, "UPI", "COMPLETED",
+                "PENDING", "SHIPPED", paidAt, List.of());
+        when(objectMapper.readValue("covered", PaymentEventPayload.class)).thenReturn(covered);
+        when(objectMapper.readValue("later", PaymentEventPayload.class)).thenReturn(later);
+        // event 7 was committed and still undelivered when the rebuild read the payment table; both events
+        // are delivered while it runs
+        when(salesRollupJdbcRepo.rebuildDerivable()).thenAnswer(invocation -> {
+            salesAnalyticsService.handle(message(7L, "covered"));
+            salesAnalyticsService.handle(message(8L, "later"));
+            return new SalesRollupJdbcRepo.Snapshot(System.nanoTime(), Set.of(7L));
+        });
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<SalesRollupJdbcRepo.Delta>> captor = ArgumentCaptor.forClass(Collection.class);
+
+        // --- ACT ---
+        salesAnalyticsService.rebuild();
+        salesAnalyticsService.handle(message(7L, "covered")); // redelivered after the rebuild
+        salesAnalyticsService.flush();
+
+        // --- ASSERT ---
+        verify(salesRollupJdbcRepo, times(1)).applyDeltas(captor.capture());
+        Set<SalesRollupJdbcRepo.Delta> deltas = new HashSet<>(captor.getValue());
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.PAYMENT_METHOD, day, "UPI", 1, 0, 1225)));
+        assertFalse(deltas.stream().anyMatch(d -> d.dimension() == SalesRollup.Dimension.PAYMENT_METHOD && d.value().equals("CARD")));
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.ORDER_STATUS_CURRENT, SalesRollup.ALL_TIME, "SHIPPED", 1, 0, 0)));
+        // ORDER_STATUS is not rebuilt, so both events still count there
+        assertTrue(deltas.contains(delta(SalesRollup.Dimension.ORDER_STATUS, day, "SHIPPED", 3, 0, 0)));
+    }
+
+    private static OutboxMessage message(long id, String payload) {
+        return new OutboxMessage(id, PaymentEventPayload.PAYMENT_COMPLETED, null, payload, 0, new Date());
+    }
+
+    private static SalesRollupJdbcRepo.Delta delta(SalesRollup.Dimension dimension, LocalDate date, String value,
+                                                   long orderCount, long units, long revenueMinor) {
+        return new SalesRollupJdbcRepo.Delta(dimension, date, value, orderCount, units, revenueMinor);
+    }
+}
@@ -0,0 +1,185 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.event.ProductChangedEvent;
+import com.genc.e_commerce.event.ProductSnapshot;
+import com.genc.e_commerce.repository.ProductRepo;
+import com.genc.e_commerce.util.MinHashIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SimilarProductServiceTest {
+
+    @Mock
+    private ProductRepo productRepo;
+
+    @InjectMocks
+    private SimilarProductService similarProductService;
+
+    @BeforeEach
+    void setUp() {
+        similarProductService.init();
+    }
+
+    @Test
+    void similarTo_shouldFindNearDuplicateTextsAndSkipUnrelatedOnes() {
+        // --- ARRANGE ---
+        when(productRepo.findTextRowsAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(
+                row(1L, "Wireless Mouse", "Ergonomic wireless optical mouse with USB receiver, 2.4 GHz, black"),
+                row(2L, "Wireless Mouse Pro", "Ergonomic wireless optical mouse with USB receiver, 2.4 GHz, white"),
+                row(3L, "Cotton T-Shirt", "Soft organic cotton crew neck t-shirt, machine washable"),
+                row(4L, "Garden Hose", null)));
+
+        // --- ACT ---
+        similarProductService.rebuild();
+        List<MinHashIndex.Match> similar = similarProductService.similarTo(1L, 10);
+
+        // --- ASSERT ---
+        assertEquals(List.of(2L), ids(similar));
+        assertTrue(similar.get(0).similarity() > 0.6);
+        assertTrue(similarProductService.similarTo(3L, 10).isEmpty());
+        assertTrue(similarProductService.similarTo(99L, 10).isEmpty());
+        assertEquals(4, similarProductService.getStats().products());
+    }
+
+    @Test
+    void onProductChanged_shouldReindexEditedTextAndForgetDeletedProducts() {
+        // --- ARRANGE ---
+        when(productRepo.findTextRowsAfter(anyLong(), any(Pageable.class))).thenReturn(List.of());
+        similarProductService.rebuild();
+        ProductSnapshot kettle = snapshot(1L, "Electric Kettle", "1.7 litre stainless steel electric kettle with auto shut-off");
+        ProductSnapshot toaster = snapshot(2L, "Toaster", "Two slice toaster with browning control");
+        similarProductService.onProductChanged(new ProductChangedEvent(null, kettle));
+        similarProductService.onProductChanged(new ProductChangedEvent(null, toaster));
+
+        // --- ACT ---
+        boolean similarBeforeEdit = !similarProductService.similarTo(2L, 10).isEmpty();
+        ProductSnapshot renamed = snapshot(2L, "Electric Kettle XL", "1.7 litre stainless steel electric kettle with auto shut-off");
+        similarProductService.onProductChanged(new ProductChangedEvent(toaster, renamed));
+        List<Long> afterEdit = ids(similarProductService.similarTo(2L, 10));
+        similarProductService.onProductChanged(new ProductChangedEvent(kettle, null));
+
+        // --- ASSERT ---
+        assertFalse(similarBeforeEdit);
+        assertEquals(List.of(1L), afterEdit);
+        assertTrue(similarProductService.similarTo(2L, 10).isEmpty());
+        assertTrue(similarProductService.similarTo(1L, 10).isEmpty());
+        assertEquals(1, similarProductService.getStats().products());
+    }
+
+    @Test
+    void rebuild_shouldReplayChangesMadeWhileLoadingOverTheRowsItRead() {
+        // --- ARRANGE ---
+        ProductSnapshot kettle = snapshot(1L, "Electric Kettle", "1.7 litre stainless steel electric kettle with auto shut-off");
+        ProductSnapshot toaster = snapshot(2L, "Toaster", "Two slice toaster with browning control");
+        ProductSnapshot renamed = snapshot(2L, "Electric Kettle XL", "1.7 litre stainless steel electric kettle with auto shut-off");
+        // the chunk is read before the toaster is renamed, and the rename lands while the load is running
+        when(productRepo.findTextRowsAfter(eq(0L), any(Pageable.class))).thenAnswer(invocation -> {
+            List<ProductRepo.ProductTextRow> chunk = List.of(
+                    row(1L, kettle.name(), kettle.description()), row(2L, toaster.name(), toaster.description()),
+                    row(3L, "Garden Hose", null));
+            similarProductService.onProductChanged(new ProductChangedEvent(toaster, renamed));
+            similarProductService.onProductChanged(new ProductChangedEvent(snapshot(3L, "Garden Hose", null), null));
+            return chunk;
+        });
+
+        // --- ACT ---
+        similarProductService.rebuild();
+
+        // --- ASSERT ---
+        assertEquals(List.of(1L), ids(similarProductService.similarTo(2L, 10)));
+        assertEquals(2, similarProductService.getStats().products());
+    }
+
+    @Test
+    void index_shouldAnswerFromItsBucketsOverALargeCatalog() {
+        // --- ARRANGE ---
+        // 10,000 distinct texts built from a small vocabulary, plus one near copy of product 42
+        String[] words = {"steel", "cotton", "wireless", "garden", "kitchen", "leather", "bamboo", "ceramic",
+                "portable", "classic", "compact", "premium", "outdoor", "digital", "vintage", "modern"};
+        MinHashIndex index = new MinHashIndex(16, 4, 5, 50);
+        Random random = new Random(7);
+        String text42 = null;
+        for (long id = 1; id <= 10_000; id++) {
+            StringBuilder text = new StringBuilder("item ").append(id);
+            for (int w = 0; w < 8; w++) {
+                text.append(' ').append(words[random.nextInt(words.length)]);
+            }
+            if (id == 42) {
+                text42 = text.toString();
+            }
+            index.upsert(id, text.toString());
+        }
+        index.upsert(20_000L, text42 + " refurbished");
+
+        // --- ACT ---
+        List<MinHashIndex.Match> matches = index.similar(42L, 5, 0.5);
+
+        // --- ASSERT ---
+        assertEquals(20_000L, matches.get(0).id());
+        assertTrue(matches.size() <= 5);
+        assertEquals(10_001, index.getStats().entries());
+    }
+
+    @Test
+    void index_shouldUnlinkEntriesFromAnywhereInTheirBuckets() {
+        // --- ARRANGE ---
+        // identical texts share every bucket, linked newest first: 5, 4, 3, 2, 1
+        MinHashIndex index = new MinHashIndex(16, 4, 5, 50);
+        for (long id = 1; id <= 5; id++) {
+            index.upsert(id, "stainless steel water bottle");
+        }
+        int buckets = index.getStats().buckets();
+
+        // --- ACT ---
+        index.remove(3L);
+        index.remove(5L);
+        index.remove(1L);
+
+        // --- ASSERT ---
+        assertEquals(List.of(4L), index.similar(2L, 10, 0.5).stream().map(MinHashIndex.Match::id).toList());
+        assertEquals(List.of(2L), index.similar(4L, 10, 0.5).stream().map(MinHashIndex.Match::id).toList());
+        assertEquals(buckets, index.getStats().buckets());
+        index.remove(2L);
+        index.remove(4L);
+        assertEquals(0, index.getStats().buckets());
+    }
+
+    private static ProductRepo.ProductTextRow row(Long productId, String name, String description) {
+        return new ProductRepo.ProductTextRow() {
+            public Long getProductId() {
+                return productId;
+            }
+
+            public String getName() {
+                return name;
+            }
+
+            public String getDescription() {
+                return description;
+            }
+        };
+    }
+
+    private static ProductSnapshot snapshot(Long productId, String name, String description) {
+        return new ProductSnapshot(productId, name, description, 1999, 10, null, null);
+    }
+
+    private static List<Long> ids(List<MinHashIndex.Match> matches) {
+        return matches.stream().map(MinHashIndex.Match::id).toList();
+    }
+}
@@ -0,0 +1,121 @@
+package com.genc.e_commerce.service;
+
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.dto.StorefrontResponse;
+import com.genc.e_commerce.entity.Category;
+import com.genc.e_commerce.entity.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StorefrontServiceTest {
+
+    @Mock
+    private CategoryService categoryService;
+    @Mock
+    private ProductService productService;
+    @Mock
+    private CartService cartService;
+
+    private StorefrontService storefrontService;
+
+    private Category testCategory;
+    private Product testProduct;
+
+    @BeforeEach
+    void setUp() {
+        storefrontService = new StorefrontService(categoryService, productService, cartService);
+        ReflectionTestUtils.setField(storefrontService, "categoriesTimeoutMs", 300L);
+        ReflectionTestUtils.setField(storefrontService, "productsTimeoutMs", 300L);
+        ReflectionTestUtils.setField(storefrontService, "cartTimeoutMs", 300L);
+
+        testCategory = new Category();
+        testCategory.setCategoryId(1);
+        testCategory.setCategoryName("Electronics");
+
+        testProduct = new Product();
+        testProduct.setProductId(10L);
+        testProduct.setName("Laptop");
+    }
+
+    @AfterEach
+    void tearDown() {
+        storefrontService.shutdown();
+    }
+
+    @Test
+    void getStorefront_whenAllBranchesAreSlow_shouldTakeTheSlowestBranchNotTheSum() {
+        // --- ARRANGE ---
+        // every branch takes ~150ms, run one after another that would be ~450ms
+        when(categoryService.getAllCategory()).thenAnswer(invocation -> {
+            Thread.sleep(150);
+            return List.of(testCategory);
+        });
+        when(productService.getProductPage(0, 20)).thenAnswer(invocation -> {
+            Thread.sleep(150);
+            return new PageImpl<>(List.of(testProduct));
+        });
+        when(cartService.getCartDetails(1L)).thenAnswer(invocation -> {
+            Thread.sleep(150);
+            return List.of(new CartResponse(5L, 1L, 10L, "Laptop", 2, 10000, 20000, 1));
+        });
+
+        // --- ACT ---
+        StorefrontResponse response = storefrontService.getStorefront(1L, 20);
+
+        // --- ASSERT ---
+        assertFalse(response.isPartial());
+        assertEquals(1, response.getCategories().size());
+        assertEquals(1, response.getProducts().size());
+        assertEquals(2, response.getCart().getTotalQuantity());
+        assertEquals(20000, response.getCart().getTotalAmountMinor());
+        assertTrue(response.getElapsedMillis() < 300, "took " + response.getElapsedMillis() + " ms");
+    }
+
+    @Test
+    void getStorefront_whenOneBranchTimesOut_shouldReturnPartialResult() {
+        // --- ARRANGE ---
+        when(categoryService.getAllCategory()).thenReturn(List.of(testCategory));
+        when(productService.getProductPage(0, 20)).thenAnswer(invocation -> {
+            Thread.sleep(2000);
+            return new PageImpl<>(List.of(testProduct));
+        });
+
+        // --- ACT ---
+        StorefrontResponse response = storefrontService.getStorefront(null, 20);
+
+        // --- ASSERT ---
+        assertTrue(response.isPartial());
+        assertEquals(List.of("products"), response.getUnavailableSections());
+        assertEquals(1, response.getCategories().size());
+        assertTrue(response.getProducts().isEmpty());
+        assertNull(response.getCart());
+        verify(cartService, never()).getCartDetails(anyLong());
+    }
+
+    @Test
+    void getStorefront_whenCartBranchFails_shouldFallBackToEmptyCart() {
+        // --- ARRANGE ---
+        when(categoryService.getAllCategory()).thenReturn(List.of(testCategory));
+        when(productService.getProductPage(0, 20)).thenReturn(new PageImpl<>(List.of(testProduct)));
+        when(cartService.getCartDetails(1L)).thenThrow(new RuntimeException("No user found"));
+
+        // --- ACT ---
+        StorefrontResponse response = storefrontService.getStorefront(1L, 20);
+
+        // --- ASSERT ---
+        assertEquals(List.of("cart"), response.getUnavailableSections());
+        assertEquals(0, response.getCart().getItemCount());
+    }
+}
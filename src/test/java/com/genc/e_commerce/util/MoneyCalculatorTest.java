@@ -0,0 +1,77 @@
+package com.genc.e_commerce.util;
+
+import com.genc.e_commerce.dto.CartResponse;
+import com.genc.e_commerce.entity.Cart;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyCalculatorTest {
+
+    @Test
+    void total_shouldBeExactWhereDoublesDrift() {
+        // --- ARRANGE ---
+        // 0.10 + 0.20 is 0.30000000000000004 in double arithmetic
+        List<Cart> lines = List.of(line(Money.ofMajor(new BigDecimal("0.10"))), line(Money.ofMajor(new BigDecimal("0.20"))));
+
+        // --- ACT ---
+        long total = MoneyCalculator.total(lines, Cart::getItemPriceTotalMinor);
+
+        // --- ASSERT ---
+        assertEquals(30, total);
+        assertEquals(new BigDecimal("0.30"), Money.toMajor(total));
+        assertEquals(1999, Money.ofMajor(19.99));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofMajor(new BigDecimal("1.005")));
+    }
+
+    @Test
+    void total_whenSumOverflows_shouldThrow() {
+        List<Cart> lines = List.of(line(Long.MAX_VALUE), line(1));
+
+        assertThrows(ArithmeticException.class, () -> MoneyCalculator.total(lines, Cart::getItemPriceTotalMinor));
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+    }
+
+    // the totals path must not box, iterate through an Iterator or build BigDecimals
+    @Test
+    void total_shouldNotAllocate() {
+        // --- ARRANGE ---
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        List<CartResponse> cart = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            cart.add(new CartResponse(null, null, (long) i, "item", 3, 1999, Money.times(1999, 3), null));
+        }
+        // warm-up links the method references and lets the JIT compile the loop
+        long checksum = totals(cart, 20_000);
+
+        // --- ACT ---
+        long before = threads.getThreadAllocatedBytes(threadId);
+        checksum += totals(cart, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // --- ASSERT ---
+        assertEquals(120_000L * 50 * 5997, checksum);
+        // 6 million line reads; boxing a single Long per call would already be megabytes
+        assertTrue(allocated < 4096, "totals allocated " + allocated + " bytes");
+    }
+
+    private static long totals(List<CartResponse> cart, int rounds) {
+        long checksum = 0;
+        for (int i = 0; i < rounds; i++) {
+            checksum += MoneyCalculator.total(cart, CartResponse::getItemPriceTotalMinor);
+        }
+        return checksum;
+    }
+
+    private static Cart line(long itemPriceTotalMinor) {
+        Cart cart = new Cart();
+        cart.setItemPriceTotalMinor(itemPriceTotalMinor);
+        return cart;
+    }
+}
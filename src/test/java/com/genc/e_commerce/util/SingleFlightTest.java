@@ -0,0 +1,48 @@
+package com.genc.e_commerce.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void execute_whenTheLeaderThrowsAnError_shouldFailTheFollowersWithIt() throws Exception {
+        // --- ARRANGE ---
+        SingleFlight<String, String> flight = new SingleFlight<>("test", Duration.ofMinutes(1));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch leaderRelease = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            leaderStarted.countDown();
+            try {
+                leaderRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new OutOfMemoryError("loader ran out of memory");
+        }));
+        assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(
+                () -> flight.execute("key", () -> "not the leader"));
+        while (flight.stats().coalesced() == 0) {
+            Thread.onSpinWait();
+        }
+
+        // --- ACT ---
+        leaderRelease.countDown();
+
+        // --- ASSERT ---
+        ExecutionException followerFailure = assertThrows(ExecutionException.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OutOfMemoryError.class, followerFailure.getCause());
+        assertInstanceOf(OutOfMemoryError.class,
+                assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+        assertEquals(0, flight.stats().inFlight());
+        assertEquals(1, flight.stats().executions());
+    }
+}